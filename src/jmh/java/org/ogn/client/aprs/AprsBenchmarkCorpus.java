@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates a large, synthetic but realistic corpus of APRS lines from the sentences recorded in
+ * server-sentences.txt. The generator is seeded, so that the same corpus is used by every benchmark run and the results
+ * can be compared across commits.
+ */
+public final class AprsBenchmarkCorpus {
+
+	public static final int			DEFAULT_SIZE	= 10000;
+
+	private static final long		SEED			= 0x0A5C0FFEEL;
+
+	private static final Pattern	ADDRESS			= Pattern.compile("id(\\p{XDigit}{2})(\\p{XDigit}{6})");
+	private static final Pattern	TIMESTAMP		= Pattern.compile("/(\\d{6})h");
+
+	private AprsBenchmarkCorpus() {
+
+	}
+
+	static List<String> loadServerSentences() {
+		final List<String> result = new ArrayList<>();
+		final InputStream is =
+				Thread.currentThread().getContextClassLoader().getResourceAsStream("server-sentences.txt");
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				result.add(line);
+			}
+		} catch (final IOException e) {
+			throw new IllegalStateException("could not load server-sentences.txt", e);
+		}
+		return result;
+	}
+
+	/**
+	 * @param size
+	 *            number of lines to generate
+	 * @param aircraft
+	 *            number of distinct aircraft addresses to spread the aircraft beacons over
+	 * @return generated APRS lines, with the same mix of aircraft, receiver and server lines as the recorded sample
+	 */
+	public static String[] generate(int size, int aircraft) {
+		final List<String> templates = loadServerSentences();
+		final Random random = new Random(SEED);
+		final String[] result = new String[size];
+
+		for (int i = 0; i < size; i++) {
+			String line = templates.get(i % templates.size());
+
+			final Matcher address = ADDRESS.matcher(line);
+			if (address.find()) {
+				final String newAddress = String.format(Locale.ROOT, "%06X", 0xDD0000 + random.nextInt(aircraft));
+				line = line.substring(0, address.start(2)) + newAddress + line.substring(address.end(2));
+				// FLARM callsigns carry the address too
+				if (line.startsWith("FLR"))
+					line = "FLR" + newAddress + line.substring(line.indexOf('>'));
+			}
+
+			final Matcher timestamp = TIMESTAMP.matcher(line);
+			if (timestamp.find()) {
+				final int seconds = (i / 10) % 86400;
+				final String newTimestamp = String.format(Locale.ROOT, "%02d%02d%02d", seconds / 3600,
+						seconds / 60 % 60, seconds % 60);
+				line = line.substring(0, timestamp.start(1)) + newTimestamp + line.substring(timestamp.end(1));
+			}
+
+			result[i] = line;
+		}
+
+		return result;
+	}
+
+	public static String[] generate(int size) {
+		return generate(size, 500);
+	}
+
+	/**
+	 * @return the lines joined the same way they are received from the APRS server
+	 */
+	public static byte[] toStream(String[] lines) {
+		final StringBuilder sb = new StringBuilder();
+		for (final String line : lines) {
+			sb.append(line).append("\r\n");
+		}
+		return sb.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+}
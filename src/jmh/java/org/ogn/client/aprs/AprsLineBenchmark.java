@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.ogn.client.aprs.AprsBenchmarkCorpus.DEFAULT_SIZE;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * raw line framing (socket bytes to lines) and APRS parsing costs, per line
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AprsLineBenchmark {
+
+	private String[]	lines;
+	private byte[]		stream;
+	private int			index;
+
+	@Setup
+	public void setUp() {
+		lines = AprsBenchmarkCorpus.generate(DEFAULT_SIZE);
+		stream = AprsBenchmarkCorpus.toStream(lines);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DEFAULT_SIZE)
+	public void framing(Blackhole bh) throws IOException {
+		final BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(stream)));
+		String line;
+		while ((line = in.readLine()) != null) {
+			bh.consume(line);
+		}
+	}
+
+	@Benchmark
+	public OgnBeacon parse() {
+		final String line = lines[index];
+		index = index + 1 == lines.length ? 0 : index + 1;
+		return AprsLineParser.get().parse(line);
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.descriptor.AircraftDescriptorProvider;
+import org.ogn.commons.beacon.impl.AircraftDescriptorImpl;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cost of the aircraft descriptor lookup with a growing number of descriptor providers. Only the last provider knows
+ * the aircraft, which is the worst case for the client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorLookupBenchmark {
+
+	@Param({"0", "1", "4", "16"})
+	private int					providers;
+
+	private AprsOgnClient		client;
+	private AircraftBeacon[]	beacons;
+	private int					index;
+
+	static class MapDescriptorProvider implements AircraftDescriptorProvider {
+		private final Map<String, AircraftDescriptor> descriptors = new HashMap<>();
+
+		@Override
+		public Optional<AircraftDescriptor> findDescriptor(String address) {
+			return Optional.ofNullable(descriptors.get(address));
+		}
+	}
+
+	static AircraftBeacon[] parseAircraftBeacons(String[] lines) {
+		final List<AircraftBeacon> result = new ArrayList<>();
+		for (final String line : lines) {
+			final OgnBeacon beacon = AprsLineParser.get().parse(line);
+			if (beacon instanceof AircraftBeacon)
+				result.add((AircraftBeacon) beacon);
+		}
+		return result.toArray(new AircraftBeacon[0]);
+	}
+
+	static List<AircraftDescriptorProvider> createProviders(int count, AircraftBeacon[] beacons) {
+		final List<AircraftDescriptorProvider> result = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			result.add(new MapDescriptorProvider());
+		}
+
+		if (count > 0) {
+			final MapDescriptorProvider last = (MapDescriptorProvider) result.get(count - 1);
+			for (final AircraftBeacon beacon : beacons) {
+				last.descriptors.put(beacon.getAddress(),
+						new AircraftDescriptorImpl("D-" + beacon.getAddress(), "XX", "ASK-21", true, true));
+			}
+		}
+
+		return result;
+	}
+
+	@Setup
+	public void setUp() {
+		beacons = parseAircraftBeacons(AprsBenchmarkCorpus.generate(AprsBenchmarkCorpus.DEFAULT_SIZE));
+		client = new AprsOgnClient.Builder().descriptorProviders(createProviders(providers, beacons)).build();
+	}
+
+	@Benchmark
+	public Optional<AircraftDescriptor> lookup() {
+		final AircraftBeacon beacon = beacons[index];
+		index = index + 1 == beacons.length ? 0 : index + 1;
+		return client.findAircraftDescriptor(beacon);
+	}
+}
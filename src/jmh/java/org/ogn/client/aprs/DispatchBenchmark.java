@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * cost of notifying a growing number of aircraft beacon listeners about a single (already parsed) beacon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+	@Param({"1", "10", "100"})
+	private int					listeners;
+
+	private AprsOgnClient		client;
+	private AircraftBeacon[]	beacons;
+	private AprsLine[]			lines;
+	private int					index;
+
+	@Setup
+	public void setUp(Blackhole bh) {
+		beacons = DescriptorLookupBenchmark
+				.parseAircraftBeacons(AprsBenchmarkCorpus.generate(AprsBenchmarkCorpus.DEFAULT_SIZE));
+		lines = new AprsLine[beacons.length];
+		for (int i = 0; i < beacons.length; i++) {
+			lines[i] = new AprsLine(beacons[i].getRawPacket(), System.nanoTime());
+		}
+
+		client = new AprsOgnClient.Builder()
+				.descriptorProviders(DescriptorLookupBenchmark.createProviders(1, beacons)).build();
+		for (int i = 0; i < listeners; i++) {
+			client.subscribeToAircraftBeacons((beacon, descriptor) -> bh.consume(descriptor));
+		}
+	}
+
+	@Benchmark
+	public void fanOut() throws InterruptedException {
+		final int i = index;
+		index = index + 1 == beacons.length ? 0 : index + 1;
+		client.notifyAllListeners(beacons[i], lines[i]);
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * cost of routing a beacon to a growing number of watchlist listeners (each one interested in a few addresses), either
+ * filtering inside the listeners or subscribed with an indexed {@link AircraftBeaconSelector}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexedDispatchBenchmark {
+
+	private static final int	ADDRESSES_PER_LISTENER	= 4;
+
+	@Param({"10", "100", "1000"})
+	private int					listeners;
+
+	@Param({"false", "true"})
+	private boolean				indexed;
+
+	private AprsOgnClient		client;
+	private AircraftBeacon[]	beacons;
+	private AprsLine[]			lines;
+	private int					index;
+
+	@Setup
+	public void setUp(Blackhole bh) {
+		beacons = DescriptorLookupBenchmark
+				.parseAircraftBeacons(AprsBenchmarkCorpus.generate(AprsBenchmarkCorpus.DEFAULT_SIZE));
+		lines = new AprsLine[beacons.length];
+		for (int i = 0; i < beacons.length; i++) {
+			lines[i] = new AprsLine(beacons[i].getRawPacket(), System.nanoTime());
+		}
+
+		client = new AprsOgnClient.Builder().build();
+		for (int i = 0; i < listeners; i++) {
+			final Set<String> watchlist = new HashSet<>();
+			for (int j = 0; j < ADDRESSES_PER_LISTENER; j++) {
+				watchlist.add(beacons[(i * ADDRESSES_PER_LISTENER + j) % beacons.length].getAddress());
+			}
+
+			if (indexed) {
+				client.subscribeToAircraftBeacons((beacon, descriptor) -> bh.consume(beacon),
+						new AircraftBeaconSelector.Builder().addresses(watchlist).build());
+			} else {
+				client.subscribeToAircraftBeacons((beacon, descriptor) -> {
+					if (watchlist.contains(beacon.getAddress()))
+						bh.consume(beacon);
+				});
+			}
+		}
+	}
+
+	@Benchmark
+	public void route() throws InterruptedException {
+		final int i = index;
+		index = index + 1 == beacons.length ? 0 : index + 1;
+		client.notifyAllListeners(beacons[i], lines[i]);
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * many client instances (e.g. one per customer filter) connected at the same time to a local load server, running on
+ * platform or on virtual threads. Reports the beacons received per second by all the clients together, plus the
+ * number of live platform threads and the used heap (secondary metrics). The virtual threads mode requires JDK 21+.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManyClientsBenchmark {
+
+	@Param({"false", "true"})
+	private boolean				virtualThreads;
+
+	@Param({"100"})
+	private int					clients;
+
+	@Param({"100000"})
+	private int					linesPerSecond;
+
+	private AprsLoadServer		server;
+	private List<AprsOgnClient>	ognClients;
+	private final LongAdder		received	= new LongAdder();
+	private long				lastReceived;
+
+	/**
+	 * beacons received by all the clients, reported as a rate
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Beacons {
+		public long beacons;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			beacons = 0;
+		}
+	}
+
+	/**
+	 * gauges, sampled at the end of every invocation
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Resources {
+		public long	platformThreads;
+		public long	heapUsedKb;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		// one connection per client, each served at linesPerSecond / clients
+		server = new AprsLoadServer(linesPerSecond / clients, false);
+		final int port = server.start();
+
+		ognClients = new ArrayList<>(clients);
+		for (int i = 0; i < clients; i++) {
+			final AprsOgnClient client = new AprsOgnClient.Builder().serverName("localhost").unfilteredPort(port)
+					.virtualThreads(virtualThreads).build();
+			client.subscribeToAircraftBeacons((beacon, descriptor) -> received.increment());
+			client.subscribeToReceiverBeacons(beacon -> received.increment());
+			client.connect();
+			ognClients.add(client);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (final AprsOgnClient client : ognClients) {
+			client.disconnect();
+		}
+		server.stop();
+	}
+
+	@Benchmark
+	public void receive(Beacons beacons, Resources resources) throws InterruptedException {
+		TimeUnit.MILLISECONDS.sleep(100);
+
+		final long total = received.sum();
+		beacons.beacons += total - lastReceived;
+		lastReceived = total;
+
+		// ThreadMXBean only counts platform threads
+		resources.platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+		resources.heapUsedKb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024;
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.ogn.client.aprs.AprsBenchmarkCorpus.DEFAULT_SIZE;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * the whole client pipeline, from the raw bytes received from the server down to the listeners: framing, parsing,
+ * descriptor lookup (4 providers) and dispatch (10 listeners). Results are per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+	private static final int	PROVIDERS	= 4;
+	private static final int	LISTENERS	= 10;
+
+	private AprsOgnClient		client;
+	private byte[]				stream;
+
+	@Setup
+	public void setUp(Blackhole bh) {
+		final String[] lines = AprsBenchmarkCorpus.generate(DEFAULT_SIZE);
+		stream = AprsBenchmarkCorpus.toStream(lines);
+
+		final AircraftBeacon[] beacons = DescriptorLookupBenchmark.parseAircraftBeacons(lines);
+		client = new AprsOgnClient.Builder()
+				.descriptorProviders(DescriptorLookupBenchmark.createProviders(PROVIDERS, beacons)).build();
+		for (int i = 0; i < LISTENERS; i++) {
+			client.subscribeToAircraftBeacons((beacon, descriptor) -> bh.consume(descriptor));
+			client.subscribeToReceiverBeacons(bh::consume);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DEFAULT_SIZE)
+	public void pipeline() throws IOException {
+		final BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(stream)));
+		String line;
+		while ((line = in.readLine()) != null) {
+			client.processLine(new AprsLine(line, System.nanoTime()));
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.coverage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.aprs.AprsTrafficGenerator;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * throughput of the coverage statistics, notified by one thread and by several threads sharing the same aggregator
+ * (as with a sharded client)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoverageBenchmark {
+
+	private ReceiverCoverageAggregator	aggregator;
+	private AircraftBeacon[]			beacons;
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+	}
+
+	@Setup
+	public void setUp() {
+		final AprsTrafficGenerator generator = new AprsTrafficGenerator(1, 49.5, 10.0, 300, 5000, 200);
+		final List<AircraftBeacon> parsed = new ArrayList<>();
+		aggregator = new ReceiverCoverageAggregator.Builder().window(Long.MAX_VALUE / 4, 1).build();
+		long now = System.currentTimeMillis();
+		while (parsed.size() < 100000) {
+			final OgnBeacon beacon = AprsLineParser.get().parse(generator.nextLine(now += 2));
+			if (beacon instanceof AircraftBeacon)
+				parsed.add((AircraftBeacon) beacon);
+			else if (beacon instanceof ReceiverBeacon)
+				aggregator.onUpdate((ReceiverBeacon) beacon);
+		}
+		beacons = parsed.toArray(new AircraftBeacon[0]);
+	}
+
+	private void update(Cursor cursor) {
+		final int i = cursor.index;
+		cursor.index = i + 1 == beacons.length ? 0 : i + 1;
+		aggregator.onUpdate(beacons[i], Optional.empty());
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void singleThread(Cursor cursor) {
+		update(cursor);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void fourThreads(Cursor cursor) {
+		update(cursor);
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.geofence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.aprs.AprsTrafficGenerator;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * cost of testing a beacon against a growing number of fences (turnpoint-like cylinders of 1 to 5 km spread over the
+ * simulated region). With the grid index it only grows with the density of the fences around the beacons (at 10000
+ * fences a third of the region is covered), compared to the linear scan of all the fences.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeofenceBenchmark {
+
+	private static final double	CENTER_LAT	= 49.5;
+	private static final double	CENTER_LON	= 10.0;
+	private static final double	RADIUS_KM	= 600;
+
+	@Param({"100", "1000", "10000"})
+	private int					fences;
+
+	private GeofenceEngine		engine;
+	private Geofence[]			all;
+	private AircraftBeacon[]	beacons;
+	private int					index;
+
+	@Setup
+	public void setUp(Blackhole bh) {
+		final AprsTrafficGenerator generator =
+				new AprsTrafficGenerator(1, CENTER_LAT, CENTER_LON, RADIUS_KM, 2000, 200);
+		final List<AircraftBeacon> parsed = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		while (parsed.size() < 20000) {
+			now += 10;
+			final OgnBeacon beacon = AprsLineParser.get().parse(generator.nextLine(now));
+			if (beacon instanceof AircraftBeacon)
+				parsed.add((AircraftBeacon) beacon);
+		}
+		beacons = parsed.toArray(new AircraftBeacon[0]);
+
+		engine = new GeofenceEngine.Builder().listener(bh::consume).dwellTime(60000).build();
+		final Random random = new Random(42);
+		final List<Geofence> list = new ArrayList<>();
+		for (int i = 0; i < fences; i++) {
+			final double distance = RADIUS_KM * Math.sqrt(random.nextDouble());
+			final double bearing = random.nextDouble() * 2 * Math.PI;
+			final double lat = CENTER_LAT + distance * Math.cos(bearing) / 111.32;
+			final double lon = CENTER_LON + distance * Math.sin(bearing) / (111.32 * Math.cos(Math.toRadians(lat)));
+			list.add(Geofence.circle("TP" + i, lat, lon, 1 + random.nextDouble() * 4, 24));
+		}
+		engine.addFences(list);
+		all = list.toArray(new Geofence[0]);
+	}
+
+	@Benchmark
+	public void onUpdate() {
+		final int i = index;
+		index = index + 1 == beacons.length ? 0 : index + 1;
+		engine.onUpdate(beacons[i], Optional.empty());
+	}
+
+	@Benchmark
+	public int linearScan() {
+		final int i = index;
+		index = index + 1 == beacons.length ? 0 : index + 1;
+		final AircraftBeacon beacon = beacons[i];
+		int inside = 0;
+		for (final Geofence fence : all) {
+			if (fence.contains(beacon.getLat(), beacon.getLon(), beacon.getAlt()))
+				inside++;
+		}
+		return inside;
+	}
+}
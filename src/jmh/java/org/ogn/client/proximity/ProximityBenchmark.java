@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.proximity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.aprs.AprsTrafficGenerator;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * cost of checking a beacon for conflicts with a growing number of aircraft flying over the simulated region
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProximityBenchmark {
+
+	@Param({"1000", "5000", "20000"})
+	private int					aircraft;
+
+	private ProximityEngine		engine;
+	private AircraftBeacon[]	beacons;
+	private int					index;
+
+	@Setup
+	public void setUp(Blackhole bh) {
+		final AprsTrafficGenerator generator = new AprsTrafficGenerator(1, 49.5, 10.0, 600, aircraft, 200);
+		final List<AircraftBeacon> parsed = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		// every aircraft is heard a few times, one second apart
+		while (parsed.size() < 5 * aircraft) {
+			now += 1000 / aircraft + 1;
+			final OgnBeacon beacon = AprsLineParser.get().parse(generator.nextLine(now));
+			if (beacon instanceof AircraftBeacon)
+				parsed.add((AircraftBeacon) beacon);
+		}
+		beacons = parsed.toArray(new AircraftBeacon[0]);
+
+		// repeated alerts are not suppressed, they are part of the cost
+		engine = new ProximityEngine.Builder().listener(bh::consume).alertInterval(0).maxAge(Long.MAX_VALUE / 2)
+				.build();
+		for (final AircraftBeacon beacon : beacons) {
+			engine.onUpdate(beacon, Optional.empty());
+		}
+	}
+
+	@Benchmark
+	public void onUpdate() {
+		final int i = index;
+		index = index + 1 == beacons.length ? 0 : index + 1;
+		engine.onUpdate(beacons[i], Optional.empty());
+	}
+}
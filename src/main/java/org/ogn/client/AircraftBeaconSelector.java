@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftType;
+
+/**
+ * Declarative selection of the aircraft beacons a listener is interested in: a set of addresses, an area (bounding
+ * box), a set of aircraft types and an altitude band. A beacon is selected if it matches all the criteria which have
+ * been set. Unlike a filter implemented inside the listener, a selector is indexed by the client, so that the beacons
+ * are routed only to the listeners which select them.
+ * 
+ * @see OgnClient#subscribeToAircraftBeacons(AircraftBeaconListener, AircraftBeaconSelector)
+ */
+public final class AircraftBeaconSelector implements Predicate<AircraftBeacon> {
+
+	private final Set<String>		addresses;
+	private final boolean			hasArea;
+	private final double			minLat;
+	private final double			minLon;
+	private final double			maxLat;
+	private final double			maxLon;
+	private final Set<AircraftType>	aircraftTypes;
+	private final float				minAlt;
+	private final float				maxAlt;
+
+	private AircraftBeaconSelector(Builder builder) {
+		this.addresses = builder.addresses == null ? null : Collections.unmodifiableSet(builder.addresses);
+		this.hasArea = builder.hasArea;
+		this.minLat = builder.minLat;
+		this.minLon = builder.minLon;
+		this.maxLat = builder.maxLat;
+		this.maxLon = builder.maxLon;
+		this.aircraftTypes = builder.aircraftTypes == null ? null : Collections.unmodifiableSet(builder.aircraftTypes);
+		this.minAlt = builder.minAlt;
+		this.maxAlt = builder.maxAlt;
+	}
+
+	public static class Builder {
+		private Set<String>			addresses;
+		private boolean				hasArea;
+		private double				minLat;
+		private double				minLon;
+		private double				maxLat;
+		private double				maxLon;
+		private Set<AircraftType>	aircraftTypes;
+		private float				minAlt	= Float.NEGATIVE_INFINITY;
+		private float				maxAlt	= Float.POSITIVE_INFINITY;
+
+		/**
+		 * @param addresses
+		 *            aircraft addresses (e.g. DD9350), as returned by {@link AircraftBeacon#getAddress()}
+		 */
+		public Builder addresses(String... addresses) {
+			return addresses(Arrays.asList(addresses));
+		}
+
+		public Builder addresses(Collection<String> addresses) {
+			if (this.addresses == null)
+				this.addresses = new HashSet<>();
+			this.addresses.addAll(addresses);
+			return this;
+		}
+
+		/**
+		 * @param minLat
+		 *            southern edge (deg)
+		 * @param minLon
+		 *            western edge (deg)
+		 * @param maxLat
+		 *            northern edge (deg)
+		 * @param maxLon
+		 *            eastern edge (deg), areas crossing the anti-meridian are not supported
+		 */
+		public Builder area(double minLat, double minLon, double maxLat, double maxLon) {
+			if (minLat > maxLat || minLon > maxLon)
+				throw new IllegalArgumentException(
+						"invalid area: " + minLat + "," + minLon + " - " + maxLat + "," + maxLon);
+			this.hasArea = true;
+			this.minLat = minLat;
+			this.minLon = minLon;
+			this.maxLat = maxLat;
+			this.maxLon = maxLon;
+			return this;
+		}
+
+		public Builder aircraftTypes(AircraftType... types) {
+			if (this.aircraftTypes == null)
+				this.aircraftTypes = EnumSet.noneOf(AircraftType.class);
+			this.aircraftTypes.addAll(Arrays.asList(types));
+			return this;
+		}
+
+		/**
+		 * @param minAlt
+		 *            min altitude (m), inclusive
+		 * @param maxAlt
+		 *            max altitude (m), inclusive
+		 */
+		public Builder altitude(float minAlt, float maxAlt) {
+			this.minAlt = minAlt;
+			this.maxAlt = maxAlt;
+			return this;
+		}
+
+		public AircraftBeaconSelector build() {
+			return new AircraftBeaconSelector(this);
+		}
+	}
+
+	@Override
+	public boolean test(AircraftBeacon beacon) {
+		if (addresses != null && !addresses.contains(beacon.getAddress()))
+			return false;
+		if (hasArea && !(beacon.getLat() >= minLat && beacon.getLat() <= maxLat && beacon.getLon() >= minLon
+				&& beacon.getLon() <= maxLon))
+			return false;
+		if (aircraftTypes != null && !aircraftTypes.contains(beacon.getAircraftType()))
+			return false;
+		return beacon.getAlt() >= minAlt && beacon.getAlt() <= maxAlt;
+	}
+
+	/**
+	 * @return selected addresses, null if any address is selected
+	 */
+	public Set<String> getAddresses() {
+		return addresses;
+	}
+
+	public boolean hasArea() {
+		return hasArea;
+	}
+
+	public double getMinLat() {
+		return minLat;
+	}
+
+	public double getMinLon() {
+		return minLon;
+	}
+
+	public double getMaxLat() {
+		return maxLat;
+	}
+
+	public double getMaxLon() {
+		return maxLon;
+	}
+
+	/**
+	 * @return selected aircraft types, null if any type is selected
+	 */
+	public Set<AircraftType> getAircraftTypes() {
+		return aircraftTypes;
+	}
+
+	public float getMinAlt() {
+		return minAlt;
+	}
+
+	public float getMaxAlt() {
+		return maxAlt;
+	}
+}
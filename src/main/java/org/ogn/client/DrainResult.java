@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client;
+
+/**
+ * Outcome of a graceful disconnection of an OGN client.
+ * 
+ * @see OgnClient#disconnect(long, java.util.concurrent.TimeUnit)
+ */
+public class DrainResult {
+
+	private final long		processedLines;
+	private final long		discardedLines;
+	private final boolean	completed;
+
+	public DrainResult(long processedLines, long discardedLines, boolean completed) {
+		this.processedLines = processedLines;
+		this.discardedLines = discardedLines;
+		this.completed = completed;
+	}
+
+	/**
+	 * @return number of APRS lines parsed and dispatched after the disconnection was requested
+	 */
+	public long getProcessedLines() {
+		return processedLines;
+	}
+
+	/**
+	 * @return number of APRS lines which could not be processed before the timeout elapsed
+	 */
+	public long getDiscardedLines() {
+		return discardedLines;
+	}
+
+	/**
+	 * @return true if all pending lines have been processed before the timeout elapsed
+	 */
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	@Override
+	public String toString() {
+		return "DrainResult [processedLines=" + processedLines + ", discardedLines=" + discardedLines
+				+ ", completed=" + completed + "]";
+	}
+}
@@ -1,54 +1,133 @@
-/**
- * Copyright (c) 2014 OGN, All Rights Reserved.
- */
-
-package org.ogn.client;
-
-public interface OgnClient {
-
-	/**
-	 * subscribes a listener to the aircraft beacons
-	 * 
-	 * @param listener
-	 */
-	void subscribeToAircraftBeacons(AircraftBeaconListener listener);
-
-	/**
-	 * unsubscribes a listener from receiving aircraft beacons
-	 * 
-	 * @param listener
-	 */
-	void unsubscribeFromAircraftBeacons(AircraftBeaconListener listener);
-
-	/**
-	 * subscribes a listener to the base stations beacons
-	 * 
-	 * @param listener
-	 */
-	void subscribeToReceiverBeacons(ReceiverBeaconListener listener);
-
-	/**
-	 * unsubscribes a listener from receiving base stations beacons
-	 * 
-	 * @param listener
-	 */
-	void unsubscribeFromReceiverBeacons(ReceiverBeaconListener listener);
-
-	/**
-	 * connects the client to the OGN service (no filtering)
-	 */
-	void connect();
-
-	/**
-	 * connects to the OGN service
-	 * 
-	 * @param filter
-	 *            optional filter, if null no filter will be used, as it is in case of {@link #connect()}
-	 */
-	void connect(String filter);
-
-	/**
-	 * disconnects a client from the OGN service
-	 */
-	void disconnect();
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.reactivestreams.Publisher;
+
+public interface OgnClient {
+
+	/**
+	 * subscribes a listener to the aircraft beacons
+	 * 
+	 * @param listener
+	 */
+	void subscribeToAircraftBeacons(AircraftBeaconListener listener);
+
+	/**
+	 * subscribes a listener to the aircraft beacons matching a selector. The selectors are indexed, so that a beacon is
+	 * routed only to the listeners selecting it: prefer this over filtering inside the listeners when there are many of
+	 * them. Subscribing a listener again replaces its selector.
+	 * 
+	 * @param listener
+	 * @param selector
+	 * @throws UnsupportedOperationException
+	 *             if the client does not index the selectors
+	 */
+	default void subscribeToAircraftBeacons(AircraftBeaconListener listener, AircraftBeaconSelector selector) {
+		throw new UnsupportedOperationException("selectors not supported by " + getClass().getName());
+	}
+
+	/**
+	 * unsubscribes a listener from receiving aircraft beacons
+	 * 
+	 * @param listener
+	 */
+	void unsubscribeFromAircraftBeacons(AircraftBeaconListener listener);
+
+	/**
+	 * @return publisher of the aircraft beacons. Unlike the listeners, the publisher's subscribers control the rate of
+	 *         the beacons they get through their demand: when a subscriber does not keep up, the client stops reading
+	 *         from the server until it does.
+	 * @throws UnsupportedOperationException
+	 *             if the client only notifies listeners
+	 */
+	default Publisher<AircraftBeacon> getAircraftBeaconPublisher() {
+		throw new UnsupportedOperationException("publishers not supported by " + getClass().getName());
+	}
+
+	/**
+	 * @return publisher of the receiver beacons, respecting the subscribers' demand
+	 * @throws UnsupportedOperationException
+	 *             if the client only notifies listeners
+	 * @see #getAircraftBeaconPublisher()
+	 */
+	default Publisher<ReceiverBeacon> getReceiverBeaconPublisher() {
+		throw new UnsupportedOperationException("publishers not supported by " + getClass().getName());
+	}
+
+	/**
+	 * subscribes a listener to the base stations beacons
+	 * 
+	 * @param listener
+	 */
+	void subscribeToReceiverBeacons(ReceiverBeaconListener listener);
+
+	/**
+	 * unsubscribes a listener from receiving base stations beacons
+	 * 
+	 * @param listener
+	 */
+	void unsubscribeFromReceiverBeacons(ReceiverBeaconListener listener);
+
+	/**
+	 * connects the client to the OGN service (no filtering)
+	 */
+	void connect();
+
+	/**
+	 * connects to the OGN service
+	 * 
+	 * @param filter
+	 *            optional filter, if null no filter will be used, as it is in case of {@link #connect()}
+	 */
+	void connect(String filter);
+
+	/**
+	 * changes the filter of a connected client without re-connecting
+	 * 
+	 * @param filter
+	 *            new filter, if null or empty no filter will be used
+	 * @throws UnsupportedOperationException
+	 *             if the client can only be given a filter when connecting
+	 */
+	default void updateFilter(String filter) {
+		throw new UnsupportedOperationException("live filter changes not supported by " + getClass().getName());
+	}
+
+	/**
+	 * disconnects a client from the OGN service
+	 */
+	void disconnect();
+
+	/**
+	 * disconnects a client from the OGN service in a graceful way: the client stops reading from the server, but all
+	 * the APRS lines already received are still parsed and dispatched to the listeners, unless the timeout elapses
+	 * first. The lines still pending after the timeout are discarded.
+	 * 
+	 * @param timeout
+	 *            max time to wait for the pending lines to be processed
+	 * @param unit
+	 *            time unit of the timeout
+	 * @return number of lines processed and discarded while draining
+	 */
+	default DrainResult disconnect(long timeout, TimeUnit unit) {
+		// the clients which do not queue lines have nothing to drain
+		disconnect();
+		return new DrainResult(0, 0, true);
+	}
+
+	/**
+	 * @return live metrics of the client's ingest pipeline (lines read, parse failures, queue depth, dispatch times..),
+	 *         empty ones if the client does not record any
+	 */
+	default OgnClientMetrics getMetrics() {
+		return new OgnClientMetrics(() -> 0);
+	}
 }
\ No newline at end of file
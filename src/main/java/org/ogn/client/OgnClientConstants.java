@@ -1,30 +1,50 @@
-/**
- * Copyright (c) 2014 OGN, All Rights Reserved.
- */
-
-package org.ogn.client;
-
-public interface OgnClientConstants {
-
-	String	OGN_DEFAULT_SERVER_NAME						= "aprs.glidernet.org";
-	String	OGN_DEFAULT_APP_NAME						= "ogn-client-java";
-	String	OGN_DEFAULT_APP_VERSION						= "1.1.0";
-
-	/**
-	 * read only pass-code
-	 * 
-	 * @see <a href="http://www.aprs-is.net/Connecting.aspx">Connecting to APRS-IS</a>
-	 */
-	String	READ_ONLY_PASSCODE							= "-1";
-
-	Integer	OGN_DEFAULT_SRV_PORT_UNFILTERED				= 10152;
-	Integer	OGN_DEFAULT_SRV_PORT_FILTERED				= 14580;
-
-	Integer	OGN_DEFAULT_SRV_SSL_PORT_UNFILTERED			= 10017;
-	Integer	OGN_DEFAULT_SRV_SSL_PORT_FILTERED			= 10018;
-
-	Integer	OGN_DEFAULT_RECONNECTION_TIMEOUT_MS			= 5000;
-
-	// default connection keep alive message interval (5 min)
-	Integer	OGN_CLIENT_DEFAULT_KEEP_ALIVE_INTERVAL_MS	= 5 * 60 * 1000;
-}
\ No newline at end of file
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client;
+
+public interface OgnClientConstants {
+
+	String	OGN_DEFAULT_SERVER_NAME						= "aprs.glidernet.org";
+	String	OGN_DEFAULT_APP_NAME						= "ogn-client-java";
+	String	OGN_DEFAULT_APP_VERSION						= "1.1.0";
+
+	/**
+	 * read only pass-code
+	 * 
+	 * @see <a href="http://www.aprs-is.net/Connecting.aspx">Connecting to APRS-IS</a>
+	 */
+	String	READ_ONLY_PASSCODE							= "-1";
+
+	Integer	OGN_DEFAULT_SRV_PORT_UNFILTERED				= 10152;
+	Integer	OGN_DEFAULT_SRV_PORT_FILTERED				= 14580;
+
+	Integer	OGN_DEFAULT_SRV_SSL_PORT_UNFILTERED			= 10017;
+	Integer	OGN_DEFAULT_SRV_SSL_PORT_FILTERED			= 10018;
+
+	Integer	OGN_DEFAULT_RECONNECTION_TIMEOUT_MS			= 5000;
+
+	// default connection keep alive message interval (5 min)
+	Integer	OGN_CLIENT_DEFAULT_KEEP_ALIVE_INTERVAL_MS	= 5 * 60 * 1000;
+
+	// default max number of received APRS lines waiting to be processed (roughly a minute of the full feed)
+	Integer	OGN_CLIENT_DEFAULT_QUEUE_CAPACITY			= 100 * 1000;
+
+	// default number of beacons buffered for each reactive subscriber
+	Integer	OGN_CLIENT_DEFAULT_PUBLISHER_BUFFER_SIZE	= 256;
+
+	// default time a packet is remembered to drop the copies received over other connections
+	Integer	OGN_CLIENT_DEFAULT_DEDUP_WINDOW_MS			= 60 * 1000;
+
+	// default max time without any data from the server before re-connecting (the servers send a comment every 20 s)
+	Integer	OGN_CLIENT_DEFAULT_READ_IDLE_TIMEOUT_MS		= 45 * 1000;
+
+	Integer	OGN_CLIENT_DEFAULT_CONNECT_TIMEOUT_MS		= 10 * 1000;
+
+	// upper bound of the exponential back-off between failed connection attempts
+	Integer	OGN_CLIENT_DEFAULT_MAX_RECONNECTION_TIMEOUT_MS	= 60 * 1000;
+
+	// default percentage of the aircraft addresses kept when the load shedding drops the untracked aircraft
+	Integer	OGN_CLIENT_DEFAULT_SHEDDING_SAMPLE_PERCENT	= 25;
+}
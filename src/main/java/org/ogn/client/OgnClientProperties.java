@@ -43,4 +43,21 @@ public interface OgnClientProperties {
 
 	String	ENV_OGN_CLIENT_USE_SSL						= "OGN_CLIENT_USE_SSL";
 	String	PROP_OGN_CLIENT_USE_SSL						= "ogn.client.use_ssl";
+
+	String	ENV_OGN_CLIENT_JMX							= "OGN_CLIENT_JMX";
+	String	PROP_OGN_CLIENT_JMX							= "ogn.client.jmx";
+
+	String	ENV_OGN_CLIENT_VIRTUAL_THREADS				= "OGN_CLIENT_VIRTUAL_THREADS";
+	String	PROP_OGN_CLIENT_VIRTUAL_THREADS				= "ogn.client.virtual_threads";
+
+	// comma-separated list of servers (name[:port]) to be connected to in addition to the main one
+	String	ENV_OGN_CLIENT_REDUNDANT_SERVERS			= "OGN_CLIENT_REDUNDANT_SERVERS";
+	String	PROP_OGN_CLIENT_REDUNDANT_SERVERS			= "ogn.client.redundant_servers";
+
+	// comma-separated list of servers (name[:port]) tried in turn when the main one fails or stalls
+	String	ENV_OGN_CLIENT_FAILOVER_SERVERS				= "OGN_CLIENT_FAILOVER_SERVERS";
+	String	PROP_OGN_CLIENT_FAILOVER_SERVERS			= "ogn.client.failover_servers";
+
+	String	ENV_OGN_CLIENT_READ_IDLE_TIMEOUT			= "OGN_CLIENT_READ_IDLE_TIMEOUT";
+	String	PROP_OGN_CLIENT_READ_IDLE_TIMEOUT			= "ogn.client.read_idle_timeout";
 }
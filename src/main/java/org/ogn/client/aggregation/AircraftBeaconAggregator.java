@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aggregation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the reports of the same aircraft fix (same address and same timestamp) received from several receivers. The
+ * first report of a fix opens a group which collects all the other reports arriving within the window, then a single
+ * {@link MergedAircraftBeacon} is delivered: the best report and the list of all the receivers which heard the fix.
+ * Reports of a fix arriving after its group has been delivered are delivered on their own.
+ * <p>
+ * Subscribe an aggregator to a client as any other aircraft beacon listener:
+ * 
+ * <pre>
+ * client.subscribeToAircraftBeacons(new AircraftBeaconAggregator(500, listener));
+ * </pre>
+ * 
+ * The merged beacons are delivered, in order of the fixes' first report, either from the thread notifying the
+ * aggregator or from the aggregator's own timer thread, never concurrently.
+ */
+public class AircraftBeaconAggregator implements AircraftBeaconListener, AutoCloseable {
+
+	private static final Logger					LOG		= LoggerFactory.getLogger(AircraftBeaconAggregator.class);
+
+	private final long							windowMs;
+	private final MergedAircraftBeaconListener	listener;
+
+	// groups waiting for more reports, in order of opening
+	private final Map<String, Group>			groups	= new LinkedHashMap<>();
+
+	private final ScheduledExecutorService		timer;
+
+	private long								reports;
+	private long								mergedBeacons;
+
+	private static class Group {
+		final long							openedMs;
+		final List<String>					receivers	= new ArrayList<>(4);
+		AircraftBeacon						best;
+		Optional<AircraftDescriptor>		descriptor;
+
+		Group(long openedMs) {
+			this.openedMs = openedMs;
+		}
+	}
+
+	/**
+	 * @param windowMs
+	 *            time the reports of a fix are collected, from the moment its first report is received
+	 * @param listener
+	 *            listener notified with the merged beacons
+	 */
+	public AircraftBeaconAggregator(long windowMs, MergedAircraftBeaconListener listener) {
+		this(windowMs, listener, true);
+	}
+
+	AircraftBeaconAggregator(long windowMs, MergedAircraftBeaconListener listener, boolean startTimer) {
+		this.windowMs = windowMs;
+		this.listener = listener;
+		if (startTimer) {
+			timer = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread result = new Thread(r, "ogn-beacon-aggregator");
+				result.setDaemon(true);
+				return result;
+			});
+			final long period = Math.max(1, windowMs / 4);
+			timer.scheduleAtFixedRate(() -> flush(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+		} else {
+			timer = null;
+		}
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		add(beacon, descriptor, System.currentTimeMillis());
+	}
+
+	synchronized void add(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor, long nowMs) {
+		flush(nowMs);
+		reports++;
+
+		final String key = beacon.getAddress() + '@' + beacon.getTimestamp();
+		Group group = groups.get(key);
+		if (group == null) {
+			group = new Group(nowMs);
+			groups.put(key, group);
+		}
+
+		if (!group.receivers.contains(beacon.getReceiverName()))
+			group.receivers.add(beacon.getReceiverName());
+		if (group.best == null || isBetter(beacon, group.best)) {
+			group.best = beacon;
+			group.descriptor = descriptor;
+		}
+	}
+
+	/**
+	 * delivers the groups whose window has elapsed
+	 */
+	synchronized void flush(long nowMs) {
+		final Iterator<Group> it = groups.values().iterator();
+		while (it.hasNext()) {
+			final Group group = it.next();
+			if (nowMs - group.openedMs < windowMs)
+				break;
+			it.remove();
+			deliver(group);
+		}
+	}
+
+	private void deliver(Group group) {
+		mergedBeacons++;
+		try {
+			listener.onUpdate(new MergedAircraftBeacon(group.best, group.receivers), group.descriptor);
+		} catch (final Exception e) {
+			LOG.warn("exception caught while notifying the listener", e);
+		}
+	}
+
+	/**
+	 * @return true if a report is better than another one: fewer errors first, then a stronger signal
+	 */
+	static boolean isBetter(AircraftBeacon report, AircraftBeacon other) {
+		if (report.getErrorCount() != other.getErrorCount())
+			return report.getErrorCount() < other.getErrorCount();
+		return report.getSignalStrength() > other.getSignalStrength();
+	}
+
+	/**
+	 * @return number of reports received
+	 */
+	public synchronized long getReports() {
+		return reports;
+	}
+
+	/**
+	 * @return number of merged beacons delivered
+	 */
+	public synchronized long getMergedBeacons() {
+		return mergedBeacons;
+	}
+
+	/**
+	 * stops the timer and delivers all the pending groups
+	 */
+	@Override
+	public synchronized void close() {
+		if (timer != null)
+			timer.shutdownNow();
+		flush(Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aggregation;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+
+/**
+ * One aircraft fix, as reported by all the receivers which heard it
+ */
+public class MergedAircraftBeacon {
+
+	private final AircraftBeacon	beacon;
+	private final List<String>		receivers;
+
+	MergedAircraftBeacon(AircraftBeacon beacon, List<String> receivers) {
+		this.beacon = beacon;
+		this.receivers = Collections.unmodifiableList(receivers);
+	}
+
+	/**
+	 * @return the best report of the fix: the one with the fewest errors, then with the best signal
+	 */
+	public AircraftBeacon getBeacon() {
+		return beacon;
+	}
+
+	/**
+	 * @return names of all the receivers which reported the fix, in order of arrival
+	 */
+	public List<String> getReceivers() {
+		return receivers;
+	}
+
+	@Override
+	public String toString() {
+		return beacon.getAddress() + "@" + beacon.getTimestamp() + " " + receivers;
+	}
+}
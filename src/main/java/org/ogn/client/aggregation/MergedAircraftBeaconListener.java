@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aggregation;
+
+import java.util.Optional;
+
+import org.ogn.commons.beacon.AircraftDescriptor;
+
+/**
+ * Interface that needs to be implemented by all entities receiving the merged aircraft beacons of an
+ * {@link AircraftBeaconAggregator}
+ */
+public interface MergedAircraftBeaconListener {
+	/**
+	 * @param beacon
+	 *            aircraft fix, with all the receivers which reported it
+	 * @param descriptor
+	 *            static aircraft descriptor, present if an aircraft is recognized by the system.
+	 */
+	void onUpdate(final MergedAircraftBeacon beacon, final Optional<AircraftDescriptor> descriptor);
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftType;
+
+/**
+ * Index of the aircraft beacon listeners subscribed with a {@link AircraftBeaconSelector}. Every listener is indexed by
+ * its most selective criterion: its addresses (hash lookup), else its area (lookup in a grid of 1x1 deg cells), else its
+ * aircraft types. The listeners with none of these (only an altitude band) are checked for every beacon. The
+ * candidates found are then checked against all their criteria, so the cost of routing a beacon depends on the number
+ * of listeners interested in its address, cell or type, not on the total number of listeners.
+ * <p>
+ * The index is copy-on-write: subscriptions are expensive, lookups are lock-free.
+ */
+final class AircraftListenerIndex {
+
+	static final double					CELL_SIZE_DEG	= 1.0;
+
+	/**
+	 * areas covering more cells are not put in the grid, but checked for every beacon
+	 */
+	static final int					MAX_AREA_CELLS	= 4096;
+
+	private static final Entry[]		NO_ENTRIES		= new Entry[0];
+
+	private static final class Entry {
+		final AircraftBeaconListener	listener;
+		final AircraftBeaconSelector	selector;
+
+		Entry(AircraftBeaconListener listener, AircraftBeaconSelector selector) {
+			this.listener = listener;
+			this.selector = selector;
+		}
+	}
+
+	private static final class Snapshot {
+		final Map<String, Entry[]>			byAddress	= new HashMap<>();
+		final Map<Long, Entry[]>			byCell		= new HashMap<>();
+		final Map<AircraftType, Entry[]>	byType		= new EnumMap<>(AircraftType.class);
+		Entry[]								scanned		= NO_ENTRIES;
+	}
+
+	// all the subscriptions, in order of subscription
+	private final Map<AircraftBeaconListener, Entry>	entries		= new LinkedHashMap<>();
+
+	private volatile Snapshot							snapshot	= new Snapshot();
+	private volatile boolean							empty		= true;
+
+	/**
+	 * adds a listener, or replaces its selector if it is already subscribed
+	 */
+	synchronized void add(AircraftBeaconListener listener, AircraftBeaconSelector selector) {
+		entries.put(listener, new Entry(listener, selector));
+		rebuild();
+	}
+
+	/**
+	 * @return true if the listener was subscribed
+	 */
+	synchronized boolean remove(AircraftBeaconListener listener) {
+		if (entries.remove(listener) == null)
+			return false;
+		rebuild();
+		return true;
+	}
+
+	boolean isEmpty() {
+		return empty;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * calls the action for every listener selecting the beacon
+	 */
+	void forEachMatching(AircraftBeacon beacon, Consumer<AircraftBeaconListener> action) {
+		final Snapshot s = snapshot;
+		if (!s.byAddress.isEmpty())
+			forEachMatching(s.byAddress.get(beacon.getAddress()), beacon, action);
+		if (!s.byCell.isEmpty())
+			forEachMatching(s.byCell.get(cell(beacon.getLat(), beacon.getLon())), beacon, action);
+		if (!s.byType.isEmpty())
+			forEachMatching(s.byType.get(beacon.getAircraftType()), beacon, action);
+		forEachMatching(s.scanned, beacon, action);
+	}
+
+	private static void forEachMatching(Entry[] candidates, AircraftBeacon beacon,
+			Consumer<AircraftBeaconListener> action) {
+		if (candidates == null)
+			return;
+		for (final Entry entry : candidates) {
+			if (entry.selector.test(beacon))
+				action.accept(entry.listener);
+		}
+	}
+
+	private void rebuild() {
+		final Map<String, List<Entry>> byAddress = new HashMap<>();
+		final Map<Long, List<Entry>> byCell = new HashMap<>();
+		final Map<AircraftType, List<Entry>> byType = new EnumMap<>(AircraftType.class);
+		final List<Entry> scanned = new ArrayList<>();
+
+		for (final Entry entry : entries.values()) {
+			final AircraftBeaconSelector selector = entry.selector;
+			if (selector.getAddresses() != null) {
+				for (final String address : selector.getAddresses()) {
+					byAddress.computeIfAbsent(address, k -> new ArrayList<>()).add(entry);
+				}
+			} else if (selector.hasArea() && cells(selector) <= MAX_AREA_CELLS) {
+				final long minLat = index(selector.getMinLat());
+				final long maxLat = index(selector.getMaxLat());
+				final long minLon = index(selector.getMinLon());
+				final long maxLon = index(selector.getMaxLon());
+				for (long lat = minLat; lat <= maxLat; lat++) {
+					for (long lon = minLon; lon <= maxLon; lon++) {
+						byCell.computeIfAbsent(cell(lat, lon), k -> new ArrayList<>()).add(entry);
+					}
+				}
+			} else if (selector.getAircraftTypes() != null) {
+				for (final AircraftType type : selector.getAircraftTypes()) {
+					byType.computeIfAbsent(type, k -> new ArrayList<>()).add(entry);
+				}
+			} else {
+				scanned.add(entry);
+			}
+		}
+
+		final Snapshot result = new Snapshot();
+		byAddress.forEach((k, v) -> result.byAddress.put(k, v.toArray(NO_ENTRIES)));
+		byCell.forEach((k, v) -> result.byCell.put(k, v.toArray(NO_ENTRIES)));
+		byType.forEach((k, v) -> result.byType.put(k, v.toArray(NO_ENTRIES)));
+		result.scanned = scanned.toArray(NO_ENTRIES);
+		snapshot = result;
+		empty = entries.isEmpty();
+	}
+
+	private static long cells(AircraftBeaconSelector selector) {
+		return (index(selector.getMaxLat()) - index(selector.getMinLat()) + 1)
+				* (index(selector.getMaxLon()) - index(selector.getMinLon()) + 1);
+	}
+
+	private static long index(double deg) {
+		return (long) Math.floor(deg / CELL_SIZE_DEG);
+	}
+
+	static long cell(double lat, double lon) {
+		return cell(index(lat), index(lon));
+	}
+
+	private static long cell(long latIndex, long lonIndex) {
+		return latIndex << 32 | lonIndex & 0xffffffffL;
+	}
+}
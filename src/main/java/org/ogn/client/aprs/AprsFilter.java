@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.ogn.commons.beacon.OgnBeacon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client-side evaluation of an APRS-IS server filter (see http://www.aprs-is.net/javAPRSFilter.aspx), so that a filter
+ * can be applied to beacons already received and parsed. The following filter types are supported:
+ * <ul>
+ * <li>r/lat/lon/dist - range (km) from a point</li>
+ * <li>a/latN/lonW/latS/lonE - area</li>
+ * <li>p/aa/bb/cc... - callsign prefix</li>
+ * <li>b/call1/call2... - budlist, exact callsigns, * wildcards allowed</li>
+ * </ul>
+ * A beacon passes if it matches any of the terms and none of the exclusion (-) terms. As on the server, a filter made of
+ * exclusion terms only lets nothing through. Unsupported terms (e.g. m/, f/, t/ which depend on the login position or
+ * on data the client does not have) cannot be evaluated and never match: such a filter rejects beacons the server would
+ * let through, and a filter made of unsupported terms only lets nothing through. Check {@link #isComplete()} before
+ * applying a filter locally.
+ */
+public final class AprsFilter implements Predicate<OgnBeacon> {
+
+	private static final Logger				LOG				= LoggerFactory.getLogger(AprsFilter.class);
+
+	private static final double				EARTH_RADIUS_KM	= 6371.0;
+
+	private static final AprsFilter			PASS_ALL		= new AprsFilter(null, Collections.emptyList(),
+			Collections.emptyList(), true);
+
+	private final String					filter;
+	private final List<Predicate<OgnBeacon>>	includes;
+	private final List<Predicate<OgnBeacon>>	excludes;
+	private final boolean						complete;
+
+	private AprsFilter(String filter, List<Predicate<OgnBeacon>> includes, List<Predicate<OgnBeacon>> excludes,
+			boolean complete) {
+		this.filter = filter;
+		this.includes = includes;
+		this.excludes = excludes;
+		this.complete = complete;
+	}
+
+	/**
+	 * @param filter
+	 *            APRS-IS filter, null or empty for no filtering
+	 * @return the filter
+	 * @throws IllegalArgumentException
+	 *             if a supported term is malformed
+	 */
+	public static AprsFilter parse(String filter) {
+		if (filter == null || filter.trim().isEmpty())
+			return PASS_ALL;
+
+		final List<Predicate<OgnBeacon>> includes = new ArrayList<>();
+		final List<Predicate<OgnBeacon>> excludes = new ArrayList<>();
+		boolean complete = true;
+
+		for (final String term : filter.trim().split("\\s+")) {
+			final boolean exclude = term.startsWith("-");
+			final Predicate<OgnBeacon> predicate = parseTerm(exclude ? term.substring(1) : term);
+			if (predicate == null) {
+				LOG.warn("unsupported filter term: {}, it does not match any beacon", term);
+				complete = false;
+			} else if (exclude) {
+				excludes.add(predicate);
+			} else {
+				includes.add(predicate);
+			}
+		}
+
+		return new AprsFilter(filter, includes, excludes, complete);
+	}
+
+	/**
+	 * parses a filter to be applied locally, to beacons the server has not filtered with it
+	 * 
+	 * @param filter
+	 *            APRS-IS filter, null or empty for no filtering
+	 * @return the filter, or a filter letting all the beacons through if some of its terms can not be evaluated on the
+	 *         client (see {@link #isComplete()})
+	 * @throws IllegalArgumentException
+	 *             if a supported term is malformed
+	 */
+	static AprsFilter parseLocal(String filter) {
+		final AprsFilter result = parse(filter);
+		if (result.isComplete())
+			return result;
+
+		LOG.warn("filter {} can not be fully evaluated locally, not filtering locally", filter);
+		return PASS_ALL;
+	}
+
+	/**
+	 * @return true if this filter lets all the beacons through
+	 */
+	public boolean isPassAll() {
+		return this == PASS_ALL;
+	}
+
+	/**
+	 * @return false if some of the terms are not supported (and so never match), i.e. if the filter may reject beacons
+	 *         the server would let through
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return true if the beacon matches none of the exclusion terms and at least one of the supported include terms
+	 */
+	@Override
+	public boolean test(OgnBeacon beacon) {
+		if (this == PASS_ALL)
+			return true;
+
+		for (final Predicate<OgnBeacon> exclude : excludes) {
+			if (exclude.test(beacon))
+				return false;
+		}
+
+		for (final Predicate<OgnBeacon> include : includes) {
+			if (include.test(beacon))
+				return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return filter == null ? "" : filter;
+	}
+
+	private static Predicate<OgnBeacon> parseTerm(String term) {
+		final String[] parts = term.split("/");
+		if (parts.length < 2)
+			return null;
+
+		try {
+			switch (parts[0]) {
+			case "r":
+				checkArgs(term, parts, 4);
+				return range(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+						Double.parseDouble(parts[3]));
+			case "a":
+				checkArgs(term, parts, 5);
+				return area(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]),
+						Double.parseDouble(parts[4]));
+			case "p":
+				return prefix(parts);
+			case "b":
+				return budlist(parts);
+			default:
+				return null;
+			}
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("invalid filter term: " + term, e);
+		}
+	}
+
+	private static void checkArgs(String term, String[] parts, int expected) {
+		if (parts.length != expected)
+			throw new IllegalArgumentException("invalid filter term: " + term);
+	}
+
+	private static Predicate<OgnBeacon> range(final double lat, final double lon, final double distKm) {
+		return beacon -> distanceKm(lat, lon, beacon.getLat(), beacon.getLon()) <= distKm;
+	}
+
+	private static Predicate<OgnBeacon> area(final double latN, final double lonW, final double latS,
+			final double lonE) {
+		return beacon -> beacon.getLat() <= latN && beacon.getLat() >= latS && beacon.getLon() >= lonW
+				&& beacon.getLon() <= lonE;
+	}
+
+	private static Predicate<OgnBeacon> prefix(String[] parts) {
+		final String[] prefixes = new String[parts.length - 1];
+		System.arraycopy(parts, 1, prefixes, 0, prefixes.length);
+		return beacon -> {
+			final String id = beacon.getId();
+			if (id == null)
+				return false;
+			for (final String prefix : prefixes) {
+				if (id.startsWith(prefix))
+					return true;
+			}
+			return false;
+		};
+	}
+
+	private static Predicate<OgnBeacon> budlist(String[] parts) {
+		final List<Predicate<String>> calls = new ArrayList<>(parts.length - 1);
+		for (int i = 1; i < parts.length; i++) {
+			calls.add(wildcard(parts[i]));
+		}
+		return beacon -> {
+			final String id = beacon.getId();
+			if (id == null)
+				return false;
+			for (final Predicate<String> call : calls) {
+				if (call.test(id))
+					return true;
+			}
+			return false;
+		};
+	}
+
+	private static Predicate<String> wildcard(String call) {
+		if (call.indexOf('*') < 0)
+			return call::equals;
+
+		final String[] parts = call.split("\\*", -1);
+		final StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0)
+				regex.append(".*");
+			regex.append(Pattern.quote(parts[i]));
+		}
+		final Pattern pattern = Pattern.compile(regex.toString());
+		return s -> pattern.matcher(s).matches();
+	}
+
+	/**
+	 * great-circle (haversine) distance
+	 */
+	static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+		final double dLat = Math.toRadians(lat2 - lat1);
+		final double dLon = Math.toRadians(lon2 - lon1);
+		final double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1))
+				* Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+/**
+ * an APRS line together with the moment it was read from the socket
+ */
+class AprsLine {
+
+	final String	line;
+
+	/**
+	 * {@link System#nanoTime()} at the moment the line was read
+	 */
+	final long		receivedNanos;
+
+	AprsLine(String line, long receivedNanos) {
+		this.line = line;
+		this.receivedNanos = receivedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return line;
+	}
+}
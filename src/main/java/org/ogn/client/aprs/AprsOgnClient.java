@@ -1,506 +1,1308 @@
-/**
- * Copyright (c) 2014 OGN, All Rights Reserved.
- */
-
-package org.ogn.client.aprs;
-
-import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_KEEP_ALIVE_INTERVAL_MS;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_APP_NAME;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_APP_VERSION;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_RECONNECTION_TIMEOUT_MS;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SERVER_NAME;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_PORT_FILTERED;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_PORT_UNFILTERED;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_SSL_PORT_FILTERED;
-import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_SSL_PORT_UNFILTERED;
-import static org.ogn.client.OgnClientConstants.READ_ONLY_PASSCODE;
-import static org.ogn.commons.utils.AprsUtils.formatAprsLoginLine;
-import static org.ogn.commons.utils.AprsUtils.generateClientId;
-import static org.ogn.commons.utils.AprsUtils.generatePass;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.InetAddress;
-import java.net.Socket;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-
-import javax.net.ssl.SSLSocketFactory;
-
-import org.ogn.client.AircraftBeaconListener;
-import org.ogn.client.OgnClient;
-import org.ogn.client.ReceiverBeaconListener;
-import org.ogn.commons.beacon.AircraftBeacon;
-import org.ogn.commons.beacon.AircraftDescriptor;
-import org.ogn.commons.beacon.OgnBeacon;
-import org.ogn.commons.beacon.ReceiverBeacon;
-import org.ogn.commons.beacon.descriptor.AircraftDescriptorProvider;
-import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/**
- * APRS implementation of the OGN client.
- * 
- * @author wbuczak
- */
-public class AprsOgnClient implements OgnClient {
-
-	private static final Logger				LOG	= LoggerFactory.getLogger(AprsOgnClient.class);
-
-	private final String					aprsServerName;
-	private final int						aprsPort;
-	private final int						aprsPortFiltered;
-	private final String					aprsFilter;
-	private final int						reconnectionTimeout;
-	private final int						keepAlive;
-	private final String					appName;
-	private final String					appVersion;
-	private final String					ognClientId;
-
-	private AircraftDescriptorProvider[]	descriptorProviders;
-
-	private ExecutorService					executor;
-	private ScheduledExecutorService		scheduledExecutor;
-
-	private volatile Future<?>				socketListenerFuture;
-	private volatile Future<?>				pollerFuture;
-	private volatile Future<?>				keepAliveFuture;
-
-	private final boolean					validateClient;
-
-	private final boolean					useSsl;
-	private final int						aprsSslPort;
-	private final int						aprsSslPortFiltered;
-
-	private static class DaemonThreadFactory implements ThreadFactory {
-		@Override
-		public Thread newThread(Runnable r) {
-			final Thread t = Executors.defaultThreadFactory().newThread(r);
-			t.setDaemon(true);
-			return t;
-		}
-	};
-
-	private class AprsSocketListenerTask implements Runnable {
-		private final String	aprsFilter;
-
-		private Socket			socket;
-
-		public AprsSocketListenerTask(final String aprsFilter) {
-			this.aprsFilter = aprsFilter;
-		}
-
-		private void processAprsLine(final String line) {
-			aprsLines.offer(line);
-		}
-
-		@Override
-		public void run() {
-			LOG.debug("starting...");
-			boolean interrupted = false;
-
-			int port = 0;
-			while (!interrupted) {
-
-				try {
-
-					port = useSsl ? aprsSslPort : aprsPort;
-					String loginSentence = null;
-
-					final String clientId = null == ognClientId ? generateClientId() : ognClientId;
-					final String clientPass =
-							validateClient ? Integer.toString(generatePass(clientId)) : READ_ONLY_PASSCODE;
-
-					if (null == aprsFilter) {
-						port = useSsl ? aprsSslPort : aprsPort;
-						loginSentence = formatAprsLoginLine(clientId, clientPass, appName, appVersion);
-					} else {
-						port = useSsl ? aprsSslPortFiltered : aprsPortFiltered;
-						loginSentence = formatAprsLoginLine(clientId, clientPass, appName, appVersion, aprsFilter);
-					}
-
-					final InetAddress srvAddress = InetAddress.getByName(aprsServerName);
-
-					// if filter is specified connect to a different port
-					LOG.info("connecting to server: {}[{}]:{} TLS: {}", aprsServerName, srvAddress.getHostAddress(),
-							port, useSsl ? "yes" : "no");
-					socket = createSocket(srvAddress, port, useSsl);
-					LOG.info("connected !");
-
-					final PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
-					LOG.info("logging in as: {}", loginSentence);
-					writer.println(loginSentence);
-
-					// start the keep-live msg sender
-					startKeepAliveThread(writer, loginSentence);
-
-					final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-					LOG.info("Waiting for data...");
-
-					String line;
-					while (!interrupted && (line = in.readLine()) != null) {
-						if (Thread.currentThread().isInterrupted()) {
-							interrupted = true;
-							LOG.warn("The AprsSocketListenerTask thread has been interrupted");
-							break;
-						}
-
-						// System.out.println(line);
-						processAprsLine(line);
-					}
-
-				} catch (final Exception e) {
-					LOG.error("exception caught while trying to connect to {}:{}. retrying in {} ms", aprsServerName,
-							port, reconnectionTimeout, e);
-					try {
-						Thread.sleep(reconnectionTimeout);
-					} catch (final InterruptedException ex) {
-						LOG.debug("interrupted exception caught while waiting before trying to re-connect");
-						interrupted = true;
-						// Restore interrupted state...
-						Thread.currentThread().interrupt();
-					}
-				} finally {
-					closeSocket();
-					stopKeepAliveThread();
-				}
-
-			} // while
-
-			closeSocket();
-			LOG.debug("stopped.");
-
-		}// run
-
-		private Socket createSocket(InetAddress srvAddress, int port, boolean ssl) throws IOException {
-			if (ssl) {
-				final SSLSocketFactory sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
-				return sslSocketFactory.createSocket(srvAddress, port);
-			} else {
-				return new Socket(srvAddress, port);
-			}
-		}
-
-		/**
-		 * 
-		 */
-		private void stopKeepAliveThread() {
-			if (keepAliveFuture != null) {
-				keepAliveFuture.cancel(true);
-			}
-		}
-
-		/**
-		 * 
-		 */
-		private void startKeepAliveThread(final PrintWriter out, final String msg) {
-			if (keepAliveFuture == null || keepAliveFuture.isCancelled()) {
-				keepAliveFuture = scheduledExecutor.scheduleAtFixedRate(() -> {
-					final String keepAliveMsg = msg.startsWith("#") ? msg : "#" + msg;
-					try {
-						LOG.debug("sending keep-alive message: {}", keepAliveMsg);
-						out.println(keepAliveMsg);
-					} catch (final Exception ex) {
-						LOG.warn("exception caught while trying to send keep-alive msg", ex);
-					}
-				}, 0, keepAlive, TimeUnit.MILLISECONDS);
-			}
-		}
-
-		void closeSocket() {
-			try {
-				if (socket != null)
-					socket.close();
-			} catch (final IOException e) {
-				LOG.warn("could not close socket", e);
-			}
-		}
-	}
-
-	/**
-	 * polls APRS sentences from aprsLines queue and processes them
-	 * 
-	 * @author wbuczak
-	 */
-	private class PollerTask implements Runnable {
-
-		private Optional<AircraftDescriptor> findAircraftDescriptor(AircraftBeacon beacon) {
-			Optional<AircraftDescriptor> result = Optional.empty();
-			if (descriptorProviders != null) {
-				for (final AircraftDescriptorProvider provider : descriptorProviders) {
-					final Optional<AircraftDescriptor> ad = provider.findDescriptor(beacon.getAddress());
-					if (ad.isPresent()) {
-						result = ad;
-						break;
-					}
-				} // for
-			}
-
-			return result;
-		}
-
-		private <T extends OgnBeacon> void notifyAllListeners(final T ognBeacon, final String rawBeacon) {
-			if (ognBeacon instanceof AircraftBeacon) {
-				for (final AircraftBeaconListener listener : acBeaconListeners) {
-					final AircraftBeacon ab = (AircraftBeacon) ognBeacon;
-					final Optional<AircraftDescriptor> descriptor = findAircraftDescriptor(ab);
-
-					listener.onUpdate(ab, descriptor);
-				}
-
-			} else if (ognBeacon instanceof ReceiverBeacon) {
-				for (final ReceiverBeaconListener listener : brBeaconListeners) {
-					listener.onUpdate((ReceiverBeacon) ognBeacon);
-				}
-			} else {
-				LOG.warn("unrecognized beacon type: {} .ignoring..", ognBeacon.getClass().getName());
-			}
-		}
-
-		@Override
-		public void run() {
-			LOG.trace("starting...");
-			String aprsLine = null;
-			while (!Thread.interrupted()) {
-
-				try {
-					aprsLine = aprsLines.take();
-					LOG.trace(aprsLine);
-				} catch (final InterruptedException e) {
-					LOG.warn("interrupted exception caught. Was the poller task interrupted on purpose?");
-					// Restore interrupted state...
-					Thread.currentThread().interrupt();
-					continue;
-				}
-
-				try {
-
-					final OgnBeacon beacon = AprsLineParser.get().parse(aprsLine);
-
-					// a beacon may be null in case in hasn't been parsed
-					// correctly or if a receiver or aircraft beacon parsing is
-					// disabled by user
-					if (beacon != null) {
-						notifyAllListeners(beacon, aprsLine);
-					}
-				} catch (final Exception ex) {
-					LOG.warn("exception caught", ex);
-				}
-			} // while
-			LOG.trace("exiting..");
-		}
-
-	}
-
-	private AprsOgnClient(Builder builder) {
-		this.aprsServerName = builder.srvName;
-		this.aprsPort = builder.unfilteredPort;
-		this.aprsPortFiltered = builder.filteredPort;
-		this.useSsl = builder.useSsl;
-		this.aprsSslPort = builder.unfilteredSslPort;
-		this.aprsSslPortFiltered = builder.filteredSslPort;
-
-		this.aprsFilter = builder.aprsFilter;
-		this.reconnectionTimeout = builder.reconnectionTimeout;
-		this.keepAlive = builder.keepAlive;
-		this.appName = builder.appName;
-		this.appVersion = builder.appVersion;
-		this.ognClientId = builder.ognClientId;
-		this.validateClient = builder.validateClient;
-
-		// aircraft descriptor providers are not mandatory
-		if (builder.descriptorProviders != null)
-			this.descriptorProviders = builder.descriptorProviders.toArray(new AircraftDescriptorProvider[0]);
-	}
-
-	public static class Builder {
-		private String								srvName				= OGN_DEFAULT_SERVER_NAME;
-		private int									unfilteredPort		= OGN_DEFAULT_SRV_PORT_UNFILTERED;
-		private int									filteredPort		= OGN_DEFAULT_SRV_PORT_FILTERED;
-		private int									unfilteredSslPort	= OGN_DEFAULT_SRV_SSL_PORT_UNFILTERED;
-		private int									filteredSslPort		= OGN_DEFAULT_SRV_SSL_PORT_FILTERED;
-
-		private String								aprsFilter;
-		private int									reconnectionTimeout	= OGN_DEFAULT_RECONNECTION_TIMEOUT_MS;
-		private int									keepAlive			= OGN_CLIENT_DEFAULT_KEEP_ALIVE_INTERVAL_MS;
-		private String								appName				= OGN_DEFAULT_APP_NAME;
-		private String								appVersion			= OGN_DEFAULT_APP_VERSION;
-		private String								ognClientId;
-
-		private List<AircraftDescriptorProvider>	descriptorProviders;
-		private boolean								validateClient;
-		private boolean								useSsl;
-
-		public Builder serverName(final String name) {
-			this.srvName = name;
-			return this;
-		}
-
-		public Builder unfilteredPort(final int port) {
-			this.unfilteredPort = port;
-			return this;
-		}
-
-		public Builder filteredPort(final int port) {
-			this.filteredPort = port;
-			return this;
-		}
-
-		public Builder aprsFilter(final String filter) {
-			this.aprsFilter = filter;
-			return this;
-		}
-
-		public Builder reconnectionTimeout(final int timeout) {
-			this.reconnectionTimeout = timeout;
-			return this;
-		}
-
-		public Builder appName(final String name) {
-			this.appName = name;
-			return this;
-		}
-
-		public Builder appVersion(final String version) {
-			this.appVersion = version;
-			return this;
-		}
-
-		public Builder ognClientId(final String clientId) {
-			this.ognClientId = clientId != null && clientId.length() > 9 ? clientId.substring(0, 9) : clientId;
-			return this;
-		}
-
-		public Builder keepAlive(final int keepAliveInt) {
-			this.keepAlive = keepAliveInt;
-			return this;
-		}
-
-		public Builder descriptorProviders(List<AircraftDescriptorProvider> descProviders) {
-			this.descriptorProviders = descProviders;
-			return this;
-		}
-
-		public Builder descriptorProviders(AircraftDescriptorProvider... descProviders) {
-			this.descriptorProviders = Arrays.asList(descProviders);
-			return this;
-		}
-
-		public Builder validateClient(boolean ognClientValidate) {
-			this.validateClient = ognClientValidate;
-			return this;
-		}
-
-		public Builder unfilteredSslPort(int unfilteredSslPort) {
-			this.unfilteredSslPort = unfilteredSslPort;
-			return this;
-		}
-
-		public Builder filteredSslPort(int filteredSslPort) {
-			this.filteredSslPort = filteredSslPort;
-			return this;
-		}
-
-		public Builder useSsl(boolean useSsl) {
-			this.useSsl = useSsl;
-			return this;
-		}
-
-		public AprsOgnClient build() {
-			return new AprsOgnClient(this);
-		}
-
-	}
-
-	private final CopyOnWriteArrayList<AircraftBeaconListener>	acBeaconListeners	= new CopyOnWriteArrayList<>();
-	private final CopyOnWriteArrayList<ReceiverBeaconListener>	brBeaconListeners	= new CopyOnWriteArrayList<>();
-
-	private final BlockingQueue<String>							aprsLines			= new LinkedBlockingQueue<>();
-
-	/**
-	 * connects to the OGN APRS service
-	 * 
-	 * @param filter
-	 *            optional filter, if null no filter will be used, as it is in case of {@link #connect() connect()}.
-	 * @see <a href="http://www.aprs-is.net/javAPRSFilter.aspx">Server-side Filter Commands</a>
-	 */
-	@Override
-	public synchronized void connect(final String filter) {
-		if (socketListenerFuture == null) {
-			executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
-			scheduledExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
-			pollerFuture = executor.submit(new PollerTask());
-			socketListenerFuture = executor.submit(new AprsSocketListenerTask(filter));
-		} else {
-			LOG.warn("client is currently connected and running. stop it first!");
-		}
-	}
-
-	@Override
-	public void connect() {
-		connect(this.aprsFilter);
-		// connect(null);
-	}
-
-	@Override
-	public synchronized void disconnect() {
-		if (socketListenerFuture != null) {
-
-			if (socketListenerFuture != null) {
-				socketListenerFuture.cancel(true);
-				socketListenerFuture = null;
-			}
-
-			if (pollerFuture != null) {
-				pollerFuture.cancel(true);
-				pollerFuture = null;
-			}
-
-			if (keepAliveFuture != null) {
-				keepAliveFuture.cancel(true);
-				keepAliveFuture = null;
-			}
-		}
-
-		if (executor != null)
-			executor.shutdownNow();
-
-		if (scheduledExecutor != null)
-			scheduledExecutor.shutdownNow();
-
-	}
-
-	@Override
-	public void subscribeToAircraftBeacons(AircraftBeaconListener listener) {
-		acBeaconListeners.addIfAbsent(listener);
-	}
-
-	@Override
-	public void subscribeToReceiverBeacons(ReceiverBeaconListener listener) {
-		brBeaconListeners.addIfAbsent(listener);
-	}
-
-	@Override
-	public void unsubscribeFromAircraftBeacons(AircraftBeaconListener listener) {
-		acBeaconListeners.remove(listener);
-	}
-
-	@Override
-	public void unsubscribeFromReceiverBeacons(ReceiverBeaconListener listener) {
-		brBeaconListeners.remove(listener);
-	}
-
-}
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_CONNECT_TIMEOUT_MS;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_DEDUP_WINDOW_MS;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_KEEP_ALIVE_INTERVAL_MS;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_MAX_RECONNECTION_TIMEOUT_MS;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_PUBLISHER_BUFFER_SIZE;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_QUEUE_CAPACITY;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_READ_IDLE_TIMEOUT_MS;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_SHEDDING_SAMPLE_PERCENT;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_APP_NAME;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_APP_VERSION;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_RECONNECTION_TIMEOUT_MS;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SERVER_NAME;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_PORT_FILTERED;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_PORT_UNFILTERED;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_SSL_PORT_FILTERED;
+import static org.ogn.client.OgnClientConstants.OGN_DEFAULT_SRV_SSL_PORT_UNFILTERED;
+import static org.ogn.client.OgnClientConstants.READ_ONLY_PASSCODE;
+import static org.ogn.commons.utils.AprsUtils.formatAprsLoginLine;
+import static org.ogn.commons.utils.AprsUtils.generateClientId;
+import static org.ogn.commons.utils.AprsUtils.generatePass;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.client.DrainResult;
+import org.ogn.client.OgnClient;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.client.metrics.LatencyStage;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.client.metrics.SheddingPriority;
+import org.ogn.client.reactive.BeaconPublisher;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.ogn.commons.beacon.descriptor.AircraftDescriptorProvider;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * APRS implementation of the OGN client.
+ * 
+ * @author wbuczak
+ */
+public class AprsOgnClient implements OgnClient {
+
+	private static final Logger				LOG						= LoggerFactory.getLogger(AprsOgnClient.class);
+
+	/**
+	 * marker put on the aprsLines queue to tell the poller that no more lines will follow (compared by reference)
+	 */
+	private static final AprsLine			END_OF_STREAM			= new AprsLine("<EOS>", 0);
+
+	/**
+	 * idle time after which the threads of the (reused) executors are released
+	 */
+	private static final long				EXECUTOR_IDLE_TIME_MS	= 60000;
+
+	/**
+	 * max time disconnect() waits for the poller to return from the listener it is notifying
+	 */
+	private static final long				POLLER_STOP_TIMEOUT_MS	= 5000;
+
+	private static final String				MBEAN_NAME_PREFIX		= "org.ogn.client:type=AprsOgnClient,name=";
+
+	private static final AtomicInteger		INSTANCE_COUNTER		= new AtomicInteger();
+
+	private final String					aprsServerName;
+	private final List<String>				redundantServerNames;
+	private final int						aprsPort;
+	private final int						aprsPortFiltered;
+	private volatile String					aprsFilter;
+	private final int						reconnectionTimeout;
+	private final int						maxReconnectionTimeout;
+	private final int						readIdleTimeout;
+	private final int						connectTimeout;
+	private final int						receiveBufferSize;
+	private final int						sendBufferSize;
+	private final List<String>				failoverServerNames;
+	private final int						keepAlive;
+	private final String					appName;
+	private final String					appVersion;
+	private final String					ognClientId;
+
+	private AircraftDescriptorProvider[]	descriptorProviders;
+
+	private final ThreadFactory				threadFactory;
+	private ExecutorService					executor;
+	private ScheduledExecutorService		scheduledExecutor;
+
+	// one task per server, empty when disconnected
+	private volatile List<AprsSocketListenerTask>	socketListenerTasks	= Collections.emptyList();
+	private volatile Future<?>				pollerFuture;
+	private PollerTask						poller;
+
+	/**
+	 * filter applied to the parsed beacons, set by {@link #updateFilter(String)}
+	 */
+	private volatile AprsFilter				localFilter				= AprsFilter.parse(null);
+
+	/**
+	 * drops the lines already received from another server, null unless connected to redundant servers
+	 */
+	private final DuplicateFilter			duplicateFilter;
+
+	/**
+	 * drops lines by priority when the client falls behind, null unless enabled
+	 */
+	private final LoadShedder				loadShedder;
+
+	private final boolean					validateClient;
+
+	private final boolean					useSsl;
+	// created once, so that the sessions cached by its context can be resumed when re-connecting
+	private final SSLSocketFactory			sslSocketFactory;
+	private final String[]					sslProtocols;
+	private final String[]					sslCipherSuites;
+	private final int						aprsSslPort;
+	private final int						aprsSslPortFiltered;
+
+	private final boolean					registerMBean;
+	private final boolean					measureUpstreamDelay;
+	private ObjectName						mbeanName;
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread t = Executors.defaultThreadFactory().newThread(r);
+			t.setDaemon(true);
+			return t;
+		}
+	};
+
+	private class AprsSocketListenerTask implements Runnable {
+		private final String			server;
+		// the server followed by the failover servers, name[:port]
+		private final List<String>		servers;
+		private volatile String			aprsFilter;
+
+		// [unique, duplicate] line counters, null unless connected to redundant servers
+		private final LongAdder			uniqueLines;
+		private final LongAdder			duplicateLines;
+
+		private volatile Socket			socket;
+		private volatile PrintWriter	writer;
+		private volatile boolean		reconnectRequested;
+
+		private volatile Future<?>		future;
+		private volatile Future<?>		keepAliveFuture;
+
+		// session of the previous TLS connection, a resumed session carries over its id
+		private SSLSession				tlsSession;
+
+		/**
+		 * @param server
+		 *            server name, optionally followed by :port
+		 * @param failoverServers
+		 *            servers tried in turn when the server can not be reached
+		 */
+		public AprsSocketListenerTask(final String server, final List<String> failoverServers,
+				final String aprsFilter) {
+			this.server = server;
+			this.servers = new ArrayList<>();
+			this.servers.add(server);
+			this.servers.addAll(failoverServers);
+			this.aprsFilter = aprsFilter;
+			this.uniqueLines = duplicateFilter == null ? null : metrics.addServer(server, false);
+			this.duplicateLines = duplicateFilter == null ? null : metrics.addServer(server, true);
+		}
+
+		void updateFilter(final String filter) {
+			final String oldFilter = aprsFilter;
+			aprsFilter = filter;
+
+			final PrintWriter out = writer;
+			if (out == null) {
+				// not logged in yet, the filter is checked right after the login
+				LOG.debug("filter updated before login: {}", filter);
+			} else if (oldFilter != null && filter != null) {
+				LOG.info("sending filter command: #filter {}", filter);
+				out.println("#filter " + filter);
+			} else {
+				// the full feed and the filtered feed are served on different ports
+				LOG.info("re-connecting to apply filter: {}", filter);
+				reconnectRequested = true;
+				closeSocket();
+			}
+		}
+
+		private void processAprsLine(final String line) throws InterruptedException {
+			metrics.lineRead();
+
+			// server comments differ between the servers, they are not worth deduplicating
+			if (duplicateFilter != null && !line.startsWith("#")) {
+				final boolean duplicate = duplicateFilter.isDuplicate(line, System.currentTimeMillis());
+				if (duplicate) {
+					duplicateLines.increment();
+					return;
+				}
+				uniqueLines.increment();
+			}
+
+			// blocks when the queue is bounded and full, which stops reading from the server
+			aprsLines.put(new AprsLine(line, System.nanoTime()));
+		}
+
+		@Override
+		public void run() {
+			LOG.debug("starting...");
+			boolean interrupted = false;
+
+			// consecutive failed attempts, drives the back-off
+			int failures = 0;
+			int attempt = 0;
+			boolean firstAttempt = true;
+			while (!interrupted) {
+
+				if (!firstAttempt)
+					metrics.reconnect();
+				firstAttempt = false;
+
+				InetSocketAddress address = null;
+				boolean receivedData = false;
+				try {
+
+					int port = useSsl ? aprsSslPort : aprsPort;
+					String loginSentence = null;
+
+					final String clientId = null == ognClientId ? generateClientId() : ognClientId;
+					final String clientPass =
+							validateClient ? Integer.toString(generatePass(clientId)) : READ_ONLY_PASSCODE;
+
+					final String aprsFilter = this.aprsFilter;
+					if (null == aprsFilter) {
+						port = useSsl ? aprsSslPort : aprsPort;
+						loginSentence = formatAprsLoginLine(clientId, clientPass, appName, appVersion);
+					} else {
+						// if filter is specified connect to a different port
+						port = useSsl ? aprsSslPortFiltered : aprsPortFiltered;
+						loginSentence = formatAprsLoginLine(clientId, clientPass, appName, appVersion, aprsFilter);
+					}
+
+					// every attempt goes to the next address
+					final List<InetSocketAddress> addresses = resolveServers(port);
+					address = addresses.get(attempt++ % addresses.size());
+
+					LOG.info("connecting to server: {}[{}]:{} TLS: {}", address.getHostName(),
+							address.getAddress().getHostAddress(), address.getPort(), useSsl ? "yes" : "no");
+					socket = createSocket(address, useSsl);
+					if (Thread.currentThread().isInterrupted()) {
+						// disconnect() was called while connecting
+						interrupted = true;
+						continue;
+					}
+					LOG.info("connected !");
+
+					writer = new PrintWriter(socket.getOutputStream(), true);
+					LOG.info("logging in as: {}", loginSentence);
+					writer.println(loginSentence);
+
+					// the filter may have been changed while connecting
+					final String currentFilter = this.aprsFilter;
+					if (!Objects.equals(aprsFilter, currentFilter)) {
+						if (aprsFilter == null || currentFilter == null)
+							continue;
+						writer.println("#filter " + currentFilter);
+					}
+
+					// start the keep-live msg sender
+					startKeepAliveThread(writer, loginSentence);
+
+					final BufferedReader in = new BufferedReader(
+							new InputStreamReader(new CountingInputStream(socket.getInputStream(), metrics)));
+					LOG.info("Waiting for data...");
+
+					String line;
+					while (!interrupted && (line = in.readLine()) != null) {
+						if (Thread.currentThread().isInterrupted()) {
+							interrupted = true;
+							LOG.warn("The AprsSocketListenerTask thread has been interrupted");
+							break;
+						}
+
+						if (!receivedData) {
+							receivedData = true;
+							failures = 0;
+						}
+
+						// System.out.println(line);
+						processAprsLine(line);
+					}
+
+					if (!receivedData && !interrupted)
+						throw new EOFException("connection closed by the server without sending any data");
+
+				} catch (final Exception e) {
+					if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+						// the socket has been closed on purpose by disconnect()
+						LOG.debug("The AprsSocketListenerTask thread has been interrupted while reading from the server");
+						interrupted = true;
+						continue;
+					}
+
+					if (reconnectRequested) {
+						// the socket has been closed on purpose by updateFilter()
+						LOG.debug("re-connection requested");
+						continue;
+					}
+
+					if (e instanceof SocketTimeoutException && receivedData) {
+						// a stalled stream, the next address is tried straight away
+						LOG.warn("no data received from {} for {} ms. re-connecting..", address, readIdleTimeout);
+						continue;
+					}
+
+					final long delay = backoff(failures++, reconnectionTimeout, maxReconnectionTimeout,
+							ThreadLocalRandom.current().nextDouble());
+					LOG.error("exception caught while trying to connect to {}. retrying in {} ms",
+							address == null ? server : address, delay, e);
+					try {
+						Thread.sleep(delay);
+					} catch (final InterruptedException ex) {
+						LOG.debug("interrupted exception caught while waiting before trying to re-connect");
+						interrupted = true;
+						// Restore interrupted state...
+						Thread.currentThread().interrupt();
+					}
+				} finally {
+					writer = null;
+					reconnectRequested = false;
+					closeSocket();
+					stopKeepAliveThread();
+				}
+
+			} // while
+
+			closeSocket();
+			LOG.debug("stopped.");
+
+		}// run
+
+		/**
+		 * @return all the addresses of the server and of the failover servers
+		 * @throws UnknownHostException
+		 *             if none of the servers can be resolved
+		 */
+		private List<InetSocketAddress> resolveServers(int port) throws UnknownHostException {
+			final List<InetSocketAddress> result = new ArrayList<>();
+			for (final String srv : servers) {
+				final int colon = srv.lastIndexOf(':');
+				final String host = colon < 0 ? srv : srv.substring(0, colon);
+				final int srvPort = colon < 0 ? port : Integer.parseInt(srv.substring(colon + 1));
+				try {
+					for (final InetAddress srvAddress : InetAddress.getAllByName(host)) {
+						result.add(new InetSocketAddress(srvAddress, srvPort));
+					}
+				} catch (final UnknownHostException e) {
+					LOG.warn("could not resolve {}", host);
+				}
+			}
+
+			if (result.isEmpty())
+				throw new UnknownHostException("none of the servers could be resolved: " + servers);
+			return result;
+		}
+
+		private Socket createSocket(InetSocketAddress address, boolean ssl) throws IOException {
+			final Socket result = new Socket();
+			try {
+				// the receive buffer size must be set before connecting to take effect on the TCP window
+				if (receiveBufferSize > 0)
+					result.setReceiveBufferSize(receiveBufferSize);
+				if (sendBufferSize > 0)
+					result.setSendBufferSize(sendBufferSize);
+				result.connect(address, connectTimeout);
+				// a stalled stream makes readLine() fail instead of blocking forever
+				result.setSoTimeout(readIdleTimeout);
+				return ssl ? startTls(result, address) : result;
+			} catch (final IOException e) {
+				result.close();
+				throw e;
+			}
+		}
+
+		private Socket startTls(Socket plainSocket, InetSocketAddress address) throws IOException {
+			// the host name and port are the key of the session cache
+			final SSLSocket result = (SSLSocket) sslSocketFactory.createSocket(plainSocket, address.getHostString(),
+					address.getPort(), true);
+			if (sslProtocols != null)
+				result.setEnabledProtocols(sslProtocols);
+			if (sslCipherSuites != null)
+				result.setEnabledCipherSuites(sslCipherSuites);
+
+			final long start = System.nanoTime();
+			result.startHandshake();
+			final SSLSession session = result.getSession();
+			final boolean resumed = tlsSession != null && isResumed(session, tlsSession);
+			tlsSession = session;
+			metrics.tlsHandshake(System.nanoTime() - start, resumed);
+			LOG.info("TLS session {}: {} {}", resumed ? "resumed" : "established", session.getProtocol(),
+					session.getCipherSuite());
+			return result;
+		}
+
+		/**
+		 * TLS 1.2 resumes the session under its id, whereas TLS 1.3 issues a new id for the resumed session (the JDK
+		 * keeps its creation time though)
+		 */
+		private boolean isResumed(SSLSession session, SSLSession previous) {
+			if (session.getId().length > 0 && Arrays.equals(session.getId(), previous.getId()))
+				return true;
+			return session.getCreationTime() == previous.getCreationTime();
+		}
+
+		/**
+		 * 
+		 */
+		private void stopKeepAliveThread() {
+			if (keepAliveFuture != null) {
+				keepAliveFuture.cancel(true);
+			}
+		}
+
+		/**
+		 * 
+		 */
+		private void startKeepAliveThread(final PrintWriter out, final String msg) {
+			if (keepAliveFuture == null || keepAliveFuture.isCancelled()) {
+				keepAliveFuture = scheduledExecutor.scheduleAtFixedRate(() -> {
+					final String keepAliveMsg = msg.startsWith("#") ? msg : "#" + msg;
+					try {
+						LOG.debug("sending keep-alive message: {}", keepAliveMsg);
+						out.println(keepAliveMsg);
+					} catch (final Exception ex) {
+						LOG.warn("exception caught while trying to send keep-alive msg", ex);
+					}
+				}, 0, keepAlive, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		void stop() {
+			future.cancel(true);
+
+			// the listener may be blocked on readLine(), which does not react to interruption
+			closeSocket();
+			stopKeepAliveThread();
+		}
+
+		void closeSocket() {
+			try {
+				if (socket != null)
+					socket.close();
+			} catch (final IOException e) {
+				LOG.warn("could not close socket", e);
+			}
+		}
+	}
+
+	/**
+	 * polls APRS sentences from aprsLines queue and processes them
+	 * 
+	 * @author wbuczak
+	 */
+	private class PollerTask implements Runnable {
+
+		// set by the first of run() and stop(), so that a task cancelled before it started is not waited for
+		private final AtomicBoolean		claimed	= new AtomicBoolean();
+		private final CountDownLatch	stopped	= new CountDownLatch(1);
+		private volatile Thread			thread;
+
+		/**
+		 * cancels the task and waits (bounded) until it has returned, so that no listener is notified anymore
+		 */
+		void stop(Future<?> future) {
+			future.cancel(true);
+			if (claimed.compareAndSet(false, true) || Thread.currentThread() == thread)
+				return;
+			try {
+				if (!stopped.await(POLLER_STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+					LOG.warn("poller task still running {} ms after being stopped, blocked in a listener?",
+							POLLER_STOP_TIMEOUT_MS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true))
+				return;
+			thread = Thread.currentThread();
+			try {
+				poll();
+			} finally {
+				stopped.countDown();
+			}
+		}
+
+		private void poll() {
+			LOG.trace("starting...");
+			AprsLine aprsLine = null;
+			while (!Thread.interrupted()) {
+
+				try {
+					aprsLine = aprsLines.take();
+					if (aprsLine == END_OF_STREAM) {
+						LOG.debug("all pending APRS lines processed");
+						break;
+					}
+					LOG.trace(aprsLine.line);
+				} catch (final InterruptedException e) {
+					LOG.warn("interrupted exception caught. Was the poller task interrupted on purpose?");
+					// Restore interrupted state...
+					Thread.currentThread().interrupt();
+					continue;
+				}
+
+				if (loadShedder != null && shed(aprsLine))
+					continue;
+
+				processLine(aprsLine);
+			} // while
+			LOG.trace("exiting..");
+		}
+
+	}
+
+	/**
+	 * @return true if the line is dropped by the load shedding
+	 */
+	private boolean shed(final AprsLine aprsLine) {
+		final long now = System.nanoTime();
+		final SheddingPriority priority =
+				loadShedder.shed(aprsLine.line, aprsLines.size(), now - aprsLine.receivedNanos, now);
+		metrics.sheddingLevel(loadShedder.getLevel());
+		if (priority == null)
+			return false;
+		metrics.lineShed(priority);
+		return true;
+	}
+
+	Optional<AircraftDescriptor> findAircraftDescriptor(AircraftBeacon beacon) {
+		Optional<AircraftDescriptor> result = Optional.empty();
+		if (descriptorProviders != null) {
+			for (final AircraftDescriptorProvider provider : descriptorProviders) {
+				final Optional<AircraftDescriptor> ad = provider.findDescriptor(beacon.getAddress());
+				if (ad.isPresent()) {
+					result = ad;
+					break;
+				}
+			} // for
+		}
+
+		return result;
+	}
+
+	<T extends OgnBeacon> void notifyAllListeners(final T ognBeacon, final AprsLine aprsLine)
+			throws InterruptedException {
+		if (ognBeacon instanceof AircraftBeacon) {
+			metrics.aircraftBeacon();
+			final AircraftBeacon ab = (AircraftBeacon) ognBeacon;
+
+			if (aircraftBeaconPublisher.hasSubscribers())
+				aircraftBeaconPublisher.publish(ab);
+
+			if (!listeners.hasAircraftListeners())
+				return;
+
+			// the descriptor does not depend on the listener, look it up only once
+			final long lookupStart = System.nanoTime();
+			final Optional<AircraftDescriptor> descriptor = findAircraftDescriptor(ab);
+			metrics.latency(LatencyStage.DESCRIPTOR_LOOKUP, System.nanoTime() - lookupStart);
+
+			listeners.forEachAircraftListener(ab, listener -> {
+				metrics.latency(LatencyStage.END_TO_END, System.nanoTime() - aprsLine.receivedNanos);
+				listener.onUpdate(ab, descriptor);
+			});
+
+		} else if (ognBeacon instanceof ReceiverBeacon) {
+			metrics.receiverBeacon();
+
+			if (receiverBeaconPublisher.hasSubscribers())
+				receiverBeaconPublisher.publish((ReceiverBeacon) ognBeacon);
+
+			for (final ReceiverBeaconListener listener : listeners.receiverListeners()) {
+				metrics.latency(LatencyStage.END_TO_END, System.nanoTime() - aprsLine.receivedNanos);
+				listener.onUpdate((ReceiverBeacon) ognBeacon);
+			}
+		} else {
+			LOG.warn("unrecognized beacon type: {} .ignoring..", ognBeacon.getClass().getName());
+		}
+	}
+
+	private void measureUpstreamDelay(final OgnBeacon beacon, final AprsLine aprsLine) {
+		// wall-clock time of the socket read
+		final long receivedMillis = System.currentTimeMillis()
+				- TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - aprsLine.receivedNanos);
+		final long delay = receivedMillis - beacon.getTimestamp();
+		// clocks are never perfectly in sync, ignore beacons from the future
+		if (delay >= 0)
+			metrics.latency(LatencyStage.UPSTREAM, TimeUnit.MILLISECONDS.toNanos(delay));
+	}
+
+	/**
+	 * parses a single APRS line and notifies the listeners
+	 */
+	void processLine(final AprsLine aprsLine) {
+		try {
+
+			final long parseStart = System.nanoTime();
+			metrics.latency(LatencyStage.QUEUE, parseStart - aprsLine.receivedNanos);
+
+			final OgnBeacon beacon = AprsLineParser.get().parse(aprsLine.line);
+			metrics.latency(LatencyStage.PARSE, System.nanoTime() - parseStart);
+
+			// a beacon may be null in case in hasn't been parsed
+			// correctly or if a receiver or aircraft beacon parsing is
+			// disabled by user
+			if (beacon != null && !localFilter.test(beacon)) {
+				// sent by the server before it applied a filter update
+				metrics.lineIgnored();
+			} else if (beacon != null) {
+				if (measureUpstreamDelay)
+					measureUpstreamDelay(beacon, aprsLine);
+				notifyAllListeners(beacon, aprsLine);
+			} else {
+				metrics.lineIgnored();
+			}
+		} catch (final InterruptedException ex) {
+			LOG.debug("interrupted while waiting for the subscribers' demand");
+			// Restore interrupted state...
+			Thread.currentThread().interrupt();
+		} catch (final Exception ex) {
+			metrics.parseFailure();
+			LOG.warn("exception caught", ex);
+		}
+
+		processedLines.incrementAndGet();
+	}
+
+	/**
+	 * exponential back-off with "equal jitter": half of the delay is fixed, the other half random
+	 * 
+	 * @param failures
+	 *            number of consecutive failed attempts
+	 * @param random
+	 *            random value in [0,1)
+	 * @return delay (ms) before the next attempt, between base/2 and max
+	 */
+	static long backoff(int failures, long base, long max, double random) {
+		final long delay = failures >= 30 ? max : Math.min(max, base << failures);
+		return delay / 2 + (long) (random * (delay - delay / 2));
+	}
+
+	private AprsOgnClient(Builder builder) {
+		this.aprsServerName = builder.srvName;
+		this.redundantServerNames = new ArrayList<>(builder.redundantServers);
+		this.duplicateFilter = redundantServerNames.isEmpty() ? null : new DuplicateFilter(builder.dedupWindowMs);
+		this.loadShedder = builder.sheddingQueueThreshold > 0 || builder.sheddingLagThresholdMs > 0
+				? new LoadShedder(builder.sheddingQueueThreshold, builder.sheddingLagThresholdMs,
+						builder.sheddingSamplePercent, builder.watchlist)
+				: null;
+		this.aprsPort = builder.unfilteredPort;
+		this.aprsPortFiltered = builder.filteredPort;
+		this.useSsl = builder.useSsl;
+		this.sslSocketFactory = builder.sslContext != null ? builder.sslContext.getSocketFactory()
+				: (SSLSocketFactory) SSLSocketFactory.getDefault();
+		this.sslProtocols = builder.sslProtocols;
+		this.sslCipherSuites = builder.sslCipherSuites;
+		this.aprsSslPort = builder.unfilteredSslPort;
+		this.aprsSslPortFiltered = builder.filteredSslPort;
+
+		this.aprsFilter = builder.aprsFilter;
+		this.reconnectionTimeout = builder.reconnectionTimeout;
+		this.maxReconnectionTimeout = Math.max(builder.reconnectionTimeout, builder.maxReconnectionTimeout);
+		this.readIdleTimeout = builder.readIdleTimeout;
+		this.connectTimeout = builder.connectTimeout;
+		this.receiveBufferSize = builder.receiveBufferSize;
+		this.sendBufferSize = builder.sendBufferSize;
+		this.failoverServerNames = new ArrayList<>(builder.failoverServers);
+		this.keepAlive = builder.keepAlive;
+		this.appName = builder.appName;
+		this.appVersion = builder.appVersion;
+		this.ognClientId = builder.ognClientId;
+		this.validateClient = builder.validateClient;
+		this.registerMBean = builder.registerMBean;
+		this.measureUpstreamDelay = builder.measureUpstreamDelay;
+		// virtual threads are always daemon threads
+		this.threadFactory = builder.virtualThreads ? VirtualThreads.factory("ogn-client-") : new DaemonThreadFactory();
+
+		this.aprsLines = new LinkedBlockingQueue<>(builder.queueCapacity);
+		this.metrics = new OgnClientMetrics(() -> aprsLines.size());
+		this.listeners = new ListenerRegistry(metrics);
+		this.aircraftBeaconPublisher = new BeaconPublisher<>(builder.publisherBufferSize);
+		this.receiverBeaconPublisher = new BeaconPublisher<>(builder.publisherBufferSize);
+
+		// aircraft descriptor providers are not mandatory
+		if (builder.descriptorProviders != null)
+			this.descriptorProviders = builder.descriptorProviders.toArray(new AircraftDescriptorProvider[0]);
+	}
+
+	public static class Builder {
+		private String								srvName				= OGN_DEFAULT_SERVER_NAME;
+		private int									unfilteredPort		= OGN_DEFAULT_SRV_PORT_UNFILTERED;
+		private int									filteredPort		= OGN_DEFAULT_SRV_PORT_FILTERED;
+		private int									unfilteredSslPort	= OGN_DEFAULT_SRV_SSL_PORT_UNFILTERED;
+		private int									filteredSslPort		= OGN_DEFAULT_SRV_SSL_PORT_FILTERED;
+
+		private String								aprsFilter;
+		private int									reconnectionTimeout	= OGN_DEFAULT_RECONNECTION_TIMEOUT_MS;
+		private int									maxReconnectionTimeout	= OGN_CLIENT_DEFAULT_MAX_RECONNECTION_TIMEOUT_MS;
+		private int									readIdleTimeout		= OGN_CLIENT_DEFAULT_READ_IDLE_TIMEOUT_MS;
+		private int									connectTimeout		= OGN_CLIENT_DEFAULT_CONNECT_TIMEOUT_MS;
+		private int									receiveBufferSize;
+		private int									sendBufferSize;
+		private final List<String>					failoverServers		= new ArrayList<>();
+		private int									keepAlive			= OGN_CLIENT_DEFAULT_KEEP_ALIVE_INTERVAL_MS;
+		private String								appName				= OGN_DEFAULT_APP_NAME;
+		private String								appVersion			= OGN_DEFAULT_APP_VERSION;
+		private String								ognClientId;
+
+		private List<AircraftDescriptorProvider>	descriptorProviders;
+		private boolean								validateClient;
+		private boolean								useSsl;
+		private SSLContext							sslContext;
+		private String[]							sslProtocols;
+		private String[]							sslCipherSuites;
+		private boolean								registerMBean;
+		private boolean								measureUpstreamDelay;
+		private int									queueCapacity		= OGN_CLIENT_DEFAULT_QUEUE_CAPACITY;
+		private boolean								virtualThreads;
+		private final List<String>					redundantServers	= new ArrayList<>();
+		private long								dedupWindowMs		= OGN_CLIENT_DEFAULT_DEDUP_WINDOW_MS;
+		private int									publisherBufferSize	= OGN_CLIENT_DEFAULT_PUBLISHER_BUFFER_SIZE;
+		private int									sheddingQueueThreshold;
+		private long								sheddingLagThresholdMs;
+		private int									sheddingSamplePercent	= OGN_CLIENT_DEFAULT_SHEDDING_SAMPLE_PERCENT;
+		private final List<String>					watchlist			= new ArrayList<>();
+
+		public Builder serverName(final String name) {
+			this.srvName = name;
+			return this;
+		}
+
+		public Builder unfilteredPort(final int port) {
+			this.unfilteredPort = port;
+			return this;
+		}
+
+		public Builder filteredPort(final int port) {
+			this.filteredPort = port;
+			return this;
+		}
+
+		public Builder aprsFilter(final String filter) {
+			this.aprsFilter = filter;
+			return this;
+		}
+
+		/**
+		 * @param timeout
+		 *            delay before the first re-connection attempt, doubled (with jitter) after every consecutive failure
+		 *            up to {@link #maxReconnectionTimeout(int)}
+		 */
+		public Builder reconnectionTimeout(final int timeout) {
+			this.reconnectionTimeout = timeout;
+			return this;
+		}
+
+		/**
+		 * @param timeout
+		 *            cap of the exponential back-off: no re-connection attempt is delayed by more than this, however
+		 *            many attempts have failed. Values below {@link #reconnectionTimeout(int)} are raised to it.
+		 */
+		public Builder maxReconnectionTimeout(final int timeout) {
+			this.maxReconnectionTimeout = timeout;
+			return this;
+		}
+
+		/**
+		 * @param timeout
+		 *            max time (ms) without receiving anything from the server, after which the connection is considered
+		 *            stalled and the next server is connected to straight away. 0 disables the watchdog.
+		 */
+		public Builder readIdleTimeout(final int timeout) {
+			this.readIdleTimeout = timeout;
+			return this;
+		}
+
+		public Builder connectTimeout(final int timeout) {
+			this.connectTimeout = timeout;
+			return this;
+		}
+
+		/**
+		 * @param size
+		 *            socket receive buffer size (SO_RCVBUF), the system default is used if not set
+		 */
+		public Builder receiveBufferSize(final int size) {
+			this.receiveBufferSize = size;
+			return this;
+		}
+
+		/**
+		 * @param size
+		 *            socket send buffer size (SO_SNDBUF), the system default is used if not set
+		 */
+		public Builder sendBufferSize(final int size) {
+			this.sendBufferSize = size;
+			return this;
+		}
+
+		/**
+		 * @param names
+		 *            servers (name[:port]) tried in turn, after all the addresses of the {@link #serverName(String) main
+		 *            one}, when the connection fails or stalls
+		 */
+		public Builder failoverServers(String... names) {
+			this.failoverServers.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		public Builder appName(final String name) {
+			this.appName = name;
+			return this;
+		}
+
+		public Builder appVersion(final String version) {
+			this.appVersion = version;
+			return this;
+		}
+
+		public Builder ognClientId(final String clientId) {
+			this.ognClientId = clientId != null && clientId.length() > 9 ? clientId.substring(0, 9) : clientId;
+			return this;
+		}
+
+		public Builder keepAlive(final int keepAliveInt) {
+			this.keepAlive = keepAliveInt;
+			return this;
+		}
+
+		public Builder descriptorProviders(List<AircraftDescriptorProvider> descProviders) {
+			this.descriptorProviders = descProviders;
+			return this;
+		}
+
+		public Builder descriptorProviders(AircraftDescriptorProvider... descProviders) {
+			this.descriptorProviders = Arrays.asList(descProviders);
+			return this;
+		}
+
+		public Builder validateClient(boolean ognClientValidate) {
+			this.validateClient = ognClientValidate;
+			return this;
+		}
+
+		public Builder unfilteredSslPort(int unfilteredSslPort) {
+			this.unfilteredSslPort = unfilteredSslPort;
+			return this;
+		}
+
+		public Builder filteredSslPort(int filteredSslPort) {
+			this.filteredSslPort = filteredSslPort;
+			return this;
+		}
+
+		public Builder useSsl(boolean useSsl) {
+			this.useSsl = useSsl;
+			return this;
+		}
+
+		/**
+		 * @param context
+		 *            SSL context used for the TLS connections instead of the JVM default one. The sessions are cached
+		 *            by the context: the clients sharing the same context share the cache and resume the sessions
+		 *            (abbreviated handshake) when re-connecting. The cache can be tuned through
+		 *            {@link SSLContext#getClientSessionContext()}.
+		 */
+		public Builder sslContext(SSLContext context) {
+			this.sslContext = context;
+			return this;
+		}
+
+		/**
+		 * @param protocols
+		 *            TLS protocols enabled (e.g. TLSv1.3), the context's defaults are used if not set
+		 */
+		public Builder sslProtocols(String... protocols) {
+			this.sslProtocols = protocols;
+			return this;
+		}
+
+		/**
+		 * @param cipherSuites
+		 *            cipher suites enabled, in order of preference, the context's defaults are used if not set. AES-GCM
+		 *            suites are the cheapest on CPUs with AES instructions, ChaCha20-Poly1305 ones on CPUs without.
+		 */
+		public Builder sslCipherSuites(String... cipherSuites) {
+			this.sslCipherSuites = cipherSuites;
+			return this;
+		}
+
+		/**
+		 * @param register
+		 *            if true the client's metrics are exposed as a JMX MBean while the client is connected
+		 */
+		public Builder registerMBean(boolean register) {
+			this.registerMBean = register;
+			return this;
+		}
+
+		/**
+		 * @param measure
+		 *            if true, the delay between the beacons' APRS timestamps and the moment they are received is
+		 *            recorded as {@link LatencyStage#UPSTREAM} latency
+		 */
+		public Builder measureUpstreamDelay(boolean measure) {
+			this.measureUpstreamDelay = measure;
+			return this;
+		}
+
+		/**
+		 * @param names
+		 *            servers (name[:port]) to be connected to in addition to the {@link #serverName(String) main one}, all
+		 *            at the same time. The same beacons are received from all of them, the duplicates are dropped before parsing, so
+		 *            that the listeners get every beacon once and losing a connection does not leave any gap.
+		 */
+		public Builder redundantServers(String... names) {
+			this.redundantServers.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * @param windowMs
+		 *            min time a line is remembered to detect the duplicates received from redundant servers
+		 */
+		public Builder dedupWindow(long windowMs) {
+			this.dedupWindowMs = windowMs;
+			return this;
+		}
+
+		/**
+		 * @param virtual
+		 *            if true, the socket listener, the poller (and so the listeners' notification) and the keep-alive
+		 *            run on virtual threads instead of platform threads. Requires JDK 21+, {@link #build()} fails
+		 *            with UnsupportedOperationException otherwise.
+		 */
+		public Builder virtualThreads(boolean virtual) {
+			this.virtualThreads = virtual;
+			return this;
+		}
+
+		/**
+		 * @param capacity
+		 *            max number of received APRS lines waiting to be processed. When the queue is full the client
+		 *            stops reading from the server, so that a listener or a publisher subscriber without demand
+		 *            cannot make the client run out of memory. Defaults to
+		 *            {@link org.ogn.client.OgnClientConstants#OGN_CLIENT_DEFAULT_QUEUE_CAPACITY}, use
+		 *            {@link Integer#MAX_VALUE} for an unbounded queue.
+		 */
+		public Builder queueCapacity(int capacity) {
+			this.queueCapacity = capacity;
+			return this;
+		}
+
+		/**
+		 * @param size
+		 *            number of beacons buffered for each subscriber of the beacon publishers
+		 */
+		public Builder publisherBufferSize(int size) {
+			this.publisherBufferSize = size;
+			return this;
+		}
+
+		/**
+		 * enables the load shedding: when the queue depth or the lag of the lines (time since they were read) reaches
+		 * its threshold, receiver lines are dropped before parsing; at twice the threshold the beacons of stationary
+		 * aircraft too; at three times, the beacons of the aircraft outside of a sample of the addresses. The
+		 * shedding is reported by the metrics and logged.
+		 * 
+		 * @param queueThreshold
+		 *            queue depth at which the shedding starts, 0 to ignore the queue depth
+		 * @param lagThresholdMs
+		 *            lag at which the shedding starts, 0 to ignore the lag
+		 */
+		public Builder loadShedding(int queueThreshold, long lagThresholdMs) {
+			this.sheddingQueueThreshold = queueThreshold;
+			this.sheddingLagThresholdMs = lagThresholdMs;
+			return this;
+		}
+
+		/**
+		 * @param percent
+		 *            percentage of the aircraft addresses whose beacons are kept when the untracked aircraft are shed
+		 */
+		public Builder sheddingSample(int percent) {
+			this.sheddingSamplePercent = percent;
+			return this;
+		}
+
+		/**
+		 * @param addresses
+		 *            addresses (or callsigns) of the aircraft whose beacons are never dropped by the load shedding
+		 */
+		public Builder watchlist(String... addresses) {
+			this.watchlist.addAll(Arrays.asList(addresses));
+			return this;
+		}
+
+		public AprsOgnClient build() {
+			return new AprsOgnClient(this);
+		}
+
+	}
+
+	private final ListenerRegistry								listeners;
+
+	private final BlockingQueue<AprsLine>						aprsLines;
+
+	private final BeaconPublisher<AircraftBeacon>				aircraftBeaconPublisher;
+	private final BeaconPublisher<ReceiverBeacon>				receiverBeaconPublisher;
+
+	private final AtomicLong									processedLines		= new AtomicLong();
+
+	private final OgnClientMetrics								metrics;
+
+	/**
+	 * connects to the OGN APRS service
+	 * 
+	 * @param filter
+	 *            optional filter, if null no filter will be used, as it is in case of {@link #connect() connect()}.
+	 * @see <a href="http://www.aprs-is.net/javAPRSFilter.aspx">Server-side Filter Commands</a>
+	 */
+	@Override
+	public synchronized void connect(final String filter) {
+		if (socketListenerTasks.isEmpty()) {
+			// the executors survive disconnect(), so that a re-connection does not need to re-create the thread pools
+			if (executor == null) {
+				executor = Executors.newCachedThreadPool(threadFactory);
+				scheduledExecutor = createScheduledExecutor(threadFactory);
+			}
+			if (registerMBean)
+				registerMBean();
+			localFilter = AprsFilter.parse(null);
+			poller = new PollerTask();
+			pollerFuture = executor.submit(poller);
+
+			final List<AprsSocketListenerTask> tasks = new ArrayList<>();
+			tasks.add(new AprsSocketListenerTask(aprsServerName, failoverServerNames, filter));
+			for (final String server : redundantServerNames) {
+				tasks.add(new AprsSocketListenerTask(server, Collections.emptyList(), filter));
+			}
+			for (final AprsSocketListenerTask task : tasks) {
+				task.future = executor.submit(task);
+			}
+			socketListenerTasks = tasks;
+		} else {
+			LOG.warn("client is currently connected and running. stop it first!");
+		}
+	}
+
+	@Override
+	public void connect() {
+		connect(this.aprsFilter);
+		// connect(null);
+	}
+
+	/**
+	 * Sends a <code>#filter</code> command to the server over the open connection, so that neither the socket nor the
+	 * queued lines are lost. Until the server applies it, the lines already on their way may not match the new filter:
+	 * the new filter is also applied locally to all the parsed beacons, as long as all its terms are supported by
+	 * {@link AprsFilter}. Switching between the filtered and the unfiltered feed requires a re-connection, as they are
+	 * served on different ports.
+	 */
+	@Override
+	public synchronized void updateFilter(String filter) {
+		final String newFilter = filter == null || filter.trim().isEmpty() ? null : filter.trim();
+
+		localFilter = AprsFilter.parseLocal(newFilter);
+
+		// used by the next connect() as well
+		aprsFilter = newFilter;
+
+		if (socketListenerTasks.isEmpty()) {
+			LOG.info("client is not connected, the filter will be used by the next connect()");
+			return;
+		}
+		for (final AprsSocketListenerTask task : socketListenerTasks) {
+			task.updateFilter(newFilter);
+		}
+	}
+
+	@Override
+	public synchronized void disconnect() {
+		if (!socketListenerTasks.isEmpty()) {
+			stopSocketListener();
+
+			if (pollerFuture != null)
+				stopPoller();
+			unregisterMBean();
+		}
+
+		final long discarded = discardPendingLines();
+		if (discarded > 0)
+			LOG.info("{} pending APRS lines discarded", discarded);
+	}
+
+	@Override
+	public synchronized DrainResult disconnect(long timeout, TimeUnit unit) {
+		if (socketListenerTasks.isEmpty()) {
+			return new DrainResult(0, discardPendingLines(), true);
+		}
+
+		// stop reading from the server, from now on the queue can only shrink
+		stopSocketListener();
+
+		final long processedBefore = processedLines.get();
+		boolean completed = false;
+
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		try {
+			// a bounded queue may be full
+			if (aprsLines.offer(END_OF_STREAM, timeout, unit)) {
+				pollerFuture.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				completed = true;
+			} else {
+				LOG.warn("pending APRS lines could not be processed within {} {}", timeout, unit);
+			}
+		} catch (final TimeoutException e) {
+			LOG.warn("pending APRS lines could not be processed within {} {}", timeout, unit);
+		} catch (final InterruptedException e) {
+			LOG.warn("interrupted while waiting for the pending APRS lines to be processed");
+			// Restore interrupted state...
+			Thread.currentThread().interrupt();
+		} catch (final ExecutionException | CancellationException e) {
+			LOG.warn("poller task terminated abnormally", e);
+		}
+
+		stopPoller();
+		unregisterMBean();
+
+		final DrainResult result =
+				new DrainResult(processedLines.get() - processedBefore, discardPendingLines(), completed);
+		LOG.info("disconnected: {}", result);
+		return result;
+	}
+
+	private void stopPoller() {
+		poller.stop(pollerFuture);
+		poller = null;
+		pollerFuture = null;
+	}
+
+	private void stopSocketListener() {
+		for (final AprsSocketListenerTask task : socketListenerTasks) {
+			task.stop();
+		}
+		socketListenerTasks = Collections.emptyList();
+	}
+
+	private long discardPendingLines() {
+		long discarded = 0;
+		AprsLine line;
+		while ((line = aprsLines.poll()) != null) {
+			if (line != END_OF_STREAM)
+				discarded++;
+		}
+		return discarded;
+	}
+
+	private void registerMBean() {
+		try {
+			// the name is kept across re-connections
+			if (mbeanName == null) {
+				final String name =
+						(ognClientId == null ? "client" : ognClientId) + "-" + INSTANCE_COUNTER.incrementAndGet();
+				mbeanName = new ObjectName(MBEAN_NAME_PREFIX + ObjectName.quote(name));
+			}
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, mbeanName);
+			LOG.info("metrics registered as {}", mbeanName);
+		} catch (final JMException e) {
+			LOG.warn("could not register the metrics MBean", e);
+		}
+	}
+
+	private void unregisterMBean() {
+		if (mbeanName == null)
+			return;
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(mbeanName)) {
+				server.unregisterMBean(mbeanName);
+				LOG.info("metrics {} unregistered", mbeanName);
+			}
+		} catch (final JMException e) {
+			LOG.warn("could not unregister the metrics MBean", e);
+		}
+	}
+
+	private static ScheduledExecutorService createScheduledExecutor(ThreadFactory threadFactory) {
+		final ScheduledThreadPoolExecutor result = new ScheduledThreadPoolExecutor(1, threadFactory);
+		// let the thread go when the client stays disconnected
+		result.setKeepAliveTime(EXECUTOR_IDLE_TIME_MS, TimeUnit.MILLISECONDS);
+		result.allowCoreThreadTimeOut(true);
+		result.setRemoveOnCancelPolicy(true);
+		return result;
+	}
+
+	@Override
+	public void subscribeToAircraftBeacons(AircraftBeaconListener listener) {
+		listeners.subscribeToAircraftBeacons(listener);
+	}
+
+	@Override
+	public void subscribeToAircraftBeacons(AircraftBeaconListener listener, AircraftBeaconSelector selector) {
+		listeners.subscribeToAircraftBeacons(listener, selector);
+	}
+
+	@Override
+	public void subscribeToReceiverBeacons(ReceiverBeaconListener listener) {
+		listeners.subscribeToReceiverBeacons(listener);
+	}
+
+	@Override
+	public void unsubscribeFromAircraftBeacons(AircraftBeaconListener listener) {
+		listeners.unsubscribeFromAircraftBeacons(listener);
+	}
+
+	@Override
+	public void unsubscribeFromReceiverBeacons(ReceiverBeaconListener listener) {
+		listeners.unsubscribeFromReceiverBeacons(listener);
+	}
+
+	/**
+	 * subscribes the fan-out of a {@link SharedAprsConnection}, without measuring it
+	 */
+	void subscribeRelay(AircraftBeaconListener aircraftRelay, ReceiverBeaconListener receiverRelay) {
+		listeners.subscribeRelay(aircraftRelay, receiverRelay);
+	}
+
+	@Override
+	public Publisher<AircraftBeacon> getAircraftBeaconPublisher() {
+		return aircraftBeaconPublisher;
+	}
+
+	@Override
+	public Publisher<ReceiverBeacon> getReceiverBeaconPublisher() {
+		return receiverBeaconPublisher;
+	}
+
+	@Override
+	public OgnClientMetrics getMetrics() {
+		return metrics;
+	}
+
+}
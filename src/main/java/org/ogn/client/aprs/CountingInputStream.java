@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.ogn.client.metrics.OgnClientMetrics;
+
+/**
+ * reports the number of bytes read from the underlying stream to the client's metrics
+ */
+class CountingInputStream extends FilterInputStream {
+
+	private final OgnClientMetrics metrics;
+
+	CountingInputStream(InputStream in, OgnClientMetrics metrics) {
+		super(in);
+		this.metrics = metrics;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int result = super.read();
+		if (result >= 0)
+			metrics.bytesRead(1);
+		return result;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		final int result = super.read(b, off, len);
+		if (result > 0)
+			metrics.bytesRead(result);
+		return result;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		final long result = super.skip(n);
+		metrics.bytesRead(result);
+		return result;
+	}
+}
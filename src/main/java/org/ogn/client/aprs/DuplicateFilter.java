@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Time-bounded set of the APRS packets seen recently, used to drop the duplicates when the same feed is received over
+ * several connections. Only a 64-bit hash of every packet is kept. The packets are remembered in two generations,
+ * swapped every window, so a packet is remembered for at least one window and at most two.
+ * <p>
+ * Instances are thread-safe.
+ */
+final class DuplicateFilter {
+
+	private static final long	FNV_OFFSET_BASIS	= 0xcbf29ce484222325L;
+	private static final long	FNV_PRIME			= 0x100000001b3L;
+
+	private final long			windowMs;
+
+	private Set<Long>			current				= new HashSet<>();
+	private Set<Long>			previous			= new HashSet<>();
+	private long				generationStartMs;
+
+	/**
+	 * @param windowMs
+	 *            min time a packet is remembered
+	 */
+	DuplicateFilter(long windowMs) {
+		this.windowMs = windowMs;
+	}
+
+	/**
+	 * @param packet
+	 *            raw APRS packet
+	 * @param nowMs
+	 *            current time
+	 * @return true if the same packet has been seen within the window, false if it is seen for the first time (and has
+	 *         been remembered)
+	 */
+	synchronized boolean isDuplicate(String packet, long nowMs) {
+		if (nowMs - generationStartMs >= windowMs) {
+			final Set<Long> recycled = previous;
+			recycled.clear();
+			previous = current;
+			current = recycled;
+			generationStartMs = nowMs;
+		}
+
+		final Long hash = hash(packet);
+		if (previous.contains(hash))
+			return true;
+		return !current.add(hash);
+	}
+
+	/**
+	 * @return number of packets remembered
+	 */
+	synchronized int size() {
+		return current.size() + previous.size();
+	}
+
+	/**
+	 * 64-bit FNV-1a hash
+	 */
+	static long hash(String packet) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < packet.length(); i++) {
+			hash ^= packet.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.client.metrics.LatencyHistogram;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.ReceiverBeacon;
+
+/**
+ * The listeners subscribed to a client. Every listener is wrapped, once on subscription, together with its dispatch
+ * latency histogram, so that notifying it only records the time spent in its callback. Subscriptions are synchronized,
+ * notifications are lock-free.
+ */
+final class ListenerRegistry {
+
+	/**
+	 * a subscribed listener, measured with its own histogram unless it is a relay
+	 */
+	static final class MeasuredListener implements AircraftBeaconListener, ReceiverBeaconListener {
+		private final Object			listener;
+		private final OgnClientMetrics	metrics;
+		private final LatencyHistogram	latency;
+
+		private MeasuredListener(Object listener, OgnClientMetrics metrics) {
+			this.listener = listener;
+			this.metrics = metrics;
+			this.latency = metrics == null ? null : metrics.addListener(listener);
+		}
+
+		@Override
+		public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+			if (latency == null) {
+				((AircraftBeaconListener) listener).onUpdate(beacon, descriptor);
+				return;
+			}
+			final long start = System.nanoTime();
+			((AircraftBeaconListener) listener).onUpdate(beacon, descriptor);
+			metrics.dispatched(latency, System.nanoTime() - start);
+		}
+
+		@Override
+		public void onUpdate(ReceiverBeacon beacon) {
+			if (latency == null) {
+				((ReceiverBeaconListener) listener).onUpdate(beacon);
+				return;
+			}
+			final long start = System.nanoTime();
+			((ReceiverBeaconListener) listener).onUpdate(beacon);
+			metrics.dispatched(latency, System.nanoTime() - start);
+		}
+
+		@Override
+		public String toString() {
+			return listener.toString();
+		}
+	}
+
+	private final OgnClientMetrics						metrics;
+
+	private final Map<Object, MeasuredListener>			measured			= new HashMap<>();
+
+	private final CopyOnWriteArrayList<MeasuredListener>	aircraftListeners	= new CopyOnWriteArrayList<>();
+	private final AircraftListenerIndex					aircraftListenerIndex	= new AircraftListenerIndex();
+	// listeners subscribed with a selector
+	private final Set<MeasuredListener>					selecting			= new HashSet<>();
+	private final CopyOnWriteArrayList<MeasuredListener>	receiverListeners	= new CopyOnWriteArrayList<>();
+
+	ListenerRegistry(OgnClientMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	private MeasuredListener measured(Object listener) {
+		return measured.computeIfAbsent(listener, l -> new MeasuredListener(l, metrics));
+	}
+
+	/**
+	 * forgets the listener once it is not subscribed to any beacons anymore
+	 */
+	private void release(MeasuredListener listener) {
+		if (aircraftListeners.contains(listener) || receiverListeners.contains(listener) || selecting.contains(listener))
+			return;
+
+		measured.remove(listener.listener);
+		metrics.removeListener(listener.listener);
+	}
+
+	synchronized void subscribeToAircraftBeacons(AircraftBeaconListener listener) {
+		final MeasuredListener m = measured(listener);
+		aircraftListenerIndex.remove(m);
+		selecting.remove(m);
+		aircraftListeners.addIfAbsent(m);
+	}
+
+	synchronized void subscribeToAircraftBeacons(AircraftBeaconListener listener, AircraftBeaconSelector selector) {
+		final MeasuredListener m = measured(listener);
+		aircraftListeners.remove(m);
+		aircraftListenerIndex.add(m, selector);
+		selecting.add(m);
+	}
+
+	synchronized void unsubscribeFromAircraftBeacons(AircraftBeaconListener listener) {
+		final MeasuredListener m = measured.get(listener);
+		if (m == null)
+			return;
+		aircraftListeners.remove(m);
+		aircraftListenerIndex.remove(m);
+		selecting.remove(m);
+		release(m);
+	}
+
+	/**
+	 * subscribes listeners relaying the beacons to other listeners measured on their own, as the logical clients of a
+	 * {@link SharedAprsConnection}: they are not measured, so that the same callbacks are not recorded twice. They stay
+	 * subscribed.
+	 */
+	synchronized void subscribeRelay(AircraftBeaconListener aircraftRelay, ReceiverBeaconListener receiverRelay) {
+		aircraftListeners.add(new MeasuredListener(aircraftRelay, null));
+		receiverListeners.add(new MeasuredListener(receiverRelay, null));
+	}
+
+	synchronized void subscribeToReceiverBeacons(ReceiverBeaconListener listener) {
+		receiverListeners.addIfAbsent(measured(listener));
+	}
+
+	synchronized void unsubscribeFromReceiverBeacons(ReceiverBeaconListener listener) {
+		final MeasuredListener m = measured.get(listener);
+		if (m == null)
+			return;
+		receiverListeners.remove(m);
+		release(m);
+	}
+
+	boolean hasAircraftListeners() {
+		return !aircraftListeners.isEmpty() || !aircraftListenerIndex.isEmpty();
+	}
+
+	/**
+	 * calls the action for every listener subscribed to all the aircraft beacons and every listener selecting the beacon
+	 */
+	void forEachAircraftListener(AircraftBeacon beacon, Consumer<AircraftBeaconListener> action) {
+		for (final MeasuredListener listener : aircraftListeners) {
+			action.accept(listener);
+		}
+		aircraftListenerIndex.forEachMatching(beacon, action);
+	}
+
+	List<? extends ReceiverBeaconListener> receiverListeners() {
+		return receiverListeners;
+	}
+}
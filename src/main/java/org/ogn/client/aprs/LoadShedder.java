@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.metrics.SheddingPriority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides which APRS lines are dropped, before parsing, when the client cannot keep up with the feed. The pressure is
+ * the largest of the queue depth and of the lag of the line (time since it was read), relative to their thresholds.
+ * Each multiple of the thresholds sheds one more {@link SheddingPriority}: receiver lines first, then stationary
+ * aircraft, then the aircraft outside of a sample of the addresses. The beacons of watched aircraft are never dropped.
+ * <p>
+ * The level rises as soon as the pressure does, and goes down one step at a time once the pressure has stayed lower
+ * for a second, so that it does not flap. The lines are classified from their raw text only: the aircraft beacons by
+ * the address after the "id" token and the speed before the altitude, the receiver lines by their path (sent over
+ * TCP/IP by the receiver) or their symbol. The lines which are neither are never shed. Instances are used by the poller
+ * thread only.
+ */
+final class LoadShedder {
+
+	private static final Logger					LOG					= LoggerFactory.getLogger(LoadShedder.class);
+
+	private static final SheddingPriority[]		PRIORITIES			= SheddingPriority.values();
+
+	private static final long					COOL_DOWN_NANOS		= TimeUnit.SECONDS.toNanos(1);
+
+	// ground speed (kt) below which an aircraft is considered stationary
+	private static final int					STATIONARY_SPEED_KT	= 2;
+
+	private final int							queueThreshold;
+	private final long							lagThresholdNanos;
+	private final int							samplePercent;
+	private final Set<String>					watchlist;
+
+	private int									level;
+	// since when the pressure has been below the current level, -1 if it is not
+	private long								calmSinceNanos		= -1;
+
+	/**
+	 * @param queueThreshold
+	 *            queue depth at which the shedding starts
+	 * @param lagThresholdMs
+	 *            lag at which the shedding starts
+	 * @param samplePercent
+	 *            percentage of the aircraft addresses kept when the untracked aircraft are shed
+	 * @param watchlist
+	 *            addresses (or callsigns) of the aircraft which are never shed
+	 */
+	LoadShedder(int queueThreshold, long lagThresholdMs, int samplePercent, Collection<String> watchlist) {
+		this.queueThreshold = queueThreshold;
+		this.lagThresholdNanos = TimeUnit.MILLISECONDS.toNanos(lagThresholdMs);
+		this.samplePercent = samplePercent;
+		this.watchlist = new HashSet<>();
+		for (final String address : watchlist) {
+			this.watchlist.add(address.toUpperCase(Locale.ROOT));
+		}
+	}
+
+	/**
+	 * @param line
+	 *            raw APRS line
+	 * @param queueDepth
+	 *            number of lines waiting behind this one
+	 * @param lagNanos
+	 *            time since the line was read
+	 * @param nowNanos
+	 *            current {@link System#nanoTime()}
+	 * @return why the line is dropped, null if it must be processed
+	 */
+	SheddingPriority shed(String line, int queueDepth, long lagNanos, long nowNanos) {
+		updateLevel(queueDepth, lagNanos, nowNanos);
+		if (level == 0 || line.startsWith("#"))
+			return null;
+
+		final int address = addressIndex(line);
+		if (address < 0)
+			return isReceiver(line) ? SheddingPriority.RECEIVER : null;
+		if (level < 2 || isWatched(line, address))
+			return null;
+		if (isStationary(line))
+			return SheddingPriority.STATIONARY_AIRCRAFT;
+		if (level >= 3 && !isSampled(line, address))
+			return SheddingPriority.UNTRACKED_AIRCRAFT;
+		return null;
+	}
+
+	private void updateLevel(int queueDepth, long lagNanos, long nowNanos) {
+		final double pressure = Math.max(queueThreshold > 0 ? (double) queueDepth / queueThreshold : 0,
+				lagThresholdNanos > 0 ? (double) lagNanos / lagThresholdNanos : 0);
+		final int target = (int) Math.min(PRIORITIES.length, Math.floor(pressure));
+
+		if (target > level) {
+			changeLevel(target, queueDepth, lagNanos);
+			calmSinceNanos = -1;
+		} else if (target == level) {
+			calmSinceNanos = -1;
+		} else if (calmSinceNanos < 0) {
+			calmSinceNanos = nowNanos;
+		} else if (nowNanos - calmSinceNanos >= COOL_DOWN_NANOS) {
+			changeLevel(level - 1, queueDepth, lagNanos);
+			calmSinceNanos = level > target ? nowNanos : -1;
+		}
+	}
+
+	private void changeLevel(int newLevel, int queueDepth, long lagNanos) {
+		if (newLevel > level)
+			LOG.warn("overloaded (queue depth: {}, lag: {} ms), shedding up to {}", queueDepth,
+					TimeUnit.NANOSECONDS.toMillis(lagNanos), PRIORITIES[newLevel - 1]);
+		else if (newLevel > 0)
+			LOG.info("load decreasing, shedding up to {}", PRIORITIES[newLevel - 1]);
+		else
+			LOG.info("load back to normal, shedding stopped");
+		level = newLevel;
+	}
+
+	/**
+	 * @return index of the 6 hex digits address following the "idXX" token of an aircraft beacon, -1 if there is none
+	 */
+	static int addressIndex(String line) {
+		for (int i = line.indexOf(" id"); i >= 0; i = line.indexOf(" id", i + 1)) {
+			final int end = i + 11;
+			if (end <= line.length() && isHex(line, i + 3, end) && (end == line.length() || line.charAt(end) == ' '))
+				return i + 5;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return true if the line is sent by a receiver: over TCP/IP ("TCPIP*" or "qAC" in the path) or with the symbol of
+	 *         a receiver ("I" or "/" table, "&amp;" code) after its position
+	 */
+	static boolean isReceiver(String line) {
+		final int body = line.indexOf(':');
+		if (body < 0)
+			return false;
+		final int path = line.indexOf('>');
+		if (path >= 0 && path < body && (isInPath(line, ",TCPIP*", path, body) || isInPath(line, ",qAC,", path, body)))
+			return true;
+
+		// ":/hhmmssh" then "ddmm.mmN", the symbol table, "dddmm.mmE" and the symbol code
+		final int table = body + 17;
+		final int symbol = table + 10;
+		return symbol < line.length() && line.charAt(body + 1) == '/' && line.charAt(symbol) == '&'
+				&& (line.charAt(table) == 'I' || line.charAt(table) == '/');
+	}
+
+	private static boolean isInPath(String line, String token, int path, int body) {
+		final int i = line.indexOf(token, path);
+		return i >= 0 && i + token.length() <= body;
+	}
+
+	/**
+	 * @return true if the address or the callsign of the aircraft is watched, with or without the prefix of its
+	 *         address type ("FLR", "ICA", "OGN", ...)
+	 */
+	private boolean isWatched(String line, int address) {
+		if (watchlist.contains(line.substring(address, address + 6)))
+			return true;
+		final int end = line.indexOf('>');
+		if (end < 0)
+			return false;
+		final String callsign = line.substring(0, end).toUpperCase(Locale.ROOT);
+		return watchlist.contains(callsign)
+				|| callsign.length() > 6 && watchlist.contains(callsign.substring(callsign.length() - 6));
+	}
+
+	private static boolean isHex(String line, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (Character.digit(line.charAt(i), 16) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the course/speed extension ("ccc/sss" before "/A=") of an aircraft beacon reports a speed below
+	 *         the stationary speed, or is missing (as in the beacons of the aircraft at rest)
+	 */
+	static boolean isStationary(String line) {
+		final int altitude = line.indexOf("/A=");
+		if (altitude < 7 || line.charAt(altitude - 4) != '/')
+			return true;
+		int speed = 0;
+		for (int i = altitude - 3; i < altitude; i++) {
+			final int digit = Character.digit(line.charAt(i), 10);
+			if (digit < 0)
+				return true;
+			speed = speed * 10 + digit;
+		}
+		return speed < STATIONARY_SPEED_KT;
+	}
+
+	/**
+	 * @return true if the address belongs to the sample kept, always the same addresses so that their tracks stay
+	 *         complete
+	 */
+	private boolean isSampled(String line, int address) {
+		int hash = 0;
+		for (int i = address; i < address + 6; i++) {
+			hash = 31 * hash + line.charAt(i);
+		}
+		hash ^= hash >>> 16;
+		hash *= 0x45d9f3b;
+		hash ^= hash >>> 16;
+		return (hash & 0x7fffffff) % 100 < samplePercent;
+	}
+
+	/**
+	 * @return number of priorities currently shed
+	 */
+	int getLevel() {
+		return level;
+	}
+}
@@ -0,0 +1,569 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_DEDUP_WINDOW_MS;
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_PUBLISHER_BUFFER_SIZE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.client.DrainResult;
+import org.ogn.client.OgnClient;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.client.reactive.BeaconPublisher;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A client covering a large area with several parallel connections, each one with its own area filter, reader and
+ * poller thread. The area is split into longitude strips (shards), overlapping slightly so that no beacon is lost on
+ * the borders. The beacons of all the shards are merged into a single stream: the duplicates (received by two shards)
+ * are dropped and the listeners are notified by one thread at a time, as with a single connection.
+ * <p>
+ * The traffic is rarely uniform, so the shard boundaries are moved periodically to balance the measured beacon rates
+ * of the shards. The new filters are applied with {@link OgnClient#updateFilter(String)}, without re-connecting. As
+ * the servers apply a new filter with some delay, a moved boundary is handed over in two steps: every shard first
+ * covers both its old and its new strip, and only half a rebalancing interval later is narrowed to its new strip.
+ */
+public class ShardedAprsClient implements OgnClient {
+
+	private static final Logger							LOG					=
+			LoggerFactory.getLogger(ShardedAprsClient.class);
+
+	/**
+	 * share of the total rate every shard is assumed to have when rebalancing, so that no shard shrinks to nothing
+	 */
+	private static final double							MIN_RATE_SHARE		= 0.05;
+
+	private final AprsOgnClient[]						shards;
+	private final LongAdder[]							shardBeacons;
+	private final long[]								lastShardBeacons;
+
+	private final double								defaultLatN;
+	private final double								defaultLonW;
+	private final double								defaultLatS;
+	private final double								defaultLonE;
+	private final double								overlap;
+	private final long									rebalanceIntervalMs;
+	private final double								rebalanceThreshold;
+
+	private volatile double								latN;
+	private volatile double								latS;
+	private volatile double[]							boundaries;
+
+	private final DuplicateFilter						duplicateFilter;
+	private final LongAdder								duplicates			= new LongAdder();
+
+	private final OgnClientMetrics						metrics;
+
+	private final ListenerRegistry						listeners;
+
+	private final BeaconPublisher<AircraftBeacon>		aircraftBeaconPublisher;
+	private final BeaconPublisher<ReceiverBeacon>		receiverBeaconPublisher;
+
+	// the listeners are notified by one shard at a time
+	private final Object								dispatchLock		= new Object();
+
+	private ScheduledExecutorService					rebalancer;
+	private ScheduledFuture<?>							rebalanceFuture;
+
+	public static class Builder {
+		private AprsOgnClient.Builder	clientBuilder;
+		private int						shards				= 4;
+		private double					latN				= 90;
+		private double					lonW				= -180;
+		private double					latS				= -90;
+		private double					lonE				= 180;
+		private double					overlap				= 0.05;
+		private long					rebalanceIntervalMs	= 60000;
+		private double					rebalanceThreshold	= 1.5;
+		private long					dedupWindowMs		= OGN_CLIENT_DEFAULT_DEDUP_WINDOW_MS;
+		private int						publisherBufferSize	= OGN_CLIENT_DEFAULT_PUBLISHER_BUFFER_SIZE;
+
+		/**
+		 * @param builder
+		 *            builder of the clients of the shards (server, ports, descriptor providers..)
+		 */
+		public Builder clientBuilder(AprsOgnClient.Builder builder) {
+			this.clientBuilder = builder;
+			return this;
+		}
+
+		/**
+		 * @param count
+		 *            number of shards (connections)
+		 */
+		public Builder shards(int count) {
+			this.shards = count;
+			return this;
+		}
+
+		/**
+		 * area covered by default, when connecting without an area filter
+		 */
+		public Builder area(double latN, double lonW, double latS, double lonE) {
+			this.latN = latN;
+			this.lonW = lonW;
+			this.latS = latS;
+			this.lonE = lonE;
+			return this;
+		}
+
+		/**
+		 * @param degrees
+		 *            longitude by which neighbouring shards overlap
+		 */
+		public Builder overlap(double degrees) {
+			this.overlap = degrees;
+			return this;
+		}
+
+		/**
+		 * @param intervalMs
+		 *            interval of the rebalancing, 0 to disable it
+		 * @param threshold
+		 *            ratio of the highest to the lowest shard rate above which the shards are rebalanced
+		 */
+		public Builder rebalance(long intervalMs, double threshold) {
+			this.rebalanceIntervalMs = intervalMs;
+			this.rebalanceThreshold = threshold;
+			return this;
+		}
+
+		/**
+		 * @param windowMs
+		 *            min time a packet is remembered to detect the duplicates
+		 */
+		public Builder dedupWindow(long windowMs) {
+			this.dedupWindowMs = windowMs;
+			return this;
+		}
+
+		/**
+		 * @param size
+		 *            number of beacons buffered for each subscriber of the beacon publishers
+		 */
+		public Builder publisherBufferSize(int size) {
+			this.publisherBufferSize = size;
+			return this;
+		}
+
+		public ShardedAprsClient build() {
+			if (clientBuilder == null)
+				throw new IllegalStateException("client builder not set");
+			if (shards < 1)
+				throw new IllegalStateException("at least one shard is needed");
+			return new ShardedAprsClient(this);
+		}
+	}
+
+	private ShardedAprsClient(Builder builder) {
+		this.defaultLatN = builder.latN;
+		this.defaultLonW = builder.lonW;
+		this.defaultLatS = builder.latS;
+		this.defaultLonE = builder.lonE;
+		this.overlap = builder.overlap;
+		this.rebalanceIntervalMs = builder.rebalanceIntervalMs;
+		this.rebalanceThreshold = builder.rebalanceThreshold;
+		this.duplicateFilter = new DuplicateFilter(builder.dedupWindowMs);
+		this.aircraftBeaconPublisher = new BeaconPublisher<>(builder.publisherBufferSize);
+		this.receiverBeaconPublisher = new BeaconPublisher<>(builder.publisherBufferSize);
+
+		shards = new AprsOgnClient[builder.shards];
+		shardBeacons = new LongAdder[builder.shards];
+		lastShardBeacons = new long[builder.shards];
+		for (int i = 0; i < shards.length; i++) {
+			final LongAdder counter = new LongAdder();
+			shardBeacons[i] = counter;
+			shards[i] = builder.clientBuilder.build();
+			shards[i].subscribeToAircraftBeacons((beacon, descriptor) -> {
+				counter.increment();
+				onAircraftBeacon(beacon, descriptor);
+			});
+			shards[i].subscribeToReceiverBeacons(beacon -> {
+				counter.increment();
+				onReceiverBeacon(beacon);
+			});
+		}
+
+		this.metrics = new OgnClientMetrics(() -> {
+			int depth = 0;
+			for (final AprsOgnClient shard : shards) {
+				depth += shard.getMetrics().getQueueDepth();
+			}
+			return depth;
+		});
+		this.listeners = new ListenerRegistry(metrics);
+
+		setArea(defaultLatN, defaultLonW, defaultLatS, defaultLonE);
+	}
+
+	private boolean isDuplicate(OgnBeacon beacon) {
+		if (beacon.getRawPacket() == null || !duplicateFilter.isDuplicate(beacon.getRawPacket(),
+				System.currentTimeMillis()))
+			return false;
+
+		duplicates.increment();
+		metrics.lineIgnored();
+		return true;
+	}
+
+	private void onAircraftBeacon(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		if (isDuplicate(beacon))
+			return;
+
+		synchronized (dispatchLock) {
+			metrics.aircraftBeacon();
+			try {
+				if (aircraftBeaconPublisher.hasSubscribers())
+					aircraftBeaconPublisher.publish(beacon);
+			} catch (final InterruptedException e) {
+				LOG.debug("interrupted while waiting for the subscribers' demand");
+				// Restore interrupted state...
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			listeners.forEachAircraftListener(beacon, listener -> listener.onUpdate(beacon, descriptor));
+		}
+	}
+
+	private void onReceiverBeacon(ReceiverBeacon beacon) {
+		if (isDuplicate(beacon))
+			return;
+
+		synchronized (dispatchLock) {
+			metrics.receiverBeacon();
+			try {
+				if (receiverBeaconPublisher.hasSubscribers())
+					receiverBeaconPublisher.publish(beacon);
+			} catch (final InterruptedException e) {
+				LOG.debug("interrupted while waiting for the subscribers' demand");
+				// Restore interrupted state...
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			for (final ReceiverBeaconListener listener : listeners.receiverListeners()) {
+				listener.onUpdate(beacon);
+			}
+		}
+	}
+
+	private void setArea(double latN, double lonW, double latS, double lonE) {
+		this.latN = latN;
+		this.latS = latS;
+
+		final double[] result = new double[shards.length + 1];
+		for (int i = 0; i <= shards.length; i++) {
+			result[i] = lonW + (lonE - lonW) * i / shards.length;
+		}
+		this.boundaries = result;
+	}
+
+	/**
+	 * @param filter
+	 *            area filter: a/latN/lonW/latS/lonE
+	 */
+	private void setArea(String filter) {
+		if (filter == null) {
+			setArea(defaultLatN, defaultLonW, defaultLatS, defaultLonE);
+			return;
+		}
+
+		final String[] parts = filter.trim().split("/");
+		if (parts.length != 5 || !"a".equals(parts[0]))
+			throw new IllegalArgumentException("a sharded client supports area filters only (a/latN/lonW/latS/lonE): "
+					+ filter);
+		try {
+			setArea(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]),
+					Double.parseDouble(parts[4]));
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("invalid area filter: " + filter, e);
+		}
+	}
+
+	private String shardFilter(int shard) {
+		final double[] b = boundaries;
+		return shardFilter(shard, b, b);
+	}
+
+	/**
+	 * @return area filter covering the strip of the shard for both boundaries
+	 */
+	private String shardFilter(int shard, double[] from, double[] to) {
+		final double west = Math.min(from[shard], to[shard]) - (shard == 0 ? 0 : overlap);
+		final double east = Math.max(from[shard + 1], to[shard + 1]) + (shard == shards.length - 1 ? 0 : overlap);
+		return String.format(Locale.ROOT, "a/%.4f/%.4f/%.4f/%.4f", latN, west, latS, east);
+	}
+
+	/**
+	 * @param boundaries
+	 *            current longitudes of the shard boundaries, from west to east
+	 * @param rates
+	 *            beacon rates measured for every shard
+	 * @return new boundaries, such that the shards get (about) the same rate, assuming an even distribution of the
+	 *         traffic within every shard
+	 */
+	static double[] balance(double[] boundaries, double[] rates) {
+		final int n = rates.length;
+
+		double total = 0;
+		for (final double rate : rates) {
+			total += rate;
+		}
+		if (total <= 0)
+			return boundaries.clone();
+
+		final double floor = total * MIN_RATE_SHARE / n;
+		final double[] weights = new double[n];
+		double weightsTotal = 0;
+		for (int i = 0; i < n; i++) {
+			weights[i] = rates[i] + floor;
+			weightsTotal += weights[i];
+		}
+
+		final double[] result = new double[n + 1];
+		result[0] = boundaries[0];
+		result[n] = boundaries[n];
+
+		int shard = 0;
+		double before = 0;
+		for (int k = 1; k < n; k++) {
+			final double target = weightsTotal * k / n;
+			while (shard < n - 1 && before + weights[shard] < target) {
+				before += weights[shard];
+				shard++;
+			}
+			final double fraction = Math.min(1, (target - before) / weights[shard]);
+			result[k] = boundaries[shard] + fraction * (boundaries[shard + 1] - boundaries[shard]);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the ratio of the highest to the lowest rate exceeds the threshold
+	 */
+	static boolean isImbalanced(double[] rates, double threshold) {
+		double min = Double.MAX_VALUE;
+		double max = 0;
+		for (final double rate : rates) {
+			min = Math.min(min, rate);
+			max = Math.max(max, rate);
+		}
+		return max > 0 && max > min * threshold;
+	}
+
+	synchronized void rebalance() {
+		final double[] rates = new double[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			final long count = shardBeacons[i].sum();
+			rates[i] = count - lastShardBeacons[i];
+			lastShardBeacons[i] = count;
+		}
+
+		if (!isImbalanced(rates, rebalanceThreshold))
+			return;
+
+		final double[] previous = boundaries;
+		final double[] next = balance(previous, rates);
+		boundaries = next;
+		LOG.info("rebalancing shards, rates: {} new boundaries: {}", Arrays.toString(rates), Arrays.toString(next));
+
+		// narrowing a shard right away would lose the beacons of the strip it hands over until the neighbour's
+		// server applies the widened filter
+		for (int i = 0; i < shards.length; i++) {
+			shards[i].updateFilter(shardFilter(i, previous, next));
+		}
+		if (rebalancer != null)
+			rebalancer.schedule(() -> settle(next), rebalanceIntervalMs / 2, TimeUnit.MILLISECONDS);
+		else
+			settle(next);
+	}
+
+	/**
+	 * narrows the shards to their new strips, unless the boundaries have changed again in the meantime
+	 */
+	synchronized void settle(double[] settled) {
+		if (boundaries != settled)
+			return;
+
+		for (int i = 0; i < shards.length; i++) {
+			shards[i].updateFilter(shardFilter(i));
+			// the rates measured while the shards overlapped more are not representative
+			lastShardBeacons[i] = shardBeacons[i].sum();
+		}
+	}
+
+	@Override
+	public void subscribeToAircraftBeacons(AircraftBeaconListener listener) {
+		listeners.subscribeToAircraftBeacons(listener);
+	}
+
+	@Override
+	public void subscribeToAircraftBeacons(AircraftBeaconListener listener, AircraftBeaconSelector selector) {
+		listeners.subscribeToAircraftBeacons(listener, selector);
+	}
+
+	@Override
+	public void unsubscribeFromAircraftBeacons(AircraftBeaconListener listener) {
+		listeners.unsubscribeFromAircraftBeacons(listener);
+	}
+
+	@Override
+	public Publisher<AircraftBeacon> getAircraftBeaconPublisher() {
+		return aircraftBeaconPublisher;
+	}
+
+	@Override
+	public Publisher<ReceiverBeacon> getReceiverBeaconPublisher() {
+		return receiverBeaconPublisher;
+	}
+
+	@Override
+	public void subscribeToReceiverBeacons(ReceiverBeaconListener listener) {
+		listeners.subscribeToReceiverBeacons(listener);
+	}
+
+	@Override
+	public void unsubscribeFromReceiverBeacons(ReceiverBeaconListener listener) {
+		listeners.unsubscribeFromReceiverBeacons(listener);
+	}
+
+	@Override
+	public void connect() {
+		connect(null);
+	}
+
+	/**
+	 * @param filter
+	 *            area to be covered (a/latN/lonW/latS/lonE), if null the area the client has been built with is used
+	 * @throws IllegalArgumentException
+	 *             if the filter is not an area filter
+	 */
+	@Override
+	public synchronized void connect(String filter) {
+		if (rebalancer != null) {
+			LOG.warn("client is currently connected and running. stop it first!");
+			return;
+		}
+
+		setArea(filter);
+		for (int i = 0; i < shards.length; i++) {
+			lastShardBeacons[i] = shardBeacons[i].sum();
+			shards[i].connect(shardFilter(i));
+		}
+
+		rebalancer = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread t = new Thread(r, "ogn-shard-rebalancer");
+			t.setDaemon(true);
+			return t;
+		});
+		if (rebalanceIntervalMs > 0)
+			rebalanceFuture = rebalancer.scheduleAtFixedRate(this::rebalance, rebalanceIntervalMs,
+					rebalanceIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * splits the new area evenly between the shards, without re-connecting
+	 * 
+	 * @param filter
+	 *            area to be covered (a/latN/lonW/latS/lonE), if null the area the client has been built with is used
+	 */
+	@Override
+	public synchronized void updateFilter(String filter) {
+		setArea(filter);
+		for (int i = 0; i < shards.length; i++) {
+			shards[i].updateFilter(shardFilter(i));
+		}
+	}
+
+	private void stopRebalancer() {
+		if (rebalancer != null) {
+			if (rebalanceFuture != null)
+				rebalanceFuture.cancel(false);
+			rebalancer.shutdownNow();
+			rebalancer = null;
+			rebalanceFuture = null;
+		}
+	}
+
+	@Override
+	public synchronized void disconnect() {
+		stopRebalancer();
+		for (final AprsOgnClient shard : shards) {
+			shard.disconnect();
+		}
+	}
+
+	@Override
+	public synchronized DrainResult disconnect(long timeout, TimeUnit unit) {
+		stopRebalancer();
+
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		long processed = 0;
+		long discarded = 0;
+		boolean completed = true;
+		for (final AprsOgnClient shard : shards) {
+			final DrainResult result =
+					shard.disconnect(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			processed += result.getProcessedLines();
+			discarded += result.getDiscardedLines();
+			completed &= result.isCompleted();
+		}
+		return new DrainResult(processed, discarded, completed);
+	}
+
+	/**
+	 * @return metrics of the merged stream (beacons after deduplication, duplicates counted as ignored lines,
+	 *         dispatch times)
+	 */
+	@Override
+	public OgnClientMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return metrics of every shard's connection
+	 */
+	public List<OgnClientMetrics> getShardMetrics() {
+		final List<OgnClientMetrics> result = new ArrayList<>(shards.length);
+		for (final AprsOgnClient shard : shards) {
+			result.add(shard.getMetrics());
+		}
+		return result;
+	}
+
+	/**
+	 * @return longitudes of the shard boundaries, from west to east
+	 */
+	public double[] getShardBoundaries() {
+		return boundaries.clone();
+	}
+
+	/**
+	 * @return number of beacons dropped because already received by another shard
+	 */
+	public long getDuplicates() {
+		return duplicates.sum();
+	}
+}
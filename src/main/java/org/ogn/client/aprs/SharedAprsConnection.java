@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.ogn.client.OgnClientConstants.OGN_CLIENT_DEFAULT_PUBLISHER_BUFFER_SIZE;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.DrainResult;
+import org.ogn.client.OgnClient;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One upstream APRS connection shared by many lightweight, logical clients. The APRS lines are read and parsed once
+ * (and the aircraft descriptors looked up once) by the upstream client, every beacon is then handed over to the
+ * connected logical clients whose filter it matches. The filters of the logical clients are applied locally (see
+ * {@link AprsFilter}), the upstream connection uses the filter the upstream client was built with, if any.
+ * <p>
+ * The upstream connection is reference-counted: it is opened when the first logical client connects and closed when
+ * the last one disconnects.
+ */
+public class SharedAprsConnection {
+
+	private static final Logger							LOG		= LoggerFactory.getLogger(SharedAprsConnection.class);
+
+	private final AprsOgnClient							upstream;
+	private final int									publisherBufferSize;
+
+	private final CopyOnWriteArrayList<SharedOgnClient>	clients	= new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param upstream
+	 *            the client to be shared. It must not be used directly any more.
+	 */
+	public SharedAprsConnection(AprsOgnClient upstream) {
+		this(upstream, OGN_CLIENT_DEFAULT_PUBLISHER_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param upstream
+	 *            the client to be shared. It must not be used directly any more.
+	 * @param publisherBufferSize
+	 *            number of beacons buffered for each subscriber of the logical clients' publishers
+	 */
+	public SharedAprsConnection(AprsOgnClient upstream, int publisherBufferSize) {
+		this.upstream = upstream;
+		this.publisherBufferSize = publisherBufferSize;
+
+		// the beacons are parsed once, then fanned out to the logical clients, whose listeners are the ones measured
+		upstream.subscribeRelay((beacon, descriptor) -> {
+			for (final SharedOgnClient client : clients) {
+				client.onAircraftBeacon(beacon, descriptor);
+			}
+		}, beacon -> {
+			for (final SharedOgnClient client : clients) {
+				client.onReceiverBeacon(beacon);
+			}
+		});
+	}
+
+	/**
+	 * @return a new logical client, initially disconnected
+	 */
+	public OgnClient createClient() {
+		return new SharedOgnClient(this, publisherBufferSize);
+	}
+
+	/**
+	 * @return number of logical clients currently connected
+	 */
+	public int getConnectedClients() {
+		return clients.size();
+	}
+
+	synchronized void attach(SharedOgnClient client) {
+		if (clients.addIfAbsent(client) && clients.size() == 1) {
+			LOG.info("first logical client connected, opening the upstream connection");
+			upstream.connect();
+		}
+	}
+
+	synchronized void detach(SharedOgnClient client) {
+		if (clients.remove(client) && clients.isEmpty()) {
+			LOG.info("last logical client disconnected, closing the upstream connection");
+			upstream.disconnect();
+		}
+	}
+
+	synchronized DrainResult detach(SharedOgnClient client, long timeout, TimeUnit unit) {
+		if (!clients.contains(client))
+			return new DrainResult(0, 0, true);
+
+		if (clients.size() > 1) {
+			clients.remove(client);
+			return new DrainResult(0, 0, true);
+		}
+
+		LOG.info("last logical client disconnected, draining and closing the upstream connection");
+		try {
+			// the leaving client keeps being notified while the upstream drains
+			return upstream.disconnect(timeout, unit);
+		} finally {
+			clients.remove(client);
+		}
+	}
+
+	OgnClientMetrics getMetrics() {
+		return upstream.getMetrics();
+	}
+}
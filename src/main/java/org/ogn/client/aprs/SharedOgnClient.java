@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.client.DrainResult;
+import org.ogn.client.OgnClient;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.client.reactive.BeaconPublisher;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logical client of a {@link SharedAprsConnection}. It has no connection and no threads of its own: it is notified by
+ * the shared connection and applies its filter locally.
+ */
+class SharedOgnClient implements OgnClient {
+
+	private static final Logger							LOG					=
+			LoggerFactory.getLogger(SharedOgnClient.class);
+
+	private final SharedAprsConnection					connection;
+
+	// measured with the metrics of the shared connection
+	private final ListenerRegistry						listeners;
+
+	private final BeaconPublisher<AircraftBeacon>		aircraftBeaconPublisher;
+	private final BeaconPublisher<ReceiverBeacon>		receiverBeaconPublisher;
+
+	private volatile AprsFilter							filter				= AprsFilter.parse(null);
+
+	SharedOgnClient(SharedAprsConnection connection, int publisherBufferSize) {
+		this.connection = connection;
+		this.listeners = new ListenerRegistry(connection.getMetrics());
+		this.aircraftBeaconPublisher = new BeaconPublisher<>(publisherBufferSize);
+		this.receiverBeaconPublisher = new BeaconPublisher<>(publisherBufferSize);
+	}
+
+	void onAircraftBeacon(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		if (!filter.test(beacon))
+			return;
+
+		try {
+			if (aircraftBeaconPublisher.hasSubscribers())
+				aircraftBeaconPublisher.publish(beacon);
+		} catch (final InterruptedException e) {
+			LOG.debug("interrupted while waiting for the subscribers' demand");
+			// Restore interrupted state...
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		listeners.forEachAircraftListener(beacon, listener -> listener.onUpdate(beacon, descriptor));
+	}
+
+	void onReceiverBeacon(ReceiverBeacon beacon) {
+		if (!filter.test(beacon))
+			return;
+
+		try {
+			if (receiverBeaconPublisher.hasSubscribers())
+				receiverBeaconPublisher.publish(beacon);
+		} catch (final InterruptedException e) {
+			LOG.debug("interrupted while waiting for the subscribers' demand");
+			// Restore interrupted state...
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		for (final ReceiverBeaconListener listener : listeners.receiverListeners()) {
+			listener.onUpdate(beacon);
+		}
+	}
+
+	@Override
+	public void subscribeToAircraftBeacons(AircraftBeaconListener listener) {
+		listeners.subscribeToAircraftBeacons(listener);
+	}
+
+	@Override
+	public void subscribeToAircraftBeacons(AircraftBeaconListener listener, AircraftBeaconSelector selector) {
+		listeners.subscribeToAircraftBeacons(listener, selector);
+	}
+
+	@Override
+	public void unsubscribeFromAircraftBeacons(AircraftBeaconListener listener) {
+		listeners.unsubscribeFromAircraftBeacons(listener);
+	}
+
+	@Override
+	public Publisher<AircraftBeacon> getAircraftBeaconPublisher() {
+		return aircraftBeaconPublisher;
+	}
+
+	@Override
+	public Publisher<ReceiverBeacon> getReceiverBeaconPublisher() {
+		return receiverBeaconPublisher;
+	}
+
+	@Override
+	public void subscribeToReceiverBeacons(ReceiverBeaconListener listener) {
+		listeners.subscribeToReceiverBeacons(listener);
+	}
+
+	@Override
+	public void unsubscribeFromReceiverBeacons(ReceiverBeaconListener listener) {
+		listeners.unsubscribeFromReceiverBeacons(listener);
+	}
+
+	@Override
+	public void connect() {
+		connect(null);
+	}
+
+	/**
+	 * @param filter
+	 *            APRS filter, applied locally to the beacons of the shared connection. A filter with terms the client
+	 *            cannot evaluate (see {@link AprsFilter#isComplete()}) lets all the beacons through.
+	 */
+	@Override
+	public void connect(String filter) {
+		this.filter = AprsFilter.parseLocal(filter);
+		connection.attach(this);
+	}
+
+	/**
+	 * @param filter
+	 *            new APRS filter, applied locally as in {@link #connect(String)}
+	 */
+	@Override
+	public void updateFilter(String filter) {
+		this.filter = AprsFilter.parseLocal(filter);
+	}
+
+	@Override
+	public void disconnect() {
+		connection.detach(this);
+	}
+
+	/**
+	 * disconnects from the shared connection. Only the last client disconnecting actually waits for the pending lines
+	 * of the upstream connection to be processed.
+	 */
+	@Override
+	public DrainResult disconnect(long timeout, TimeUnit unit) {
+		return connection.detach(this, timeout, unit);
+	}
+
+	/**
+	 * @return metrics of the shared upstream connection
+	 */
+	@Override
+	public OgnClientMetrics getMetrics() {
+		return connection.getMetrics();
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Gives access to the virtual threads of JDK 21+ while the client itself is still built for Java 8. The API is looked
+ * up reflectively, once.
+ */
+final class VirtualThreads {
+
+	private static final Method	OF_VIRTUAL;
+	private static final Method	NAME;
+	private static final Method	FACTORY;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		try {
+			// the public Thread.Builder interface must be used: the builder implementations are not exported
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+		} catch (final ReflectiveOperationException e) {
+			// pre JDK 21 runtime
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+	}
+
+	private VirtualThreads() {
+
+	}
+
+	/**
+	 * @return true if the runtime supports virtual threads
+	 */
+	static boolean isSupported() {
+		if (OF_VIRTUAL == null)
+			return false;
+		try {
+			// on JDK 19/20 virtual threads are a preview feature, failing unless --enable-preview is given
+			OF_VIRTUAL.invoke(null);
+			return true;
+		} catch (final ReflectiveOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param prefix
+	 *            name prefix of the created threads, followed by a sequence number
+	 * @return factory of virtual threads
+	 * @throws UnsupportedOperationException
+	 *             if the runtime does not support virtual threads
+	 */
+	static ThreadFactory factory(String prefix) {
+		if (!isSupported())
+			throw new UnsupportedOperationException(
+					"virtual threads require JDK 21+, running on " + System.getProperty("java.version"));
+
+		try {
+			final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+			return (ThreadFactory) FACTORY.invoke(builder);
+		} catch (final ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("could not create a virtual thread factory", e);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.coverage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.ReceiverBeacon;
+
+/**
+ * Collects the coverage statistics of every receiver: beacons heard, distinct aircraft, max range, SNR distribution
+ * and grid cells in which aircraft have been heard. The aircraft beacons are attributed to the receiver they have been
+ * received by; the receiver beacons provide the positions the ranges are measured from.
+ * <p>
+ * The statistics are collected per time window (aligned on the beacon timestamps). When a beacon of the next window
+ * arrives, a new window is started; the previous one is rolled up into immutable {@link ReceiverStats} snapshots only
+ * one window later, so that the threads which picked it up just before have finished counting in it. The last windows
+ * are kept as history. The beacons timestamped more than a window ahead of the local clock are not counted, they would
+ * move the windows forward. All the counters are striped ({@link LongAdder}) and the per-receiver state lives in
+ * concurrent maps, so the aggregator can be notified from several threads and queried at any time without blocking the
+ * notifying threads. The only lock is taken once per window, to roll it up.
+ */
+public class ReceiverCoverageAggregator implements AircraftBeaconListener, ReceiverBeaconListener {
+
+	private static final double						EARTH_RADIUS_KM	= 6371.0;
+
+	// SNR buckets of ReceiverStats.SNR_BUCKET_DB, the last one collects everything above 62 dB
+	static final int								SNR_BUCKETS		= 32;
+
+	private final long								windowMs;
+	private final int								historySize;
+	private final double							cellSize;
+
+	private final ConcurrentMap<String, double[]>	positions		= new ConcurrentHashMap<>();
+	private volatile Window							current;
+	// the window before the current one, still counting the beacons of the threads which picked it up before the roll
+	private Window									previous;
+	// the older windows, oldest first
+	private final Deque<Map<String, ReceiverStats>>	history			= new ArrayDeque<>();
+	private final LongAdder							futureBeacons	= new LongAdder();
+
+	private static final class Counters {
+		final LongAdder			beacons		= new LongAdder();
+		final LongAdder[]		snr			= new LongAdder[SNR_BUCKETS];
+		final DoubleAdder		snrSum		= new DoubleAdder();
+		// in meters
+		final LongAccumulator	maxRange	= new LongAccumulator(Long::max, 0);
+		final Set<String>		aircraft	= ConcurrentHashMap.newKeySet();
+		final Set<Long>			cells		= ConcurrentHashMap.newKeySet();
+
+		Counters() {
+			for (int i = 0; i < SNR_BUCKETS; i++) {
+				snr[i] = new LongAdder();
+			}
+		}
+	}
+
+	private static final class Window {
+		final long								start;
+		final ConcurrentMap<String, Counters>	receivers	= new ConcurrentHashMap<>();
+
+		Window(long start) {
+			this.start = start;
+		}
+	}
+
+	private ReceiverCoverageAggregator(Builder builder) {
+		this.windowMs = builder.windowMs;
+		this.historySize = builder.historySize;
+		this.cellSize = builder.cellSize;
+	}
+
+	public static class Builder {
+		private long	windowMs	= 60 * 60 * 1000;
+		private int		historySize	= 24;
+		private double	cellSize	= 0.05;
+
+		/**
+		 * @param windowMs
+		 *            duration of a window
+		 * @param historySize
+		 *            number of past windows kept
+		 */
+		public Builder window(long windowMs, int historySize) {
+			this.windowMs = windowMs;
+			this.historySize = historySize;
+			return this;
+		}
+
+		/**
+		 * @param degrees
+		 *            size of the coverage cells
+		 */
+		public Builder cellSize(double degrees) {
+			this.cellSize = degrees;
+			return this;
+		}
+
+		public ReceiverCoverageAggregator build() {
+			if (windowMs <= 0)
+				throw new IllegalStateException("the window must be positive");
+			return new ReceiverCoverageAggregator(this);
+		}
+	}
+
+	@Override
+	public void onUpdate(ReceiverBeacon beacon) {
+		positions.put(beacon.getId(), new double[]{beacon.getLat(), beacon.getLon()});
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		add(beacon, System.currentTimeMillis());
+	}
+
+	void add(AircraftBeacon beacon, long nowMs) {
+		final String receiver = beacon.getReceiverName();
+		if (receiver == null)
+			return;
+
+		if (beacon.getTimestamp() > nowMs + windowMs) {
+			futureBeacons.increment();
+			return;
+		}
+
+		final Counters counters = window(beacon.getTimestamp()).receivers.computeIfAbsent(receiver,
+				r -> new Counters());
+		counters.beacons.increment();
+
+		final float snr = beacon.getSignalStrength();
+		counters.snrSum.add(snr);
+		counters.snr[Math.max(0, Math.min(SNR_BUCKETS - 1, (int) (snr / ReceiverStats.SNR_BUCKET_DB)))]
+				.increment();
+
+		counters.aircraft.add(beacon.getAddress());
+		final long row = (long) Math.floor(beacon.getLat() / cellSize);
+		final long col = (long) Math.floor(beacon.getLon() / cellSize);
+		counters.cells.add(row << 32 | col & 0xffffffffL);
+
+		final double[] position = positions.get(receiver);
+		if (position != null)
+			counters.maxRange.accumulate(
+					Math.round(distanceKm(position[0], position[1], beacon.getLat(), beacon.getLon()) * 1000));
+	}
+
+	/**
+	 * @return the window the given time belongs to, the beacons late for the previous windows are counted in the
+	 *         current one
+	 */
+	private Window window(long timestamp) {
+		final Window window = current;
+		if (window != null && timestamp < window.start + windowMs)
+			return window;
+		return roll(timestamp);
+	}
+
+	private synchronized Window roll(long timestamp) {
+		final Window window = current;
+		if (window != null && timestamp < window.start + windowMs)
+			return window;
+
+		if (previous != null) {
+			history.addLast(snapshot(previous));
+			// the previous window is part of the history as well
+			while (!history.isEmpty() && history.size() >= historySize) {
+				history.removeFirst();
+			}
+		}
+		previous = window;
+		final Window next = new Window(timestamp - Math.floorMod(timestamp, windowMs));
+		current = next;
+		return next;
+	}
+
+	private Map<String, ReceiverStats> snapshot(Window window) {
+		final Map<String, ReceiverStats> result = new HashMap<>();
+		window.receivers.forEach((receiver, counters) -> result.put(receiver, snapshot(window, receiver, counters)));
+		return Collections.unmodifiableMap(result);
+	}
+
+	private ReceiverStats snapshot(Window window, String receiver, Counters counters) {
+		final double[] position = positions.get(receiver);
+		final long[] snr = new long[SNR_BUCKETS];
+		for (int i = 0; i < SNR_BUCKETS; i++) {
+			snr[i] = counters.snr[i].sum();
+		}
+		return new ReceiverStats(receiver, window.start, window.start + windowMs,
+				position == null ? Double.NaN : position[0], position == null ? Double.NaN : position[1],
+				counters.beacons.sum(), counters.aircraft.size(), counters.cells.size(),
+				counters.maxRange.get() / 1000.0, counters.snrSum.sum(), snr);
+	}
+
+	/**
+	 * @return the statistics of the receivers in the current window
+	 */
+	public Map<String, ReceiverStats> getReceivers() {
+		final Window window = current;
+		return window == null ? Collections.emptyMap() : snapshot(window);
+	}
+
+	/**
+	 * @return the statistics of a receiver in the current window, null if it has not heard any aircraft
+	 */
+	public ReceiverStats getReceiverStats(String receiver) {
+		final Window window = current;
+		final Counters counters = window == null ? null : window.receivers.get(receiver);
+		return counters == null ? null : snapshot(window, receiver, counters);
+	}
+
+	/**
+	 * @return the statistics of a receiver in the past windows, oldest first (windows in which the receiver has not
+	 *         heard any aircraft are skipped)
+	 */
+	public synchronized List<ReceiverStats> getHistory(String receiver) {
+		final List<ReceiverStats> result = new ArrayList<>();
+		for (final Map<String, ReceiverStats> window : history) {
+			final ReceiverStats stats = window.get(receiver);
+			if (stats != null)
+				result.add(stats);
+		}
+		final Counters counters = previous == null || historySize == 0 ? null : previous.receivers.get(receiver);
+		if (counters != null)
+			result.add(snapshot(previous, receiver, counters));
+		return result;
+	}
+
+	/**
+	 * @return number of beacons not counted because timestamped more than a window ahead of the local clock
+	 */
+	public long getFutureBeacons() {
+		return futureBeacons.sum();
+	}
+
+	/**
+	 * great-circle (haversine) distance
+	 */
+	static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+		final double dLat = Math.toRadians(lat2 - lat1);
+		final double dLon = Math.toRadians(lon2 - lon1);
+		final double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1))
+				* Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.coverage;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of a receiver over a time window, as a snapshot which is not updated anymore
+ */
+public class ReceiverStats {
+
+	/**
+	 * width of the buckets of the SNR histogram
+	 */
+	public static final float	SNR_BUCKET_DB	= 2;
+
+	private final String		receiver;
+	private final long			windowStart;
+	private final long			windowEnd;
+	private final double		lat;
+	private final double		lon;
+	private final long			beacons;
+	private final int			uniqueAircraft;
+	private final int			coverageCells;
+	private final double		maxRangeKm;
+	private final double		snrSum;
+	private final long[]		snrHistogram;
+
+	ReceiverStats(String receiver, long windowStart, long windowEnd, double lat, double lon, long beacons,
+			int uniqueAircraft, int coverageCells, double maxRangeKm, double snrSum, long[] snrHistogram) {
+		this.receiver = receiver;
+		this.windowStart = windowStart;
+		this.windowEnd = windowEnd;
+		this.lat = lat;
+		this.lon = lon;
+		this.beacons = beacons;
+		this.uniqueAircraft = uniqueAircraft;
+		this.coverageCells = coverageCells;
+		this.maxRangeKm = maxRangeKm;
+		this.snrSum = snrSum;
+		this.snrHistogram = snrHistogram;
+	}
+
+	public String getReceiver() {
+		return receiver;
+	}
+
+	/**
+	 * @return start of the window (inclusive, ms since the epoch)
+	 */
+	public long getWindowStart() {
+		return windowStart;
+	}
+
+	/**
+	 * @return end of the window (exclusive, ms since the epoch)
+	 */
+	public long getWindowEnd() {
+		return windowEnd;
+	}
+
+	/**
+	 * @return latitude of the receiver, NaN if no beacon of the receiver has been seen yet
+	 */
+	public double getLat() {
+		return lat;
+	}
+
+	/**
+	 * @return longitude of the receiver, NaN if no beacon of the receiver has been seen yet
+	 */
+	public double getLon() {
+		return lon;
+	}
+
+	/**
+	 * @return number of aircraft beacons heard
+	 */
+	public long getBeacons() {
+		return beacons;
+	}
+
+	/**
+	 * @return number of distinct aircraft heard
+	 */
+	public int getUniqueAircraft() {
+		return uniqueAircraft;
+	}
+
+	/**
+	 * @return number of grid cells in which aircraft have been heard
+	 */
+	public int getCoverageCells() {
+		return coverageCells;
+	}
+
+	/**
+	 * @return distance of the farthest aircraft heard, 0 if the position of the receiver is not known
+	 */
+	public double getMaxRangeKm() {
+		return maxRangeKm;
+	}
+
+	public double getMeanSnr() {
+		return beacons == 0 ? 0 : snrSum / beacons;
+	}
+
+	/**
+	 * @return number of beacons per SNR bucket: bucket i counts the beacons between i * {@link #SNR_BUCKET_DB} and (i
+	 *         + 1) * {@link #SNR_BUCKET_DB} dB, the last one everything above
+	 */
+	public long[] getSnrHistogram() {
+		return snrHistogram.clone();
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return upper bound (dB) of the SNR bucket holding the given percentile
+	 */
+	public float getSnrPercentile(double percentile) {
+		final long rank = (long) Math.ceil(beacons * percentile / 100);
+		long count = 0;
+		for (int i = 0; i < snrHistogram.length; i++) {
+			count += snrHistogram[i];
+			if (count >= rank && count > 0)
+				return (i + 1) * SNR_BUCKET_DB;
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return "ReceiverStats [receiver=" + receiver + ", windowStart=" + windowStart + ", beacons=" + beacons
+				+ ", uniqueAircraft=" + uniqueAircraft + ", coverageCells=" + coverageCells + ", maxRangeKm="
+				+ maxRangeKm + ", snrHistogram=" + Arrays.toString(snrHistogram) + "]";
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.demo;
+
+import static java.lang.System.out;
+
+import org.ogn.client.OgnClientFactory;
+import org.ogn.client.relay.AprsRelayServer;
+
+/**
+ * A small demo program relaying the OGN feed to local APRS-IS clients, e.g. <code>telnet localhost 14580</code>
+ * followed by <code>user N0CALL pass -1 vers telnet 1.0 filter r/46.5/6.6/100</code>
+ */
+public class OgnDemoRelayServer {
+
+	public static void main(String[] args) throws Exception {
+		final AprsRelayServer relay =
+				new AprsRelayServer.Builder().upstream(OgnClientFactory.createClient()).port(14580).build();
+
+		relay.start();
+		out.println("relay listening on port " + relay.getPort());
+
+		Thread.sleep(Long.MAX_VALUE);
+	}
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.flight;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+
+/**
+ * A takeoff, launch or landing of an aircraft
+ */
+public class FlightEvent {
+
+	public enum Type {
+		TAKEOFF,
+		/**
+		 * the launch has been classified, some time after the takeoff
+		 */
+		LAUNCH,
+		LANDING
+	}
+
+	public enum LaunchType {
+		WINCH, AEROTOW, SELF_LAUNCH
+	}
+
+	private final Type				type;
+	private final AircraftBeacon	beacon;
+	private final long				timestamp;
+	private final float				groundAlt;
+	private final LaunchType		launchType;
+
+	FlightEvent(Type type, AircraftBeacon beacon, long timestamp, float groundAlt, LaunchType launchType) {
+		this.type = type;
+		this.beacon = beacon;
+		this.timestamp = timestamp;
+		this.groundAlt = groundAlt;
+		this.launchType = launchType;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getAddress() {
+		return beacon.getAddress();
+	}
+
+	/**
+	 * @return the beacon which confirmed the event
+	 */
+	public AircraftBeacon getBeacon() {
+		return beacon;
+	}
+
+	/**
+	 * @return time of the event: time of the first beacon at flying speed for a takeoff, of the first beacon at rest
+	 *         for a landing
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return altitude (m) of the airfield: the takeoff altitude for TAKEOFF and LAUNCH, the landing one for LANDING
+	 */
+	public float getGroundAlt() {
+		return groundAlt;
+	}
+
+	/**
+	 * @return probable launch type, for LAUNCH events only
+	 */
+	public LaunchType getLaunchType() {
+		return launchType;
+	}
+
+	@Override
+	public String toString() {
+		return type + (launchType == null ? "" : " " + launchType) + " " + getAddress() + "@" + timestamp;
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.flight;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.flight.FlightEvent.LaunchType;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.AircraftType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects the takeoffs and landings of the aircraft, and classifies the launches, from the stream of their beacons.
+ * Every aircraft has a small state machine (on ground / airborne), driven by the ground speed: a takeoff is confirmed
+ * by a few consecutive beacons above the takeoff speed, a landing by a few consecutive beacons below the landing
+ * speed. Nothing but the current state is kept, no history of positions.
+ * <p>
+ * The launch of a glider is classified once the launch window has elapsed (or at landing, for a short flight): a climb
+ * rate reaching the winch climb rate means a winch launch, anything else a probable aerotow. The other aircraft are
+ * self-launching.
+ * <p>
+ * The first beacon of an aircraft only sets its initial state, no event is sent for it. The beacons older than the
+ * latest one of the same aircraft are ignored, a {@link org.ogn.client.reorder.ReorderBuffer} in front of the detector
+ * puts them back in order. The detector expects to be notified by one thread at a time, as the clients do. To use
+ * several cores, see {@link ShardedFlightEventDetector}.
+ */
+public class FlightEventDetector implements AircraftBeaconListener {
+
+	private static final Logger				LOG				= LoggerFactory.getLogger(FlightEventDetector.class);
+
+	private static final byte				ON_GROUND		= 0;
+	private static final byte				AIRBORNE		= 1;
+
+	// the forgotten aircraft are looked for every that many beacons
+	private static final int				EXPIRY_INTERVAL	= 4096;
+
+	private final FlightEventListener		listener;
+	private final float						takeoffSpeedKmh;
+	private final float						landingSpeedKmh;
+	private final int						confirmBeacons;
+	private final long						launchWindowMs;
+	private final float						winchClimbRate;
+	private final long						stateTimeoutMs;
+
+	private final Map<String, State>		states			= new HashMap<>();
+	private int								beaconsToExpiry	= EXPIRY_INTERVAL;
+
+	private static final class State {
+		byte	status;
+		boolean	launchClassified;
+		// consecutive beacons confirming a change of status
+		int		pending;
+		long	pendingSince;
+		long	lastTimestamp;
+		long	takeoffTime;
+		float	groundAlt;
+		float	maxClimb;
+	}
+
+	private FlightEventDetector(Builder builder) {
+		this.listener = builder.listener;
+		this.takeoffSpeedKmh = builder.takeoffSpeedKmh;
+		this.landingSpeedKmh = builder.landingSpeedKmh;
+		this.confirmBeacons = builder.confirmBeacons;
+		this.launchWindowMs = builder.launchWindowMs;
+		this.winchClimbRate = builder.winchClimbRate;
+		this.stateTimeoutMs = builder.stateTimeoutMs;
+	}
+
+	public static class Builder {
+		private FlightEventListener	listener;
+		private float				takeoffSpeedKmh	= 50;
+		private float				landingSpeedKmh	= 20;
+		private int					confirmBeacons	= 2;
+		private long				launchWindowMs	= 60000;
+		private float				winchClimbRate	= 7;
+		private long				stateTimeoutMs	= 60 * 60 * 1000;
+
+		public Builder listener(FlightEventListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * @param takeoffKmh
+		 *            ground speed above which an aircraft is flying
+		 * @param landingKmh
+		 *            ground speed below which an aircraft has landed
+		 */
+		public Builder speeds(float takeoffKmh, float landingKmh) {
+			this.takeoffSpeedKmh = takeoffKmh;
+			this.landingSpeedKmh = landingKmh;
+			return this;
+		}
+
+		/**
+		 * @param beacons
+		 *            number of consecutive beacons needed to confirm a takeoff or a landing
+		 */
+		public Builder confirmBeacons(int beacons) {
+			this.confirmBeacons = beacons;
+			return this;
+		}
+
+		/**
+		 * @param windowMs
+		 *            time after the takeoff the launch is observed before being classified
+		 * @param winchClimbRate
+		 *            min climb rate (m/s) of a winch launch
+		 */
+		public Builder launch(long windowMs, float winchClimbRate) {
+			this.launchWindowMs = windowMs;
+			this.winchClimbRate = winchClimbRate;
+			return this;
+		}
+
+		/**
+		 * @param timeoutMs
+		 *            time after which an aircraft which has not been heard is forgotten
+		 */
+		public Builder stateTimeout(long timeoutMs) {
+			this.stateTimeoutMs = timeoutMs;
+			return this;
+		}
+
+		public FlightEventDetector build() {
+			if (listener == null)
+				throw new IllegalStateException("a listener is required");
+			return new FlightEventDetector(this);
+		}
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		final long timestamp = beacon.getTimestamp();
+		if (--beaconsToExpiry == 0) {
+			beaconsToExpiry = EXPIRY_INTERVAL;
+			states.values().removeIf(state -> timestamp - state.lastTimestamp > stateTimeoutMs);
+		}
+
+		final float speed = beacon.getGroundSpeed();
+		State state = states.get(beacon.getAddress());
+		if (state == null) {
+			state = new State();
+			state.status = speed >= takeoffSpeedKmh ? AIRBORNE : ON_GROUND;
+			// the launch has not been seen
+			state.launchClassified = true;
+			state.groundAlt = beacon.getAlt();
+			state.lastTimestamp = timestamp;
+			states.put(beacon.getAddress(), state);
+			return;
+		}
+
+		if (timestamp <= state.lastTimestamp)
+			return;
+		state.lastTimestamp = timestamp;
+
+		if (state.status == ON_GROUND) {
+			if (speed < takeoffSpeedKmh) {
+				state.pending = 0;
+				state.groundAlt = beacon.getAlt();
+			} else if (confirm(state, timestamp)) {
+				state.status = AIRBORNE;
+				state.takeoffTime = state.pendingSince;
+				state.maxClimb = beacon.getClimbRate();
+				state.launchClassified = false;
+				emit(new FlightEvent(FlightEvent.Type.TAKEOFF, beacon, state.takeoffTime, state.groundAlt, null));
+			}
+			return;
+		}
+
+		if (!state.launchClassified) {
+			state.maxClimb = Math.max(state.maxClimb, beacon.getClimbRate());
+			if (timestamp - state.takeoffTime >= launchWindowMs)
+				classifyLaunch(state, beacon);
+		}
+
+		if (speed >= landingSpeedKmh) {
+			state.pending = 0;
+		} else if (confirm(state, timestamp)) {
+			if (!state.launchClassified)
+				classifyLaunch(state, beacon);
+			state.status = ON_GROUND;
+			state.groundAlt = beacon.getAlt();
+			emit(new FlightEvent(FlightEvent.Type.LANDING, beacon, state.pendingSince, state.groundAlt, null));
+		}
+	}
+
+	/**
+	 * @return true if the beacon confirms the pending change of status
+	 */
+	private boolean confirm(State state, long timestamp) {
+		if (state.pending++ == 0)
+			state.pendingSince = timestamp;
+		if (state.pending < confirmBeacons)
+			return false;
+		state.pending = 0;
+		return true;
+	}
+
+	private void classifyLaunch(State state, AircraftBeacon beacon) {
+		state.launchClassified = true;
+		final LaunchType type;
+		if (beacon.getAircraftType() == AircraftType.GLIDER)
+			type = state.maxClimb >= winchClimbRate ? LaunchType.WINCH : LaunchType.AEROTOW;
+		else
+			type = LaunchType.SELF_LAUNCH;
+		emit(new FlightEvent(FlightEvent.Type.LAUNCH, beacon, state.takeoffTime, state.groundAlt, type));
+	}
+
+	private void emit(FlightEvent event) {
+		try {
+			listener.onEvent(event);
+		} catch (final Exception e) {
+			LOG.warn("exception caught while notifying the listener", e);
+		}
+	}
+
+	/**
+	 * @return number of aircraft whose state is known
+	 */
+	public int getTrackedAircraft() {
+		return states.size();
+	}
+}
@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.flight;
+
+/**
+ * Interface that needs to be implemented by all entities receiving the events of a {@link FlightEventDetector}
+ */
+public interface FlightEventListener {
+	/**
+	 * @param event
+	 *            takeoff, launch or landing
+	 */
+	void onEvent(final FlightEvent event);
+}
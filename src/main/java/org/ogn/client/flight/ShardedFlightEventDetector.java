@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.flight;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spreads the flight-event detection over several threads. The beacons are routed by aircraft address, so all the
+ * beacons of an aircraft are processed in order by the same {@link FlightEventDetector}, and the shards share no state.
+ * The caller is blocked when the queue of a shard is full.
+ * <p>
+ * The listener is notified by the threads of the shards and must be thread-safe. The events of one aircraft are still
+ * sent in order.
+ */
+public class ShardedFlightEventDetector implements AircraftBeaconListener, AutoCloseable {
+
+	private static final Logger						LOG						= LoggerFactory
+			.getLogger(ShardedFlightEventDetector.class);
+
+	public static final int							DEFAULT_QUEUE_CAPACITY	= 4096;
+
+	private static final Update						END						= new Update(null, null);
+
+	private final BlockingQueue<Update>[]			queues;
+	private final Thread[]							workers;
+
+	private static final class Update {
+		final AircraftBeacon				beacon;
+		final Optional<AircraftDescriptor>	descriptor;
+
+		Update(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+			this.beacon = beacon;
+			this.descriptor = descriptor;
+		}
+	}
+
+	public ShardedFlightEventDetector(int shards, FlightEventDetector.Builder builder) {
+		this(shards, builder, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param shards
+	 *            number of threads
+	 * @param builder
+	 *            builder of the detector of each shard
+	 * @param queueCapacity
+	 *            number of beacons waiting for each shard
+	 */
+	@SuppressWarnings("unchecked")
+	public ShardedFlightEventDetector(int shards, FlightEventDetector.Builder builder, int queueCapacity) {
+		if (shards < 1)
+			throw new IllegalArgumentException("at least one shard is required");
+
+		queues = new BlockingQueue[shards];
+		workers = new Thread[shards];
+		for (int i = 0; i < shards; i++) {
+			final BlockingQueue<Update> queue = new ArrayBlockingQueue<>(queueCapacity);
+			final FlightEventDetector detector = builder.build();
+			queues[i] = queue;
+			workers[i] = new Thread(() -> run(queue, detector), "ogn-flight-events-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	private static void run(BlockingQueue<Update> queue, FlightEventDetector detector) {
+		try {
+			for (Update update = queue.take(); update != END; update = queue.take()) {
+				detector.onUpdate(update.beacon, update.descriptor);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		final int shard = (beacon.getAddress().hashCode() & 0x7fffffff) % queues.length;
+		try {
+			queues[shard].put(new Update(beacon, descriptor));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * processes the beacons already queued, then stops the threads
+	 */
+	@Override
+	public void close() {
+		try {
+			for (final BlockingQueue<Update> queue : queues)
+				queue.put(END);
+			for (final Thread worker : workers)
+				worker.join();
+		} catch (final InterruptedException e) {
+			LOG.warn("interrupted while stopping the shards");
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.geofence;
+
+import java.util.Arrays;
+
+/**
+ * A named polygon (airspace, airfield, turnpoint..), optionally limited to an altitude band. The edges are straight
+ * lines in the lat/lon plane, which is accurate enough for fences up to a few hundred km. Fences crossing the
+ * anti-meridian are not supported.
+ */
+public final class Geofence {
+
+	private static final double	KM_PER_DEG_LAT	= 111.32;
+
+	private final String		id;
+	private final double[]		lats;
+	private final double[]		lons;
+	private final float			minAlt;
+	private final float			maxAlt;
+
+	private final double		minLat;
+	private final double		maxLat;
+	private final double		minLon;
+	private final double		maxLon;
+
+	/**
+	 * @param id
+	 *            unique id of the fence
+	 * @param lats
+	 *            latitudes of the vertices (deg)
+	 * @param lons
+	 *            longitudes of the vertices (deg)
+	 */
+	public Geofence(String id, double[] lats, double[] lons) {
+		this(id, lats, lons, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * @param minAlt
+	 *            floor of the fence (m), inclusive
+	 * @param maxAlt
+	 *            ceiling of the fence (m), inclusive
+	 */
+	public Geofence(String id, double[] lats, double[] lons, float minAlt, float maxAlt) {
+		if (lats.length != lons.length || lats.length < 3)
+			throw new IllegalArgumentException("a polygon needs at least 3 vertices: " + id);
+		this.id = id;
+		this.lats = lats.clone();
+		this.lons = lons.clone();
+		this.minAlt = minAlt;
+		this.maxAlt = maxAlt;
+
+		final double[] sortedLats = lats.clone();
+		final double[] sortedLons = lons.clone();
+		Arrays.sort(sortedLats);
+		Arrays.sort(sortedLons);
+		this.minLat = sortedLats[0];
+		this.maxLat = sortedLats[sortedLats.length - 1];
+		this.minLon = sortedLons[0];
+		this.maxLon = sortedLons[sortedLons.length - 1];
+	}
+
+	/**
+	 * @return a regular polygon approximating a cylinder, e.g. a turnpoint or an airfield
+	 */
+	public static Geofence circle(String id, double lat, double lon, double radiusKm, int vertices) {
+		final double[] lats = new double[vertices];
+		final double[] lons = new double[vertices];
+		for (int i = 0; i < vertices; i++) {
+			final double bearing = 2 * Math.PI * i / vertices;
+			lats[i] = lat + radiusKm * Math.cos(bearing) / KM_PER_DEG_LAT;
+			lons[i] = lon + radiusKm * Math.sin(bearing) / (KM_PER_DEG_LAT * Math.cos(Math.toRadians(lat)));
+		}
+		return new Geofence(id, lats, lons);
+	}
+
+	/**
+	 * @return true if the position is inside the polygon and the altitude band
+	 */
+	public boolean contains(double lat, double lon, float alt) {
+		if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon || alt < minAlt || alt > maxAlt)
+			return false;
+
+		// ray casting
+		boolean inside = false;
+		for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+			if ((lats[i] > lat) != (lats[j] > lat)
+					&& lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i])
+				inside = !inside;
+		}
+		return inside;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public double getMinLat() {
+		return minLat;
+	}
+
+	public double getMaxLat() {
+		return maxLat;
+	}
+
+	public double getMinLon() {
+		return minLon;
+	}
+
+	public double getMaxLon() {
+		return maxLon;
+	}
+
+	@Override
+	public String toString() {
+		return id;
+	}
+}
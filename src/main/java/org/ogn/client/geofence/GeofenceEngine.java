@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.geofence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the aircraft beacons against a (large) set of {@link Geofence}s and reports the aircraft entering, staying in
+ * and leaving them. The fences are indexed in a uniform grid: a beacon is only tested against the fences overlapping
+ * its cell, so the cost of a beacon depends on the density of the fences around it, not on their total number. Fences
+ * spanning too many cells (e.g. large airspaces) are tested against every beacon, after a bounding box check.
+ * <p>
+ * Subscribe an engine to a client as any other aircraft beacon listener. The per-aircraft state is only kept while an
+ * aircraft is inside at least one fence (or until it has not been heard for the state timeout). The engine expects to
+ * be notified by one thread at a time, as the clients do, while the fences can be added and removed from any thread.
+ * The events are emitted on the notifying thread.
+ */
+public class GeofenceEngine implements AircraftBeaconListener {
+
+	private static final Logger			LOG				= LoggerFactory.getLogger(GeofenceEngine.class);
+
+	/**
+	 * fences covering more cells are not put in the grid
+	 */
+	static final int					MAX_FENCE_CELLS	= 1024;
+
+	// the idle aircraft are looked for every that many beacons
+	private static final int			EXPIRY_INTERVAL	= 4096;
+
+	private static final Geofence[]		NO_FENCES		= new Geofence[0];
+
+	private final GeofenceListener		listener;
+	private final double				cellSizeDeg;
+	private final long					dwellTimeMs;
+	private final long					stateTimeoutMs;
+
+	// all the fences by id, in order of addition
+	private final Map<String, Geofence>	fences			= new LinkedHashMap<>();
+	private volatile Grid				grid			= new Grid();
+
+	private final Map<String, Aircraft>	aircraft		= new HashMap<>();
+	private int							beaconsToExpiry	= EXPIRY_INTERVAL;
+
+	private static final class Grid {
+		final Map<String, Geofence>	fences	= new HashMap<>();
+		final Map<Long, Geofence[]>	cells	= new HashMap<>();
+		Geofence[]					large	= NO_FENCES;
+	}
+
+	private static final class Presence {
+		final Geofence	fence;
+		final long		enteredAt;
+		boolean			dwellReported;
+
+		Presence(Geofence fence, long enteredAt) {
+			this.fence = fence;
+			this.enteredAt = enteredAt;
+		}
+	}
+
+	private static final class Aircraft {
+		final List<Presence>	presences	= new ArrayList<>(2);
+		long					lastSeen;
+
+		boolean isIn(Geofence fence) {
+			for (final Presence presence : presences) {
+				if (presence.fence == fence)
+					return true;
+			}
+			return false;
+		}
+	}
+
+	private GeofenceEngine(Builder builder) {
+		this.listener = builder.listener;
+		this.cellSizeDeg = builder.cellSizeDeg;
+		this.dwellTimeMs = builder.dwellTimeMs;
+		this.stateTimeoutMs = builder.stateTimeoutMs;
+	}
+
+	public static class Builder {
+		private GeofenceListener	listener;
+		private double				cellSizeDeg		= 0.1;
+		private long				dwellTimeMs;
+		private long				stateTimeoutMs	= 60 * 60 * 1000;
+
+		public Builder listener(GeofenceListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * @param sizeDeg
+		 *            size of the grid cells, ideally close to the size of the typical fence
+		 */
+		public Builder cellSize(double sizeDeg) {
+			this.cellSizeDeg = sizeDeg;
+			return this;
+		}
+
+		/**
+		 * @param timeMs
+		 *            time an aircraft must stay in a fence before a {@link GeofenceEvent.Type#DWELL} event is sent, no
+		 *            dwell events are sent if 0 (default)
+		 */
+		public Builder dwellTime(long timeMs) {
+			this.dwellTimeMs = timeMs;
+			return this;
+		}
+
+		/**
+		 * @param timeoutMs
+		 *            time after which an aircraft which has not been heard is forgotten (without an exit event)
+		 */
+		public Builder stateTimeout(long timeoutMs) {
+			this.stateTimeoutMs = timeoutMs;
+			return this;
+		}
+
+		public GeofenceEngine build() {
+			if (listener == null)
+				throw new IllegalStateException("a listener is required");
+			return new GeofenceEngine(this);
+		}
+	}
+
+	/**
+	 * adds a fence, or replaces the fence with the same id
+	 */
+	public synchronized void addFence(Geofence fence) {
+		fences.put(fence.getId(), fence);
+		rebuild();
+	}
+
+	public synchronized void addFences(Collection<Geofence> fences) {
+		for (final Geofence fence : fences) {
+			this.fences.put(fence.getId(), fence);
+		}
+		rebuild();
+	}
+
+	/**
+	 * removes a fence, no exit events are sent for the aircraft inside it
+	 * 
+	 * @return true if the fence existed
+	 */
+	public synchronized boolean removeFence(String id) {
+		if (fences.remove(id) == null)
+			return false;
+		rebuild();
+		return true;
+	}
+
+	public synchronized Collection<Geofence> getFences() {
+		return Collections.unmodifiableList(new ArrayList<>(fences.values()));
+	}
+
+	private void rebuild() {
+		final Map<Long, List<Geofence>> cells = new HashMap<>();
+		final List<Geofence> large = new ArrayList<>();
+		for (final Geofence fence : fences.values()) {
+			final long minLat = index(fence.getMinLat());
+			final long maxLat = index(fence.getMaxLat());
+			final long minLon = index(fence.getMinLon());
+			final long maxLon = index(fence.getMaxLon());
+			if ((maxLat - minLat + 1) * (maxLon - minLon + 1) > MAX_FENCE_CELLS) {
+				large.add(fence);
+				continue;
+			}
+			for (long lat = minLat; lat <= maxLat; lat++) {
+				for (long lon = minLon; lon <= maxLon; lon++) {
+					cells.computeIfAbsent(cell(lat, lon), k -> new ArrayList<>()).add(fence);
+				}
+			}
+		}
+
+		final Grid result = new Grid();
+		result.fences.putAll(fences);
+		cells.forEach((k, v) -> result.cells.put(k, v.toArray(NO_FENCES)));
+		result.large = large.toArray(NO_FENCES);
+		grid = result;
+	}
+
+	private long index(double deg) {
+		return (long) Math.floor(deg / cellSizeDeg);
+	}
+
+	private static long cell(long latIndex, long lonIndex) {
+		return latIndex << 32 | lonIndex & 0xffffffffL;
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		final Grid g = grid;
+		final String address = beacon.getAddress();
+		final long timestamp = beacon.getTimestamp();
+		Aircraft state = aircraft.get(address);
+
+		// exits and dwells
+		if (state != null) {
+			state.lastSeen = timestamp;
+			final Iterator<Presence> it = state.presences.iterator();
+			while (it.hasNext()) {
+				final Presence presence = it.next();
+				if (g.fences.get(presence.fence.getId()) != presence.fence) {
+					// removed or replaced
+					it.remove();
+				} else if (!presence.fence.contains(beacon.getLat(), beacon.getLon(), beacon.getAlt())) {
+					it.remove();
+					emit(GeofenceEvent.Type.EXIT, presence, beacon);
+				} else if (dwellTimeMs > 0 && !presence.dwellReported
+						&& timestamp - presence.enteredAt >= dwellTimeMs) {
+					presence.dwellReported = true;
+					emit(GeofenceEvent.Type.DWELL, presence, beacon);
+				}
+			}
+		}
+
+		// entries
+		state = enter(g.cells.get(cell(index(beacon.getLat()), index(beacon.getLon()))), beacon, state);
+		state = enter(g.large, beacon, state);
+
+		if (state != null && state.presences.isEmpty())
+			aircraft.remove(address);
+
+		if (--beaconsToExpiry == 0) {
+			beaconsToExpiry = EXPIRY_INTERVAL;
+			expire(timestamp);
+		}
+	}
+
+	private Aircraft enter(Geofence[] candidates, AircraftBeacon beacon, Aircraft state) {
+		if (candidates == null)
+			return state;
+
+		Aircraft result = state;
+		for (final Geofence fence : candidates) {
+			if (!fence.contains(beacon.getLat(), beacon.getLon(), beacon.getAlt())
+					|| result != null && result.isIn(fence))
+				continue;
+
+			if (result == null) {
+				result = new Aircraft();
+				result.lastSeen = beacon.getTimestamp();
+				aircraft.put(beacon.getAddress(), result);
+			}
+			final Presence presence = new Presence(fence, beacon.getTimestamp());
+			result.presences.add(presence);
+			emit(GeofenceEvent.Type.ENTER, presence, beacon);
+		}
+		return result;
+	}
+
+	private void emit(GeofenceEvent.Type type, Presence presence, AircraftBeacon beacon) {
+		try {
+			listener.onEvent(new GeofenceEvent(type, presence.fence, beacon, presence.enteredAt));
+		} catch (final Exception e) {
+			LOG.warn("exception caught while notifying the listener", e);
+		}
+	}
+
+	private void expire(long now) {
+		aircraft.values().removeIf(a -> now - a.lastSeen > stateTimeoutMs);
+	}
+
+	/**
+	 * @return number of aircraft currently inside at least one fence
+	 */
+	public int getTrackedAircraft() {
+		return aircraft.size();
+	}
+}
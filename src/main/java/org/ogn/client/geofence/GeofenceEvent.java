@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.geofence;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+
+/**
+ * An aircraft entering, staying in or leaving a geofence
+ */
+public class GeofenceEvent {
+
+	public enum Type {
+		ENTER,
+		/**
+		 * the aircraft has stayed in the fence for the configured dwell time, sent once per stay
+		 */
+		DWELL,
+		EXIT
+	}
+
+	private final Type				type;
+	private final Geofence			fence;
+	private final AircraftBeacon	beacon;
+	private final long				enteredAt;
+
+	GeofenceEvent(Type type, Geofence fence, AircraftBeacon beacon, long enteredAt) {
+		this.type = type;
+		this.fence = fence;
+		this.beacon = beacon;
+		this.enteredAt = enteredAt;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public Geofence getFence() {
+		return fence;
+	}
+
+	/**
+	 * @return the beacon which triggered the event: the first one inside the fence for ENTER, the first one outside
+	 *         for EXIT
+	 */
+	public AircraftBeacon getBeacon() {
+		return beacon;
+	}
+
+	public String getAddress() {
+		return beacon.getAddress();
+	}
+
+	/**
+	 * @return timestamp of the beacon which entered the fence
+	 */
+	public long getEnteredAt() {
+		return enteredAt;
+	}
+
+	/**
+	 * @return time spent in the fence so far (ms), according to the beacons' timestamps
+	 */
+	public long getDwellTime() {
+		return beacon.getTimestamp() - enteredAt;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + fence + " " + getAddress() + " after " + getDwellTime() + " ms";
+	}
+}
@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.geofence;
+
+/**
+ * Interface that needs to be implemented by all entities receiving the events of a {@link GeofenceEngine}
+ */
+public interface GeofenceListener {
+	/**
+	 * @param event
+	 *            enter, dwell or exit event
+	 */
+	void onEvent(final GeofenceEvent event);
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.graph;
+
+/**
+ * A node of the neighbourhood graph adjacent to the node queried
+ */
+public class Neighbour {
+
+	private final String	id;
+	private final boolean	receiver;
+	private final double	weight;
+	private final double	lat;
+	private final double	lon;
+
+	Neighbour(String id, boolean receiver, double weight, double lat, double lon) {
+		this.id = id;
+		this.receiver = receiver;
+		this.weight = weight;
+		this.lat = lat;
+		this.lon = lon;
+	}
+
+	/**
+	 * @return the callsign of a receiver or the address of an aircraft
+	 */
+	public String getId() {
+		return id;
+	}
+
+	public boolean isReceiver() {
+		return receiver;
+	}
+
+	/**
+	 * @return strength of the link: the decayed number of times it has been observed, or the coverage overlap for
+	 *         {@link NeighbourhoodGraph#getOverlappingReceivers(String)}
+	 */
+	public double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return latitude of a receiver, NaN for an aircraft or a receiver whose beacon has not been seen
+	 */
+	public double getLat() {
+		return lat;
+	}
+
+	/**
+	 * @return longitude of a receiver, NaN for an aircraft or a receiver whose beacon has not been seen
+	 */
+	public double getLon() {
+		return lon;
+	}
+
+	@Override
+	public String toString() {
+		return "Neighbour [id=" + id + ", receiver=" + receiver + ", weight=" + weight + "]";
+	}
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.ReceiverBeacon;
+
+/**
+ * Incrementally built graph of which receivers hear which aircraft, and of which aircraft hear each other (from the
+ * hearXXXX tokens of the aircraft beacons, matched against the last 4 hex digits of the addresses of the aircraft seen
+ * so far). The receiver beacons provide the positions of the stations.
+ * <p>
+ * Every observation of a link adds 1 to its weight, the weights decay exponentially with time (configurable half-life,
+ * event time of the beacons). The links whose weight has decayed below a threshold are pruned, and the nodes left
+ * without links are forgotten after a timeout, so the memory follows the active part of the network.
+ * <p>
+ * Nodes are interned to int ids, each node holds its links in primitive arrays (neighbour id, weight, time of the last
+ * update); a link is stored on both sides. The degrees are small (a receiver hears at most a few hundred aircraft at
+ * the same time), so the links are looked up by a linear scan. All the methods are synchronized: the graph can be
+ * queried from any thread while it is notified.
+ */
+public class NeighbourhoodGraph implements AircraftBeaconListener, ReceiverBeaconListener {
+
+	private static final byte			RECEIVER		= 0;
+	private static final byte			AIRCRAFT		= 1;
+
+	// the links and nodes are pruned every that many beacons
+	private static final int			EXPIRY_INTERVAL	= 4096;
+
+	private final double				decayRate;
+	private final float					minWeight;
+	private final long					nodeTimeoutMs;
+
+	private final Map<String, Integer>	receiverIds		= new HashMap<>();
+	private final Map<String, Integer>	aircraftIds		= new HashMap<>();
+	// last 4 hex digits of the address -> aircraft last seen with them
+	private final Map<String, Integer>	bySuffix		= new HashMap<>();
+
+	private String[]					names			= new String[64];
+	private byte[]						kinds			= new byte[64];
+	private long[]						lastSeen		= new long[64];
+	private double[]					lats			= new double[64];
+	private double[]					lons			= new double[64];
+
+	private int[][]						targets			= new int[64][];
+	private float[][]					weights			= new float[64][];
+	private long[][]					times			= new long[64][];
+	private int[]						degrees			= new int[64];
+
+	private int							nodeCount;
+	private int[]						freeIds			= new int[16];
+	private int							freeCount;
+
+	// latest beacon time
+	private long						now;
+	private int							beaconsToExpiry	= EXPIRY_INTERVAL;
+
+	private NeighbourhoodGraph(Builder builder) {
+		this.decayRate = Math.log(2) / builder.halfLifeMs;
+		this.minWeight = builder.minWeight;
+		this.nodeTimeoutMs = builder.nodeTimeoutMs;
+	}
+
+	public static class Builder {
+		private long	halfLifeMs		= 10 * 60 * 1000;
+		private float	minWeight		= 0.05f;
+		private long	nodeTimeoutMs	= 60 * 60 * 1000;
+
+		/**
+		 * @param halfLifeMs
+		 *            time after which the weight of a link not observed anymore is halved
+		 */
+		public Builder halfLife(long halfLifeMs) {
+			this.halfLifeMs = halfLifeMs;
+			return this;
+		}
+
+		/**
+		 * @param weight
+		 *            weight below which a link is pruned
+		 */
+		public Builder minWeight(float weight) {
+			this.minWeight = weight;
+			return this;
+		}
+
+		/**
+		 * @param timeoutMs
+		 *            time after which a node without links, not heard anymore, is forgotten
+		 */
+		public Builder nodeTimeout(long timeoutMs) {
+			this.nodeTimeoutMs = timeoutMs;
+			return this;
+		}
+
+		public NeighbourhoodGraph build() {
+			if (halfLifeMs <= 0)
+				throw new IllegalStateException("the half-life must be positive");
+			return new NeighbourhoodGraph(this);
+		}
+	}
+
+	@Override
+	public synchronized void onUpdate(ReceiverBeacon beacon) {
+		final long timestamp = beacon.getTimestamp();
+		final int receiver = node(receiverIds, beacon.getId(), RECEIVER);
+		lats[receiver] = beacon.getLat();
+		lons[receiver] = beacon.getLon();
+		lastSeen[receiver] = Math.max(lastSeen[receiver], timestamp);
+		now = Math.max(now, timestamp);
+	}
+
+	@Override
+	public synchronized void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		final long timestamp = beacon.getTimestamp();
+		now = Math.max(now, timestamp);
+		if (--beaconsToExpiry == 0) {
+			beaconsToExpiry = EXPIRY_INTERVAL;
+			expire();
+		}
+
+		final String address = beacon.getAddress();
+		final int aircraft = node(aircraftIds, address, AIRCRAFT);
+		lastSeen[aircraft] = Math.max(lastSeen[aircraft], timestamp);
+		if (address.length() >= 4)
+			bySuffix.put(address.substring(address.length() - 4).toUpperCase(Locale.ROOT), aircraft);
+
+		final String receiverName = beacon.getReceiverName();
+		if (receiverName != null) {
+			final int receiver = node(receiverIds, receiverName, RECEIVER);
+			lastSeen[receiver] = Math.max(lastSeen[receiver], timestamp);
+			link(receiver, aircraft, timestamp);
+		}
+
+		final String[] heard = beacon.getHeardAircraftIds();
+		if (heard != null) {
+			for (final String id : heard) {
+				final Integer other = bySuffix.get(id.toUpperCase(Locale.ROOT));
+				if (other != null && other != aircraft)
+					link(aircraft, other, timestamp);
+			}
+		}
+	}
+
+	private int node(Map<String, Integer> ids, String name, byte kind) {
+		final Integer id = ids.get(name);
+		if (id != null)
+			return id;
+
+		final int result;
+		if (freeCount > 0) {
+			result = freeIds[--freeCount];
+		} else {
+			if (nodeCount == names.length)
+				grow(names.length * 2);
+			result = nodeCount++;
+			targets[result] = new int[4];
+			weights[result] = new float[4];
+			times[result] = new long[4];
+		}
+		names[result] = name;
+		kinds[result] = kind;
+		lastSeen[result] = 0;
+		lats[result] = Double.NaN;
+		lons[result] = Double.NaN;
+		degrees[result] = 0;
+		ids.put(name, result);
+		return result;
+	}
+
+	private void grow(int capacity) {
+		names = Arrays.copyOf(names, capacity);
+		kinds = Arrays.copyOf(kinds, capacity);
+		lastSeen = Arrays.copyOf(lastSeen, capacity);
+		lats = Arrays.copyOf(lats, capacity);
+		lons = Arrays.copyOf(lons, capacity);
+		targets = Arrays.copyOf(targets, capacity);
+		weights = Arrays.copyOf(weights, capacity);
+		times = Arrays.copyOf(times, capacity);
+		degrees = Arrays.copyOf(degrees, capacity);
+	}
+
+	private void link(int a, int b, long timestamp) {
+		addHalf(a, b, timestamp);
+		addHalf(b, a, timestamp);
+	}
+
+	private void addHalf(int from, int to, long timestamp) {
+		final int[] t = targets[from];
+		final int degree = degrees[from];
+		for (int i = 0; i < degree; i++) {
+			if (t[i] == to) {
+				weights[from][i] = decayed(weights[from][i], times[from][i], timestamp) + 1;
+				times[from][i] = Math.max(times[from][i], timestamp);
+				return;
+			}
+		}
+
+		if (degree == t.length) {
+			targets[from] = Arrays.copyOf(t, degree * 2);
+			weights[from] = Arrays.copyOf(weights[from], degree * 2);
+			times[from] = Arrays.copyOf(times[from], degree * 2);
+		}
+		targets[from][degree] = to;
+		weights[from][degree] = 1;
+		times[from][degree] = timestamp;
+		degrees[from] = degree + 1;
+	}
+
+	private float decayed(float weight, long since, long timestamp) {
+		return timestamp <= since ? weight : (float) (weight * Math.exp(-(timestamp - since) * decayRate));
+	}
+
+	/**
+	 * prunes the links which have decayed below the min weight, then forgets the nodes left without links
+	 */
+	private void expire() {
+		// both halves of a link decay the same way, they are pruned together
+		for (int node = 0; node < nodeCount; node++) {
+			if (names[node] == null)
+				continue;
+			int degree = degrees[node];
+			for (int i = 0; i < degree;) {
+				if (decayed(weights[node][i], times[node][i], now) < minWeight) {
+					degree--;
+					targets[node][i] = targets[node][degree];
+					weights[node][i] = weights[node][degree];
+					times[node][i] = times[node][degree];
+				} else {
+					i++;
+				}
+			}
+			degrees[node] = degree;
+		}
+
+		for (int node = 0; node < nodeCount; node++) {
+			if (names[node] == null || degrees[node] > 0 || now - lastSeen[node] <= nodeTimeoutMs)
+				continue;
+
+			final String name = names[node];
+			if (kinds[node] == RECEIVER) {
+				receiverIds.remove(name);
+			} else {
+				aircraftIds.remove(name);
+				bySuffix.remove(name.substring(Math.max(0, name.length() - 4)).toUpperCase(Locale.ROOT), node);
+			}
+			names[node] = null;
+			if (freeCount == freeIds.length)
+				freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+			freeIds[freeCount++] = node;
+		}
+	}
+
+	private List<Neighbour> neighbours(Integer node) {
+		if (node == null)
+			return Collections.emptyList();
+
+		final List<Neighbour> result = new ArrayList<>();
+		for (int i = 0; i < degrees[node]; i++) {
+			final float weight = decayed(weights[node][i], times[node][i], now);
+			if (weight >= minWeight) {
+				final int other = targets[node][i];
+				result.add(new Neighbour(names[other], kinds[other] == RECEIVER, weight, lats[other], lons[other]));
+			}
+		}
+		result.sort((a, b) -> Double.compare(b.getWeight(), a.getWeight()));
+		return result;
+	}
+
+	/**
+	 * @return the receivers hearing the aircraft and the aircraft it hears or is heard by, strongest links first
+	 */
+	public synchronized List<Neighbour> getAircraftNeighbours(String address) {
+		return neighbours(aircraftIds.get(address));
+	}
+
+	/**
+	 * @return the aircraft heard by the receiver, strongest links first
+	 */
+	public synchronized List<Neighbour> getReceiverNeighbours(String receiver) {
+		return neighbours(receiverIds.get(receiver));
+	}
+
+	/**
+	 * @return weighted Jaccard similarity (0 to 1) of the aircraft heard by two receivers
+	 */
+	public synchronized double getCoverageOverlap(String receiver1, String receiver2) {
+		final Integer a = receiverIds.get(receiver1);
+		final Integer b = receiverIds.get(receiver2);
+		if (a == null || b == null)
+			return 0;
+		return overlap(a, b);
+	}
+
+	private double overlap(int a, int b) {
+		double min = 0;
+		double max = 0;
+		for (int i = 0; i < degrees[a]; i++) {
+			final float wa = decayed(weights[a][i], times[a][i], now);
+			final float wb = weight(b, targets[a][i]);
+			min += Math.min(wa, wb);
+			max += Math.max(wa, wb);
+		}
+		// the aircraft heard only by b
+		for (int i = 0; i < degrees[b]; i++) {
+			if (weight(a, targets[b][i]) == 0)
+				max += decayed(weights[b][i], times[b][i], now);
+		}
+		return max == 0 ? 0 : min / max;
+	}
+
+	private float weight(int from, int to) {
+		for (int i = 0; i < degrees[from]; i++) {
+			if (targets[from][i] == to)
+				return decayed(weights[from][i], times[from][i], now);
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the receivers hearing some of the aircraft heard by the given one, the weights of the result being their
+	 *         coverage overlap, largest first
+	 */
+	public synchronized List<Neighbour> getOverlappingReceivers(String receiver) {
+		final Integer node = receiverIds.get(receiver);
+		if (node == null)
+			return Collections.emptyList();
+
+		final List<Neighbour> result = new ArrayList<>();
+		final boolean[] visited = new boolean[nodeCount];
+		visited[node] = true;
+		for (int i = 0; i < degrees[node]; i++) {
+			final int aircraft = targets[node][i];
+			for (int j = 0; j < degrees[aircraft]; j++) {
+				final int other = targets[aircraft][j];
+				if (kinds[other] != RECEIVER || visited[other])
+					continue;
+				visited[other] = true;
+				final double overlap = overlap(node, other);
+				if (overlap > 0)
+					result.add(new Neighbour(names[other], true, overlap, lats[other], lons[other]));
+			}
+		}
+		result.sort((a, b) -> Double.compare(b.getWeight(), a.getWeight()));
+		return result;
+	}
+
+	/**
+	 * @return number of receivers and aircraft in the graph
+	 */
+	public synchronized int getNodeCount() {
+		return receiverIds.size() + aircraftIds.size();
+	}
+
+	/**
+	 * @return number of links in the graph (including the ones which have decayed but are not pruned yet)
+	 */
+	public synchronized int getLinkCount() {
+		int halves = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			if (names[node] != null)
+				halves += degrees[node];
+		}
+		return halves / 2;
+	}
+
+	/**
+	 * prunes the decayed links and the forgotten nodes now, instead of waiting for the next periodic pruning
+	 */
+	public synchronized void prune() {
+		expire();
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket latency histogram. Values are recorded in nanoseconds into log-linear buckets (four buckets per power of
+ * two), so that percentiles are reported with a relative error below 25% while recording costs a single striped counter
+ * increment. The histogram is safe for concurrent use, it never allocates after construction.
+ */
+public class LatencyHistogram {
+
+	private static final int	SUB_BUCKETS_BITS	= 2;
+	private static final int	SUB_BUCKETS			= 1 << SUB_BUCKETS_BITS;
+
+	// covers values up to 2^48 ns (~78 hours), anything above ends up in the last bucket
+	private static final int	MAX_EXPONENT		= 48;
+	private static final int	BUCKETS				= SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKETS_BITS) * SUB_BUCKETS;
+
+	private final LongAdder[]	buckets				= new LongAdder[BUCKETS];
+	private final LongAdder		count				= new LongAdder();
+	private final LongAdder		sum					= new LongAdder();
+	private final LongAccumulator	max				= new LongAccumulator(Long::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS)
+			return value < 0 ? 0 : (int) value;
+
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT)
+			return BUCKETS - 1;
+
+		final int subBucket = (int) (value >>> (exponent - SUB_BUCKETS_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKETS_BITS) * SUB_BUCKETS + subBucket;
+	}
+
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+
+		final int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKETS_BITS;
+		final int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKETS_BITS)) - 1;
+	}
+
+	/**
+	 * records a single value
+	 * 
+	 * @param nanos
+	 *            latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		buckets[bucketIndex(nanos)].increment();
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax(TimeUnit unit) {
+		return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+	}
+
+	public double getMean(TimeUnit unit) {
+		final long n = count.sum();
+		return n == 0 ? 0 : (double) unit.convert(sum.sum(), TimeUnit.NANOSECONDS) / n;
+	}
+
+	/**
+	 * @param percentile
+	 *            requested percentile, e.g. 99.9
+	 * @param unit
+	 *            time unit of the result
+	 * @return the upper bound of the bucket holding the requested percentile, 0 if nothing has been recorded yet
+	 */
+	public long getPercentile(double percentile, TimeUnit unit) {
+		final long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets[i].sum();
+			total += snapshot[i];
+		}
+
+		if (total == 0)
+			return 0;
+
+		final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return unit.convert(Math.min(bucketUpperBound(i), max.get()), TimeUnit.NANOSECONDS);
+		}
+
+		return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + ", p50=" + getPercentile(50, TimeUnit.MICROSECONDS) + "us, p99="
+				+ getPercentile(99, TimeUnit.MICROSECONDS) + "us, p999=" + getPercentile(99.9, TimeUnit.MICROSECONDS)
+				+ "us, max=" + getMax(TimeUnit.MICROSECONDS) + "us";
+	}
+}
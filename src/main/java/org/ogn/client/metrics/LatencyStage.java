@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.metrics;
+
+/**
+ * stages of the client's pipeline for which latency is measured
+ */
+public enum LatencyStage {
+	/**
+	 * time a line spent in the queue between the socket reader and the poller
+	 */
+	QUEUE,
+
+	/**
+	 * time spent parsing a line
+	 */
+	PARSE,
+
+	/**
+	 * time spent searching the aircraft descriptor providers
+	 */
+	DESCRIPTOR_LOOKUP,
+
+	/**
+	 * time spent in a listener's callback
+	 */
+	DISPATCH,
+
+	/**
+	 * time from the socket read until a listener gets called
+	 */
+	END_TO_END,
+
+	/**
+	 * difference between the moment a line is read and the beacon's own APRS timestamp, i.e. an estimate of the delay
+	 * added upstream (tracker to receiver to APRS server to client). Measured only if enabled on the client. Note that
+	 * the APRS timestamp has a resolution of one second.
+	 */
+	UPSTREAM
+}
@@ -0,0 +1,377 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.metrics;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Instrumentation of the OGN client ingest pipeline. All the counters are striped ({@link LongAdder}), so that updating
+ * them from the reader and the dispatching threads does not introduce contention. The values can be pulled at any time
+ * through the getters or, if enabled, through JMX.
+ */
+public class OgnClientMetrics implements OgnClientMetricsMBean {
+
+	private final LongAdder									linesRead			= new LongAdder();
+	private final LongAdder									bytesRead			= new LongAdder();
+	private final LongAdder									parseFailures		= new LongAdder();
+	private final LongAdder									ignoredLines		= new LongAdder();
+	private final LongAdder									aircraftBeacons		= new LongAdder();
+	private final LongAdder									receiverBeacons		= new LongAdder();
+	private final LongAdder									reconnects			= new LongAdder();
+	private final LongAdder									resumedTlsSessions	= new LongAdder();
+
+	private final Map<SheddingPriority, LongAdder>			shedLines			= new EnumMap<>(SheddingPriority.class);
+	private volatile int									sheddingLevel;
+
+	private final Map<LatencyStage, LatencyHistogram>		stageLatencies		= new EnumMap<>(LatencyStage.class);
+	private final LatencyHistogram							dispatchLatency;
+	// handshakes of the TLS connections, not a stage of the ingest pipeline
+	private final LatencyHistogram							tlsHandshakeLatency	= new LatencyHistogram();
+	private final Map<Object, LatencyHistogram>				listenerLatencies	= new ConcurrentHashMap<>();
+	// number of subscriptions sharing the histogram of every listener
+	private final Map<Object, Integer>						listenerSubscriptions	= new HashMap<>();
+
+	// [unique, duplicate] line counters of every redundant server
+	private final Map<String, LongAdder[]>					serverLines			= new ConcurrentHashMap<>();
+
+	private final IntSupplier								queueDepth;
+
+	// last sample used for the lines/sec rate computation
+	private long											rateSampleTime		= System.nanoTime();
+	private long											rateSampleLines;
+	private double											linesPerSecond;
+
+	/**
+	 * @param queueDepth
+	 *            supplier of the current number of lines waiting to be processed
+	 */
+	public OgnClientMetrics(IntSupplier queueDepth) {
+		this.queueDepth = queueDepth;
+		for (final LatencyStage stage : LatencyStage.values()) {
+			stageLatencies.put(stage, new LatencyHistogram());
+		}
+		this.dispatchLatency = stageLatencies.get(LatencyStage.DISPATCH);
+		for (final SheddingPriority priority : SheddingPriority.values()) {
+			shedLines.put(priority, new LongAdder());
+		}
+	}
+
+	public void lineRead() {
+		linesRead.increment();
+	}
+
+	public void bytesRead(long bytes) {
+		bytesRead.add(bytes);
+	}
+
+	public void parseFailure() {
+		parseFailures.increment();
+	}
+
+	public void lineIgnored() {
+		ignoredLines.increment();
+	}
+
+	public void aircraftBeacon() {
+		aircraftBeacons.increment();
+	}
+
+	public void receiverBeacon() {
+		receiverBeacons.increment();
+	}
+
+	public void reconnect() {
+		reconnects.increment();
+	}
+
+	/**
+	 * records a completed TLS handshake
+	 * 
+	 * @param nanos
+	 *            time spent in the handshake
+	 * @param resumed
+	 *            true if a cached session has been resumed
+	 */
+	public void tlsHandshake(long nanos, boolean resumed) {
+		tlsHandshakeLatency.record(nanos);
+		if (resumed)
+			resumedTlsSessions.increment();
+	}
+
+	/**
+	 * records a line dropped by the load shedding
+	 * 
+	 * @param priority
+	 *            kind of line dropped
+	 */
+	public void lineShed(SheddingPriority priority) {
+		shedLines.get(priority).increment();
+	}
+
+	/**
+	 * @param level
+	 *            number of {@link SheddingPriority} levels currently dropped, 0 when the client is not overloaded
+	 */
+	public void sheddingLevel(int level) {
+		sheddingLevel = level;
+	}
+
+	/**
+	 * creates the dispatch latency histogram of a listener, once when it subscribes. A listener subscribed to several
+	 * clients sharing these metrics gets one histogram, kept until it has been removed as many times as it was added.
+	 * 
+	 * @param listener
+	 *            the listener subscribed
+	 * @return the histogram to be passed to {@link #dispatched(LatencyHistogram, long)}
+	 */
+	public LatencyHistogram addListener(Object listener) {
+		synchronized (listenerSubscriptions) {
+			listenerSubscriptions.merge(listener, 1, Integer::sum);
+			return listenerLatencies.computeIfAbsent(listener, l -> new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * records the time a listener spent handling a single beacon
+	 * 
+	 * @param listenerLatency
+	 *            histogram of the listener notified, see {@link #addListener(Object)}
+	 * @param nanos
+	 *            time spent in the listener's callback
+	 */
+	public void dispatched(LatencyHistogram listenerLatency, long nanos) {
+		dispatchLatency.record(nanos);
+		listenerLatency.record(nanos);
+	}
+
+	/**
+	 * creates the line counters of one of several redundant servers, once when the client starts reading from it
+	 * 
+	 * @param server
+	 *            server the lines are read from
+	 * @param duplicate
+	 *            true for the counter of the lines already received from another server, false for the counter of
+	 *            the lines received first from this server
+	 * @return the counter to be incremented for every such line
+	 */
+	public LongAdder addServer(String server, boolean duplicate) {
+		return serverLines.computeIfAbsent(server, s -> new LongAdder[]{new LongAdder(), new LongAdder()})[duplicate
+				? 1 : 0];
+	}
+
+	/**
+	 * records the latency of a pipeline stage
+	 * 
+	 * @param stage
+	 *            pipeline stage
+	 * @param nanos
+	 *            latency in nanoseconds
+	 */
+	public void latency(LatencyStage stage, long nanos) {
+		stageLatencies.get(stage).record(nanos);
+	}
+
+	/**
+	 * forgets the statistics of a listener which is not subscribed anymore, once every {@link #addListener(Object)}
+	 * has been matched by a removal
+	 */
+	public void removeListener(Object listener) {
+		synchronized (listenerSubscriptions) {
+			if (listenerSubscriptions.computeIfPresent(listener, (l, n) -> n > 1 ? n - 1 : null) == null)
+				listenerLatencies.remove(listener);
+		}
+	}
+
+	@Override
+	public long getLinesRead() {
+		return linesRead.sum();
+	}
+
+	/**
+	 * @return average rate of lines read from the server since the previous call (sampled at most once per second)
+	 */
+	@Override
+	public synchronized double getLinesPerSecond() {
+		final long now = System.nanoTime();
+		final long elapsed = now - rateSampleTime;
+		if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+			final long lines = linesRead.sum();
+			linesPerSecond = (lines - rateSampleLines) * 1e9 / elapsed;
+			rateSampleLines = lines;
+			rateSampleTime = now;
+		}
+		return linesPerSecond;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getParseFailures() {
+		return parseFailures.sum();
+	}
+
+	@Override
+	public long getIgnoredLines() {
+		return ignoredLines.sum();
+	}
+
+	@Override
+	public long getAircraftBeacons() {
+		return aircraftBeacons.sum();
+	}
+
+	@Override
+	public long getReceiverBeacons() {
+		return receiverBeacons.sum();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.getAsInt();
+	}
+
+	@Override
+	public long getReconnects() {
+		return reconnects.sum();
+	}
+
+	@Override
+	public long getResumedTlsSessions() {
+		return resumedTlsSessions.sum();
+	}
+
+	@Override
+	public String getTlsHandshakeStats() {
+		return tlsHandshakeLatency.toString();
+	}
+
+	@Override
+	public long getShedLines() {
+		long result = 0;
+		for (final LongAdder counter : shedLines.values()) {
+			result += counter.sum();
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of lines of a given kind dropped by the load shedding
+	 */
+	public long getShedLines(SheddingPriority priority) {
+		return shedLines.get(priority).sum();
+	}
+
+	@Override
+	public int getSheddingLevel() {
+		return sheddingLevel;
+	}
+
+	@Override
+	public long getDispatchLatencyP50Micros() {
+		return dispatchLatency.getPercentile(50, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public long getDispatchLatencyP99Micros() {
+		return dispatchLatency.getPercentile(99, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public long getDispatchLatencyP999Micros() {
+		return dispatchLatency.getPercentile(99.9, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public long getEndToEndLatencyP50Micros() {
+		return getLatency(LatencyStage.END_TO_END).getPercentile(50, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public long getEndToEndLatencyP99Micros() {
+		return getLatency(LatencyStage.END_TO_END).getPercentile(99, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public long getEndToEndLatencyP999Micros() {
+		return getLatency(LatencyStage.END_TO_END).getPercentile(99.9, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public String[] getStageLatencyStats() {
+		final List<String> result = new ArrayList<>();
+		stageLatencies.forEach((stage, histogram) -> result.add(stage + ": " + histogram));
+		return result.toArray(new String[0]);
+	}
+
+	@Override
+	public String[] getListenerDispatchStats() {
+		final List<String> result = new ArrayList<>();
+		listenerLatencies.forEach((listener, histogram) -> result.add(listener + ": " + histogram));
+		return result.toArray(new String[0]);
+	}
+
+	@Override
+	public String[] getServerStats() {
+		final List<String> result = new ArrayList<>();
+		serverLines.forEach((server, counters) -> result
+				.add(server + ": unique=" + counters[0].sum() + ", duplicates=" + counters[1].sum()));
+		return result.toArray(new String[0]);
+	}
+
+	/**
+	 * @return number of lines received first from a given server
+	 */
+	public long getUniqueLines(String server) {
+		final LongAdder[] counters = serverLines.get(server);
+		return counters == null ? 0 : counters[0].sum();
+	}
+
+	/**
+	 * @return number of lines received from a given server after they had been received from another one
+	 */
+	public long getDuplicateLines(String server) {
+		final LongAdder[] counters = serverLines.get(server);
+		return counters == null ? 0 : counters[1].sum();
+	}
+
+	/**
+	 * @return latency histogram of a given pipeline stage
+	 */
+	public LatencyHistogram getLatency(LatencyStage stage) {
+		return stageLatencies.get(stage);
+	}
+
+	/**
+	 * @return time spent in the TLS handshakes, full or abbreviated (resumed session)
+	 */
+	public LatencyHistogram getTlsHandshakeLatency() {
+		return tlsHandshakeLatency;
+	}
+
+	/**
+	 * @return dispatch latency histogram covering all the listeners
+	 */
+	public LatencyHistogram getDispatchLatency() {
+		return dispatchLatency;
+	}
+
+	/**
+	 * @return dispatch latency histogram of a given listener, null if the listener has not been notified yet
+	 */
+	public LatencyHistogram getDispatchLatency(Object listener) {
+		return listenerLatencies.get(listener);
+	}
+}
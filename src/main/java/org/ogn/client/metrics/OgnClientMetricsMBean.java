@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.metrics;
+
+/**
+ * JMX view of the {@link OgnClientMetrics}. Latencies are expressed in microseconds.
+ */
+public interface OgnClientMetricsMBean {
+
+	long getLinesRead();
+
+	double getLinesPerSecond();
+
+	long getBytesRead();
+
+	long getParseFailures();
+
+	long getIgnoredLines();
+
+	long getAircraftBeacons();
+
+	long getReceiverBeacons();
+
+	int getQueueDepth();
+
+	long getReconnects();
+
+	/**
+	 * @return number of TLS connections which resumed a cached session instead of performing a full handshake
+	 */
+	long getResumedTlsSessions();
+
+	/**
+	 * @return summary of the time spent in the TLS handshakes, full or abbreviated (resumed session)
+	 */
+	String getTlsHandshakeStats();
+
+	/**
+	 * @return number of lines dropped by the load shedding
+	 */
+	long getShedLines();
+
+	/**
+	 * @return number of kinds of lines currently dropped by the load shedding, 0 when the client is not overloaded
+	 */
+	int getSheddingLevel();
+
+	long getDispatchLatencyP50Micros();
+
+	long getDispatchLatencyP99Micros();
+
+	long getDispatchLatencyP999Micros();
+
+	long getEndToEndLatencyP50Micros();
+
+	long getEndToEndLatencyP99Micros();
+
+	long getEndToEndLatencyP999Micros();
+
+	/**
+	 * @return latency summary of every pipeline stage, one entry per stage
+	 */
+	String[] getStageLatencyStats();
+
+	/**
+	 * @return dispatch latency summary of every subscribed listener, one entry per listener
+	 */
+	String[] getListenerDispatchStats();
+
+	/**
+	 * @return unique and duplicate line counts of every server, when connected to redundant servers
+	 */
+	String[] getServerStats();
+}
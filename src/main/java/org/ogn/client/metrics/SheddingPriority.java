@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.metrics;
+
+/**
+ * kinds of APRS lines dropped by the client's load shedding, in the order they are dropped as the pressure grows
+ */
+public enum SheddingPriority {
+	/**
+	 * receiver status and position lines
+	 */
+	RECEIVER,
+
+	/**
+	 * beacons of aircraft which are not moving
+	 */
+	STATIONARY_AIRCRAFT,
+
+	/**
+	 * beacons of the aircraft which are neither watched nor part of the sample kept
+	 */
+	UNTRACKED_AIRCRAFT
+}
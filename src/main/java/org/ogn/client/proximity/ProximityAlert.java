@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.proximity;
+
+import java.util.Locale;
+
+import org.ogn.commons.beacon.AircraftBeacon;
+
+/**
+ * Two aircraft closer to each other than the separation thresholds, now or at their projected closest approach
+ */
+public class ProximityAlert {
+
+	public enum Type {
+		/**
+		 * the aircraft are too close now
+		 */
+		PROXIMITY,
+		/**
+		 * the aircraft will be too close at their closest approach, if they keep their track, speed and climb rate
+		 */
+		CONFLICT
+	}
+
+	private final Type				type;
+	private final AircraftBeacon	beacon;
+	private final AircraftBeacon	other;
+	private final double			horizontalDistance;
+	private final double			verticalDistance;
+	private final double			timeToClosestApproach;
+	private final double			horizontalDistanceAtClosestApproach;
+	private final double			verticalDistanceAtClosestApproach;
+
+	ProximityAlert(Type type, AircraftBeacon beacon, AircraftBeacon other, double horizontalDistance,
+			double verticalDistance, double timeToClosestApproach, double horizontalDistanceAtClosestApproach,
+			double verticalDistanceAtClosestApproach) {
+		this.type = type;
+		this.beacon = beacon;
+		this.other = other;
+		this.horizontalDistance = horizontalDistance;
+		this.verticalDistance = verticalDistance;
+		this.timeToClosestApproach = timeToClosestApproach;
+		this.horizontalDistanceAtClosestApproach = horizontalDistanceAtClosestApproach;
+		this.verticalDistanceAtClosestApproach = verticalDistanceAtClosestApproach;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the beacon which triggered the alert
+	 */
+	public AircraftBeacon getBeacon() {
+		return beacon;
+	}
+
+	/**
+	 * @return the latest beacon of the other aircraft
+	 */
+	public AircraftBeacon getOther() {
+		return other;
+	}
+
+	/**
+	 * @return current horizontal distance (m), the other aircraft being dead-reckoned to the time of the beacon
+	 */
+	public double getHorizontalDistance() {
+		return horizontalDistance;
+	}
+
+	/**
+	 * @return current vertical distance (m)
+	 */
+	public double getVerticalDistance() {
+		return verticalDistance;
+	}
+
+	/**
+	 * @return time until the closest approach (s), 0 if the aircraft are moving apart
+	 */
+	public double getTimeToClosestApproach() {
+		return timeToClosestApproach;
+	}
+
+	public double getHorizontalDistanceAtClosestApproach() {
+		return horizontalDistanceAtClosestApproach;
+	}
+
+	public double getVerticalDistanceAtClosestApproach() {
+		return verticalDistanceAtClosestApproach;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s %s/%s: %.0fm/%.0fm now, %.0fm/%.0fm in %.1fs", type,
+				beacon.getAddress(), other.getAddress(), horizontalDistance, verticalDistance,
+				horizontalDistanceAtClosestApproach, verticalDistanceAtClosestApproach, timeToClosestApproach);
+	}
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.proximity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects the aircraft flying too close to each other (horizontal and vertical separation below thresholds), now or at
+ * their closest approach projected from their track, ground speed and climb rate.
+ * <p>
+ * The latest position of every flying aircraft is kept in a spatial hash, with cells as large as the search radius
+ * (the horizontal separation plus the distance the aircraft can close within the look-ahead time). Every beacon is
+ * only checked against the aircraft of the neighbouring cells, so the cost of a beacon depends on the local traffic
+ * density, not on the total number of aircraft. The other aircraft's position is dead-reckoned to the beacon's time.
+ * <p>
+ * Subscribe an engine to a client as any other aircraft beacon listener. It expects to be notified by one thread at a
+ * time, as the clients do. The alerts are emitted on the notifying thread, at most once per pair every alert interval.
+ */
+public class ProximityEngine implements AircraftBeaconListener {
+
+	private static final Logger				LOG				= LoggerFactory.getLogger(ProximityEngine.class);
+
+	private static final double				M_PER_DEG_LAT	= 111320;
+
+	// the stale tracks and alerts are looked for every that many beacons
+	private static final int				EXPIRY_INTERVAL	= 4096;
+
+	private final ProximityListener			listener;
+	private final double					horizontalSeparation;
+	private final double					verticalSeparation;
+	private final double					lookAheadSec;
+	private final double					minSpeedKmh;
+	private final long						maxAgeMs;
+	private final long						alertIntervalMs;
+
+	// search radius and cell size, in degrees of latitude
+	private final double					cellSizeDeg;
+
+	private final Map<String, Track>		tracks			= new HashMap<>();
+	private final Map<Long, List<Track>>	cells			= new HashMap<>();
+	// time of the last alert of every pair
+	private final Map<String, Long>			alerts			= new HashMap<>();
+
+	private int								beaconsToExpiry	= EXPIRY_INTERVAL;
+	private long							pairChecks;
+
+	private static final class Track {
+		AircraftBeacon	beacon;
+		double			lat;
+		double			lon;
+		double			alt;
+		// east and north speed (m/s)
+		double			vx;
+		double			vy;
+		double			climb;
+		long			timestamp;
+		long			cell;
+	}
+
+	private ProximityEngine(Builder builder) {
+		this.listener = builder.listener;
+		this.horizontalSeparation = builder.horizontalSeparation;
+		this.verticalSeparation = builder.verticalSeparation;
+		this.lookAheadSec = builder.lookAheadSec;
+		this.minSpeedKmh = builder.minSpeedKmh;
+		this.maxAgeMs = builder.maxAgeMs;
+		this.alertIntervalMs = builder.alertIntervalMs;
+		this.cellSizeDeg =
+				(builder.horizontalSeparation + builder.maxClosingSpeed * builder.lookAheadSec) / M_PER_DEG_LAT;
+	}
+
+	public static class Builder {
+		private ProximityListener	listener;
+		private double				horizontalSeparation	= 1000;
+		private double				verticalSeparation		= 300;
+		private double				lookAheadSec			= 20;
+		private double				maxClosingSpeed			= 150;
+		private double				minSpeedKmh				= 30;
+		private long				maxAgeMs				= 30000;
+		private long				alertIntervalMs			= 10000;
+
+		public Builder listener(ProximityListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * @param horizontal
+		 *            min horizontal separation (m)
+		 * @param vertical
+		 *            min vertical separation (m)
+		 */
+		public Builder separation(double horizontal, double vertical) {
+			this.horizontalSeparation = horizontal;
+			this.verticalSeparation = vertical;
+			return this;
+		}
+
+		/**
+		 * @param seconds
+		 *            how far in the future the closest approach is looked for
+		 */
+		public Builder lookAhead(double seconds) {
+			this.lookAheadSec = seconds;
+			return this;
+		}
+
+		/**
+		 * @param metersPerSecond
+		 *            max closing speed of two aircraft, which determines the search radius
+		 */
+		public Builder maxClosingSpeed(double metersPerSecond) {
+			this.maxClosingSpeed = metersPerSecond;
+			return this;
+		}
+
+		/**
+		 * @param kmh
+		 *            aircraft slower than this are considered on the ground and ignored
+		 */
+		public Builder minSpeed(double kmh) {
+			this.minSpeedKmh = kmh;
+			return this;
+		}
+
+		/**
+		 * @param ms
+		 *            max age of the latest position of an aircraft for it to be considered
+		 */
+		public Builder maxAge(long ms) {
+			this.maxAgeMs = ms;
+			return this;
+		}
+
+		/**
+		 * @param ms
+		 *            min time between two alerts about the same pair of aircraft
+		 */
+		public Builder alertInterval(long ms) {
+			this.alertIntervalMs = ms;
+			return this;
+		}
+
+		public ProximityEngine build() {
+			if (listener == null)
+				throw new IllegalStateException("a listener is required");
+			return new ProximityEngine(this);
+		}
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		if (--beaconsToExpiry == 0) {
+			beaconsToExpiry = EXPIRY_INTERVAL;
+			expire(beacon.getTimestamp());
+		}
+
+		if (beacon.getGroundSpeed() < minSpeedKmh) {
+			// on the ground
+			final Track track = tracks.remove(beacon.getAddress());
+			if (track != null)
+				removeFromCell(track);
+			return;
+		}
+
+		final Track track = update(beacon);
+
+		final double lat = track.lat;
+		final double lon = track.lon;
+		final double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+		final double lonRange = cellSizeDeg / cosLat;
+		final long minRow = index(lat - cellSizeDeg);
+		final long maxRow = index(lat + cellSizeDeg);
+		final long minCol = index(lon - lonRange);
+		final long maxCol = index(lon + lonRange);
+
+		for (long row = minRow; row <= maxRow; row++) {
+			for (long col = minCol; col <= maxCol; col++) {
+				final List<Track> cell = cells.get(cell(row, col));
+				if (cell == null)
+					continue;
+				for (int i = 0; i < cell.size(); i++) {
+					final Track other = cell.get(i);
+					if (other != track && Math.abs(track.timestamp - other.timestamp) <= maxAgeMs)
+						check(track, other, cosLat);
+				}
+			}
+		}
+	}
+
+	private Track update(AircraftBeacon beacon) {
+		Track track = tracks.get(beacon.getAddress());
+		if (track == null) {
+			track = new Track();
+			tracks.put(beacon.getAddress(), track);
+		} else {
+			removeFromCell(track);
+		}
+
+		track.beacon = beacon;
+		track.lat = beacon.getLat();
+		track.lon = beacon.getLon();
+		track.alt = beacon.getAlt();
+		final double speed = beacon.getGroundSpeed() / 3.6;
+		final double trackRad = Math.toRadians(beacon.getTrack());
+		track.vx = speed * Math.sin(trackRad);
+		track.vy = speed * Math.cos(trackRad);
+		track.climb = beacon.getClimbRate();
+		track.timestamp = beacon.getTimestamp();
+		track.cell = cell(index(track.lat), index(track.lon));
+		cells.computeIfAbsent(track.cell, k -> new ArrayList<>(4)).add(track);
+		return track;
+	}
+
+	private void removeFromCell(Track track) {
+		final List<Track> cell = cells.get(track.cell);
+		cell.remove(track);
+		if (cell.isEmpty())
+			cells.remove(track.cell);
+	}
+
+	private void check(Track track, Track other, double cosLat) {
+		pairChecks++;
+
+		// the other aircraft dead-reckoned to the time of the beacon, relative to it
+		final double dt = (track.timestamp - other.timestamp) / 1000.0;
+		final double x = (other.lon - track.lon) * cosLat * M_PER_DEG_LAT + other.vx * dt;
+		final double y = (other.lat - track.lat) * M_PER_DEG_LAT + other.vy * dt;
+		final double z = other.alt + other.climb * dt - track.alt;
+		final double vx = other.vx - track.vx;
+		final double vy = other.vy - track.vy;
+		final double vz = other.climb - track.climb;
+
+		final double distance = Math.sqrt(x * x + y * y);
+		final double v2 = vx * vx + vy * vy;
+		double t = v2 < 1e-6 ? 0 : -(x * vx + y * vy) / v2;
+		t = Math.max(0, Math.min(lookAheadSec, t));
+		final double cx = x + vx * t;
+		final double cy = y + vy * t;
+		final double cpaDistance = Math.sqrt(cx * cx + cy * cy);
+		final double cpaZ = Math.abs(z + vz * t);
+
+		final ProximityAlert.Type type;
+		if (distance < horizontalSeparation && Math.abs(z) < verticalSeparation)
+			type = ProximityAlert.Type.PROXIMITY;
+		else if (t > 0 && cpaDistance < horizontalSeparation && cpaZ < verticalSeparation)
+			type = ProximityAlert.Type.CONFLICT;
+		else
+			return;
+
+		final String a = track.beacon.getAddress();
+		final String b = other.beacon.getAddress();
+		final String pair = a.compareTo(b) < 0 ? a + ' ' + b : b + ' ' + a;
+		final Long last = alerts.get(pair);
+		if (last != null && track.timestamp - last < alertIntervalMs)
+			return;
+		alerts.put(pair, track.timestamp);
+
+		try {
+			listener.onAlert(new ProximityAlert(type, track.beacon, other.beacon, distance, Math.abs(z), t,
+					cpaDistance, cpaZ));
+		} catch (final Exception e) {
+			LOG.warn("exception caught while notifying the listener", e);
+		}
+	}
+
+	private void expire(long now) {
+		tracks.values().removeIf(track -> {
+			if (now - track.timestamp <= maxAgeMs)
+				return false;
+			removeFromCell(track);
+			return true;
+		});
+		alerts.values().removeIf(last -> now - last > alertIntervalMs);
+	}
+
+	private long index(double deg) {
+		return (long) Math.floor(deg / cellSizeDeg);
+	}
+
+	private static long cell(long row, long col) {
+		return row << 32 | col & 0xffffffffL;
+	}
+
+	/**
+	 * @return number of flying aircraft tracked
+	 */
+	public int getTrackedAircraft() {
+		return tracks.size();
+	}
+
+	/**
+	 * @return number of pairs of aircraft checked so far
+	 */
+	public long getPairChecks() {
+		return pairChecks;
+	}
+}
@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.proximity;
+
+/**
+ * Interface that needs to be implemented by all entities receiving the alerts of a {@link ProximityEngine}
+ */
+public interface ProximityListener {
+	/**
+	 * @param alert
+	 *            two aircraft too close to each other, now or in the near future
+	 */
+	void onAlert(final ProximityAlert alert);
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.reactive;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Reactive Streams publisher of beacons, respecting the demand of every subscriber. Each subscriber gets its own
+ * bounded buffer; when a buffer is full, {@link #publish(Object)} blocks until the subscriber requests more items (or
+ * cancels). This way a slow subscriber slows down the client's processing, which in turn stops reading from the APRS
+ * server instead of buffering without limit.
+ * <p>
+ * Items are delivered either by the publishing thread or by the thread calling {@link Subscription#request(long)},
+ * never concurrently. The stream never completes on its own, subscribers stop it by cancelling their subscription.
+ * On JDK 9+ the publisher can be adapted to {@code java.util.concurrent.Flow} with
+ * {@code org.reactivestreams.FlowAdapters}.
+ * 
+ * @param <T>
+ *            beacon type
+ */
+public class BeaconPublisher<T> implements Publisher<T> {
+
+	private static final Logger								LOG				= LoggerFactory.getLogger(BeaconPublisher.class);
+
+	// how often a blocked publisher re-checks whether the subscription has been cancelled meanwhile
+	private static final long								CANCEL_CHECK_MS	= 100;
+
+	private final int										bufferSize;
+	private final CopyOnWriteArrayList<BeaconSubscription>	subscriptions	= new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param bufferSize
+	 *            max number of items buffered for each subscriber
+	 */
+	public BeaconPublisher(int bufferSize) {
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("buffer size must be positive");
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("subscriber must not be null");
+
+		final BeaconSubscription subscription = new BeaconSubscription(subscriber);
+		subscriptions.add(subscription);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * @return true if there is at least one active subscriber
+	 */
+	public boolean hasSubscribers() {
+		return !subscriptions.isEmpty();
+	}
+
+	/**
+	 * hands an item over to all the subscribers, blocking as long as any of them has its buffer full
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for demand
+	 */
+	public void publish(T item) throws InterruptedException {
+		for (final BeaconSubscription subscription : subscriptions) {
+			subscription.offer(item);
+		}
+	}
+
+	private class BeaconSubscription implements Subscription {
+
+		private final Subscriber<? super T>	subscriber;
+		private final BlockingQueue<T>		buffer		= new ArrayBlockingQueue<>(bufferSize);
+		private final AtomicLong			requested	= new AtomicLong();
+		private final AtomicInteger			wip			= new AtomicInteger();
+		private volatile boolean			cancelled;
+
+		BeaconSubscription(Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		void offer(T item) throws InterruptedException {
+			while (!cancelled && !buffer.offer(item, CANCEL_CHECK_MS, TimeUnit.MILLISECONDS)) {
+				LOG.trace("waiting for demand of {}", subscriber);
+			}
+			drain();
+		}
+
+		@Override
+		public void request(long n) {
+			if (cancelled)
+				return;
+
+			if (n <= 0) {
+				cancel();
+				subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+				return;
+			}
+
+			long current;
+			long next;
+			do {
+				current = requested.get();
+				if (current == Long.MAX_VALUE)
+					break;
+				next = current + n < 0 ? Long.MAX_VALUE : current + n;
+			} while (!requested.compareAndSet(current, next));
+
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				subscriptions.remove(this);
+				buffer.clear();
+			}
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0)
+				return;
+
+			int missed = 1;
+			do {
+				final long demand = requested.get();
+				long emitted = 0;
+				while (emitted != demand && !cancelled) {
+					final T item = buffer.poll();
+					if (item == null)
+						break;
+
+					try {
+						subscriber.onNext(item);
+					} catch (final RuntimeException e) {
+						// a subscriber violating the spec (rule 2.13) is cancelled
+						LOG.warn("exception thrown by subscriber {}, cancelling its subscription", subscriber, e);
+						cancel();
+					}
+					emitted++;
+				}
+
+				if (emitted != 0 && demand != Long.MAX_VALUE)
+					requested.addAndGet(-emitted);
+
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
@@ -0,0 +1,534 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.relay;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.OgnClient;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.client.aprs.AprsFilter;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.utils.AprsUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local, APRS-IS compatible server relaying the beacons of a single upstream client to any number of downstream TCP
+ * clients. Downstream clients log in as they would with an APRS-IS server (<code>user CALL pass PASS vers APP VER
+ * [filter ...]</code>) and may change their filter at any time with a <code>#filter ...</code> command. Filters are
+ * evaluated locally, a client without a filter gets the full upstream feed. A filter with terms which can not be
+ * evaluated locally is refused (<code># unsupported filter ...</code>) and the client keeps its previous one. Anything
+ * else sent by the clients is ignored: the relay is read-only.
+ * <p>
+ * All the downstream connections are served by a single NIO selector thread. Every client has a bounded write buffer;
+ * a client not reading fast enough to keep its buffer from overflowing is disconnected, so that it can not slow down
+ * the upstream connection or the other clients.
+ */
+public class AprsRelayServer {
+
+	private static final Logger				LOG						= LoggerFactory.getLogger(AprsRelayServer.class);
+
+	/**
+	 * max length of a line sent by a downstream client
+	 */
+	private static final int				MAX_LINE_LENGTH			= 512;
+
+	/**
+	 * interval of the server comments sent to all the clients (as aprsc does), so that idle connections are kept open
+	 */
+	private static final long				KEEP_ALIVE_INTERVAL_MS	= 20000;
+
+	private static final int				DEFAULT_BUFFER_SIZE		= 64 * 1024;
+
+	private static final String				FILTER_COMMAND			= "#filter";
+
+	private final OgnClient					upstream;
+	private final InetSocketAddress			bindAddress;
+	private final int						clientBufferSize;
+	private final String					serverName;
+
+	private final Set<Downstream>			clients					= ConcurrentHashMap.newKeySet();
+	private final Queue<Downstream>			pendingWrites			= new ConcurrentLinkedQueue<>();
+
+	private final AtomicLong				acceptedClients			= new AtomicLong();
+	private final AtomicLong				evictedClients			= new AtomicLong();
+	private final AtomicLong				relayedLines			= new AtomicLong();
+
+	private final AircraftBeaconListener	aircraftBeaconListener	= (beacon, descriptor) -> relay(beacon);
+	private final ReceiverBeaconListener	receiverBeaconListener	= this::relay;
+
+	private volatile Selector				selector;
+	private ServerSocketChannel				serverChannel;
+	private Thread							selectorThread;
+	private volatile boolean				running;
+
+	public static class Builder {
+		private OgnClient	upstream;
+		private String		bindAddress;
+		private int			port;
+		private int			clientBufferSize	= DEFAULT_BUFFER_SIZE;
+		private String		serverName			= "OGNRELAY";
+
+		/**
+		 * @param client
+		 *            client providing the beacons to be relayed, connected and disconnected by the relay
+		 */
+		public Builder upstream(OgnClient client) {
+			this.upstream = client;
+			return this;
+		}
+
+		/**
+		 * @param address
+		 *            local address to listen on, loopback by default
+		 */
+		public Builder bindAddress(String address) {
+			this.bindAddress = address;
+			return this;
+		}
+
+		/**
+		 * @param port
+		 *            port to listen on, 0 for an ephemeral port
+		 */
+		public Builder port(int port) {
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * @param size
+		 *            size (bytes) of the write buffer of every downstream client. A client whose buffer overflows is
+		 *            disconnected.
+		 */
+		public Builder clientBufferSize(int size) {
+			this.clientBufferSize = size;
+			return this;
+		}
+
+		/**
+		 * @param name
+		 *            server name reported to the clients
+		 */
+		public Builder serverName(String name) {
+			this.serverName = name;
+			return this;
+		}
+
+		public AprsRelayServer build() {
+			if (upstream == null)
+				throw new IllegalStateException("upstream client not set");
+			return new AprsRelayServer(this);
+		}
+	}
+
+	private AprsRelayServer(Builder builder) {
+		this.upstream = builder.upstream;
+		this.bindAddress = builder.bindAddress == null
+				? new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port)
+				: new InetSocketAddress(builder.bindAddress, builder.port);
+		this.clientBufferSize = builder.clientBufferSize;
+		this.serverName = builder.serverName;
+	}
+
+	/**
+	 * opens the local port and connects the upstream client
+	 */
+	public synchronized void start() throws IOException {
+		if (running) {
+			LOG.warn("relay is already running. stop it first!");
+			return;
+		}
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(bindAddress);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		selectorThread = new Thread(this::selectLoop, "aprs-relay-" + getPort());
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+
+		upstream.subscribeToAircraftBeacons(aircraftBeaconListener);
+		upstream.subscribeToReceiverBeacons(receiverBeaconListener);
+		upstream.connect();
+
+		LOG.info("relay listening on {}", serverChannel.getLocalAddress());
+	}
+
+	/**
+	 * disconnects the upstream client and all the downstream clients
+	 */
+	public synchronized void stop() {
+		if (!running)
+			return;
+
+		upstream.unsubscribeFromAircraftBeacons(aircraftBeaconListener);
+		upstream.unsubscribeFromReceiverBeacons(receiverBeaconListener);
+		upstream.disconnect();
+
+		running = false;
+		selector.wakeup();
+		try {
+			selectorThread.join();
+		} catch (final InterruptedException e) {
+			LOG.warn("interrupted while waiting for the selector thread to stop");
+			// Restore interrupted state...
+			Thread.currentThread().interrupt();
+		}
+		LOG.info("relay stopped");
+	}
+
+	/**
+	 * @return local port the relay listens on
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * @return number of connected downstream clients
+	 */
+	public int getClientCount() {
+		return clients.size();
+	}
+
+	/**
+	 * @return total number of downstream clients accepted
+	 */
+	public long getAcceptedClients() {
+		return acceptedClients.get();
+	}
+
+	/**
+	 * @return number of downstream clients disconnected because of a write buffer overflow
+	 */
+	public long getEvictedClients() {
+		return evictedClients.get();
+	}
+
+	/**
+	 * @return number of upstream beacons relayed to at least one client
+	 */
+	public long getRelayedLines() {
+		return relayedLines.get();
+	}
+
+	/**
+	 * called by the upstream client's thread
+	 */
+	private void relay(OgnBeacon beacon) {
+		if (clients.isEmpty() || beacon.getRawPacket() == null)
+			return;
+
+		// encoded once, shared by all the clients
+		byte[] line = null;
+		boolean wakeup = false;
+		for (final Downstream client : clients) {
+			if (!client.loggedIn || !client.filter.test(beacon))
+				continue;
+
+			if (line == null)
+				line = (beacon.getRawPacket() + "\r\n").getBytes(US_ASCII);
+			wakeup |= client.enqueue(line);
+		}
+
+		if (line != null)
+			relayedLines.incrementAndGet();
+		if (wakeup)
+			selector.wakeup();
+	}
+
+	private void selectLoop() {
+		long lastKeepAlive = System.currentTimeMillis();
+		while (running) {
+			try {
+				selector.select(KEEP_ALIVE_INTERVAL_MS);
+
+				final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						process(key);
+					} catch (final Exception ex) {
+						// one failing client must not stop the relay for the others
+						LOG.warn("exception caught", ex);
+						if (key.attachment() != null)
+							close((Downstream) key.attachment());
+					}
+				}
+
+				Downstream client;
+				while ((client = pendingWrites.poll()) != null) {
+					try {
+						write(client);
+					} catch (final Exception ex) {
+						LOG.warn("exception caught", ex);
+						close(client);
+					}
+				}
+
+				final long now = System.currentTimeMillis();
+				if (now - lastKeepAlive >= KEEP_ALIVE_INTERVAL_MS) {
+					lastKeepAlive = now;
+					sendKeepAlive();
+				}
+			} catch (final IOException e) {
+				LOG.warn("exception caught", e);
+			}
+		}
+
+		for (final Downstream client : clients) {
+			close(client);
+		}
+		closeQuietly(serverChannel);
+		closeQuietly(selector);
+	}
+
+	private void process(SelectionKey key) throws IOException {
+		if (!key.isValid())
+			return;
+
+		if (key.isAcceptable()) {
+			accept();
+			return;
+		}
+
+		final Downstream client = (Downstream) key.attachment();
+		if (key.isReadable())
+			read(client);
+		if (key.isValid() && key.isWritable())
+			write(client);
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = serverChannel.accept();
+		if (channel == null)
+			return;
+
+		channel.configureBlocking(false);
+		final Downstream client = new Downstream(channel);
+		client.key = channel.register(selector, SelectionKey.OP_READ, client);
+		clients.add(client);
+		acceptedClients.incrementAndGet();
+		LOG.debug("client connected: {}", client);
+
+		client.enqueue(("# ogn-client-java relay " + serverName + "\r\n").getBytes(US_ASCII));
+	}
+
+	private void read(Downstream client) {
+		final ByteBuffer in = client.in;
+		try {
+			if (client.channel.read(in) < 0) {
+				LOG.debug("client disconnected: {}", client);
+				close(client);
+				return;
+			}
+		} catch (final IOException e) {
+			LOG.debug("client connection lost: {} {}", client, e.getMessage());
+			close(client);
+			return;
+		}
+
+		in.flip();
+		int start = in.position();
+		for (int i = start; i < in.limit(); i++) {
+			if (in.get(i) == '\n') {
+				final String line = new String(in.array(), start, i - start, US_ASCII).trim();
+				start = i + 1;
+				if (!line.isEmpty())
+					processLine(client, line);
+			}
+		}
+		in.position(start);
+		in.compact();
+
+		if (!in.hasRemaining()) {
+			LOG.warn("line longer than {} bytes received from {}. disconnecting..", MAX_LINE_LENGTH, client);
+			close(client);
+		}
+	}
+
+	private void processLine(Downstream client, String line) {
+		if (!client.loggedIn) {
+			if (line.startsWith("user "))
+				login(client, line);
+		} else if (line.startsWith(FILTER_COMMAND)) {
+			setFilter(client, line.substring(FILTER_COMMAND.length()).trim());
+		} else {
+			LOG.trace("ignoring line from {}: {}", client, line);
+		}
+	}
+
+	private void login(Downstream client, String line) {
+		final String[] tokens = line.split("\\s+");
+		final String callsign = tokens.length > 1 ? tokens[1] : "";
+
+		boolean verified = false;
+		final StringBuilder filter = new StringBuilder();
+		for (int i = 2; i < tokens.length; i++) {
+			if ("pass".equals(tokens[i]) && i + 1 < tokens.length) {
+				verified = tokens[i + 1].equals(Integer.toString(AprsUtils.generatePass(callsign)));
+			} else if ("filter".equals(tokens[i])) {
+				for (int j = i + 1; j < tokens.length; j++) {
+					filter.append(tokens[j]).append(' ');
+				}
+				break;
+			}
+		}
+
+		client.callsign = callsign;
+		client.enqueue(("# logresp " + callsign + (verified ? " verified" : " unverified") + ", server " + serverName
+				+ "\r\n").getBytes(US_ASCII));
+		if (filter.length() > 0)
+			setFilter(client, filter.toString().trim());
+		client.loggedIn = true;
+		LOG.debug("client logged in: {}", client);
+	}
+
+	private void setFilter(Downstream client, String filter) {
+		try {
+			final AprsFilter parsed = AprsFilter.parse(filter);
+			if (!parsed.isComplete()) {
+				client.enqueue(("# unsupported filter " + filter + "\r\n").getBytes(US_ASCII));
+				return;
+			}
+			client.filter = parsed;
+			client.enqueue(("# filter " + filter + " active\r\n").getBytes(US_ASCII));
+		} catch (final IllegalArgumentException e) {
+			client.enqueue(("# invalid filter " + filter + "\r\n").getBytes(US_ASCII));
+		}
+	}
+
+	private void sendKeepAlive() {
+		final SimpleDateFormat format = new SimpleDateFormat("dd MMM yyyy HH:mm:ss 'GMT'", Locale.ROOT);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		final byte[] line = ("# ogn-client-java relay " + format.format(new Date()) + " " + serverName + "\r\n")
+				.getBytes(US_ASCII);
+		for (final Downstream client : clients) {
+			client.enqueue(line);
+		}
+	}
+
+	private void write(Downstream client) {
+		if (!client.channel.isOpen())
+			return;
+
+		if (client.isEvicted()) {
+			LOG.info("write buffer of {} overflowed. disconnecting slow client..", client);
+			evictedClients.incrementAndGet();
+			close(client);
+			return;
+		}
+
+		try {
+			final boolean flushed = client.flush();
+			client.key.interestOps(flushed ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		} catch (final IOException e) {
+			LOG.debug("client connection lost: {} {}", client, e.getMessage());
+			close(client);
+		}
+	}
+
+	private void close(Downstream client) {
+		clients.remove(client);
+		client.key.cancel();
+		closeQuietly(client.channel);
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (final IOException e) {
+			// nothing to be done here apart from logging
+			LOG.warn("exception caught", e);
+		}
+	}
+
+	private final class Downstream {
+		final SocketChannel			channel;
+		final ByteBuffer			in		= ByteBuffer.allocate(MAX_LINE_LENGTH);
+		SelectionKey				key;
+		String						callsign;
+
+		volatile boolean			loggedIn;
+		volatile AprsFilter			filter	= AprsFilter.parse(null);
+
+		// guarded by this
+		private final ByteBuffer	out		= ByteBuffer.allocate(clientBufferSize);
+		private boolean				scheduled;
+		private boolean				evicted;
+
+		Downstream(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * @return true if the client has been scheduled for writing by this call
+		 */
+		synchronized boolean enqueue(byte[] line) {
+			if (evicted)
+				return false;
+
+			if (out.remaining() < line.length)
+				evicted = true;
+			else
+				out.put(line);
+
+			if (scheduled)
+				return false;
+			scheduled = true;
+			pendingWrites.add(this);
+			return true;
+		}
+
+		/**
+		 * @return true if the buffer has been written entirely
+		 */
+		synchronized boolean flush() throws IOException {
+			scheduled = false;
+			out.flip();
+			try {
+				channel.write(out);
+			} finally {
+				out.compact();
+			}
+			return out.position() == 0;
+		}
+
+		synchronized boolean isEvicted() {
+			return evicted;
+		}
+
+		@Override
+		public String toString() {
+			return (callsign == null ? "" : callsign + "@") + channel.socket().getRemoteSocketAddress();
+		}
+	}
+}
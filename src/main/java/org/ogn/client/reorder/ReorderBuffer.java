@@ -0,0 +1,316 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.reorder;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the beacons of every aircraft in order of their timestamps (event time), whatever the order they are
+ * received in from the receivers and connections. The beacons of an aircraft are held in a small buffer until the
+ * watermark of the aircraft (its latest timestamp minus the allowed lateness) passes them. A beacon arriving after a
+ * more recent one of the same aircraft has been delivered is late: it is counted and dropped (or, if configured so,
+ * delivered out of order).
+ * <p>
+ * The added latency and memory are bounded: a beacon is never held longer than the max delay (wall-clock time, enforced
+ * by a timer when the aircraft is not heard anymore), and at most the capacity of beacons are held per aircraft, the
+ * oldest one being delivered when the buffer is full.
+ * <p>
+ * Put the buffer between a client and the listeners which need ordered beacons:
+ * 
+ * <pre>
+ * client.subscribeToAircraftBeacons(new ReorderBuffer.Builder().listener(listener).build());
+ * </pre>
+ * 
+ * The listener is notified either from the thread notifying the buffer or from the buffer's timer thread, never
+ * concurrently.
+ */
+public class ReorderBuffer implements AircraftBeaconListener, AutoCloseable {
+
+	private static final Logger					LOG			= LoggerFactory.getLogger(ReorderBuffer.class);
+
+	private final AircraftBeaconListener		listener;
+	private final long							latenessMs;
+	private final long							maxDelayMs;
+	private final int							capacity;
+	private final boolean						dropLate;
+	private final long							stateTimeoutMs;
+
+	private final Map<String, Aircraft>			aircraft	= new HashMap<>();
+	private final ScheduledExecutorService		timer;
+
+	private long								received;
+	private long								delivered;
+	private long								reordered;
+	private long								late;
+	private long								overflows;
+
+	private static final class Entry {
+		final AircraftBeacon				beacon;
+		final Optional<AircraftDescriptor>	descriptor;
+		final long							arrivalMs;
+
+		Entry(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor, long arrivalMs) {
+			this.beacon = beacon;
+			this.descriptor = descriptor;
+			this.arrivalMs = arrivalMs;
+		}
+	}
+
+	private static final class Aircraft {
+		// sorted by timestamp, oldest first
+		final Entry[]	buffer;
+		int				size;
+		long			maxTimestamp	= Long.MIN_VALUE;
+		long			lastDelivered	= Long.MIN_VALUE;
+		long			lastArrivalMs;
+
+		Aircraft(int capacity) {
+			buffer = new Entry[capacity];
+		}
+	}
+
+	private ReorderBuffer(Builder builder, boolean startTimer) {
+		this.listener = builder.listener;
+		this.latenessMs = builder.latenessMs;
+		this.maxDelayMs = builder.maxDelayMs;
+		this.capacity = builder.capacity;
+		this.dropLate = builder.dropLate;
+		this.stateTimeoutMs = builder.stateTimeoutMs;
+		if (startTimer) {
+			timer = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread result = new Thread(r, "ogn-reorder-buffer");
+				result.setDaemon(true);
+				return result;
+			});
+			final long period = Math.max(1, maxDelayMs / 4);
+			timer.scheduleAtFixedRate(() -> flush(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+		} else {
+			timer = null;
+		}
+	}
+
+	public static class Builder {
+		private AircraftBeaconListener	listener;
+		private long					latenessMs		= 5000;
+		private long					maxDelayMs		= 5000;
+		private int						capacity		= 16;
+		private boolean					dropLate		= true;
+		private long					stateTimeoutMs	= 10 * 60 * 1000;
+
+		public Builder listener(AircraftBeaconListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * @param latenessMs
+		 *            how far (event time) the timestamp of a beacon may be behind the latest one of the same aircraft
+		 *            to still be delivered in order
+		 */
+		public Builder lateness(long latenessMs) {
+			this.latenessMs = latenessMs;
+			return this;
+		}
+
+		/**
+		 * @param maxDelayMs
+		 *            max time (wall clock) a beacon is held
+		 */
+		public Builder maxDelay(long maxDelayMs) {
+			this.maxDelayMs = maxDelayMs;
+			return this;
+		}
+
+		/**
+		 * @param beacons
+		 *            max number of beacons held per aircraft
+		 */
+		public Builder capacity(int beacons) {
+			this.capacity = beacons;
+			return this;
+		}
+
+		/**
+		 * @param dropLate
+		 *            if false, the late beacons are delivered out of order instead of being dropped
+		 */
+		public Builder dropLate(boolean dropLate) {
+			this.dropLate = dropLate;
+			return this;
+		}
+
+		/**
+		 * @param timeoutMs
+		 *            time after which the state of an aircraft which has not been heard is forgotten
+		 */
+		public Builder stateTimeout(long timeoutMs) {
+			this.stateTimeoutMs = timeoutMs;
+			return this;
+		}
+
+		public ReorderBuffer build() {
+			return build(true);
+		}
+
+		ReorderBuffer build(boolean startTimer) {
+			if (listener == null)
+				throw new IllegalStateException("a listener is required");
+			if (capacity < 1)
+				throw new IllegalStateException("the capacity must be positive");
+			return new ReorderBuffer(this, startTimer);
+		}
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		add(beacon, descriptor, System.currentTimeMillis());
+	}
+
+	synchronized void add(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor, long nowMs) {
+		received++;
+		Aircraft state = aircraft.get(beacon.getAddress());
+		if (state == null) {
+			state = new Aircraft(capacity);
+			aircraft.put(beacon.getAddress(), state);
+		}
+		state.lastArrivalMs = nowMs;
+
+		final long timestamp = beacon.getTimestamp();
+		if (timestamp < state.lastDelivered) {
+			late++;
+			if (!dropLate)
+				deliver(beacon, descriptor);
+			return;
+		}
+
+		if (state.size == capacity) {
+			overflows++;
+			deliverHead(state);
+		}
+
+		// insertion from the end, the beacons are mostly received in order
+		int i = state.size;
+		while (i > 0 && state.buffer[i - 1].beacon.getTimestamp() > timestamp) {
+			state.buffer[i] = state.buffer[i - 1];
+			i--;
+		}
+		if (i < state.size)
+			reordered++;
+		state.buffer[i] = new Entry(beacon, descriptor, nowMs);
+		state.size++;
+		state.maxTimestamp = Math.max(state.maxTimestamp, timestamp);
+
+		final long watermark = state.maxTimestamp - latenessMs;
+		while (state.size > 0 && state.buffer[0].beacon.getTimestamp() <= watermark) {
+			deliverHead(state);
+		}
+	}
+
+	/**
+	 * delivers the beacons held longer than the max delay (with the older beacons of the same aircraft), and forgets
+	 * the aircraft not heard anymore
+	 */
+	synchronized void flush(long nowMs) {
+		final Iterator<Aircraft> it = aircraft.values().iterator();
+		while (it.hasNext()) {
+			final Aircraft state = it.next();
+			int last = -1;
+			for (int i = 0; i < state.size; i++) {
+				if (nowMs - state.buffer[i].arrivalMs >= maxDelayMs)
+					last = i;
+			}
+			for (; last >= 0; last--) {
+				deliverHead(state);
+			}
+			if (state.size == 0 && nowMs - state.lastArrivalMs > stateTimeoutMs)
+				it.remove();
+		}
+	}
+
+	private void deliverHead(Aircraft state) {
+		final Entry entry = state.buffer[0];
+		System.arraycopy(state.buffer, 1, state.buffer, 0, --state.size);
+		state.buffer[state.size] = null;
+		state.lastDelivered = entry.beacon.getTimestamp();
+		deliver(entry.beacon, entry.descriptor);
+	}
+
+	private void deliver(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		delivered++;
+		try {
+			listener.onUpdate(beacon, descriptor);
+		} catch (final Exception e) {
+			LOG.warn("exception caught while notifying the listener", e);
+		}
+	}
+
+	/**
+	 * @return number of beacons received
+	 */
+	public synchronized long getReceived() {
+		return received;
+	}
+
+	/**
+	 * @return number of beacons delivered
+	 */
+	public synchronized long getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * @return number of beacons received out of order and put back in order
+	 */
+	public synchronized long getReordered() {
+		return reordered;
+	}
+
+	/**
+	 * @return number of beacons received after a more recent beacon of the same aircraft had been delivered
+	 */
+	public synchronized long getLate() {
+		return late;
+	}
+
+	/**
+	 * @return number of beacons delivered early because the buffer of their aircraft was full
+	 */
+	public synchronized long getOverflows() {
+		return overflows;
+	}
+
+	/**
+	 * @return number of beacons currently held
+	 */
+	public synchronized int getPending() {
+		int result = 0;
+		for (final Aircraft state : aircraft.values()) {
+			result += state.size;
+		}
+		return result;
+	}
+
+	/**
+	 * stops the timer and delivers all the beacons held
+	 */
+	@Override
+	public synchronized void close() {
+		if (timer != null)
+			timer.shutdownNow();
+		flush(Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.snapshot;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Positions of the aircraft at a tick of a {@link PositionSnapshotPublisher}, extrapolated to the time of the tick. The
+ * aircraft are held in parallel primitive arrays, accessed by index.
+ * <p>
+ * A key frame holds all the active aircraft. With delta encoding, the other snapshots only hold the aircraft whose
+ * position, altitude, track or speed has changed since the previous snapshot, and the aircraft which have been dropped
+ * since then.
+ */
+public class PositionSnapshot {
+
+	private final long			sequence;
+	private final long			timestamp;
+	private final boolean		keyFrame;
+	private final String[]		addresses;
+	private final float[]		lats;
+	private final float[]		lons;
+	private final float[]		alts;
+	private final short[]		tracks;
+	private final float[]		groundSpeeds;
+	private final List<String>	removed;
+
+	PositionSnapshot(long sequence, long timestamp, boolean keyFrame, String[] addresses, float[] lats, float[] lons,
+			float[] alts, short[] tracks, float[] groundSpeeds, List<String> removed) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.keyFrame = keyFrame;
+		this.addresses = addresses;
+		this.lats = lats;
+		this.lons = lons;
+		this.alts = alts;
+		this.tracks = tracks;
+		this.groundSpeeds = groundSpeeds;
+		this.removed = Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * @return number of the tick, starting from 0
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return time the positions have been extrapolated to (ms since the epoch)
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return true if the snapshot holds all the active aircraft, false if it only holds the changes since the previous
+	 *         one
+	 */
+	public boolean isKeyFrame() {
+		return keyFrame;
+	}
+
+	/**
+	 * @return number of aircraft in the snapshot
+	 */
+	public int size() {
+		return addresses.length;
+	}
+
+	public String getAddress(int index) {
+		return addresses[index];
+	}
+
+	public float getLat(int index) {
+		return lats[index];
+	}
+
+	public float getLon(int index) {
+		return lons[index];
+	}
+
+	/**
+	 * @return altitude in meters
+	 */
+	public float getAlt(int index) {
+		return alts[index];
+	}
+
+	/**
+	 * @return track in degrees
+	 */
+	public int getTrack(int index) {
+		return tracks[index];
+	}
+
+	/**
+	 * @return ground speed in km/h
+	 */
+	public float getGroundSpeed(int index) {
+		return groundSpeeds[index];
+	}
+
+	/**
+	 * @return addresses of the aircraft dropped since the previous snapshot (always empty in a key frame)
+	 */
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	@Override
+	public String toString() {
+		return "PositionSnapshot [sequence=" + sequence + ", timestamp=" + timestamp + ", keyFrame=" + keyFrame
+				+ ", size=" + addresses.length + ", removed=" + removed.size() + "]";
+	}
+}
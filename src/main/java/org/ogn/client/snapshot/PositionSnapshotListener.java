@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.snapshot;
+
+/**
+ * Interface that needs to be implemented by the entities receiving the position snapshots of the fleet
+ */
+public interface PositionSnapshotListener {
+	/**
+	 * @param snapshot
+	 *            positions of the aircraft at a tick
+	 */
+	void onSnapshot(final PositionSnapshot snapshot);
+}
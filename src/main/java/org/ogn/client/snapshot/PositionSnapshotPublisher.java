@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the positions of the whole fleet at a fixed rate, whatever the rate of the beacons: the latest kinematic
+ * state (position, altitude, track, speed, climb rate) of every aircraft is kept, and at every tick a single
+ * {@link PositionSnapshot} of all the active aircraft is sent, their positions dead-reckoned to the time of the tick.
+ * The aircraft not heard for longer than the max age are dropped.
+ * <p>
+ * With delta encoding, only the aircraft whose (rounded) values have changed since the previous tick and the dropped
+ * aircraft are sent, with a key frame holding all the aircraft every few ticks. The positions are rounded to 1e-5
+ * degree (~1 m), the altitudes to 1 m, the speeds to 1 km/h.
+ * <p>
+ * Recording a beacon only replaces the state of its aircraft in a concurrent map, so the notifying threads are never
+ * blocked by a tick. The listener is notified from the publisher's own timer thread.
+ */
+public class PositionSnapshotPublisher implements AircraftBeaconListener, AutoCloseable {
+
+	private static final Logger					LOG				= LoggerFactory
+			.getLogger(PositionSnapshotPublisher.class);
+
+	private static final double					M_PER_DEG_LAT	= 111320;
+	private static final double					E5				= 1e5;
+
+	private final PositionSnapshotListener		listener;
+	private final long							intervalMs;
+	private final long							maxAgeMs;
+	private final long							maxExtrapolationMs;
+	private final boolean						deltaEncoding;
+	private final int							keyFrameInterval;
+
+	private final Map<String, Kinematics>		aircraft		= new ConcurrentHashMap<>();
+	// values sent for every aircraft (rounded lat, lon, alt, track, speed), used by the tick thread only
+	private final Map<String, int[]>			published		= new HashMap<>();
+	private long								sequence;
+
+	private final ScheduledExecutorService		timer;
+
+	private static final class Kinematics {
+		final long		timestamp;
+		final long		arrivalMs;
+		final double	lat;
+		final double	lon;
+		final float		alt;
+		final int		track;
+		final float		groundSpeed;
+		final float		climbRate;
+
+		Kinematics(AircraftBeacon beacon, long arrivalMs) {
+			this.timestamp = beacon.getTimestamp();
+			this.arrivalMs = arrivalMs;
+			this.lat = beacon.getLat();
+			this.lon = beacon.getLon();
+			this.alt = beacon.getAlt();
+			this.track = beacon.getTrack();
+			this.groundSpeed = beacon.getGroundSpeed();
+			this.climbRate = beacon.getClimbRate();
+		}
+	}
+
+	private PositionSnapshotPublisher(Builder builder, boolean startTimer) {
+		this.listener = builder.listener;
+		this.intervalMs = builder.intervalMs;
+		this.maxAgeMs = builder.maxAgeMs;
+		this.maxExtrapolationMs = builder.maxExtrapolationMs;
+		this.deltaEncoding = builder.deltaEncoding;
+		this.keyFrameInterval = builder.keyFrameInterval;
+		if (startTimer) {
+			timer = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread result = new Thread(r, "ogn-snapshot-publisher");
+				result.setDaemon(true);
+				return result;
+			});
+			timer.scheduleAtFixedRate(() -> tick(System.currentTimeMillis()), intervalMs, intervalMs,
+					TimeUnit.MILLISECONDS);
+		} else {
+			timer = null;
+		}
+	}
+
+	public static class Builder {
+		private PositionSnapshotListener	listener;
+		private long						intervalMs			= 500;
+		private long						maxAgeMs			= 30000;
+		private long						maxExtrapolationMs	= 10000;
+		private boolean						deltaEncoding;
+		private int							keyFrameInterval	= 20;
+
+		public Builder listener(PositionSnapshotListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * @param intervalMs
+		 *            time between two snapshots
+		 */
+		public Builder interval(long intervalMs) {
+			this.intervalMs = intervalMs;
+			return this;
+		}
+
+		/**
+		 * @param maxAgeMs
+		 *            time after which an aircraft which has not been heard is dropped
+		 */
+		public Builder maxAge(long maxAgeMs) {
+			this.maxAgeMs = maxAgeMs;
+			return this;
+		}
+
+		/**
+		 * @param maxExtrapolationMs
+		 *            max time a position is dead-reckoned over, the aircraft stays still after that
+		 */
+		public Builder maxExtrapolation(long maxExtrapolationMs) {
+			this.maxExtrapolationMs = maxExtrapolationMs;
+			return this;
+		}
+
+		/**
+		 * @param keyFrameInterval
+		 *            number of ticks between two key frames, the snapshots in between only hold the changes
+		 */
+		public Builder deltaEncoding(int keyFrameInterval) {
+			this.deltaEncoding = true;
+			this.keyFrameInterval = keyFrameInterval;
+			return this;
+		}
+
+		public PositionSnapshotPublisher build() {
+			return build(true);
+		}
+
+		PositionSnapshotPublisher build(boolean startTimer) {
+			if (listener == null)
+				throw new IllegalStateException("a listener is required");
+			if (intervalMs <= 0 || keyFrameInterval <= 0)
+				throw new IllegalStateException("the interval and the key frame interval must be positive");
+			return new PositionSnapshotPublisher(this, startTimer);
+		}
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		add(beacon, System.currentTimeMillis());
+	}
+
+	void add(AircraftBeacon beacon, long nowMs) {
+		final Kinematics state = new Kinematics(beacon, nowMs);
+		// a beacon older than the current state is ignored
+		aircraft.merge(beacon.getAddress(), state, (old, update) -> update.timestamp >= old.timestamp ? update : old);
+	}
+
+	/**
+	 * builds and sends the snapshot of the given time
+	 */
+	synchronized void tick(long nowMs) {
+		final boolean keyFrame = !deltaEncoding || sequence % keyFrameInterval == 0;
+		final List<String> addresses = new ArrayList<>(aircraft.size());
+		final List<int[]> values = new ArrayList<>(aircraft.size());
+		final List<String> removed = new ArrayList<>();
+
+		for (final Map.Entry<String, Kinematics> entry : aircraft.entrySet()) {
+			final String address = entry.getKey();
+			final Kinematics state = entry.getValue();
+			if (nowMs - state.arrivalMs > maxAgeMs) {
+				// unless a fresh state has been merged meanwhile, published by the next snapshot
+				if (aircraft.remove(address, state) && published.remove(address) != null && !keyFrame)
+					removed.add(address);
+				continue;
+			}
+
+			final int[] rounded = extrapolate(state, nowMs);
+			final int[] previous = published.put(address, rounded);
+			if (keyFrame || previous == null || !Arrays.equals(previous, rounded)) {
+				addresses.add(address);
+				values.add(rounded);
+			}
+		}
+
+		final int size = addresses.size();
+		final float[] lats = new float[size];
+		final float[] lons = new float[size];
+		final float[] alts = new float[size];
+		final short[] tracks = new short[size];
+		final float[] speeds = new float[size];
+		for (int i = 0; i < size; i++) {
+			final int[] v = values.get(i);
+			lats[i] = (float) (v[0] / E5);
+			lons[i] = (float) (v[1] / E5);
+			alts[i] = v[2];
+			tracks[i] = (short) v[3];
+			speeds[i] = v[4];
+		}
+
+		final PositionSnapshot snapshot = new PositionSnapshot(sequence++, nowMs, keyFrame,
+				addresses.toArray(new String[size]), lats, lons, alts, tracks, speeds, removed);
+		try {
+			listener.onSnapshot(snapshot);
+		} catch (final Exception e) {
+			LOG.warn("exception caught while notifying the listener", e);
+		}
+	}
+
+	/**
+	 * @return the rounded lat, lon, alt, track and speed of the aircraft, dead-reckoned to the given time
+	 */
+	private int[] extrapolate(Kinematics state, long nowMs) {
+		final double dt = Math.max(0, Math.min(nowMs - state.timestamp, maxExtrapolationMs)) / 1000.0;
+		final double distance = state.groundSpeed / 3.6 * dt;
+		final double track = Math.toRadians(state.track);
+		final double lat = state.lat + distance * Math.cos(track) / M_PER_DEG_LAT;
+		final double lon = state.lon
+				+ distance * Math.sin(track) / (M_PER_DEG_LAT * Math.cos(Math.toRadians(state.lat)));
+		final double alt = state.alt + state.climbRate * dt;
+		return new int[]{(int) Math.round(lat * E5), (int) Math.round(lon * E5), (int) Math.round(alt), state.track,
+				Math.round(state.groundSpeed)};
+	}
+
+	/**
+	 * @return number of aircraft currently active
+	 */
+	public int getActiveAircraft() {
+		return aircraft.size();
+	}
+
+	/**
+	 * stops the timer
+	 */
+	@Override
+	public void close() {
+		if (timer != null)
+			timer.shutdownNow();
+	}
+}
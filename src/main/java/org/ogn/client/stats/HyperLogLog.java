@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.stats;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct strings added to it, in a fixed amount of memory (2^precision
+ * registers) and with a relative standard error of 1.04 / sqrt(2^precision). The registers are updated with
+ * compare-and-set, so strings can be added from several threads without locking.
+ */
+public class HyperLogLog {
+
+	private final int					precision;
+	private final AtomicIntegerArray	registers;
+
+	/**
+	 * @param precision
+	 *            number of bits of the hash selecting the register, between 4 and 16
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < 4 || precision > 16)
+			throw new IllegalArgumentException("the precision must be between 4 and 16");
+		this.precision = precision;
+		this.registers = new AtomicIntegerArray(1 << precision);
+	}
+
+	public void add(CharSequence value) {
+		addHash(hash(value));
+	}
+
+	void addHash(long hash) {
+		final int index = (int) (hash >>> (64 - precision));
+		// position of the first 1 bit of the remaining bits
+		final int rank = Long.numberOfLeadingZeros(hash << precision | 1L << (precision - 1)) + 1;
+		int current = registers.get(index);
+		while (rank > current && !registers.compareAndSet(index, current, rank)) {
+			current = registers.get(index);
+		}
+	}
+
+	/**
+	 * @param target
+	 *            registers to merge the registers of this sketch into (max of each register), of the same precision
+	 */
+	void mergeInto(int[] target) {
+		for (int i = 0; i < target.length; i++) {
+			target[i] = Math.max(target[i], registers.get(i));
+		}
+	}
+
+	public long estimate() {
+		final int[] copy = new int[1 << precision];
+		mergeInto(copy);
+		return estimate(copy);
+	}
+
+	/**
+	 * @return the estimated number of distinct values of the union of sketches whose registers have been merged
+	 */
+	static long estimate(int[] registers) {
+		final int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (final int register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0)
+				zeros++;
+		}
+		final double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+		// small range correction (linear counting)
+		if (estimate <= 2.5 * m && zeros > 0)
+			return Math.round(m * Math.log((double) m / zeros));
+		return Math.round(estimate);
+	}
+
+	/**
+	 * 64 bits FNV-1a hash, finalized by the MurmurHash3 mixer so that all the bits are well distributed
+	 */
+	static long hash(CharSequence value) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.stats;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.AircraftType;
+
+/**
+ * Streaming traffic statistics over sliding windows: beacons, beacons per aircraft type and per region, and distinct
+ * aircraft (overall and per region, estimated by {@link HyperLogLog} sketches).
+ * <p>
+ * The beacons are counted in a ring of time buckets (by default 60 buckets of one minute), selected by the beacon
+ * timestamps. A bucket is recycled, with a compare-and-set, when the first beacon of a new period reaches its slot;
+ * the beacons older than the oldest bucket are only counted as late, the beacons of a period after the next one on the
+ * local clock as future ones, so that a sender with a wrong clock cannot move the ring forward. The counters are
+ * striped and the sketches lock-free, so several threads can notify the statistics at the same time. A window is
+ * queried by merging its buckets: the cost of a query only depends on the number of buckets, not on the traffic. For
+ * both per-minute and per-day dashboards, two instances with different bucket sizes can be subscribed.
+ */
+public class TrafficStatistics implements AircraftBeaconListener {
+
+	private static final AircraftType[]		TYPES		= AircraftType.values();
+
+	private final long						bucketMs;
+	private final int						bucketCount;
+	private final int						precision;
+	private final List<Region>				regions;
+
+	private final AtomicReferenceArray<Bucket>	ring;
+	// period of the most recent bucket
+	private final AtomicLong					latestPeriod	= new AtomicLong(Long.MIN_VALUE);
+	private final LongAdder						lateBeacons		= new LongAdder();
+	private final LongAdder						futureBeacons	= new LongAdder();
+
+	private static final class Region {
+		final String	name;
+		final double	latN;
+		final double	lonW;
+		final double	latS;
+		final double	lonE;
+
+		Region(String name, double latN, double lonW, double latS, double lonE) {
+			this.name = name;
+			this.latN = latN;
+			this.lonW = lonW;
+			this.latS = latS;
+			this.lonE = lonE;
+		}
+
+		boolean contains(double lat, double lon) {
+			return lat <= latN && lat >= latS && lon >= lonW && lon <= lonE;
+		}
+	}
+
+	private static final class Bucket {
+		final long			period;
+		final LongAdder		beacons	= new LongAdder();
+		final LongAdder[]	byType	= new LongAdder[TYPES.length];
+		final LongAdder[]	byRegion;
+		final HyperLogLog	aircraft;
+		final HyperLogLog[]	aircraftByRegion;
+
+		Bucket(long period, int regions, int precision) {
+			this.period = period;
+			for (int i = 0; i < byType.length; i++) {
+				byType[i] = new LongAdder();
+			}
+			byRegion = new LongAdder[regions];
+			aircraftByRegion = new HyperLogLog[regions];
+			for (int i = 0; i < regions; i++) {
+				byRegion[i] = new LongAdder();
+				aircraftByRegion[i] = new HyperLogLog(precision);
+			}
+			aircraft = new HyperLogLog(precision);
+		}
+	}
+
+	private TrafficStatistics(Builder builder) {
+		this.bucketMs = builder.bucketMs;
+		this.bucketCount = builder.bucketCount;
+		this.precision = builder.precision;
+		this.regions = new ArrayList<>(builder.regions);
+		this.ring = new AtomicReferenceArray<>(bucketCount);
+	}
+
+	public static class Builder {
+		private long				bucketMs	= 60 * 1000;
+		private int					bucketCount	= 60;
+		private int					precision	= 10;
+		private final List<Region>	regions		= new ArrayList<>();
+
+		/**
+		 * @param bucketMs
+		 *            duration of a bucket, the resolution of the windows
+		 * @param bucketCount
+		 *            number of buckets, bucketMs * bucketCount is the longest window
+		 */
+		public Builder buckets(long bucketMs, int bucketCount) {
+			this.bucketMs = bucketMs;
+			this.bucketCount = bucketCount;
+			return this;
+		}
+
+		/**
+		 * @param precision
+		 *            precision of the distinct aircraft sketches, see {@link HyperLogLog#HyperLogLog(int)}
+		 */
+		public Builder precision(int precision) {
+			this.precision = precision;
+			return this;
+		}
+
+		/**
+		 * adds a region whose beacons and aircraft are counted separately (the regions may overlap)
+		 */
+		public Builder region(String name, double latN, double lonW, double latS, double lonE) {
+			regions.add(new Region(name, latN, lonW, latS, lonE));
+			return this;
+		}
+
+		public TrafficStatistics build() {
+			if (bucketMs <= 0 || bucketCount <= 0)
+				throw new IllegalStateException("the buckets must be positive");
+			// fails early on an invalid precision
+			new HyperLogLog(precision);
+			return new TrafficStatistics(this);
+		}
+	}
+
+	@Override
+	public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+		add(beacon, System.currentTimeMillis());
+	}
+
+	void add(AircraftBeacon beacon, long nowMs) {
+		final long period = Math.floorDiv(beacon.getTimestamp(), bucketMs);
+		if (period > Math.floorDiv(nowMs, bucketMs) + 1) {
+			futureBeacons.increment();
+			return;
+		}
+
+		if (period > latestPeriod.get())
+			latestPeriod.accumulateAndGet(period, Math::max);
+
+		final Bucket bucket = bucket(period);
+		if (bucket == null) {
+			lateBeacons.increment();
+			return;
+		}
+
+		final String address = beacon.getAddress();
+		bucket.beacons.increment();
+		bucket.aircraft.add(address);
+		final AircraftType type = beacon.getAircraftType();
+		if (type != null)
+			bucket.byType[type.ordinal()].increment();
+
+		for (int i = 0; i < bucket.byRegion.length; i++) {
+			if (regions.get(i).contains(beacon.getLat(), beacon.getLon())) {
+				bucket.byRegion[i].increment();
+				bucket.aircraftByRegion[i].add(address);
+			}
+		}
+	}
+
+	/**
+	 * @return the bucket of the given period, recycling the slot if it holds an older one, null if the period is too
+	 *         old to be counted
+	 */
+	private Bucket bucket(long period) {
+		if (period <= latestPeriod.get() - bucketCount)
+			return null;
+
+		final int slot = (int) Math.floorMod(period, (long) bucketCount);
+		Bucket bucket = ring.get(slot);
+		while (bucket == null || bucket.period != period) {
+			if (bucket != null && bucket.period > period)
+				return null;
+			final Bucket fresh = new Bucket(period, regions.size(), precision);
+			if (ring.compareAndSet(slot, bucket, fresh))
+				return fresh;
+			bucket = ring.get(slot);
+		}
+		return bucket;
+	}
+
+	/**
+	 * @param windowMs
+	 *            duration of the window, rounded up to whole buckets and capped to the longest window
+	 * @return the statistics of the last buckets, up to the most recent beacon
+	 */
+	public TrafficWindow getWindow(long windowMs) {
+		final long latest = latestPeriod.get();
+		final int count = (int) Math.max(1, Math.min(bucketCount, (windowMs + bucketMs - 1) / bucketMs));
+		long beacons = 0;
+		final long[] byType = new long[TYPES.length];
+		final long[] byRegion = new long[regions.size()];
+		final int[] aircraft = new int[1 << precision];
+		final int[][] aircraftByRegion = new int[regions.size()][1 << precision];
+
+		if (latest != Long.MIN_VALUE) {
+			for (long period = latest - count + 1; period <= latest; period++) {
+				final Bucket bucket = ring.get((int) Math.floorMod(period, (long) bucketCount));
+				if (bucket == null || bucket.period != period)
+					continue;
+				beacons += bucket.beacons.sum();
+				for (int i = 0; i < byType.length; i++) {
+					byType[i] += bucket.byType[i].sum();
+				}
+				bucket.aircraft.mergeInto(aircraft);
+				for (int i = 0; i < byRegion.length; i++) {
+					byRegion[i] += bucket.byRegion[i].sum();
+					bucket.aircraftByRegion[i].mergeInto(aircraftByRegion[i]);
+				}
+			}
+		}
+
+		final Map<AircraftType, Long> types = new EnumMap<>(AircraftType.class);
+		for (int i = 0; i < byType.length; i++) {
+			if (byType[i] > 0)
+				types.put(TYPES[i], byType[i]);
+		}
+		final Map<String, Long> regionBeacons = new LinkedHashMap<>();
+		final Map<String, Long> regionAircraft = new LinkedHashMap<>();
+		for (int i = 0; i < byRegion.length; i++) {
+			regionBeacons.put(regions.get(i).name, byRegion[i]);
+			regionAircraft.put(regions.get(i).name, HyperLogLog.estimate(aircraftByRegion[i]));
+		}
+
+		final long end = latest == Long.MIN_VALUE ? 0 : (latest + 1) * bucketMs;
+		return new TrafficWindow(end == 0 ? 0 : end - count * bucketMs, end, beacons, HyperLogLog.estimate(aircraft),
+				types, regionBeacons, regionAircraft);
+	}
+
+	/**
+	 * @return number of beacons older than the oldest bucket, which have not been counted
+	 */
+	public long getLateBeacons() {
+		return lateBeacons.sum();
+	}
+
+	/**
+	 * @return number of beacons timestamped after the next bucket on the local clock, which have not been counted
+	 */
+	public long getFutureBeacons() {
+		return futureBeacons.sum();
+	}
+}
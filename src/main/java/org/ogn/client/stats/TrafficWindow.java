@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.stats;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.ogn.commons.beacon.AircraftType;
+
+/**
+ * Traffic statistics over a time window, as a snapshot which is not updated anymore
+ */
+public class TrafficWindow {
+
+	private final long						start;
+	private final long						end;
+	private final long						beacons;
+	private final long						activeAircraft;
+	private final Map<AircraftType, Long>	beaconsByType;
+	private final Map<String, Long>			beaconsByRegion;
+	private final Map<String, Long>			activeAircraftByRegion;
+
+	TrafficWindow(long start, long end, long beacons, long activeAircraft, Map<AircraftType, Long> beaconsByType,
+			Map<String, Long> beaconsByRegion, Map<String, Long> activeAircraftByRegion) {
+		this.start = start;
+		this.end = end;
+		this.beacons = beacons;
+		this.activeAircraft = activeAircraft;
+		this.beaconsByType = Collections.unmodifiableMap(beaconsByType);
+		this.beaconsByRegion = Collections.unmodifiableMap(beaconsByRegion);
+		this.activeAircraftByRegion = Collections.unmodifiableMap(activeAircraftByRegion);
+	}
+
+	/**
+	 * @return start of the window (inclusive, ms since the epoch)
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return end of the window (exclusive, ms since the epoch)
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	public long getBeacons() {
+		return beacons;
+	}
+
+	/**
+	 * @return estimated number of distinct aircraft heard in the window
+	 */
+	public long getActiveAircraft() {
+		return activeAircraft;
+	}
+
+	/**
+	 * @return number of beacons per aircraft type (the types not heard are left out)
+	 */
+	public Map<AircraftType, Long> getBeaconsByType() {
+		return beaconsByType;
+	}
+
+	/**
+	 * @return number of beacons per region
+	 */
+	public Map<String, Long> getBeaconsByRegion() {
+		return beaconsByRegion;
+	}
+
+	/**
+	 * @return estimated number of distinct aircraft heard in every region
+	 */
+	public Map<String, Long> getActiveAircraftByRegion() {
+		return activeAircraftByRegion;
+	}
+
+	@Override
+	public String toString() {
+		return "TrafficWindow [start=" + start + ", end=" + end + ", beacons=" + beacons + ", activeAircraft="
+				+ activeAircraft + ", beaconsByType=" + beaconsByType + ", beaconsByRegion=" + beaconsByRegion + "]";
+	}
+}
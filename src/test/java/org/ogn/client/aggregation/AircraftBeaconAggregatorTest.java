@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class AircraftBeaconAggregatorTest {
+
+	private static AircraftBeacon report(String receiver, String time, String snr, int errors) {
+		return (AircraftBeacon) AprsLineParser.get().parse("FLRDD9350>APRS,qAS," + receiver + ":/" + time
+				+ "h5243.82N/00631.41E'/A=000026 id06DD9350 +020fpm +0.0rot " + snr + "dB " + errors
+				+ "e +3.0kHz gps2x3");
+	}
+
+	@Test
+	public void testMerge() {
+		final List<MergedAircraftBeacon> merged = new ArrayList<>();
+		final AircraftBeaconAggregator aggregator =
+				new AircraftBeaconAggregator(500, (beacon, descriptor) -> merged.add(beacon), false);
+
+		aggregator.add(report("EHHO", "102542", "34.5", 1), Optional.empty(), 1000);
+		aggregator.add(report("Salland", "102542", "12.0", 0), Optional.empty(), 1100);
+		// the next fix, opens a new group
+		aggregator.add(report("EHHO", "102544", "30.0", 0), Optional.empty(), 1200);
+		aggregator.add(report("Lemelerv", "102542", "20.5", 0), Optional.empty(), 1300);
+		// the same receiver twice (e.g. received from redundant servers)
+		aggregator.add(report("Salland", "102542", "12.0", 0), Optional.empty(), 1350);
+		assertEquals(0, merged.size());
+
+		aggregator.flush(1499);
+		assertEquals(0, merged.size());
+		aggregator.flush(1500);
+		assertEquals(1, merged.size());
+
+		final MergedAircraftBeacon first = merged.get(0);
+		assertEquals(Arrays.asList("EHHO", "Salland", "Lemelerv"), first.getReceivers());
+		// no errors first, then the strongest signal
+		assertEquals("Lemelerv", first.getBeacon().getReceiverName());
+		assertEquals(0, first.getBeacon().getErrorCount());
+
+		// a late report of an already delivered fix
+		aggregator.add(report("Hoogeveen", "102542", "5.0", 0), Optional.empty(), 1600);
+		aggregator.close();
+		assertEquals(3, merged.size());
+		assertEquals(Arrays.asList("EHHO"), merged.get(1).getReceivers());
+		assertEquals(Arrays.asList("Hoogeveen"), merged.get(2).getReceivers());
+
+		assertEquals(6, aggregator.getReports());
+		assertEquals(3, aggregator.getMergedBeacons());
+	}
+
+	@Test(timeout = 5000)
+	public void testTimer() throws Exception {
+		final List<MergedAircraftBeacon> merged = new ArrayList<>();
+		try (AircraftBeaconAggregator aggregator =
+				new AircraftBeaconAggregator(100, (beacon, descriptor) -> merged.add(beacon))) {
+			aggregator.onUpdate(report("EHHO", "102542", "34.5", 0), Optional.empty());
+			aggregator.onUpdate(report("Salland", "102542", "12.0", 0), Optional.empty());
+
+			// delivered without any further report
+			while (aggregator.getMergedBeacons() == 0)
+				Thread.sleep(10);
+			assertEquals(1, merged.size());
+			assertTrue(merged.get(0).getReceivers().contains("Salland"));
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.AircraftType;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class AircraftListenerIndexTest {
+
+	// glider DD9350 at 52.73N 6.52E, 8 m
+	static final String	GLIDER	= "FLRDD9350>APRS,qAS,EHHO:/102542h5243.82N/00631.41E'/A=000026 id06DD9350 +020fpm";
+	// tow plane DD8222 at 52.74N 6.54E, 248 m
+	static final String	TUG		= "PH-1224>APRS,qAS,EHHO:/102544h5244.41N/00632.62E'094/067/A=000813 id0ADD8222 -237fpm";
+	// glider DDD7F8 at 52.47N 6.35E, 156 m
+	static final String	GLIDER2	= "PH-1293>APRS,qAS,Salland:/102539h5228.39N/00621.07E'124/057/A=000512 id06DDD7F8 -157fpm";
+
+	static class Listener implements AircraftBeaconListener {
+		final List<String> addresses = new ArrayList<>();
+
+		@Override
+		public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+			addresses.add(beacon.getAddress());
+		}
+	}
+
+	private static void route(AircraftListenerIndex index, String... lines) {
+		for (final String line : lines) {
+			final AircraftBeacon beacon = (AircraftBeacon) AprsLineParser.get().parse(line);
+			index.forEachMatching(beacon, listener -> listener.onUpdate(beacon, Optional.empty()));
+		}
+	}
+
+	@Test
+	public void testRouting() {
+		final AircraftListenerIndex index = new AircraftListenerIndex();
+		assertTrue(index.isEmpty());
+
+		final Listener watchlist = new Listener();
+		final Listener area = new Listener();
+		final Listener gliders = new Listener();
+		final Listener low = new Listener();
+		final Listener gliderInArea = new Listener();
+		index.add(watchlist, new AircraftBeaconSelector.Builder().addresses("DD9350", "DD8222").build());
+		index.add(area, new AircraftBeaconSelector.Builder().area(52.6, 6.4, 52.8, 6.6).build());
+		index.add(gliders, new AircraftBeaconSelector.Builder().aircraftTypes(AircraftType.GLIDER).build());
+		index.add(low, new AircraftBeaconSelector.Builder().altitude(0, 200).build());
+		index.add(gliderInArea, new AircraftBeaconSelector.Builder().area(52.6, 6.4, 52.8, 6.6)
+				.aircraftTypes(AircraftType.GLIDER).build());
+		assertFalse(index.isEmpty());
+		assertEquals(5, index.size());
+
+		route(index, GLIDER, TUG, GLIDER2);
+
+		assertEquals(Arrays.asList("DD9350", "DD8222"), watchlist.addresses);
+		assertEquals(Arrays.asList("DD9350", "DD8222"), area.addresses);
+		assertEquals(Arrays.asList("DD9350", "DDD7F8"), gliders.addresses);
+		assertEquals(Arrays.asList("DD9350", "DDD7F8"), low.addresses);
+		assertEquals(Arrays.asList("DD9350"), gliderInArea.addresses);
+
+		// a new selector replaces the previous one
+		index.add(watchlist, new AircraftBeaconSelector.Builder().addresses("DDD7F8").build());
+		assertTrue(index.remove(area));
+		assertFalse(index.remove(area));
+		route(index, GLIDER, TUG, GLIDER2);
+		assertEquals(Arrays.asList("DD9350", "DD8222", "DDD7F8"), watchlist.addresses);
+		assertEquals(2, area.addresses.size());
+		assertEquals(4, index.size());
+	}
+
+	@Test
+	public void testCellBoundaries() {
+		final AircraftListenerIndex index = new AircraftListenerIndex();
+		final Listener listener = new Listener();
+		// spans 4 cells, the glider is in the north-eastern one
+		index.add(listener, new AircraftBeaconSelector.Builder().area(51.5, 5.5, 52.74, 6.53).build());
+		route(index, GLIDER, TUG, GLIDER2);
+		assertEquals(Arrays.asList("DD9350", "DDD7F8"), listener.addresses);
+
+		// too many cells for the grid, checked for every beacon
+		final Listener world = new Listener();
+		index.add(world, new AircraftBeaconSelector.Builder().area(-90, -180, 90, 180).build());
+		route(index, TUG);
+		assertEquals(Collections.singletonList("DD8222"), world.addresses);
+	}
+
+	@Test
+	public void testClientSubscription() throws Exception {
+		final AprsOgnClient client = new AprsOgnClient.Builder().build();
+		final Listener listener = new Listener();
+		client.subscribeToAircraftBeacons(listener,
+				new AircraftBeaconSelector.Builder().addresses("DD8222").build());
+
+		for (final String line : Arrays.asList(GLIDER, TUG, GLIDER2)) {
+			client.notifyAllListeners(AprsLineParser.get().parse(line), new AprsLine(line, System.nanoTime()));
+		}
+		assertEquals(Collections.singletonList("DD8222"), listener.addresses);
+
+		// a plain subscription replaces the selective one
+		client.subscribeToAircraftBeacons(listener);
+		client.notifyAllListeners(AprsLineParser.get().parse(GLIDER), new AprsLine(GLIDER, System.nanoTime()));
+		assertEquals(Arrays.asList("DD8222", "DD9350"), listener.addresses);
+
+		client.unsubscribeFromAircraftBeacons(listener);
+		client.notifyAllListeners(AprsLineParser.get().parse(GLIDER), new AprsLine(GLIDER, System.nanoTime()));
+		assertEquals(2, listener.addresses.size());
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class AprsFilterTest {
+
+	// Salland, 52.468N 6.341E
+	static final OgnBeacon	AIRCRAFT	= AprsLineParser.get().parse(
+			"PH-881>APRS,qAS,Salland:/102537h5228.09N/00620.44E'/A=000000 id06DDD7EA -019fpm +0.0rot 25.5dB 0e -7.8kHz gps2x2 hearD7F8 hearDA95");
+
+	static final OgnBeacon	RECEIVER	= AprsLineParser.get().parse(
+			"EBZW>APRS,TCPIP*,qAC,GLIDERN1:/102546h5100.86NI00531.43E&/A=000298 CPU:0.9 RAM:968.2/1056.5MB NTP:1.5ms/-20.0ppm RF:+127-2.9ppm/+4.3dB");
+
+	@Test
+	public void testNoFilter() {
+		assertTrue(AprsFilter.parse(null).isPassAll());
+		assertTrue(AprsFilter.parse(" ").test(AIRCRAFT));
+	}
+
+	@Test
+	public void testRange() {
+		assertTrue(AprsFilter.parse("r/52.5/6.3/10").test(AIRCRAFT));
+		assertFalse(AprsFilter.parse("r/52.5/6.3/10").test(RECEIVER));
+		assertTrue(AprsFilter.parse("r/52.5/6.3/10 r/51/5.5/5").test(RECEIVER));
+	}
+
+	@Test
+	public void testArea() {
+		assertTrue(AprsFilter.parse("a/53/6/52/7").test(AIRCRAFT));
+		assertFalse(AprsFilter.parse("a/53/6/52/7").test(RECEIVER));
+	}
+
+	@Test
+	public void testPrefixAndBudlist() {
+		assertTrue(AprsFilter.parse("p/PH").test(AIRCRAFT));
+		assertFalse(AprsFilter.parse("p/FLR/ICA").test(AIRCRAFT));
+		assertTrue(AprsFilter.parse("b/PH-881").test(AIRCRAFT));
+		assertTrue(AprsFilter.parse("b/FLR*/PH-8*1").test(AIRCRAFT));
+		assertFalse(AprsFilter.parse("b/PH-88").test(AIRCRAFT));
+	}
+
+	@Test
+	public void testExclusion() {
+		assertFalse(AprsFilter.parse("r/52.5/6.3/500 -p/PH").test(AIRCRAFT));
+		assertTrue(AprsFilter.parse("r/52.5/6.3/500 -p/PH").test(RECEIVER));
+		// exclusions only: nothing passes
+		assertFalse(AprsFilter.parse("-p/XX").test(AIRCRAFT));
+		// unsupported terms never match
+		assertTrue(AprsFilter.parse("m/50 p/PH").test(AIRCRAFT));
+		assertFalse(AprsFilter.parse("m/50").test(AIRCRAFT));
+		assertFalse(AprsFilter.parse("m/50").isComplete());
+		assertFalse(AprsFilter.parse("m/50 p/PH").isComplete());
+		assertTrue(AprsFilter.parse("r/52.5/6.3/500 -p/PH").isComplete());
+	}
+
+	@Test
+	public void testParseLocal() {
+		assertFalse(AprsFilter.parseLocal("p/XX").test(AIRCRAFT));
+		// not evaluable on the client: nothing is filtered
+		assertTrue(AprsFilter.parseLocal("m/50").isPassAll());
+		assertTrue(AprsFilter.parseLocal("m/50 p/XX").isPassAll());
+		assertTrue(AprsFilter.parseLocal(null).isPassAll());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformed() {
+		AprsFilter.parse("r/52.5/x/10");
+	}
+
+	@Test
+	public void testDistance() {
+		assertEquals(111.2, AprsFilter.distanceKm(0, 0, 1, 0), 0.1);
+	}
+}
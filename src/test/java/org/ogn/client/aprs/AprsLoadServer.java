@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A multi-client APRS-IS like server streaming synthetic OGN traffic (see {@link AprsTrafficGenerator}) at a
+ * configurable rate, used for load and soak testing. It can simulate traffic bursts and periodically drop the client
+ * connections to exercise re-connections, over plain TCP or TLS.
+ */
+public class AprsLoadServer {
+
+	private static final Logger			LOG					= LoggerFactory.getLogger(AprsLoadServer.class);
+
+	public static final String			TEST_KEYSTORE		= "aprs-test.jks";
+	public static final char[]			TEST_KEYSTORE_PASS	= "changeit".toCharArray();
+
+	private final int					linesPerSecond;
+	private final boolean				tls;
+
+	private double						burstFactor			= 1;
+	private long						burstEveryMs;
+	private long						burstDurationMs;
+	private long						dropEveryMs;
+
+	private final ExecutorService		executor			= Executors.newCachedThreadPool();
+	private final List<Socket>			clients				= new CopyOnWriteArrayList<>();
+	private final AtomicLong			linesSent			= new AtomicLong();
+	private final AtomicLong			connections			= new AtomicLong();
+
+	private volatile ServerSocket		serverSocket;
+	private volatile boolean			running;
+
+	/**
+	 * @param linesPerSecond
+	 *            nominal rate of lines sent to every client
+	 * @param tls
+	 *            if true the server expects TLS connections, using the self-signed test certificate
+	 */
+	public AprsLoadServer(int linesPerSecond, boolean tls) {
+		this.linesPerSecond = linesPerSecond;
+		this.tls = tls;
+	}
+
+	/**
+	 * every burstEveryMs, the rate is multiplied by burstFactor for burstDurationMs
+	 */
+	public AprsLoadServer bursts(double burstFactor, long burstEveryMs, long burstDurationMs) {
+		this.burstFactor = burstFactor;
+		this.burstEveryMs = burstEveryMs;
+		this.burstDurationMs = burstDurationMs;
+		return this;
+	}
+
+	/**
+	 * every client connection gets closed by the server after dropEveryMs
+	 */
+	public AprsLoadServer dropConnections(long dropEveryMs) {
+		this.dropEveryMs = dropEveryMs;
+		return this;
+	}
+
+	/**
+	 * @return an SSL context trusting (and presenting) the self-signed test certificate
+	 */
+	public static SSLContext createTestSslContext() {
+		try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(TEST_KEYSTORE)) {
+			final KeyStore ks = KeyStore.getInstance("JKS");
+			ks.load(is, TEST_KEYSTORE_PASS);
+
+			final KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+			kmf.init(ks, TEST_KEYSTORE_PASS);
+			final TrustManagerFactory tmf =
+					TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			tmf.init(ks);
+
+			final SSLContext result = SSLContext.getInstance("TLS");
+			result.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+			return result;
+		} catch (final Exception e) {
+			throw new IllegalStateException("could not load the test keystore", e);
+		}
+	}
+
+	/**
+	 * starts listening on an ephemeral port
+	 * 
+	 * @return the port
+	 */
+	public int start() throws IOException {
+		serverSocket = tls
+				? createTestSslContext().getServerSocketFactory().createServerSocket(0, 50,
+						InetAddress.getLoopbackAddress())
+				: new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		running = true;
+		executor.submit(this::acceptLoop);
+		LOG.info("load server listening on port {} TLS: {}, {} lines/s", serverSocket.getLocalPort(), tls,
+				linesPerSecond);
+		return serverSocket.getLocalPort();
+	}
+
+	public void stop() {
+		running = false;
+		try {
+			serverSocket.close();
+		} catch (final IOException e) {
+			LOG.warn("exception caught", e);
+		}
+		for (final Socket client : clients) {
+			closeQuietly(client);
+		}
+		executor.shutdownNow();
+	}
+
+	public long getLinesSent() {
+		return linesSent.get();
+	}
+
+	public long getConnections() {
+		return connections.get();
+	}
+
+	private void acceptLoop() {
+		while (running) {
+			try {
+				final Socket client = serverSocket.accept();
+				connections.incrementAndGet();
+				clients.add(client);
+				executor.submit(() -> serve(client));
+			} catch (final IOException e) {
+				if (running)
+					LOG.warn("exception caught", e);
+			}
+		}
+	}
+
+	private double currentRate(long elapsedMs) {
+		if (burstEveryMs > 0 && elapsedMs % burstEveryMs < burstDurationMs)
+			return linesPerSecond * burstFactor;
+		return linesPerSecond;
+	}
+
+	private void serve(Socket client) {
+		final long seed = connections.get();
+		final AprsTrafficGenerator generator = new AprsTrafficGenerator(seed);
+		try {
+			final BufferedReader in =
+					new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+			final Writer out = new BufferedWriter(
+					new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII), 64 * 1024);
+
+			out.write("# aprsc 2.0.14-g28c5a6a\r\n");
+			out.flush();
+			final String login = in.readLine();
+			if (login == null)
+				return;
+			out.write("# logresp " + login.split(" ")[1] + " unverified, server GLIDERN1\r\n");
+
+			final long start = System.nanoTime();
+			double owed = 0;
+			long last = start;
+			while (running && !client.isClosed()) {
+				final long now = System.nanoTime();
+				final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(now - start);
+
+				if (dropEveryMs > 0 && elapsedMs >= dropEveryMs) {
+					LOG.info("dropping the client connection");
+					break;
+				}
+
+				owed += currentRate(elapsedMs) * (now - last) / 1e9;
+				last = now;
+
+				final long wallClockMs = System.currentTimeMillis();
+				int batch = 0;
+				while (owed >= 1) {
+					out.write(generator.nextLine(wallClockMs));
+					out.write("\r\n");
+					owed--;
+					batch++;
+				}
+
+				if (batch > 0) {
+					out.flush();
+					linesSent.addAndGet(batch);
+				} else {
+					Thread.sleep(1);
+				}
+			}
+		} catch (final IOException e) {
+			LOG.debug("client connection lost: {}", e.getMessage());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			clients.remove(client);
+			closeQuietly(client);
+		}
+	}
+
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (final IOException e) {
+			// nothing to be done here apart from logging
+			LOG.warn("exception caught", e);
+		}
+	}
+}
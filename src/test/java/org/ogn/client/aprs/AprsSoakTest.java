@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ogn.client.metrics.LatencyStage;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Soak tests of the client against the {@link AprsLoadServer}. They are skipped unless a duration is given, e.g.:
+ * 
+ * <pre>
+ * mvn test -Dtest=AprsSoakTest -Dogn.client.soak.duration=300 -Dogn.client.soak.rate=50000
+ * </pre>
+ */
+public class AprsSoakTest {
+
+	private static final Logger	LOG				= LoggerFactory.getLogger(AprsSoakTest.class);
+
+	// soak duration in seconds, 0 means the soak tests are skipped
+	private static final int	DURATION		= Integer.getInteger("ogn.client.soak.duration", 0);
+	private static final int	RATE			= Integer.getInteger("ogn.client.soak.rate", 20000);
+
+	private static final long	MAX_HEAP_GROWTH	= 64 * 1024 * 1024;
+
+	private AprsLoadServer		server;
+	private AprsOgnClient		client;
+
+	@Test
+	public void testGeneratedTrafficIsParseable() {
+		final AprsTrafficGenerator generator = new AprsTrafficGenerator(1);
+		long now = System.currentTimeMillis();
+		int aircraft = 0;
+		int receivers = 0;
+		for (int i = 0; i < 5000; i++) {
+			now += 10;
+			final String line = generator.nextLine(now);
+			if (line.startsWith("#"))
+				continue;
+
+			final OgnBeacon beacon = AprsLineParser.get().parse(line);
+			assertNotNull(line, beacon);
+			if (beacon instanceof AircraftBeacon)
+				aircraft++;
+			else if (beacon instanceof ReceiverBeacon)
+				receivers++;
+		}
+		assertTrue(aircraft > 4500);
+		assertTrue(receivers > 0);
+		assertEquals(5000, aircraft + receivers);
+	}
+
+	@Test
+	public void testPlainTcp() throws Exception {
+		soak(new AprsLoadServer(RATE, false), false, RATE);
+	}
+
+	@Test
+	public void testTls() throws Exception {
+		soak(new AprsLoadServer(RATE, true), true, RATE);
+	}
+
+	@Test
+	public void testBurstsAndReconnects() throws Exception {
+		// 5x bursts lasting 2s every 10s, connection dropped every 15s
+		soak(new AprsLoadServer(RATE, false).bursts(5, 10000, 2000).dropConnections(15000), false, 5 * RATE);
+		assertTrue(client.getMetrics().getReconnects() > 0 || DURATION < 15);
+	}
+
+	private void soak(AprsLoadServer loadServer, boolean tls, int peakRate) throws Exception {
+		assumeTrue(DURATION > 0);
+
+		server = loadServer;
+		final int port = server.start();
+		// the client must trust the self-signed certificate of the load server
+		client = new AprsOgnClient.Builder().serverName("localhost").unfilteredPort(port).unfilteredSslPort(port)
+				.useSsl(tls).sslContext(AprsLoadServer.createTestSslContext()).reconnectionTimeout(100).build();
+
+		final LongAdder received = new LongAdder();
+		client.subscribeToAircraftBeacons((beacon, descriptor) -> received.increment());
+		client.subscribeToReceiverBeacons(beacon -> received.increment());
+		client.connect();
+
+		final OgnClientMetrics metrics = client.getMetrics();
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		long baselineHeap = 0;
+		int maxQueueDepth = 0;
+		for (int second = 1; second <= DURATION; second++) {
+			Thread.sleep(1000);
+
+			// give the JIT and the heap some time to settle before taking the baseline
+			if (second == Math.max(1, DURATION / 5)) {
+				System.gc();
+				baselineHeap = memory.getHeapMemoryUsage().getUsed();
+			} else if (second > DURATION / 5) {
+				maxQueueDepth = Math.max(maxQueueDepth, metrics.getQueueDepth());
+			}
+
+			LOG.info("{}s: sent: {} read: {} ({}/s) queue: {} heap: {}MB e2e p99: {}us", second,
+					server.getLinesSent(), metrics.getLinesRead(), (long) metrics.getLinesPerSecond(),
+					metrics.getQueueDepth(), memory.getHeapMemoryUsage().getUsed() >> 20,
+					metrics.getEndToEndLatencyP99Micros());
+		}
+
+		System.gc();
+		final long heapGrowth = memory.getHeapMemoryUsage().getUsed() - baselineHeap;
+
+		LOG.info("{} lines sent, {} read, {} dispatched, max queue depth: {}, heap growth: {}KB, latencies: {}",
+				server.getLinesSent(), metrics.getLinesRead(), received.sum(), maxQueueDepth, heapGrowth >> 10,
+				String.join("; ", metrics.getStageLatencyStats()));
+
+		// throughput: the client keeps up with the server
+		assertTrue(metrics.getLinesRead() >= server.getLinesSent() * 0.9);
+		assertEquals(0, metrics.getParseFailures());
+		// no backlog building up: never more than 2 seconds worth of traffic waiting in the queue
+		assertTrue("max queue depth: " + maxQueueDepth, maxQueueDepth < 2 * peakRate);
+		// memory stability
+		assertTrue("heap growth: " + heapGrowth, heapGrowth < MAX_HEAP_GROWTH);
+		// latency added by the client
+		assertTrue(metrics.getLatency(LatencyStage.END_TO_END).getPercentile(99, TimeUnit.MILLISECONDS) < 1000);
+	}
+
+	@After
+	public void tearDown() {
+		if (client != null)
+			client.disconnect();
+		if (server != null)
+			server.stop();
+	}
+}
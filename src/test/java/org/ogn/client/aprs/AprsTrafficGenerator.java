@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates realistic, endless OGN APRS traffic: aircraft flying over a region (position, track, ground speed and
+ * climb rate evolve with time), heard by a set of fixed receivers, interleaved with receiver status beacons and server
+ * comments. The generator is seeded, it produces the same traffic for the same parameters.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class AprsTrafficGenerator {
+
+	private static final double	KM_PER_DEG_LAT				= 111.32;
+	private static final double	KNOTS_TO_KMH				= 1.852;
+
+	// out of every 100 lines, how many are receiver beacons and how many server comments
+	private static final int	RECEIVER_LINES_PERCENT		= 3;
+	private static final int	SERVER_COMMENT_EVERY_LINES	= 20000;
+
+	private final Random		random;
+	private final double		centerLat;
+	private final double		centerLon;
+	private final double		radiusKm;
+
+	private final Aircraft[]	aircraft;
+	private final Receiver[]	receivers;
+
+	private long				lines;
+	private int					nextAircraft;
+	private int					nextReceiver;
+
+	private static class Aircraft {
+		String	address;
+		int		idByte;
+		double	lat;
+		double	lon;
+		double	altM;
+		double	trackDeg;
+		double	speedKmh;
+		double	climbMs;
+		long	lastUpdateMs;
+	}
+
+	private static class Receiver {
+		String	name;
+		double	lat;
+		double	lon;
+	}
+
+	/**
+	 * @param seed
+	 *            random seed
+	 * @param centerLat
+	 *            latitude of the center of the simulated region
+	 * @param centerLon
+	 *            longitude of the center of the simulated region
+	 * @param radiusKm
+	 *            radius of the simulated region
+	 * @param aircraftCount
+	 *            number of simulated aircraft
+	 * @param receiverCount
+	 *            number of simulated receivers
+	 */
+	public AprsTrafficGenerator(long seed, double centerLat, double centerLon, double radiusKm, int aircraftCount,
+			int receiverCount) {
+		this.random = new Random(seed);
+		this.centerLat = centerLat;
+		this.centerLon = centerLon;
+		this.radiusKm = radiusKm;
+
+		aircraft = new Aircraft[aircraftCount];
+		for (int i = 0; i < aircraftCount; i++) {
+			final Aircraft a = new Aircraft();
+			a.address = String.format(Locale.ROOT, "%06X", 0xD00000 + i);
+			// mostly gliders (type 1), some tow planes (type 2) and powered aircraft (type 8), FLARM addresses
+			final int r = random.nextInt(10);
+			final int type = r < 7 ? 1 : r < 9 ? 2 : 8;
+			a.idByte = type << 2 | 2;
+			final double[] position = randomPosition();
+			a.lat = position[0];
+			a.lon = position[1];
+			// a third of the fleet is on the ground
+			final boolean flying = random.nextInt(3) > 0;
+			a.altM = flying ? 300 + random.nextInt(2500) : 100;
+			a.trackDeg = random.nextInt(360);
+			a.speedKmh = flying ? 70 + random.nextInt(150) : 0;
+			a.climbMs = flying ? random.nextGaussian() * 2 : 0;
+			aircraft[i] = a;
+		}
+
+		receivers = new Receiver[Math.max(1, receiverCount)];
+		for (int i = 0; i < receivers.length; i++) {
+			final Receiver rec = new Receiver();
+			rec.name = "Rec" + i;
+			final double[] position = randomPosition();
+			rec.lat = position[0];
+			rec.lon = position[1];
+			receivers[i] = rec;
+		}
+	}
+
+	/**
+	 * a generator covering central Europe with 2000 aircraft and 200 receivers
+	 */
+	public AprsTrafficGenerator(long seed) {
+		this(seed, 49.5, 10.0, 600, 2000, 200);
+	}
+
+	private double[] randomPosition() {
+		final double distance = radiusKm * Math.sqrt(random.nextDouble());
+		final double bearing = random.nextDouble() * 2 * Math.PI;
+		final double lat = centerLat + distance * Math.cos(bearing) / KM_PER_DEG_LAT;
+		final double lon =
+				centerLon + distance * Math.sin(bearing) / (KM_PER_DEG_LAT * Math.cos(Math.toRadians(centerLat)));
+		return new double[]{lat, lon};
+	}
+
+	/**
+	 * @param nowMs
+	 *            current (simulated) time, aircraft are moved accordingly
+	 * @return next APRS line
+	 */
+	public String nextLine(long nowMs) {
+		lines++;
+		if (lines % SERVER_COMMENT_EVERY_LINES == 0)
+			return serverComment(nowMs);
+
+		if (random.nextInt(100) < RECEIVER_LINES_PERCENT) {
+			final Receiver rec = receivers[nextReceiver];
+			nextReceiver = (nextReceiver + 1) % receivers.length;
+			return receiverLine(rec, nowMs);
+		}
+
+		final Aircraft a = aircraft[nextAircraft];
+		nextAircraft = (nextAircraft + 1) % aircraft.length;
+		move(a, nowMs);
+		return aircraftLine(a, receivers[random.nextInt(receivers.length)], nowMs);
+	}
+
+	private void move(Aircraft a, long nowMs) {
+		if (a.lastUpdateMs > 0 && a.speedKmh > 0) {
+			final double dtS = (nowMs - a.lastUpdateMs) / 1000.0;
+			final double distanceKm = a.speedKmh * dtS / 3600;
+			a.lat += distanceKm * Math.cos(Math.toRadians(a.trackDeg)) / KM_PER_DEG_LAT;
+			a.lon += distanceKm * Math.sin(Math.toRadians(a.trackDeg))
+					/ (KM_PER_DEG_LAT * Math.cos(Math.toRadians(a.lat)));
+			a.altM = Math.max(100, a.altM + a.climbMs * dtS);
+
+			// thermalling and wandering around
+			a.trackDeg = (a.trackDeg + random.nextGaussian() * 10 + 360) % 360;
+			a.climbMs = Math.max(-5, Math.min(5, a.climbMs + random.nextGaussian() * 0.3));
+
+			// turn back when leaving the region
+			final double dLatKm = (a.lat - centerLat) * KM_PER_DEG_LAT;
+			final double dLonKm = (a.lon - centerLon) * KM_PER_DEG_LAT * Math.cos(Math.toRadians(centerLat));
+			if (dLatKm * dLatKm + dLonKm * dLonKm > radiusKm * radiusKm)
+				a.trackDeg = (Math.toDegrees(Math.atan2(-dLonKm, -dLatKm)) + 360) % 360;
+		}
+		a.lastUpdateMs = nowMs;
+	}
+
+	private static String timestamp(long nowMs) {
+		final long seconds = nowMs / 1000 % 86400;
+		return String.format(Locale.ROOT, "%02d%02d%02dh", seconds / 3600, seconds / 60 % 60, seconds % 60);
+	}
+
+	private static String latitude(double lat) {
+		final double abs = Math.abs(lat);
+		final int deg = (int) abs;
+		return String.format(Locale.ROOT, "%02d%05.2f%s", deg, (abs - deg) * 60, lat >= 0 ? "N" : "S");
+	}
+
+	private static String longitude(double lon) {
+		final double abs = Math.abs(lon);
+		final int deg = (int) abs;
+		return String.format(Locale.ROOT, "%03d%05.2f%s", deg, (abs - deg) * 60, lon >= 0 ? "E" : "W");
+	}
+
+	private String aircraftLine(Aircraft a, Receiver rec, long nowMs) {
+		final StringBuilder sb = new StringBuilder(160);
+		sb.append("FLR").append(a.address).append(">APRS,qAS,").append(rec.name).append(":/").append(timestamp(nowMs))
+				.append(latitude(a.lat)).append('/').append(longitude(a.lon)).append('\'');
+		if (a.speedKmh > 0) {
+			sb.append(String.format(Locale.ROOT, "%03d/%03d", Math.round(a.trackDeg) % 360,
+					Math.round(a.speedKmh / KNOTS_TO_KMH)));
+		}
+		sb.append(String.format(Locale.ROOT, "/A=%06d id%02X%s %+04dfpm %+.1frot %.1fdB %de %+.1fkHz gps2x3",
+				Math.round(a.altM / 0.3048), a.idByte, a.address, Math.round(a.climbMs * 196.85),
+				random.nextGaussian() * 0.5, 5 + random.nextDouble() * 30, random.nextInt(3),
+				random.nextGaussian() * 3));
+		return sb.toString();
+	}
+
+	private String receiverLine(Receiver rec, long nowMs) {
+		return String.format(Locale.ROOT,
+				"%s>APRS,TCPIP*,qAC,GLIDERN1:/%s%sI%s&/A=000300 CPU:%.1f RAM:223.5/458.7MB NTP:0.3ms/-14.8ppm +40.6C RF:+49+4.1ppm/+0.2dB",
+				rec.name, timestamp(nowMs), latitude(rec.lat), longitude(rec.lon), random.nextDouble() * 2);
+	}
+
+	private static String serverComment(long nowMs) {
+		return "# aprsc 2.0.14-g28c5a6a " + timestamp(nowMs) + " GLIDERN1 127.0.0.1:14580";
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.AircraftBeaconSelector;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class ListenerRegistryTest {
+
+	static class Listener implements AircraftBeaconListener, ReceiverBeaconListener {
+		int	aircraftBeacons;
+
+		@Override
+		public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+			aircraftBeacons++;
+		}
+
+		@Override
+		public void onUpdate(ReceiverBeacon beacon) {
+		}
+	}
+
+	private static void notify(ListenerRegistry registry, AircraftBeacon beacon) {
+		registry.forEachAircraftListener(beacon, listener -> listener.onUpdate(beacon, Optional.empty()));
+	}
+
+	@Test
+	public void testMeasuredOnceSubscribed() {
+		final OgnClientMetrics metrics = new OgnClientMetrics(() -> 0);
+		final ListenerRegistry registry = new ListenerRegistry(metrics);
+		final AircraftBeacon glider = (AircraftBeacon) AprsLineParser.get().parse(AircraftListenerIndexTest.GLIDER);
+		final AircraftBeacon tug = (AircraftBeacon) AprsLineParser.get().parse(AircraftListenerIndexTest.TUG);
+
+		final Listener listener = new Listener();
+		registry.subscribeToAircraftBeacons(listener);
+		registry.subscribeToReceiverBeacons(listener);
+		assertTrue(registry.hasAircraftListeners());
+		notify(registry, glider);
+		assertEquals(1, listener.aircraftBeacons);
+		assertEquals(1, metrics.getDispatchLatency(listener).getCount());
+
+		// moved to the index, still measured with the same histogram
+		registry.subscribeToAircraftBeacons(listener,
+				new AircraftBeaconSelector.Builder().addresses("DD8222").build());
+		notify(registry, glider);
+		notify(registry, tug);
+		assertEquals(2, listener.aircraftBeacons);
+		assertEquals(2, metrics.getDispatchLatency(listener).getCount());
+
+		// still subscribed to the receiver beacons
+		registry.unsubscribeFromAircraftBeacons(listener);
+		assertFalse(registry.hasAircraftListeners());
+		assertNotNull(metrics.getDispatchLatency(listener));
+
+		registry.unsubscribeFromReceiverBeacons(listener);
+		assertNull(metrics.getDispatchLatency(listener));
+	}
+
+	@Test
+	public void testSharedMetrics() {
+		final OgnClientMetrics metrics = new OgnClientMetrics(() -> 0);
+		final ListenerRegistry first = new ListenerRegistry(metrics);
+		final ListenerRegistry second = new ListenerRegistry(metrics);
+		final AircraftBeacon glider = (AircraftBeacon) AprsLineParser.get().parse(AircraftListenerIndexTest.GLIDER);
+
+		final Listener listener = new Listener();
+		first.subscribeToAircraftBeacons(listener);
+		second.subscribeToAircraftBeacons(listener);
+		first.unsubscribeFromAircraftBeacons(listener);
+
+		// still measured for the second registry
+		notify(second, glider);
+		assertEquals(1, metrics.getDispatchLatency(listener).getCount());
+		assertEquals(1, metrics.getDispatchLatency().getCount());
+
+		second.unsubscribeFromAircraftBeacons(listener);
+		assertNull(metrics.getDispatchLatency(listener));
+	}
+}
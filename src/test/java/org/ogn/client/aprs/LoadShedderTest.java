@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ogn.client.metrics.SheddingPriority;
+
+public class LoadShedderTest {
+
+	private static final String	RECEIVER	=
+			"EHHO>APRS,TCPIP*,qAC,GLIDERN1:/100000h5218.00NI00654.00E&/A=000300 CPU:0.3 RAM:223.5/458.7MB";
+
+	private static final String	RECEIVER_STATUS	=
+			"EHHO>APRS,TCPIP*,qAC,GLIDERN1:>100000h v0.2.8.RPI-GPU CPU:0.3 RAM:223.5/458.7MB NTP:0.4ms/-5.4ppm";
+
+	// without the "id" token
+	private static final String	NO_ID		=
+			"ICA3D1234>OGFLR,qAS,EHHO:/100000h5200.00N/00600.00E'090/000/A=003000 !W12! +000fpm 10.0dB 0e";
+
+	private static final String	COMMENT		= "# aprsc 2.0.14-g28c5a6a 18 Oct 2026 10:00:00 GMT GLIDERN1 37.187.40.234:14580";
+
+	static String aircraft(String address, int speedKt) {
+		return String.format(Locale.ROOT,
+				"FLR%s>APRS,qAS,EHHO:/100000h5200.00N/00600.00E'090/%03d/A=003000 id06%s +000fpm 10.0dB 0e", address,
+				speedKt, address);
+	}
+
+	@Test
+	public void testClassification() {
+		assertEquals(-1, LoadShedder.addressIndex(RECEIVER));
+		assertTrue(LoadShedder.isReceiver(RECEIVER));
+		assertTrue(LoadShedder.isReceiver(RECEIVER_STATUS));
+		// identified by its symbol
+		assertTrue(LoadShedder.isReceiver("EHHO>OGNSDR,GLIDERN1:/100000h5218.00NI00654.00E&/A=000300"));
+		assertFalse(LoadShedder.isReceiver(NO_ID));
+		assertFalse(LoadShedder.isReceiver(aircraft("DD0001", 50)));
+		final String line = aircraft("DD0001", 50);
+		final int address = LoadShedder.addressIndex(line);
+		assertEquals("DD0001", line.substring(address, address + 6));
+		assertTrue(LoadShedder.isStationary(aircraft("DD0001", 1)));
+		assertFalse(LoadShedder.isStationary(aircraft("DD0001", 50)));
+		// no course/speed extension
+		assertTrue(LoadShedder.isStationary(
+				"FLRDDA4EC>APRS,qAS,EHHO:/102538h5243.80N/00631.57E'/A=000030 id06DDA4EC +020fpm +0.0rot 20.8dB 0e"));
+	}
+
+	@Test
+	public void testPriorities() {
+		final LoadShedder shedder = new LoadShedder(100, 0, 25, Arrays.asList("dd0002"));
+		final long second = TimeUnit.SECONDS.toNanos(1);
+		long now = 0;
+
+		assertNull(shedder.shed(RECEIVER, 50, 0, now));
+		assertEquals(0, shedder.getLevel());
+
+		// receivers only
+		assertEquals(SheddingPriority.RECEIVER, shedder.shed(RECEIVER, 100, 0, now));
+		assertNull(shedder.shed(aircraft("DD0001", 0), 100, 0, now));
+		assertNull(shedder.shed(COMMENT, 100, 0, now));
+		assertEquals(SheddingPriority.RECEIVER, shedder.shed(RECEIVER_STATUS, 100, 0, now));
+
+		// and stationary aircraft, but the watched ones
+		assertEquals(SheddingPriority.STATIONARY_AIRCRAFT, shedder.shed(aircraft("DD0001", 0), 200, 0, now));
+		assertNull(shedder.shed(aircraft("DD0002", 0), 200, 0, now));
+		assertNull(shedder.shed(aircraft("DD0003", 50), 200, 0, now));
+
+		// and the aircraft outside of the sample
+		int kept = 0;
+		for (int i = 0; i < 1000; i++) {
+			final String line = aircraft(String.format(Locale.ROOT, "%06X", 0xD00000 + i), 50);
+			final SheddingPriority priority = shedder.shed(line, 300, 0, now);
+			if (priority == null)
+				kept++;
+			else
+				assertEquals(SheddingPriority.UNTRACKED_AIRCRAFT, priority);
+			// the same aircraft are always kept
+			assertEquals(priority, shedder.shed(line, 300, 0, now));
+		}
+		assertEquals(250, kept, 50);
+		assertNull(shedder.shed(aircraft("DD0002", 50), 300, 0, now));
+		// unclassifiable lines are never shed
+		assertNull(shedder.shed(NO_ID, 300, 0, now));
+		assertEquals(3, shedder.getLevel());
+
+		// the level goes down one step per second of lower pressure
+		shedder.shed(RECEIVER, 0, 0, now += second / 2);
+		assertEquals(3, shedder.getLevel());
+		shedder.shed(RECEIVER, 0, 0, now += second);
+		assertEquals(2, shedder.getLevel());
+		shedder.shed(RECEIVER, 0, 0, now += second / 2);
+		assertEquals(2, shedder.getLevel());
+		shedder.shed(RECEIVER, 0, 0, now += second / 2);
+		assertEquals(1, shedder.getLevel());
+		// back up at once
+		shedder.shed(RECEIVER, 250, 0, now += second / 2);
+		assertEquals(2, shedder.getLevel());
+	}
+
+	@Test
+	public void testLag() {
+		final LoadShedder shedder = new LoadShedder(0, 500, 25, Arrays.asList());
+		assertNull(shedder.shed(RECEIVER, 100000, TimeUnit.MILLISECONDS.toNanos(400), 0));
+		assertEquals(SheddingPriority.STATIONARY_AIRCRAFT,
+				shedder.shed(aircraft("DD0001", 0), 100000, TimeUnit.MILLISECONDS.toNanos(1200), 0));
+		assertEquals(2, shedder.getLevel());
+	}
+
+	@Test
+	public void testWatchedCallsign() {
+		final LoadShedder shedder = new LoadShedder(100, 0, 0, Arrays.asList("3D1234", "OGN5678AB"));
+		// a stealth or random address in the "id" token, watched by its callsign
+		assertNull(shedder.shed(
+				"ICA3D1234>OGFLR,qAS,EHHO:/100000h5200.00N/00600.00E'090/000/A=003000 id0DDF0001 +000fpm", 300, 0, 0));
+		assertNull(shedder.shed(
+				"OGN5678AB>OGNTRK,qAS,EHHO:/100000h5200.00N/00600.00E'090/000/A=003000 id07DF0002 +000fpm", 300, 0, 0));
+		assertEquals(SheddingPriority.STATIONARY_AIRCRAFT, shedder.shed(aircraft("DD0001", 0), 300, 0, 0));
+	}
+}
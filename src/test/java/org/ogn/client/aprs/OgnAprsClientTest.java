@@ -1,182 +1,630 @@
-/**
- * Copyright (c) 2014 OGN, All Rights Reserved.
- */
-
-package org.ogn.client.aprs;
-
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
-import static org.ogn.client.OgnClientProperties.PROP_OGN_CLIENT_SRV_NAME;
-import static org.ogn.client.OgnClientProperties.PROP_OGN_CLIENT_SRV_PORT_UNFILTERED;
-import static org.ogn.client.OgnClientProperties.PROP_OGN_CLIENT_SRV_RECONNECTION_TIMEOUT;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-
-import org.junit.After;
-import org.junit.Before;
-import org.junit.BeforeClass;
-import org.junit.Test;
-import org.ogn.client.AircraftBeaconListener;
-import org.ogn.client.OgnClient;
-import org.ogn.client.OgnClientFactory;
-import org.ogn.client.ReceiverBeaconListener;
-import org.ogn.commons.beacon.AircraftBeacon;
-import org.ogn.commons.beacon.AircraftDescriptor;
-import org.ogn.commons.beacon.ReceiverBeacon;
-
-public class OgnAprsClientTest {
-
-	static final Integer APRS_SRV_PORT = 9999;
-	static {
-		System.setProperty(PROP_OGN_CLIENT_SRV_NAME, "localhost");
-		System.setProperty(PROP_OGN_CLIENT_SRV_PORT_UNFILTERED, APRS_SRV_PORT.toString());
-		System.setProperty(PROP_OGN_CLIENT_SRV_RECONNECTION_TIMEOUT, "1000");
-	}
-
-	static List<String>	serverSentences	= new ArrayList<String>();
-
-	TcpMockAprsServer	aprsServer;
-
-	static class AcListener implements AircraftBeaconListener {
-
-		List<AircraftBeacon> beacons = new ArrayList<>();
-
-		@Override
-		public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
-			beacons.add(beacon);
-		}
-	}
-
-	static class RbListener implements ReceiverBeaconListener {
-		List<ReceiverBeacon> beacons = new ArrayList<>();
-
-		@Override
-		public void onUpdate(ReceiverBeacon beacon) {
-			beacons.add(beacon);
-		}
-	}
-
-	@BeforeClass
-	public static void classSetUp() throws Exception {
-
-		InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("server-sentences.txt");
-		BufferedReader br = new BufferedReader(new InputStreamReader(is, "UTF-8"));
-
-		String line;
-		while ((line = br.readLine()) != null) {
-			serverSentences.add(line);
-		}
-
-		br.close();
-
-	}
-
-	@Before
-	public void setUp() {
-		//
-	}
-
-	@Test
-	public void test1() throws Exception {
-		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 300);
-		aprsServer.runOneCycle();
-		Thread.sleep(2000);
-
-		OgnClient client = OgnClientFactory.createClient();
-		client.connect();
-		client.disconnect();
-		client.connect();
-
-		AcListener acListener = new AcListener();
-		RbListener rbListener = new RbListener();
-
-		client.subscribeToAircraftBeacons(acListener);
-
-		// this call should be ignored - a reference to the same listener is
-		// passed
-		client.subscribeToAircraftBeacons(acListener);
-		// this call should be ignored - a reference to the same listener is
-		// passed
-		client.subscribeToAircraftBeacons(acListener);
-
-		Thread.sleep(500);
-		client.subscribeToReceiverBeacons(rbListener);
-
-		Thread.sleep(6000);
-
-		// make sure all aircraft beacons have been received
-		assertEquals(12, acListener.beacons.size());
-		// make sure all receiver beacons have been received
-		assertEquals(2, rbListener.beacons.size());
-		client.disconnect();
-	}
-
-	@Test
-	public void test2() throws Exception {
-		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 300);
-		aprsServer.runOneCycle();
-		Thread.sleep(2000);
-
-		final OgnClient client = OgnClientFactory.createClient();
-
-		final Runnable r1 = new Runnable() {
-
-			@Override
-			public void run() {
-				for (int i = 0; i < 10; i++) {
-					try {
-						client.connect();
-					} catch (NullPointerException ex) {
-						fail("NPE was not expected!");
-					}
-					try {
-						Thread.sleep(100);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-				}
-			}
-
-		};
-
-		final Runnable r2 = new Runnable() {
-
-			@Override
-			public void run() {
-				for (int i = 0; i < 10; i++) {
-
-					try {
-						client.disconnect();
-					} catch (NullPointerException ex) {
-						fail("NPE was not expected!");
-					}
-					try {
-						Thread.sleep(80);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-				}
-			}
-
-		};
-
-		Thread t1 = new Thread(r1);
-		Thread t2 = new Thread(r2);
-
-		t1.start();
-		t2.start();
-
-		t1.join();
-		t2.join();
-	}
-
-	@After
-	public void tearDown() {
-		aprsServer.stop();
-	}
-}
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.ogn.client.OgnClientProperties.PROP_OGN_CLIENT_SRV_NAME;
+import static org.ogn.client.OgnClientProperties.PROP_OGN_CLIENT_SRV_PORT_UNFILTERED;
+import static org.ogn.client.OgnClientProperties.PROP_OGN_CLIENT_SRV_RECONNECTION_TIMEOUT;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.DrainResult;
+import org.ogn.client.OgnClient;
+import org.ogn.client.OgnClientFactory;
+import org.ogn.client.ReceiverBeaconListener;
+import org.ogn.client.metrics.LatencyStage;
+import org.ogn.client.metrics.OgnClientMetrics;
+import org.ogn.client.metrics.SheddingPriority;
+import org.ogn.client.relay.AprsRelayServer;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class OgnAprsClientTest {
+
+	private static final Logger	LOG	= LoggerFactory.getLogger(OgnAprsClientTest.class);
+
+	static final Integer APRS_SRV_PORT = 9999;
+	static {
+		System.setProperty(PROP_OGN_CLIENT_SRV_NAME, "localhost");
+		System.setProperty(PROP_OGN_CLIENT_SRV_PORT_UNFILTERED, APRS_SRV_PORT.toString());
+		System.setProperty(PROP_OGN_CLIENT_SRV_RECONNECTION_TIMEOUT, "1000");
+	}
+
+	static List<String>	serverSentences	= new ArrayList<String>();
+
+	TcpMockAprsServer	aprsServer;
+
+	static class AcListener implements AircraftBeaconListener {
+
+		List<AircraftBeacon> beacons = new ArrayList<>();
+
+		@Override
+		public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+			beacons.add(beacon);
+		}
+	}
+
+	static class RbListener implements ReceiverBeaconListener {
+		List<ReceiverBeacon> beacons = new ArrayList<>();
+
+		@Override
+		public void onUpdate(ReceiverBeacon beacon) {
+			beacons.add(beacon);
+		}
+	}
+
+	@BeforeClass
+	public static void classSetUp() throws Exception {
+
+		InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("server-sentences.txt");
+		BufferedReader br = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+
+		String line;
+		while ((line = br.readLine()) != null) {
+			serverSentences.add(line);
+		}
+
+		br.close();
+
+	}
+
+	@Before
+	public void setUp() {
+		//
+	}
+
+	@Test
+	public void test1() throws Exception {
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 300);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		OgnClient client = OgnClientFactory.createClient();
+		client.connect();
+		client.disconnect();
+		client.connect();
+
+		AcListener acListener = new AcListener();
+		RbListener rbListener = new RbListener();
+
+		client.subscribeToAircraftBeacons(acListener);
+
+		// this call should be ignored - a reference to the same listener is
+		// passed
+		client.subscribeToAircraftBeacons(acListener);
+		// this call should be ignored - a reference to the same listener is
+		// passed
+		client.subscribeToAircraftBeacons(acListener);
+
+		Thread.sleep(500);
+		client.subscribeToReceiverBeacons(rbListener);
+
+		Thread.sleep(6000);
+
+		// make sure all aircraft beacons have been received
+		assertEquals(12, acListener.beacons.size());
+		// make sure all receiver beacons have been received
+		assertEquals(2, rbListener.beacons.size());
+
+		assertEquals(12, client.getMetrics().getAircraftBeacons());
+		assertEquals(2, client.getMetrics().getReceiverBeacons());
+		assertEquals(0, client.getMetrics().getParseFailures());
+		assertTrue(client.getMetrics().getBytesRead() > 0);
+		assertEquals(0, client.getMetrics().getQueueDepth());
+		assertEquals(12, client.getMetrics().getDispatchLatency(acListener).getCount());
+		// one end-to-end measurement per listener callback
+		assertEquals(14, client.getMetrics().getLatency(LatencyStage.END_TO_END).getCount());
+		client.disconnect();
+	}
+
+	@Test
+	public void test2() throws Exception {
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 300);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final OgnClient client = OgnClientFactory.createClient();
+
+		final Runnable r1 = new Runnable() {
+
+			@Override
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+					try {
+						client.connect();
+					} catch (NullPointerException ex) {
+						fail("NPE was not expected!");
+					}
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+
+		};
+
+		final Runnable r2 = new Runnable() {
+
+			@Override
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+
+					try {
+						client.disconnect();
+					} catch (NullPointerException ex) {
+						fail("NPE was not expected!");
+					}
+					try {
+						Thread.sleep(80);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+
+		};
+
+		Thread t1 = new Thread(r1);
+		Thread t2 = new Thread(r2);
+
+		t1.start();
+		t2.start();
+
+		t1.join();
+		t2.join();
+	}
+
+	@Test
+	public void testGracefulDisconnect() throws Exception {
+		// deliver all the sentences at once
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 0);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final OgnClient client = OgnClientFactory.createClient();
+
+		// a slow listener, so that most of the lines are still queued when the client is disconnected
+		final AcListener acListener = new AcListener() {
+			@Override
+			public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+				super.onUpdate(beacon, descriptor);
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		final RbListener rbListener = new RbListener();
+
+		client.subscribeToAircraftBeacons(acListener);
+		client.subscribeToReceiverBeacons(rbListener);
+
+		client.connect();
+		Thread.sleep(1000);
+
+		final DrainResult result = client.disconnect(10, TimeUnit.SECONDS);
+
+		assertTrue(result.isCompleted());
+		assertEquals(0, result.getDiscardedLines());
+		assertTrue(result.getProcessedLines() > 0);
+
+		// nothing has been lost
+		assertEquals(12, acListener.beacons.size());
+		assertEquals(2, rbListener.beacons.size());
+
+		// a timed-out drain reports the lines it had to drop
+		client.connect();
+		Thread.sleep(1000);
+		final DrainResult result2 = client.disconnect(100, TimeUnit.MILLISECONDS);
+		assertFalse(result2.isCompleted());
+		assertTrue(result2.getDiscardedLines() > 0);
+
+		// the poller has stopped by the time disconnect() returns
+		final int delivered = acListener.beacons.size();
+		Thread.sleep(500);
+		assertEquals(delivered, acListener.beacons.size());
+	}
+
+	@Test(timeout = 30000)
+	public void testLoadShedding() throws Exception {
+		// deliver all the sentences at once
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 0);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		// the tow plane is watched
+		final OgnClient client = OgnClientFactory.getBuilder().loadShedding(1, 0).watchlist("DD8222").build();
+
+		// a slow listener, so that the lines pile up in the queue
+		final AcListener acListener = new AcListener() {
+			@Override
+			public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+				super.onUpdate(beacon, descriptor);
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		final RbListener rbListener = new RbListener();
+		client.subscribeToAircraftBeacons(acListener);
+		client.subscribeToReceiverBeacons(rbListener);
+
+		client.connect();
+		Thread.sleep(3000);
+		client.disconnect();
+
+		final OgnClientMetrics metrics = client.getMetrics();
+		assertTrue(metrics.getShedLines() > 0);
+		assertEquals(metrics.getShedLines(), metrics.getShedLines(SheddingPriority.RECEIVER)
+				+ metrics.getShedLines(SheddingPriority.STATIONARY_AIRCRAFT)
+				+ metrics.getShedLines(SheddingPriority.UNTRACKED_AIRCRAFT));
+		assertEquals(2, rbListener.beacons.size() + metrics.getShedLines(SheddingPriority.RECEIVER));
+		assertEquals(12, acListener.beacons.size() + metrics.getShedLines(SheddingPriority.STATIONARY_AIRCRAFT)
+				+ metrics.getShedLines(SheddingPriority.UNTRACKED_AIRCRAFT));
+		// the watched aircraft has not lost any beacon
+		assertEquals(2, acListener.beacons.stream().filter(b -> b.getAddress().equals("DD8222")).count());
+	}
+
+	@Test(timeout = 30000)
+	public void testPublisherRespectsDemand() throws Exception {
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 0);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final OgnClient client = new AprsOgnClient.Builder().serverName("localhost").unfilteredPort(APRS_SRV_PORT)
+				.queueCapacity(2).publisherBufferSize(1).build();
+
+		final List<AircraftBeacon> received = new CopyOnWriteArrayList<>();
+		final Subscription[] subscription = new Subscription[1];
+		client.getAircraftBeaconPublisher().subscribe(new Subscriber<AircraftBeacon>() {
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription[0] = s;
+				s.request(5);
+			}
+
+			@Override
+			public void onNext(AircraftBeacon beacon) {
+				received.add(beacon);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				fail(t.getMessage());
+			}
+
+			@Override
+			public void onComplete() {
+				fail("unexpected completion");
+			}
+		});
+
+		client.connect();
+		Thread.sleep(2000);
+
+		// no more than requested, although the server has sent everything
+		assertEquals(5, received.size());
+
+		subscription[0].request(100);
+		Thread.sleep(1000);
+		assertEquals(12, received.size());
+
+		subscription[0].cancel();
+		client.disconnect();
+	}
+
+	@Test
+	public void testSharedConnection() throws Exception {
+		// the mock server accepts a single connection
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 300);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final SharedAprsConnection connection = new SharedAprsConnection(OgnClientFactory.getBuilder().build());
+		final OgnClient all = connection.createClient();
+		final OgnClient flarm = connection.createClient();
+		final OgnClient salland = connection.createClient();
+
+		final AcListener allAc = new AcListener();
+		final RbListener allRb = new RbListener();
+		final AcListener flarmAc = new AcListener();
+		final RbListener flarmRb = new RbListener();
+		final AcListener sallandAc = new AcListener();
+
+		all.subscribeToAircraftBeacons(allAc);
+		all.subscribeToReceiverBeacons(allRb);
+		flarm.subscribeToAircraftBeacons(flarmAc);
+		flarm.subscribeToReceiverBeacons(flarmRb);
+		salland.subscribeToAircraftBeacons(sallandAc);
+
+		all.connect();
+		flarm.connect("b/FLR*");
+		salland.connect("r/52.47/6.34/5");
+		assertEquals(3, connection.getConnectedClients());
+
+		Thread.sleep(6000);
+
+		assertEquals(12, allAc.beacons.size());
+		assertEquals(2, allRb.beacons.size());
+		assertEquals(5, flarmAc.beacons.size());
+		assertEquals(0, flarmRb.beacons.size());
+		assertEquals(4, sallandAc.beacons.size());
+
+		// the lines have been read and parsed once
+		assertEquals(14, all.getMetrics().getAircraftBeacons() + all.getMetrics().getReceiverBeacons());
+
+		flarm.disconnect();
+		salland.disconnect();
+		assertEquals(1, connection.getConnectedClients());
+		all.disconnect();
+		assertEquals(0, connection.getConnectedClients());
+	}
+
+	@Test
+	public void testSharedConnectionMetrics() throws Exception {
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 300);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final SharedAprsConnection connection = new SharedAprsConnection(OgnClientFactory.getBuilder().build());
+		final OgnClient first = connection.createClient();
+		final OgnClient second = connection.createClient();
+
+		// the same listener, subscribed to both logical clients
+		final AcListener listener = new AcListener();
+		first.subscribeToAircraftBeacons(listener);
+		second.subscribeToAircraftBeacons(listener);
+		first.connect();
+		second.connect();
+
+		Thread.sleep(6000);
+
+		// every callback recorded once, the fan-out of the shared connection is not measured
+		final OgnClientMetrics metrics = first.getMetrics();
+		assertEquals(24, listener.beacons.size());
+		assertEquals(24, metrics.getDispatchLatency().getCount());
+		assertEquals(24, metrics.getDispatchLatency(listener).getCount());
+		assertEquals(1, metrics.getListenerDispatchStats().length);
+
+		// still measured for the other client
+		first.unsubscribeFromAircraftBeacons(listener);
+		assertNotNull(metrics.getDispatchLatency(listener));
+		second.unsubscribeFromAircraftBeacons(listener);
+		assertNull(metrics.getDispatchLatency(listener));
+
+		first.disconnect();
+		second.disconnect();
+	}
+
+	@Test
+	public void testUpdateFilter() throws Exception {
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 300);
+		aprsServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final OgnClient client = OgnClientFactory.getBuilder().filteredPort(APRS_SRV_PORT).build();
+		final AcListener acListener = new AcListener();
+		final RbListener rbListener = new RbListener();
+		client.subscribeToAircraftBeacons(acListener);
+		client.subscribeToReceiverBeacons(rbListener);
+
+		client.connect("p/PH");
+		// the mock server ignores the filters: the lines it sends are filtered locally
+		client.updateFilter("b/FLR*");
+		Thread.sleep(6000);
+
+		assertEquals(5, acListener.beacons.size());
+		assertEquals(0, rbListener.beacons.size());
+		assertEquals(0, client.getMetrics().getReconnects());
+		client.disconnect();
+	}
+
+	@Test(timeout = 60000)
+	public void testUpdateFilterWithoutReconnecting() throws Exception {
+		// the relay server applies the #filter commands
+		final AprsLoadServer loadServer = new AprsLoadServer(500, false);
+		final int upstreamPort = loadServer.start();
+		final AprsRelayServer relay = new AprsRelayServer.Builder()
+				.upstream(new AprsOgnClient.Builder().serverName("localhost").unfilteredPort(upstreamPort).build())
+				.build();
+		relay.start();
+
+		final OgnClient client = new AprsOgnClient.Builder().serverName("localhost").filteredPort(relay.getPort())
+				.reconnectionTimeout(1000).build();
+		final AcListener acListener = new AcListener();
+		client.subscribeToAircraftBeacons(acListener);
+
+		try {
+			client.connect("b/NOBODY");
+			Thread.sleep(2000);
+			assertEquals(0, acListener.beacons.size());
+
+			client.updateFilter("p/FLR");
+			Thread.sleep(2000);
+			assertTrue(acListener.beacons.size() > 0);
+
+			assertEquals(1, relay.getAcceptedClients());
+			assertEquals(0, client.getMetrics().getReconnects());
+		} finally {
+			client.disconnect();
+			relay.stop();
+			loadServer.stop();
+		}
+	}
+
+	@Test
+	public void testRedundantServers() throws Exception {
+		// the main server goes away in the middle of the stream, the redundant one sends everything
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences.subList(0, 9), 300);
+		final TcpMockAprsServer redundantServer = new TcpMockAprsServer(APRS_SRV_PORT - 1, serverSentences, 300);
+		aprsServer.runOneCycle();
+		redundantServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final OgnClient client =
+				OgnClientFactory.getBuilder().redundantServers("localhost:" + (APRS_SRV_PORT - 1)).build();
+		final AcListener acListener = new AcListener();
+		final RbListener rbListener = new RbListener();
+		client.subscribeToAircraftBeacons(acListener);
+		client.subscribeToReceiverBeacons(rbListener);
+
+		try {
+			client.connect();
+			Thread.sleep(6000);
+
+			// every beacon exactly once
+			assertEquals(12, acListener.beacons.size());
+			assertEquals(2, rbListener.beacons.size());
+
+			final OgnClientMetrics metrics = client.getMetrics();
+			final String main = "localhost";
+			final String redundant = "localhost:" + (APRS_SRV_PORT - 1);
+			assertEquals(14, metrics.getUniqueLines(main) + metrics.getUniqueLines(redundant));
+			// the 7 lines sent by the main server have been received twice
+			assertEquals(7, metrics.getDuplicateLines(main) + metrics.getDuplicateLines(redundant));
+			assertEquals(2, metrics.getServerStats().length);
+		} finally {
+			client.disconnect();
+			redundantServer.stop();
+		}
+	}
+
+	@Test
+	public void testBackoff() {
+		assertEquals(500, AprsOgnClient.backoff(0, 1000, 60000, 0));
+		assertEquals(999, AprsOgnClient.backoff(0, 1000, 60000, 0.999));
+		assertEquals(4000, AprsOgnClient.backoff(3, 1000, 60000, 0));
+		// capped, also for attempts which would overflow
+		assertEquals(30000, AprsOgnClient.backoff(10, 1000, 60000, 0));
+		assertEquals(60000, AprsOgnClient.backoff(100, 1000, 60000, 1));
+	}
+
+	@Test
+	public void testMBeanUnregisteredOnDisconnect() throws Exception {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName query = new ObjectName("org.ogn.client:type=AprsOgnClient,name=\"mbeantest-*\"");
+
+		final OgnClient client = OgnClientFactory.getBuilder().ognClientId("mbeantest").registerMBean(true).build();
+		client.connect();
+		assertEquals(1, server.queryNames(query, null).size());
+		client.disconnect();
+		assertTrue(server.queryNames(query, null).isEmpty());
+
+		// registered again under the same name
+		client.connect();
+		assertEquals(1, server.queryNames(query, null).size());
+		client.disconnect(1, TimeUnit.SECONDS);
+		assertTrue(server.queryNames(query, null).isEmpty());
+	}
+
+	@Test(timeout = 30000)
+	public void testStalledStreamFailover() throws Exception {
+		// the main server sends one beacon and then goes silent without closing the connection
+		aprsServer = new TcpMockAprsServer(APRS_SRV_PORT, serverSentences, 60000);
+		final TcpMockAprsServer failoverServer = new TcpMockAprsServer(APRS_SRV_PORT - 1, serverSentences, 100);
+		aprsServer.runOneCycle();
+		failoverServer.runOneCycle();
+		Thread.sleep(2000);
+
+		final List<Long> received = new CopyOnWriteArrayList<>();
+		final OgnClient client = OgnClientFactory.getBuilder().readIdleTimeout(1000)
+				.failoverServers("localhost:" + (APRS_SRV_PORT - 1)).build();
+		client.subscribeToAircraftBeacons((beacon, descriptor) -> received.add(System.nanoTime()));
+
+		try {
+			client.connect();
+			while (received.size() < 2)
+				Thread.sleep(10);
+
+			final long recoveryMs = TimeUnit.NANOSECONDS.toMillis(received.get(1) - received.get(0));
+			LOG.info("time to recovery: {} ms", recoveryMs);
+			// the idle timeout plus a new connection, no back-off
+			assertTrue(recoveryMs < 3000);
+			assertEquals(1, client.getMetrics().getReconnects());
+		} finally {
+			client.disconnect();
+			failoverServer.stop();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testTlsSessionResumption() throws Exception {
+		// the load server drops the connection every second
+		final AprsLoadServer loadServer = new AprsLoadServer(2000, true).dropConnections(1000);
+		final int port = loadServer.start();
+		// TLS 1.3 where the runtime supports it (Java 8 before 8u261 does not)
+		final SSLContext sslContext = AprsLoadServer.createTestSslContext();
+		final SSLParameters supported = sslContext.getSupportedSSLParameters();
+		final AprsOgnClient client = new AprsOgnClient.Builder().serverName("localhost").unfilteredSslPort(port)
+				.useSsl(true).sslContext(sslContext)
+				.sslProtocols(supportedOnly(supported.getProtocols(), "TLSv1.3", "TLSv1.2"))
+				.sslCipherSuites(supportedOnly(supported.getCipherSuites(), "TLS_AES_128_GCM_SHA256",
+						"TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"))
+				.reconnectionTimeout(100).build();
+
+		try {
+			client.connect();
+			Thread.sleep(5000);
+
+			final OgnClientMetrics metrics = client.getMetrics();
+			LOG.info("TLS handshakes: {}, resumed: {}, lines read: {}", metrics.getTlsHandshakeLatency(),
+					metrics.getResumedTlsSessions(), metrics.getLinesRead());
+			assertTrue(metrics.getReconnects() >= 2);
+			assertEquals(metrics.getReconnects() + 1, metrics.getTlsHandshakeLatency().getCount());
+			// the reconnections resume the session of the first connection
+			assertTrue(metrics.getResumedTlsSessions() > 0);
+			assertTrue(metrics.getLinesRead() > 5000);
+		} finally {
+			client.disconnect();
+			loadServer.stop();
+		}
+	}
+
+	private static String[] supportedOnly(String[] supported, String... wanted) {
+		final List<String> supportedList = Arrays.asList(supported);
+		return Arrays.stream(wanted).filter(supportedList::contains).toArray(String[]::new);
+	}
+
+	@After
+	public void tearDown() {
+		if (aprsServer != null)
+			aprsServer.stop();
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.aprs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.ogn.client.AircraftBeaconListener;
+import org.ogn.client.relay.AprsRelayServer;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftDescriptor;
+
+public class ShardedAprsClientTest {
+
+	@Test
+	public void testBalance() {
+		final double[] boundaries = {0, 10, 20, 30, 40};
+
+		// even rates, nothing moves
+		final double[] even = ShardedAprsClient.balance(boundaries, new double[]{50, 50, 50, 50});
+		for (int i = 0; i < boundaries.length; i++) {
+			assertEquals(boundaries[i], even[i], 1e-9);
+		}
+
+		// busy middle shards get narrower
+		final double[] result = ShardedAprsClient.balance(boundaries, new double[]{10, 100, 100, 10});
+		assertEquals(0, result[0], 1e-9);
+		assertEquals(20, result[2], 1e-9);
+		assertEquals(40, result[4], 1e-9);
+		assertTrue(result[1] > 10 && result[1] < 20);
+		assertTrue(result[3] > 20 && result[3] < 30);
+
+		// an empty shard keeps some width
+		final double[] empty = ShardedAprsClient.balance(boundaries, new double[]{0, 0, 0, 100});
+		for (int i = 1; i < empty.length; i++) {
+			assertTrue(empty[i] > empty[i - 1]);
+		}
+
+		assertFalse(ShardedAprsClient.isImbalanced(new double[]{100, 120, 90, 110}, 1.5));
+		assertTrue(ShardedAprsClient.isImbalanced(new double[]{10, 100, 100, 10}, 1.5));
+		assertTrue(ShardedAprsClient.isImbalanced(new double[]{0, 1, 0, 0}, 1.5));
+	}
+
+	@Test
+	public void testDuplicateFilter() {
+		final DuplicateFilter filter = new DuplicateFilter(1000);
+		assertFalse(filter.isDuplicate("A", 0));
+		assertTrue(filter.isDuplicate("A", 10));
+		assertFalse(filter.isDuplicate("B", 10));
+
+		// still remembered during the next window
+		assertTrue(filter.isDuplicate("A", 1500));
+		// forgotten after two windows
+		assertFalse(filter.isDuplicate("B", 2600));
+		assertEquals(1, filter.size());
+	}
+
+	@Test(timeout = 60000)
+	public void testShardedConnections() throws Exception {
+		// the load server simulates central Europe, the relay serves the area filters
+		final AprsLoadServer loadServer = new AprsLoadServer(2000, false);
+		final int upstreamPort = loadServer.start();
+		final AprsRelayServer relay = new AprsRelayServer.Builder()
+				.upstream(new AprsOgnClient.Builder().serverName("localhost").unfilteredPort(upstreamPort).build())
+				.build();
+		relay.start();
+
+		final ShardedAprsClient client = new ShardedAprsClient.Builder()
+				.clientBuilder(new AprsOgnClient.Builder().serverName("localhost").filteredPort(relay.getPort()))
+				.shards(4).area(56, 0, 43, 20).overlap(0.5).rebalance(1000, 1.5).build();
+
+		final Set<String> packets = ConcurrentHashMap.newKeySet();
+		final AtomicInteger duplicatesNotified = new AtomicInteger();
+		final AtomicInteger outside = new AtomicInteger();
+		client.subscribeToAircraftBeacons(new AircraftBeaconListener() {
+			@Override
+			public void onUpdate(AircraftBeacon beacon, Optional<AircraftDescriptor> descriptor) {
+				if (!packets.add(beacon.getRawPacket()))
+					duplicatesNotified.incrementAndGet();
+				if (beacon.getLon() < 0 || beacon.getLon() > 20)
+					outside.incrementAndGet();
+			}
+		});
+
+		try {
+			client.connect();
+			Thread.sleep(5000);
+
+			assertTrue(packets.size() > 1000);
+			assertEquals(0, duplicatesNotified.get());
+			assertEquals(0, outside.get());
+			assertTrue(client.getDuplicates() > 0);
+
+			// the traffic is concentrated around 10E: the inner shards have been narrowed
+			final double[] boundaries = client.getShardBoundaries();
+			assertTrue(boundaries[1] > 5);
+			assertTrue(boundaries[3] < 15);
+
+			// the boundaries have been moved without re-connecting
+			assertEquals(4, relay.getAcceptedClients());
+		} finally {
+			client.disconnect();
+			relay.stop();
+			loadServer.stop();
+		}
+	}
+}
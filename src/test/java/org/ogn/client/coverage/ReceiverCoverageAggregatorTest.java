@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.coverage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class ReceiverCoverageAggregatorTest {
+
+	private static String time(int second) {
+		return String.format(Locale.ROOT, "%02d%02d%02d", second / 3600, second / 60 % 60, second % 60);
+	}
+
+	private static String position(double lat, double lon) {
+		return String.format(Locale.ROOT, "%02d%05.2fN/%03d%05.2fE", (int) lat, (lat - (int) lat) * 60, (int) lon,
+				(lon - (int) lon) * 60);
+	}
+
+	static AircraftBeacon beacon(String address, String receiver, double lat, double lon, float snr, int second) {
+		final String line = String.format(Locale.ROOT,
+				"FLR%s>APRS,qAS,%s:/%sh%s'000/050/A=003000 id06%s +000fpm %.1fdB 0e", address, receiver, time(second),
+				position(lat, lon), address, snr);
+		return (AircraftBeacon) AprsLineParser.get().parse(line);
+	}
+
+	static ReceiverBeacon receiver(String name, double lat, double lon, int second) {
+		final String line = String.format(Locale.ROOT, "%s>APRS,TCPIP*,qAC,GLIDERN1:/%sh%s&/A=000300 CPU:0.3", name,
+				time(second), position(lat, lon).replace('/', 'I'));
+		return (ReceiverBeacon) AprsLineParser.get().parse(line);
+	}
+
+	// the local clock is in sync with the beacons
+	private static void add(ReceiverCoverageAggregator aggregator, AircraftBeacon beacon) {
+		aggregator.add(beacon, beacon.getTimestamp());
+	}
+
+	@Test
+	public void testStatistics() {
+		final ReceiverCoverageAggregator aggregator = new ReceiverCoverageAggregator.Builder()
+				.window(10 * 60 * 1000, 2).cellSize(0.1).build();
+		assertTrue(aggregator.getReceivers().isEmpty());
+
+		aggregator.onUpdate(receiver("EHHO", 52, 6, 36000));
+		add(aggregator, beacon("DD0001", "EHHO", 52.1, 6, 20, 36001));
+		add(aggregator, beacon("DD0002", "EHHO", 52, 6.5, 5, 36002));
+		add(aggregator, beacon("DD0001", "EHHO", 52.12, 6.01, 21, 36003));
+		// the position of this one is not known
+		add(aggregator, beacon("DD0003", "EHTW", 52.3, 6.9, 10, 36004));
+
+		assertEquals(2, aggregator.getReceivers().size());
+		ReceiverStats stats = aggregator.getReceiverStats("EHHO");
+		assertEquals(3, stats.getBeacons());
+		assertEquals(2, stats.getUniqueAircraft());
+		assertEquals(2, stats.getCoverageCells());
+		assertEquals(34.3, stats.getMaxRangeKm(), 0.1);
+		assertEquals(52, stats.getLat(), 0.001);
+		assertEquals(15.33, stats.getMeanSnr(), 0.01);
+		assertEquals(1, stats.getSnrHistogram()[2]);
+		assertEquals(2, stats.getSnrHistogram()[10]);
+		assertEquals(6, stats.getSnrPercentile(10), 0.01);
+		assertEquals(22, stats.getSnrPercentile(50), 0.01);
+
+		stats = aggregator.getReceiverStats("EHTW");
+		assertEquals(0, stats.getMaxRangeKm(), 0);
+		assertTrue(Double.isNaN(stats.getLat()));
+		assertNull(aggregator.getReceiverStats("LFLE"));
+
+		// the next window: the previous one is rolled up
+		add(aggregator, beacon("DD0001", "EHHO", 52.1, 6, 20, 36600));
+		assertEquals(1, aggregator.getReceiverStats("EHHO").getBeacons());
+		assertNull(aggregator.getReceiverStats("EHTW"));
+		List<ReceiverStats> history = aggregator.getHistory("EHHO");
+		assertEquals(1, history.size());
+		assertEquals(3, history.get(0).getBeacons());
+		assertEquals(history.get(0).getWindowEnd(), aggregator.getReceiverStats("EHHO").getWindowStart());
+		assertEquals(1, aggregator.getHistory("EHTW").size());
+
+		// only the last 2 windows are kept
+		add(aggregator, beacon("DD0001", "EHHO", 52.1, 6, 20, 37200));
+		final AircraftBeacon last = beacon("DD0001", "EHHO", 52.1, 6, 20, 37800);
+		add(aggregator, last);
+		history = aggregator.getHistory("EHHO");
+		assertEquals(2, history.size());
+		assertEquals(1, history.get(0).getBeacons());
+		assertTrue(aggregator.getHistory("EHTW").isEmpty());
+
+		// a beacon from the future does not move the windows
+		aggregator.add(beacon("DD0001", "EHHO", 52.1, 6, 20, 39600), last.getTimestamp());
+		assertEquals(1, aggregator.getFutureBeacons());
+		assertEquals(1, aggregator.getReceiverStats("EHHO").getBeacons());
+		assertEquals(2, aggregator.getHistory("EHHO").size());
+	}
+}
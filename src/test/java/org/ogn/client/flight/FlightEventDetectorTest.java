@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.flight;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.client.flight.FlightEvent.LaunchType;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.OgnBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class FlightEventDetectorTest {
+
+	private static final String	GLIDER		= "06";
+	private static final String	TOW_PLANE	= "0A";
+
+	/**
+	 * @return a beacon of a given aircraft at a given speed (kt), altitude (ft), climb rate (fpm) and second of the
+	 *         day
+	 */
+	static AircraftBeacon beacon(String address, String id, int speedKt, int altFt, int climbFpm, int second) {
+		final String line = String.format(Locale.ROOT,
+				"FLR%s>APRS,qAS,EHHO:/%02d%02d%02dh5200.00N/00600.00E'000/%03d/A=%06d id%s%s %+04dfpm", address,
+				second / 3600, second / 60 % 60, second % 60, speedKt, altFt, id, address, climbFpm);
+		return (AircraftBeacon) AprsLineParser.get().parse(line);
+	}
+
+	/**
+	 * a flight replayed every 4 s: rolling on the ground, launch at a given climb rate, cruise, then landing
+	 */
+	static void flight(List<AircraftBeacon> replay, String address, String id, int start, int launchFpm,
+			int flightSeconds) {
+		int t = start;
+		replay.add(beacon(address, id, 0, 300, 0, t));
+		replay.add(beacon(address, id, 0, 300, 0, t += 4));
+		// a single fast beacon (a glitch) must not be taken for a takeoff
+		replay.add(beacon(address, id, 40, 300, 0, t += 4));
+		replay.add(beacon(address, id, 5, 300, 0, t += 4));
+		final int takeoff = t + 4;
+		int alt = 300;
+		while ((t += 4) < takeoff + flightSeconds) {
+			final int fpm = t - takeoff < 40 ? launchFpm : 0;
+			alt += fpm * 4 / 60;
+			replay.add(beacon(address, id, 50, alt, fpm, t));
+		}
+		replay.add(beacon(address, id, 5, 310, 0, t));
+		replay.add(beacon(address, id, 0, 310, 0, t += 4));
+		replay.add(beacon(address, id, 0, 310, 0, t += 4));
+	}
+
+	static List<AircraftBeacon> replay() {
+		final List<AircraftBeacon> replay = new ArrayList<>();
+		// winch launch, ~10 m/s
+		flight(replay, "DD0001", GLIDER, 36000, 2000, 600);
+		// aerotow, ~3 m/s
+		flight(replay, "DD0002", GLIDER, 36010, 600, 1200);
+		// the tow plane
+		flight(replay, "DD0003", TOW_PLANE, 36010, 800, 300);
+		// a short circuit after a launch failure: the launch is classified at landing
+		flight(replay, "DD0004", GLIDER, 36020, 2000, 32);
+		replay.sort(Comparator.comparingLong(AircraftBeacon::getTimestamp));
+		return replay;
+	}
+
+	private static List<String> describe(List<FlightEvent> events) {
+		final List<String> result = new ArrayList<>();
+		for (final FlightEvent event : events) {
+			result.add(event.getAddress() + " " + event.getType() + " " + event.getTimestamp() % 86400000 / 1000
+					+ (event.getLaunchType() == null ? "" : " " + event.getLaunchType()));
+		}
+		return result;
+	}
+
+	@Test
+	public void testReplay() {
+		final List<FlightEvent> events = new ArrayList<>();
+		final FlightEventDetector detector = new FlightEventDetector.Builder().listener(events::add).build();
+		for (final AircraftBeacon beacon : replay()) {
+			detector.onUpdate(beacon, Optional.empty());
+			// a late duplicate is ignored
+			detector.onUpdate(beacon, Optional.empty());
+		}
+
+		final List<String> expected = new ArrayList<>();
+		expected.add("DD0001 TAKEOFF 36016");
+		expected.add("DD0001 LAUNCH 36016 WINCH");
+		expected.add("DD0001 LANDING 36616");
+		expected.add("DD0002 TAKEOFF 36026");
+		expected.add("DD0002 LAUNCH 36026 AEROTOW");
+		expected.add("DD0002 LANDING 37226");
+		expected.add("DD0003 TAKEOFF 36026");
+		expected.add("DD0003 LAUNCH 36026 SELF_LAUNCH");
+		expected.add("DD0003 LANDING 36326");
+		expected.add("DD0004 TAKEOFF 36036");
+		expected.add("DD0004 LAUNCH 36036 WINCH");
+		expected.add("DD0004 LANDING 36068");
+
+		final List<String> actual = describe(events);
+		// the events of one aircraft are in order
+		actual.sort(Comparator.comparing(s -> s.substring(0, 6)));
+		assertEquals(expected, actual);
+
+		assertEquals(300 * 0.3048, events.get(0).getGroundAlt(), 0.1);
+		assertEquals(4, detector.getTrackedAircraft());
+	}
+
+	@Test
+	public void testSharded() {
+		final List<FlightEvent> single = new ArrayList<>();
+		final FlightEventDetector detector = new FlightEventDetector.Builder().listener(single::add).build();
+		final List<FlightEvent> sharded = Collections.synchronizedList(new ArrayList<>());
+		try (ShardedFlightEventDetector shards = new ShardedFlightEventDetector(3,
+				new FlightEventDetector.Builder().listener(sharded::add), 16)) {
+			for (final AircraftBeacon beacon : replay()) {
+				detector.onUpdate(beacon, Optional.empty());
+				shards.onUpdate(beacon, Optional.empty());
+			}
+		}
+
+		final List<String> expected = describe(single);
+		final List<String> actual = describe(sharded);
+		expected.sort(Comparator.comparing(s -> s.substring(0, 6)));
+		actual.sort(Comparator.comparing(s -> s.substring(0, 6)));
+		assertEquals(12, actual.size());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testRecordedFeed() throws IOException {
+		// the recorded traffic follows the replayed flights, the aircraft in it are seen in flight or parked only
+		final List<AircraftBeacon> feed = replay();
+		final InputStream is =
+				Thread.currentThread().getContextClassLoader().getResourceAsStream("server-sentences.txt");
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				final OgnBeacon beacon = AprsLineParser.get().parse(line);
+				if (beacon instanceof AircraftBeacon) {
+					feed.add((AircraftBeacon) beacon);
+				}
+			}
+		}
+
+		final List<FlightEvent> single = new ArrayList<>();
+		final FlightEventDetector detector = new FlightEventDetector.Builder().listener(single::add).build();
+		final List<FlightEvent> sharded = Collections.synchronizedList(new ArrayList<>());
+		try (ShardedFlightEventDetector shards = new ShardedFlightEventDetector(3,
+				new FlightEventDetector.Builder().listener(sharded::add), 16)) {
+			for (final AircraftBeacon beacon : feed) {
+				detector.onUpdate(beacon, Optional.empty());
+				shards.onUpdate(beacon, Optional.empty());
+			}
+		}
+
+		final List<String> expected = describe(single);
+		final List<String> actual = describe(sharded);
+		expected.sort(Comparator.comparing(s -> s.substring(0, 6)));
+		actual.sort(Comparator.comparing(s -> s.substring(0, 6)));
+		assertEquals(12, expected.size());
+		assertEquals(expected, actual);
+		assertEquals(10, detector.getTrackedAircraft());
+	}
+}
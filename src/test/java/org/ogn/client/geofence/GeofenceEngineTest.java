@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.geofence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class GeofenceEngineTest {
+
+	private static AircraftBeacon beacon(String address, String time, String position, String altitude) {
+		return (AircraftBeacon) AprsLineParser.get().parse("FLR" + address + ">APRS,qAS,EHHO:/" + time + "h" + position
+				+ "'/A=" + altitude + " id06" + address + " +020fpm");
+	}
+
+	@Test
+	public void testContains() {
+		// a concave (L-shaped) polygon
+		final Geofence fence = new Geofence("L", new double[]{52, 52, 52.5, 52.5, 53, 53},
+				new double[]{6, 7, 7, 6.5, 6.5, 6}, 0, 1000);
+		assertTrue(fence.contains(52.2, 6.8, 500));
+		assertTrue(fence.contains(52.8, 6.2, 500));
+		assertFalse(fence.contains(52.8, 6.8, 500));
+		assertFalse(fence.contains(52.2, 6.8, 1500));
+		assertFalse(fence.contains(51.9, 6.2, 500));
+
+		final Geofence circle = Geofence.circle("C", 52, 6, 5, 36);
+		assertTrue(circle.contains(52.04, 6, 0));
+		assertFalse(circle.contains(52.05, 6, 0));
+	}
+
+	@Test
+	public void testEvents() {
+		final List<GeofenceEvent> events = new ArrayList<>();
+		final GeofenceEngine engine =
+				new GeofenceEngine.Builder().listener(events::add).dwellTime(60000).cellSize(0.1).build();
+		// an airfield spanning several cells and a large airspace, which is not put in the grid
+		engine.addFence(Geofence.circle("EHHO", 52.73, 6.52, 8, 24));
+		engine.addFence(new Geofence("TMA", new double[]{40, 40, 60, 60}, new double[]{0, 20, 20, 0}, 0, 1500));
+
+		engine.onUpdate(beacon("DD9350", "100000", "5230.00N/00631.20E", "003000"), Optional.empty());
+		assertEquals(1, events.size());
+		assertEquals(GeofenceEvent.Type.ENTER, events.get(0).getType());
+		assertEquals("TMA", events.get(0).getFence().getId());
+
+		engine.onUpdate(beacon("DD9350", "100030", "5242.60N/00630.00E", "003000"), Optional.empty());
+		assertEquals(2, events.size());
+		assertEquals("EHHO", events.get(1).getFence().getId());
+		assertEquals(GeofenceEvent.Type.ENTER, events.get(1).getType());
+
+		// stays: one dwell event per fence, once the dwell time has elapsed
+		engine.onUpdate(beacon("DD9350", "100100", "5243.20N/00630.60E", "003000"), Optional.empty());
+		assertEquals(3, events.size());
+		assertEquals(GeofenceEvent.Type.DWELL, events.get(2).getType());
+		assertEquals("TMA", events.get(2).getFence().getId());
+		engine.onUpdate(beacon("DD9350", "100120", "5243.80N/00631.20E", "003000"), Optional.empty());
+		assertEquals(3, events.size());
+		engine.onUpdate(beacon("DD9350", "100130", "5243.80N/00631.20E", "003000"), Optional.empty());
+		engine.onUpdate(beacon("DD9350", "100140", "5243.80N/00631.20E", "003000"), Optional.empty());
+		assertEquals(4, events.size());
+		assertEquals(GeofenceEvent.Type.DWELL, events.get(3).getType());
+		assertEquals("EHHO", events.get(3).getFence().getId());
+		assertEquals(60000, events.get(3).getDwellTime());
+		assertEquals(1, engine.getTrackedAircraft());
+
+		// climbs out of the TMA, leaves the airfield
+		engine.onUpdate(beacon("DD9350", "100150", "5243.80N/00631.20E", "006000"), Optional.empty());
+		assertEquals(GeofenceEvent.Type.EXIT, events.get(4).getType());
+		assertEquals("TMA", events.get(4).getFence().getId());
+		engine.onUpdate(beacon("DD9350", "100200", "5300.00N/00631.20E", "006000"), Optional.empty());
+		assertEquals(GeofenceEvent.Type.EXIT, events.get(5).getType());
+		assertEquals("EHHO", events.get(5).getFence().getId());
+		assertEquals(90000, events.get(5).getDwellTime());
+		assertEquals(6, events.size());
+		// nothing is remembered about an aircraft outside all fences
+		assertEquals(0, engine.getTrackedAircraft());
+
+		// a removed fence does not produce any exit event
+		engine.onUpdate(beacon("DD8222", "100320", "5243.80N/00631.20E", "001000"), Optional.empty());
+		assertEquals(8, events.size());
+		assertTrue(engine.removeFence("EHHO"));
+		engine.onUpdate(beacon("DD8222", "100330", "5330.00N/00631.20E", "001000"), Optional.empty());
+		assertEquals(8, events.size());
+		assertEquals(1, engine.getFences().size());
+	}
+}
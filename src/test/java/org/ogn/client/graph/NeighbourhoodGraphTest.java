@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.ReceiverBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class NeighbourhoodGraphTest {
+
+	private static String time(int second) {
+		return String.format(Locale.ROOT, "%02d%02d%02d", second / 3600, second / 60 % 60, second % 60);
+	}
+
+	static AircraftBeacon beacon(String address, String receiver, int second, String... heard) {
+		final StringBuilder hear = new StringBuilder();
+		for (final String id : heard) {
+			hear.append(" hear").append(id);
+		}
+		final String line = String.format(Locale.ROOT,
+				"FLR%s>APRS,qAS,%s:/%sh5200.00N/00600.00E'000/050/A=003000 id06%s +000fpm%s", address, receiver,
+				time(second), address, hear);
+		return (AircraftBeacon) AprsLineParser.get().parse(line);
+	}
+
+	static ReceiverBeacon receiver(String name, int second) {
+		final String line = String.format(Locale.ROOT,
+				"%s>APRS,TCPIP*,qAC,GLIDERN1:/%sh5218.00NI00654.00E&/A=000300 CPU:0.3", name, time(second));
+		return (ReceiverBeacon) AprsLineParser.get().parse(line);
+	}
+
+	@Test
+	public void testGraph() {
+		final NeighbourhoodGraph graph = new NeighbourhoodGraph.Builder().halfLife(60000).nodeTimeout(300000)
+				.build();
+		final int t0 = 36000;
+		graph.onUpdate(receiver("EHHO", t0));
+		graph.onUpdate(receiver("EHTW", t0));
+		graph.onUpdate(beacon("DD0001", "EHHO", t0), Optional.empty());
+		graph.onUpdate(beacon("DD0001", "EHHO", t0), Optional.empty());
+		graph.onUpdate(beacon("DD0001", "EHHO", t0), Optional.empty());
+		graph.onUpdate(beacon("DD0001", "EHTW", t0), Optional.empty());
+		graph.onUpdate(beacon("DD0002", "EHHO", t0), Optional.empty());
+		// DD0003 hears DD0001, and an aircraft which has not been seen
+		graph.onUpdate(beacon("DD0003", "EHTW", t0, "0001", "7777"), Optional.empty());
+
+		assertEquals(5, graph.getNodeCount());
+		assertEquals(5, graph.getLinkCount());
+
+		List<Neighbour> neighbours = graph.getReceiverNeighbours("EHHO");
+		assertEquals(2, neighbours.size());
+		assertEquals("DD0001", neighbours.get(0).getId());
+		assertEquals(3, neighbours.get(0).getWeight(), 1e-6);
+		assertEquals("DD0002", neighbours.get(1).getId());
+
+		neighbours = graph.getAircraftNeighbours("DD0001");
+		assertEquals(3, neighbours.size());
+		assertEquals("EHHO", neighbours.get(0).getId());
+		assertTrue(neighbours.get(0).isReceiver());
+		assertEquals(52.3, neighbours.get(0).getLat(), 1e-6);
+		// heard by an aircraft
+		assertTrue(neighbours.stream().anyMatch(n -> n.getId().equals("DD0003") && !n.isReceiver()));
+
+		// {DD0001: 3, DD0002: 1} vs {DD0001: 1, DD0003: 1}
+		assertEquals(0.2, graph.getCoverageOverlap("EHHO", "EHTW"), 1e-6);
+		assertEquals(0, graph.getCoverageOverlap("EHHO", "LFLE"), 0);
+		neighbours = graph.getOverlappingReceivers("EHHO");
+		assertEquals(1, neighbours.size());
+		assertEquals("EHTW", neighbours.get(0).getId());
+		assertEquals(0.2, neighbours.get(0).getWeight(), 1e-6);
+
+		// one half-life later
+		graph.onUpdate(beacon("DD0009", "LFLE", t0 + 60), Optional.empty());
+		assertEquals(1.5, graph.getReceiverNeighbours("EHHO").get(0).getWeight(), 1e-3);
+		graph.onUpdate(beacon("DD0001", "EHHO", t0 + 60), Optional.empty());
+		assertEquals(2.5, graph.getReceiverNeighbours("EHHO").get(0).getWeight(), 1e-3);
+
+		// 10 half-lives later: everything but the last link has decayed and is forgotten
+		graph.onUpdate(beacon("DD0010", "LFLE", t0 + 660), Optional.empty());
+		graph.prune();
+		assertEquals(2, graph.getNodeCount());
+		assertEquals(1, graph.getLinkCount());
+		assertTrue(graph.getReceiverNeighbours("EHHO").isEmpty());
+		assertEquals("DD0010", graph.getReceiverNeighbours("LFLE").get(0).getId());
+
+		// the ids of the forgotten nodes are reused
+		graph.onUpdate(beacon("DD0001", "EHHO", t0 + 661), Optional.empty());
+		assertEquals(4, graph.getNodeCount());
+		assertEquals(1, graph.getReceiverNeighbours("EHHO").get(0).getWeight(), 1e-6);
+		assertTrue(Double.isNaN(graph.getAircraftNeighbours("DD0001").get(0).getLat()));
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		long previousUpperBound = -1;
+		for (long value = 0; value < 1 << 20; value++) {
+			final int index = LatencyHistogram.bucketIndex(value);
+			// every value must fall into a bucket whose upper bound is not smaller than the value
+			assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+			// and the bucket must be tight: max 25% error
+			assertTrue(LatencyHistogram.bucketUpperBound(index) <= value + value / 4 + 1);
+			assertTrue(LatencyHistogram.bucketUpperBound(index) >= previousUpperBound);
+			previousUpperBound = LatencyHistogram.bucketUpperBound(index);
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMax(TimeUnit.MICROSECONDS));
+
+		final long p50 = histogram.getPercentile(50, TimeUnit.MICROSECONDS);
+		assertTrue(p50 >= 500 && p50 <= 625);
+
+		final long p99 = histogram.getPercentile(99, TimeUnit.MICROSECONDS);
+		assertTrue(p99 >= 990 && p99 <= 1000);
+
+		assertEquals(500.5, histogram.getMean(TimeUnit.NANOSECONDS) / 1000, 0.01);
+	}
+}
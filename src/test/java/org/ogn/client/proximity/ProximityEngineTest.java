@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class ProximityEngineTest {
+
+	private static AircraftBeacon beacon(String address, String time, String position, String course,
+			String altitude) {
+		return (AircraftBeacon) AprsLineParser.get().parse("FLR" + address + ">APRS,qAS,EHHO:/" + time + "h" + position
+				+ "'" + course + "/A=" + altitude + " id06" + address + " +000fpm");
+	}
+
+	@Test
+	public void testAlerts() {
+		final List<ProximityAlert> alerts = new ArrayList<>();
+		final ProximityEngine engine = new ProximityEngine.Builder().listener(alerts::add).build();
+		// parked next to each other: ignored
+		engine.onUpdate(beacon("DD0001", "100000", "5200.00N/00600.00E", "000/000", "000100"), Optional.empty());
+		engine.onUpdate(beacon("DD0002", "100000", "5200.00N/00600.06E", "000/000", "000100"), Optional.empty());
+		assertEquals(0, engine.getTrackedAircraft());
+
+		// head-on at the same altitude, 2 km apart, closing at 100 m/s: closest approach in ~20 s
+		engine.onUpdate(beacon("DD0003", "100000", "5200.00N/00600.00E", "090/100", "003000"), Optional.empty());
+		// the same, 3000 ft higher
+		engine.onUpdate(beacon("DD0004", "100000", "5200.00N/00601.75E", "270/100", "006000"), Optional.empty());
+		assertEquals(0, alerts.size());
+		engine.onUpdate(beacon("DD0005", "100000", "5200.00N/00601.75E", "270/100", "003000"), Optional.empty());
+		assertEquals(1, alerts.size());
+
+		final ProximityAlert alert = alerts.get(0);
+		assertEquals(ProximityAlert.Type.CONFLICT, alert.getType());
+		assertEquals("DD0005", alert.getBeacon().getAddress());
+		assertEquals("DD0003", alert.getOther().getAddress());
+		assertEquals(2000, alert.getHorizontalDistance(), 50);
+		assertEquals(19.4, alert.getTimeToClosestApproach(), 0.5);
+		assertTrue(alert.getHorizontalDistanceAtClosestApproach() < 50);
+
+		// the same pair is not reported again within the alert interval
+		engine.onUpdate(beacon("DD0003", "100005", "5200.00N/00600.44E", "090/100", "003000"), Optional.empty());
+		assertEquals(1, alerts.size());
+
+		// flying in formation, 500 m apart, far from the others
+		engine.onUpdate(beacon("DD0006", "100005", "5300.00N/00600.00E", "000/060", "003000"), Optional.empty());
+		final long checks = engine.getPairChecks();
+		engine.onUpdate(beacon("DD0007", "100005", "5300.00N/00600.44E", "000/060", "003100"), Optional.empty());
+		assertEquals(2, alerts.size());
+		assertEquals(ProximityAlert.Type.PROXIMITY, alerts.get(1).getType());
+		assertEquals(500, alerts.get(1).getHorizontalDistance(), 50);
+		// only the neighbour has been checked
+		assertEquals(checks + 1, engine.getPairChecks());
+		assertEquals(5, engine.getTrackedAircraft());
+
+		// landed
+		engine.onUpdate(beacon("DD0007", "100140", "5300.00N/00600.00E", "000/005", "000100"), Optional.empty());
+		assertEquals(4, engine.getTrackedAircraft());
+	}
+}
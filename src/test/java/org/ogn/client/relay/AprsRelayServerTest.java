@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.relay;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ogn.client.aprs.AprsLoadServer;
+import org.ogn.client.aprs.AprsOgnClient;
+
+public class AprsRelayServerTest {
+
+	AprsLoadServer	loadServer;
+	AprsRelayServer	relay;
+	List<Socket>	sockets	= new ArrayList<>();
+
+	void startRelay(int linesPerSecond, int clientBufferSize) throws IOException {
+		loadServer = new AprsLoadServer(linesPerSecond, false);
+		final int upstreamPort = loadServer.start();
+		relay = new AprsRelayServer.Builder()
+				.upstream(new AprsOgnClient.Builder().serverName("localhost").unfilteredPort(upstreamPort).build())
+				.clientBufferSize(clientBufferSize).build();
+		relay.start();
+	}
+
+	Socket connect() throws IOException {
+		return connect(0);
+	}
+
+	Socket connect(int receiveBufferSize) throws IOException {
+		final Socket socket = new Socket();
+		if (receiveBufferSize > 0)
+			socket.setReceiveBufferSize(receiveBufferSize);
+		socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), relay.getPort()));
+		socket.setSoTimeout(5000);
+		sockets.add(socket);
+		return socket;
+	}
+
+	static BufferedReader login(Socket socket, String loginLine) throws IOException {
+		final OutputStream out = socket.getOutputStream();
+		out.write((loginLine + "\r\n").getBytes(US_ASCII));
+		out.flush();
+
+		final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), US_ASCII));
+		assertTrue(in.readLine().startsWith("# ogn-client-java relay"));
+		assertTrue(in.readLine().startsWith("# logresp"));
+		return in;
+	}
+
+	static String nextBeacon(BufferedReader in) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (!line.startsWith("#"))
+				return line;
+		}
+		return null;
+	}
+
+	@Before
+	public void setUp() {
+		//
+	}
+
+	@Test(timeout = 60000)
+	public void testFanOutAndFilters() throws Exception {
+		startRelay(200, 64 * 1024);
+
+		// many clients without a filter, all getting the full feed
+		final List<BufferedReader> readers = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			readers.add(login(connect(), "user TEST" + i + " pass -1 vers test 1.0"));
+		}
+
+		final BufferedReader aircraftOnly = login(connect(), "user AIRCRAFT pass -1 vers test 1.0 filter p/FLR");
+		assertTrue(aircraftOnly.readLine().startsWith("# filter p/FLR active"));
+
+		for (final BufferedReader in : readers) {
+			assertNotNull(nextBeacon(in));
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(nextBeacon(aircraftOnly).startsWith("FLR"));
+		}
+
+		// change of filter on a live connection
+		final Socket socket = connect();
+		final BufferedReader in = login(socket, "user CHANGE pass -1 vers test 1.0");
+		socket.getOutputStream().write("#filter b/NOBODY p/FLR\r\n".getBytes(US_ASCII));
+		String line;
+		while (!(line = in.readLine()).startsWith("# filter"));
+		assertEquals("# filter b/NOBODY p/FLR active", line);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(nextBeacon(in).startsWith("FLR"));
+		}
+
+		// a filter which can not be evaluated locally is refused, the previous one stays active
+		socket.getOutputStream().write("#filter m/100\r\n".getBytes(US_ASCII));
+		while (!(line = in.readLine()).startsWith("# unsupported filter"));
+		assertEquals("# unsupported filter m/100", line);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(nextBeacon(in).startsWith("FLR"));
+		}
+
+		assertEquals(202, relay.getAcceptedClients());
+		assertEquals(202, relay.getClientCount());
+		assertEquals(0, relay.getEvictedClients());
+	}
+
+	@Test(timeout = 60000)
+	public void testSlowClientEviction() throws Exception {
+		startRelay(20000, 64 * 1024);
+
+		final Socket slow = connect(4096);
+		login(slow, "user SLOW pass -1 vers test 1.0");
+
+		final BufferedReader fast = login(connect(), "user FAST pass -1 vers test 1.0");
+
+		// the fast client keeps reading while the slow one does not
+		while (relay.getEvictedClients() == 0) {
+			assertNotNull(nextBeacon(fast));
+		}
+
+		assertEquals(1, relay.getEvictedClients());
+		assertEquals(1, relay.getClientCount());
+		for (int i = 0; i < 1000; i++) {
+			assertNotNull(nextBeacon(fast));
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (final Socket socket : sockets) {
+			socket.close();
+		}
+		relay.stop();
+		loadServer.stop();
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.reorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class ReorderBufferTest {
+
+	static AircraftBeacon beacon(String address, int second) {
+		final String line = String.format(Locale.ROOT,
+				"FLR%s>APRS,qAS,EHHO:/%02d%02d%02dh5200.00N/00600.00E'000/050/A=003000 id06%s +000fpm", address,
+				second / 3600, second / 60 % 60, second % 60, address);
+		return (AircraftBeacon) AprsLineParser.get().parse(line);
+	}
+
+	private static List<String> seconds(List<AircraftBeacon> beacons) {
+		final List<String> result = new ArrayList<>();
+		for (final AircraftBeacon beacon : beacons) {
+			result.add(beacon.getAddress() + "@" + beacon.getTimestamp() / 1000 % 86400);
+		}
+		return result;
+	}
+
+	@Test
+	public void testReordering() {
+		final List<AircraftBeacon> delivered = new ArrayList<>();
+		final ReorderBuffer buffer = new ReorderBuffer.Builder().listener((b, d) -> delivered.add(b)).lateness(5000)
+				.maxDelay(2000).capacity(4).build(false);
+		final int t0 = 36000;
+		long now = 1000;
+
+		buffer.add(beacon("DD0001", t0 + 10), Optional.empty(), now);
+		buffer.add(beacon("DD0001", t0 + 12), Optional.empty(), now);
+		buffer.add(beacon("DD0001", t0 + 11), Optional.empty(), now);
+		buffer.add(beacon("DD0002", t0 + 10), Optional.empty(), now);
+		assertEquals(0, delivered.size());
+		assertEquals(4, buffer.getPending());
+
+		// the watermark of DD0001 passes 12
+		buffer.add(beacon("DD0001", t0 + 17), Optional.empty(), now += 100);
+		assertEquals(Arrays.asList("DD0001@36010", "DD0001@36011", "DD0001@36012"), seconds(delivered));
+		assertEquals(1, buffer.getReordered());
+
+		// too late
+		buffer.add(beacon("DD0001", t0 + 9), Optional.empty(), now);
+		assertEquals(1, buffer.getLate());
+		assertEquals(3, delivered.size());
+
+		// the max delay has elapsed for the first beacon of DD0002 only
+		buffer.flush(now += 1950);
+		assertEquals(Arrays.asList("DD0001@36010", "DD0001@36011", "DD0001@36012", "DD0002@36010"),
+				seconds(delivered));
+		buffer.flush(now += 100);
+		assertEquals("DD0001@36017", seconds(delivered).get(4));
+		assertEquals(0, buffer.getPending());
+
+		// the buffer of an aircraft is full: the oldest beacon is delivered
+		delivered.clear();
+		for (int s = 100; s < 105; s++) {
+			buffer.add(beacon("DD0003", t0 + s), Optional.empty(), now);
+		}
+		assertEquals(Arrays.asList("DD0003@36100"), seconds(delivered));
+		assertEquals(1, buffer.getOverflows());
+
+		buffer.close();
+		assertEquals(5, delivered.size());
+		assertEquals(11, buffer.getReceived());
+		assertEquals(10, buffer.getDelivered());
+	}
+
+	@Test
+	public void testLateDelivered() {
+		final List<AircraftBeacon> delivered = new ArrayList<>();
+		final ReorderBuffer buffer = new ReorderBuffer.Builder().listener((b, d) -> delivered.add(b)).lateness(0)
+				.dropLate(false).build(false);
+		buffer.add(beacon("DD0001", 36010), Optional.empty(), 0);
+		buffer.add(beacon("DD0001", 36005), Optional.empty(), 0);
+		assertEquals(Arrays.asList("DD0001@36010", "DD0001@36005"), seconds(delivered));
+		assertEquals(1, buffer.getLate());
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class PositionSnapshotPublisherTest {
+
+	/**
+	 * @return a beacon of a given aircraft at 52N 6E with a given track, speed (kt), climb rate (fpm) and second of the
+	 *         day, at 3000 ft
+	 */
+	static AircraftBeacon beacon(String address, int track, int speedKt, int climbFpm, int second) {
+		final String line = String.format(Locale.ROOT,
+				"FLR%s>APRS,qAS,EHHO:/%02d%02d%02dh5200.00N/00600.00E'%03d/%03d/A=003000 id06%s %+04dfpm", address,
+				second / 3600, second / 60 % 60, second % 60, track, speedKt, address, climbFpm);
+		return (AircraftBeacon) AprsLineParser.get().parse(line);
+	}
+
+	private static int indexOf(PositionSnapshot snapshot, String address) {
+		for (int i = 0; i < snapshot.size(); i++) {
+			if (snapshot.getAddress(i).equals(address))
+				return i;
+		}
+		return -1;
+	}
+
+	@Test
+	public void testDeadReckoning() {
+		final List<PositionSnapshot> snapshots = new ArrayList<>();
+		final PositionSnapshotPublisher publisher = new PositionSnapshotPublisher.Builder().listener(snapshots::add)
+				.build(false);
+		// eastbound at 100 kt (51.4 m/s), climbing at ~2 m/s
+		final AircraftBeacon moving = beacon("DD0001", 90, 100, 400, 36000);
+		final long t = moving.getTimestamp();
+		publisher.add(moving, t);
+		publisher.add(beacon("DD0002", 0, 0, 0, 36000), t);
+		// an older beacon is ignored
+		publisher.add(beacon("DD0001", 90, 100, 400, 35998), t);
+
+		publisher.tick(t + 2000);
+		PositionSnapshot snapshot = snapshots.get(0);
+		assertTrue(snapshot.isKeyFrame());
+		assertEquals(2, snapshot.size());
+		int i = indexOf(snapshot, "DD0001");
+		assertEquals(52, snapshot.getLat(i), 1e-5);
+		assertEquals(6 + 102.9 / (111320 * Math.cos(Math.toRadians(52))), snapshot.getLon(i), 2e-5);
+		assertEquals(914 + 4, snapshot.getAlt(i), 1);
+		assertEquals(90, snapshot.getTrack(i));
+		assertEquals(185, snapshot.getGroundSpeed(i), 0);
+
+		// the extrapolation is capped
+		publisher.tick(t + 25000);
+		snapshot = snapshots.get(1);
+		i = indexOf(snapshot, "DD0001");
+		assertEquals(6 + 514.4 / (111320 * Math.cos(Math.toRadians(52))), snapshot.getLon(i), 2e-5);
+		assertEquals(2, snapshot.size());
+		assertEquals(1, snapshot.getSequence());
+
+		// dropped
+		publisher.tick(t + 31000);
+		assertEquals(0, snapshots.get(2).size());
+		assertEquals(0, publisher.getActiveAircraft());
+	}
+
+	@Test
+	public void testDeltaEncoding() {
+		final List<PositionSnapshot> snapshots = new ArrayList<>();
+		final PositionSnapshotPublisher publisher = new PositionSnapshotPublisher.Builder().listener(snapshots::add)
+				.deltaEncoding(3).maxAge(10000).build(false);
+		final AircraftBeacon moving = beacon("DD0001", 90, 100, 0, 36000);
+		final long t = moving.getTimestamp();
+		publisher.add(moving, t);
+		publisher.add(beacon("DD0002", 0, 0, 0, 36000), t);
+
+		publisher.tick(t);
+		assertTrue(snapshots.get(0).isKeyFrame());
+		assertEquals(2, snapshots.get(0).size());
+
+		// the parked aircraft has not changed
+		publisher.tick(t + 500);
+		assertFalse(snapshots.get(1).isKeyFrame());
+		assertEquals(1, snapshots.get(1).size());
+		assertEquals("DD0001", snapshots.get(1).getAddress(0));
+
+		// DD0002 is not heard anymore
+		publisher.add(beacon("DD0001", 90, 100, 0, 36009), t + 9000);
+		publisher.tick(t + 10500);
+		assertEquals(1, snapshots.get(2).size());
+		assertEquals(Arrays.asList("DD0002"), snapshots.get(2).getRemoved());
+
+		publisher.add(beacon("DD0003", 0, 0, 0, 36010), t + 10000);
+		publisher.tick(t + 11000);
+		assertTrue(snapshots.get(3).isKeyFrame());
+		assertEquals(2, snapshots.get(3).size());
+		assertTrue(snapshots.get(3).getRemoved().isEmpty());
+	}
+}
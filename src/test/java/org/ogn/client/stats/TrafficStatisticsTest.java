@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2014 OGN, All Rights Reserved.
+ */
+
+package org.ogn.client.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.junit.Test;
+import org.ogn.commons.beacon.AircraftBeacon;
+import org.ogn.commons.beacon.AircraftType;
+import org.ogn.commons.beacon.impl.aprs.AprsLineParser;
+
+public class TrafficStatisticsTest {
+
+	private static final String	GLIDER		= "06";
+	private static final String	TOW_PLANE	= "0A";
+
+	static AircraftBeacon beacon(String address, String id, double lat, int second) {
+		final String line = String.format(Locale.ROOT,
+				"FLR%s>APRS,qAS,EHHO:/%02d%02d%02dh%02d%05.2fN/00600.00E'000/050/A=003000 id%s%s +000fpm", address,
+				second / 3600, second / 60 % 60, second % 60, (int) lat, (lat - (int) lat) * 60, id, address);
+		return (AircraftBeacon) AprsLineParser.get().parse(line);
+	}
+
+	// the local clock is in sync with the beacons
+	private static void add(TrafficStatistics stats, AircraftBeacon beacon) {
+		stats.add(beacon, beacon.getTimestamp());
+	}
+
+	@Test
+	public void testHyperLogLog() {
+		final HyperLogLog small = new HyperLogLog(14);
+		for (int i = 0; i < 20; i++) {
+			small.add(String.format("DD%04X", i % 10));
+		}
+		assertEquals(10, small.estimate());
+
+		final HyperLogLog large = new HyperLogLog(12);
+		for (int i = 0; i < 100000; i++) {
+			large.add(String.format("%06X", i));
+		}
+		assertEquals(100000, large.estimate(), 5000);
+	}
+
+	@Test
+	public void testWindows() {
+		final TrafficStatistics stats = new TrafficStatistics.Builder().buckets(60000, 5).precision(14)
+				.region("north", 53, 5, 52, 7).region("south", 52, 5, 51, 7).build();
+		assertEquals(0, stats.getWindow(60000).getBeacons());
+
+		final int t0 = 36000;
+		// 3 gliders in the north, twice a minute for 5 minutes, a tow plane in the south the last minute only
+		for (int minute = 0; minute < 5; minute++) {
+			for (int s = 0; s < 60; s += 30) {
+				for (int i = 1; i <= 3; i++) {
+					add(stats, beacon("DD000" + i, GLIDER, 52.5, t0 + minute * 60 + s));
+				}
+			}
+		}
+		add(stats, beacon("DD0009", TOW_PLANE, 51.5, t0 + 290));
+
+		TrafficWindow window = stats.getWindow(60000);
+		assertEquals(7, window.getBeacons());
+		assertEquals(4, window.getActiveAircraft());
+		assertEquals(6, window.getBeaconsByType().get(AircraftType.GLIDER).longValue());
+		assertEquals(1, window.getBeaconsByType().get(AircraftType.TOW_PLANE).longValue());
+		assertEquals(6, window.getBeaconsByRegion().get("north").longValue());
+		assertEquals(1, window.getActiveAircraftByRegion().get("south").longValue());
+		assertEquals(60000, window.getEnd() - window.getStart());
+
+		window = stats.getWindow(5 * 60000);
+		assertEquals(31, window.getBeacons());
+		assertEquals(4, window.getActiveAircraft());
+		assertEquals(3, window.getActiveAircraftByRegion().get("north").longValue());
+		// capped to the longest window
+		assertEquals(31, stats.getWindow(3600000).getBeacons());
+
+		// the next minute recycles the oldest bucket
+		final AircraftBeacon next = beacon("DD0001", GLIDER, 52.5, t0 + 300);
+		add(stats, next);
+		assertEquals(26, stats.getWindow(5 * 60000).getBeacons());
+		assertEquals(1, stats.getWindow(60000).getBeacons());
+
+		// too old to be counted
+		add(stats, beacon("DD0001", GLIDER, 52.5, t0 + 10));
+		assertEquals(1, stats.getLateBeacons());
+		// late, but still within the window
+		add(stats, beacon("DD0005", GLIDER, 52.5, t0 + 250));
+		window = stats.getWindow(2 * 60000);
+		assertEquals(9, window.getBeacons());
+		assertEquals(5, window.getActiveAircraft());
+		assertTrue(window.getBeaconsByType().containsKey(AircraftType.TOW_PLANE));
+
+		// ahead of the local clock, does not move the ring
+		stats.add(beacon("DD0001", GLIDER, 52.5, t0 + 600), next.getTimestamp());
+		assertEquals(1, stats.getFutureBeacons());
+		assertEquals(9, stats.getWindow(2 * 60000).getBeacons());
+	}
+}